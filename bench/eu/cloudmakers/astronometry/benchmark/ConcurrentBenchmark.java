@@ -0,0 +1,142 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+
+package eu.cloudmakers.astronometry.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.cloudmakers.astronometry.NOVAS;
+import eu.cloudmakers.astronometry.NOVAS.CatalogEntry;
+import eu.cloudmakers.astronometry.NOVAS.CelestialObject;
+import eu.cloudmakers.astronometry.NOVAS.DoubleRef;
+import eu.cloudmakers.astronometry.NOVAS.Observer;
+import eu.cloudmakers.astronometry.NOVAS.PositionOnSurface;
+import eu.cloudmakers.astronometry.NOVAS.SkyPosition;
+
+/**
+ * Multi-threaded benchmark of the most used NOVAS native entry points.
+ * <p>
+ * Runs with one thread per processor by default (use -t to change it), every
+ * thread has its own state and starts at a different position of the date
+ * sequence, so the per-thread caches of the library are not shared. Compare
+ * the result with {@link NovasBenchmark} to see the scaling.
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class ConcurrentBenchmark {
+
+  /**
+   * Ephemeris backend and accuracy, see {@link Scenarios}.
+   */
+
+  @Param({ "JPL_FULL", "JPL_REDUCED", "ANALYTIC_REDUCED" })
+  public String configuration;
+
+  /**
+   * Date sequence, see {@link Scenarios}.
+   */
+
+  @Param({ "MONOTONIC", "RANDOM" })
+  public String dates;
+
+  private static int threads;
+
+  private int accuracy;
+  private double ttDates[];
+  private int index;
+
+  private CatalogEntry star = new CatalogEntry("POLARIS", "HIP", 0, 2.530301028, 89.264109444, 44.22, -11.75, 7.56, -17.4);
+  private CelestialObject starObject = new CelestialObject(star);
+  private CelestialObject sun = new CelestialObject((short) 0, (short) 10, "Sun");
+  private Observer geocenter = new Observer();
+  private PositionOnSurface site = new PositionOnSurface(45.0, -75.0, 0.0, 10.0, 1010.0);
+  private SkyPosition position = new SkyPosition();
+  private DoubleRef ra = new DoubleRef();
+  private DoubleRef dec = new DoubleRef();
+  private DoubleRef distance = new DoubleRef();
+
+  @Setup
+  public void setup() {
+    synchronized (ConcurrentBenchmark.class) {
+      accuracy = Scenarios.select(configuration);
+      index = 631 * threads++;
+    }
+    ttDates = Scenarios.dates(dates);
+  }
+
+  private double next() {
+    return ttDates[index++ & (Scenarios.DATES - 1)];
+  }
+
+  @Benchmark
+  public double place() {
+    NOVAS.place(next(), starObject, geocenter, Scenarios.DELTA_T, 1, accuracy, position);
+    return position.ra;
+  }
+
+  @Benchmark
+  public double topoStar() {
+    NOVAS.topoStar(next(), Scenarios.DELTA_T, star, site, accuracy, ra, dec);
+    return ra.value;
+  }
+
+  @Benchmark
+  public double topoPlanet() {
+    NOVAS.topoPlanet(next(), sun, Scenarios.DELTA_T, site, accuracy, ra, dec, distance);
+    return ra.value;
+  }
+
+  @Benchmark
+  public double siderealTime() {
+    NOVAS.siderealTime(next(), Scenarios.DELTA_T, 1, 1, accuracy, ra);
+    return ra.value;
+  }
+}
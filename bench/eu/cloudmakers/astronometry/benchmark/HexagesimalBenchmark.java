@@ -0,0 +1,143 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+
+package eu.cloudmakers.astronometry.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.FormattableFlags;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.cloudmakers.astronometry.Hexagesimal;
+import eu.cloudmakers.astronometry.HexagesimalCodec;
+
+/**
+ * Comparison of {@link Hexagesimal} formatting and parsing with
+ * {@link HexagesimalCodec}.
+ * <p>
+ * Column benchmarks parse and format {@link #VALUES} lines per invocation,
+ * divide the score by it for per value cost.
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HexagesimalBenchmark {
+
+  static final int VALUES = 4096;
+
+  /**
+   * Separators, SPACE for <code>DD MM SS.SS</code>, DMS or HMS.
+   */
+
+  @Param({ "SPACE", "DMS", "HMS" })
+  public String style;
+
+  private int flags;
+  private double values[] = new double[VALUES];
+  private String strings[] = new String[VALUES];
+  private HexagesimalCodec codec;
+  private StringBuilder builder = new StringBuilder();
+  private ByteBuffer column = ByteBuffer.allocate(32 * VALUES);
+  private double parsed[] = new double[VALUES];
+  private int index;
+
+  @Setup
+  public void setup() {
+    if (style.equals("SPACE"))
+      flags = 0;
+    else if (style.equals("DMS"))
+      flags = FormattableFlags.ALTERNATE;
+    else if (style.equals("HMS"))
+      flags = FormattableFlags.ALTERNATE | FormattableFlags.UPPERCASE;
+    else
+      throw new IllegalArgumentException("Unknown style " + style);
+    codec = new HexagesimalCodec(flags, 16, 2);
+    Random random = new Random(421);
+    for (int i = 0; i < VALUES; i++) {
+      values[i] = 360 * random.nextDouble() - 90;
+      strings[i] = Hexagesimal.toString(values[i], flags, 16, 2);
+    }
+    codec.formatColumn(values, 0, VALUES, column);
+    column.flip();
+  }
+
+  @Benchmark
+  public int hexagesimalFormat() {
+    return Hexagesimal.toString(values[index++ & (VALUES - 1)], flags, 16, 2).length();
+  }
+
+  @Benchmark
+  public int codecFormat() {
+    builder.setLength(0);
+    return codec.format(values[index++ & (VALUES - 1)], builder).length();
+  }
+
+  @Benchmark
+  public double hexagesimalParse() {
+    return Hexagesimal.valueOf(strings[index++ & (VALUES - 1)]).doubleValue();
+  }
+
+  @Benchmark
+  public double codecParse() {
+    return codec.parse(strings[index++ & (VALUES - 1)]);
+  }
+
+  @Benchmark
+  public int codecParseColumn() {
+    column.rewind();
+    return codec.parseColumn(column, (byte) '|', 0, parsed, 0, VALUES);
+  }
+
+  @Benchmark
+  public int codecFormatColumn() {
+    column.clear();
+    int count = codec.formatColumn(values, 0, VALUES, column);
+    column.flip();
+    return count;
+  }
+}
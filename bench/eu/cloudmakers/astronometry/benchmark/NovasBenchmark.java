@@ -0,0 +1,209 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+
+package eu.cloudmakers.astronometry.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.cloudmakers.astronometry.NOVAS;
+import eu.cloudmakers.astronometry.NOVAS.CatalogEntry;
+import eu.cloudmakers.astronometry.NOVAS.CelestialObject;
+import eu.cloudmakers.astronometry.NOVAS.DoubleRef;
+import eu.cloudmakers.astronometry.NOVAS.Observer;
+import eu.cloudmakers.astronometry.NOVAS.PositionOnSurface;
+import eu.cloudmakers.astronometry.NOVAS.SkyPosition;
+
+/**
+ * Single threaded benchmark of NOVAS native entry points.
+ * <p>
+ * Every invocation uses the next date of the sequence selected by
+ * {@link #dates}, so date dependent caches of the library are exercised as
+ * they would be by an application. Planet functions compute the place of the
+ * Sun, the only body (beside the Earth) provided by both ephemeris backends.
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NovasBenchmark {
+
+  /**
+   * Ephemeris backend and accuracy, see {@link Scenarios}.
+   */
+
+  @Param({ "JPL_FULL", "JPL_REDUCED", "ANALYTIC_REDUCED" })
+  public String configuration;
+
+  /**
+   * Date sequence, see {@link Scenarios}.
+   */
+
+  @Param({ "MONOTONIC", "RANDOM" })
+  public String dates;
+
+  private int accuracy;
+  private double ttDates[];
+  private int index;
+
+  private CatalogEntry star = new CatalogEntry("POLARIS", "HIP", 0, 2.530301028, 89.264109444, 44.22, -11.75, 7.56, -17.4);
+  private CatalogEntry hipparcos = new CatalogEntry("GMB 1830", "HIP", 57939, 11.88299133, 37.71867646, 4003.27, -5815.07, 109.21, -98.8);
+  private CatalogEntry transformed = new CatalogEntry();
+  private CelestialObject starObject = new CelestialObject(star);
+  private CelestialObject sun = new CelestialObject((short) 0, (short) 10, "Sun");
+  private Observer geocenter = new Observer();
+  private PositionOnSurface site = new PositionOnSurface(45.0, -75.0, 0.0, 10.0, 1010.0);
+  private SkyPosition position = new SkyPosition();
+  private DoubleRef ra = new DoubleRef();
+  private DoubleRef dec = new DoubleRef();
+  private DoubleRef distance = new DoubleRef();
+  private DoubleRef zd = new DoubleRef();
+  private DoubleRef az = new DoubleRef();
+
+  @Setup
+  public void setup() {
+    accuracy = Scenarios.select(configuration);
+    ttDates = Scenarios.dates(dates);
+    for (int i = 0; i < ttDates.length; i += 97) {
+      Scenarios.check("place", NOVAS.place(ttDates[i], starObject, geocenter, Scenarios.DELTA_T, 1, accuracy, position));
+      Scenarios.check("topo_planet", NOVAS.topoPlanet(ttDates[i], sun, Scenarios.DELTA_T, site, accuracy, ra, dec, distance));
+    }
+  }
+
+  private double next() {
+    return ttDates[index++ & (Scenarios.DATES - 1)];
+  }
+
+  @Benchmark
+  public double place() {
+    NOVAS.place(next(), starObject, geocenter, Scenarios.DELTA_T, 1, accuracy, position);
+    return position.ra;
+  }
+
+  @Benchmark
+  public double appStar() {
+    NOVAS.appStar(next(), star, accuracy, ra, dec);
+    return ra.value;
+  }
+
+  @Benchmark
+  public double virtualStar() {
+    NOVAS.virtualStar(next(), star, accuracy, ra, dec);
+    return ra.value;
+  }
+
+  @Benchmark
+  public double astroStar() {
+    NOVAS.astroStar(next(), star, accuracy, ra, dec);
+    return ra.value;
+  }
+
+  @Benchmark
+  public double localStar() {
+    NOVAS.localStar(next(), Scenarios.DELTA_T, star, site, accuracy, ra, dec);
+    return ra.value;
+  }
+
+  @Benchmark
+  public double topoStar() {
+    NOVAS.topoStar(next(), Scenarios.DELTA_T, star, site, accuracy, ra, dec);
+    return ra.value;
+  }
+
+  @Benchmark
+  public double appPlanet() {
+    NOVAS.appPlanet(next(), sun, accuracy, ra, dec, distance);
+    return ra.value;
+  }
+
+  @Benchmark
+  public double virtualPlanet() {
+    NOVAS.virtualPlanet(next(), sun, accuracy, ra, dec, distance);
+    return ra.value;
+  }
+
+  @Benchmark
+  public double astroPlanet() {
+    NOVAS.astroPlanet(next(), sun, accuracy, ra, dec, distance);
+    return ra.value;
+  }
+
+  @Benchmark
+  public double localPlanet() {
+    NOVAS.localPlanet(next(), sun, Scenarios.DELTA_T, site, accuracy, ra, dec, distance);
+    return ra.value;
+  }
+
+  @Benchmark
+  public double topoPlanet() {
+    NOVAS.topoPlanet(next(), sun, Scenarios.DELTA_T, site, accuracy, ra, dec, distance);
+    return ra.value;
+  }
+
+  @Benchmark
+  public double transformCatalogEntry() {
+    NOVAS.transformCatalogEntry(1, 2451545.0, star, next(), "HIP", transformed);
+    return transformed.ra;
+  }
+
+  @Benchmark
+  public double transformHipparcosEntry() {
+    NOVAS.transformHipparcosEntry(hipparcos, transformed);
+    return transformed.ra;
+  }
+
+  @Benchmark
+  public double equatorialToHorizontal() {
+    NOVAS.equatorialToHorizontal(next(), Scenarios.DELTA_T, accuracy, 0.0, 0.0, site, 5.5, 45.0, 1, zd, az, ra, dec);
+    return zd.value;
+  }
+
+  @Benchmark
+  public double siderealTime() {
+    NOVAS.siderealTime(next(), Scenarios.DELTA_T, 1, 1, accuracy, ra);
+    return ra.value;
+  }
+}
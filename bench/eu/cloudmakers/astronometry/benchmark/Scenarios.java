@@ -0,0 +1,136 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+
+package eu.cloudmakers.astronometry.benchmark;
+
+import java.util.Random;
+
+import eu.cloudmakers.astronometry.NOVAS;
+
+/**
+ * Parameters shared by the benchmarks.
+ * <p>
+ * Configuration selects the ephemeris backend and accuracy together, because
+ * the analytic ephemeris (solsys3.c) provides only the Earth and the Sun and
+ * full accuracy needs Jupiter and Saturn for light deflection:
+ * <blockquote> JPL_FULL &rarr; JPL ephemeris (solsys1.c), full accuracy<br>
+ * JPL_REDUCED &rarr; JPL ephemeris, reduced accuracy<br>
+ * ANALYTIC_REDUCED &rarr; analytic ephemeris, reduced accuracy</blockquote>
+ * <p>
+ * Dates are either MONOTONIC (one minute steps, ephemeris records and date
+ * dependent quantities are mostly reused) or RANDOM (uniformly spread over the
+ * ephemeris file, nearly every call loads a new record).
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+final class Scenarios {
+
+  /**
+   * Number of dates in one sequence, power of two.
+   */
+
+  static final int DATES = 4096;
+
+  /**
+   * Delta T in seconds used by all benchmarks.
+   */
+
+  static final double DELTA_T = 67.0;
+
+  private Scenarios() {
+  }
+
+  /**
+   * Select ephemeris backend of the configuration.
+   *
+   * @param configuration
+   *          configuration name
+   * @return accuracy of the configuration
+   */
+
+  static int select(String configuration) {
+    if ("JPL_FULL".equals(configuration)) {
+      NOVAS.useAnalyticEphemeris(false);
+      return 0;
+    }
+    if ("JPL_REDUCED".equals(configuration)) {
+      NOVAS.useAnalyticEphemeris(false);
+      return 1;
+    }
+    if ("ANALYTIC_REDUCED".equals(configuration)) {
+      NOVAS.useAnalyticEphemeris(true);
+      return 1;
+    }
+    throw new IllegalArgumentException("Unknown configuration " + configuration);
+  }
+
+  /**
+   * Create sequence of TT dates.
+   *
+   * @param kind
+   *          MONOTONIC or RANDOM
+   * @return {@link #DATES} dates
+   */
+
+  static double[] dates(String kind) {
+    double begin = 2433282.5, end = 2469807.5;
+    if (NOVAS.EPH_DE_NO != 0) {
+      begin = Math.max(begin, NOVAS.EPH_JD_BEGIN + 1);
+      end = Math.min(end, NOVAS.EPH_JD_END - 1);
+    }
+    double dates[] = new double[DATES];
+    if ("MONOTONIC".equals(kind)) {
+      for (int i = 0; i < DATES; i++)
+        dates[i] = 2456658.5 + i / 1440.0;
+    } else if ("RANDOM".equals(kind)) {
+      Random random = new Random(2451545);
+      for (int i = 0; i < DATES; i++)
+        dates[i] = begin + random.nextDouble() * (end - begin);
+    } else {
+      throw new IllegalArgumentException("Unknown date sequence " + kind);
+    }
+    return dates;
+  }
+
+  /**
+   * Check error code returned during setup.
+   *
+   * @param function
+   *          function name
+   * @param error
+   *          error code
+   */
+
+  static void check(String function, short error) {
+    if (error != 0)
+      throw new IllegalStateException(function + " error " + error);
+  }
+}
@@ -0,0 +1,112 @@
+/*
+  jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+
+  cio_table.c: Interpolation in in-memory CIO table
+*/
+
+#include "cio_table.h"
+
+#define CIO_TABLE_VERSION 1
+#define CIO_TABLE_HEADER 4
+#define CIO_TABLE_POINTS 6
+
+/*
+   Installed table or NULL. Memory is owned by the Java direct buffer,
+   Java never releases an installed buffer because other threads may
+   still read it after it is replaced.
+*/
+
+static const double * volatile CIO_TABLE = NULL;
+
+/*
+   Denominators of Lagrange basis polynomials for nodes 0..5.
+*/
+
+static const double CIO_TABLE_WEIGHTS[CIO_TABLE_POINTS] =
+   {-1.0 / 120.0, 1.0 / 24.0, -1.0 / 12.0, 1.0 / 12.0, -1.0 / 24.0,
+    1.0 / 120.0};
+
+/********cio_table_install */
+
+void cio_table_install (const double *data)
+/*
+------------------------------------------------------------------------
+
+   PURPOSE:
+      Installs table used by cio_table_lookup or uninstalls it if
+      'data' is NULL or has unsupported format.
+
+------------------------------------------------------------------------
+*/
+{
+   if (data != NULL && (int) data[0] != CIO_TABLE_VERSION)
+      data = NULL;
+   CIO_TABLE = data;
+}
+
+/********cio_table_lookup */
+
+short int cio_table_lookup (double jd_tdb,
+
+                            double *ra_cio)
+/*
+------------------------------------------------------------------------
+
+   PURPOSE:
+      Provides right ascension of the CIO with respect to the GCRS by
+      6 point Lagrange interpolation in the installed table, mirrors
+      CioTable.cioLocation in Java.
+
+   INPUT
+   ARGUMENTS:
+      jd_tdb (double)
+         TDB Julian date.
+
+   OUTPUT
+   ARGUMENTS:
+      *ra_cio (double)
+         Right ascension of the CIO, in hours.
+
+   RETURNED
+   VALUE:
+      (short int)
+         0 ... everything OK
+         1 ... no table installed or date out of its window; caller
+               should locate the CIO other way.
+
+------------------------------------------------------------------------
+*/
+{
+   const double *data = CIO_TABLE;
+   const double *values;
+   double u, d, product = 1.0, sum = 0.0;
+   long int count, first;
+   int j;
+
+   if (data == NULL)
+      return 1;
+   count = (long int) data[3];
+   u = (jd_tdb - data[1]) / data[2];
+   if (!(u >= 0.0) || u > count - 1)
+      return 1;
+   first = (long int) u - 2;
+   if (first < 0)
+      first = 0;
+    else if (first > count - CIO_TABLE_POINTS)
+      first = count - CIO_TABLE_POINTS;
+   u -= first;
+   values = data + CIO_TABLE_HEADER + first;
+   for (j = 0; j < CIO_TABLE_POINTS; j++)
+   {
+      d = u - j;
+      if (d == 0.0)
+      {
+         *ra_cio = values[j] / 54000.0;
+         return 0;
+      }
+      product *= d;
+      sum += CIO_TABLE_WEIGHTS[j] * values[j] / d;
+   }
+   *ra_cio = product * sum / 54000.0;
+   return 0;
+}
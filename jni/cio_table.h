@@ -0,0 +1,29 @@
+/*
+  jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+
+  cio_table.h: Header file for cio_table.c
+
+  CIO table holds right ascensions of the CIO with respect to the GCRS
+  at equal steps of TDB, compiled in Java by
+  eu.cloudmakers.astronometry.engine.CioTable, see its documentation
+  for layout of the data. It replaces the cio_ra.bin file.
+*/
+
+#ifndef _CIO_TABLE_
+   #define _CIO_TABLE_
+
+#ifndef __STDLIB__
+   #include <stdlib.h>
+#endif
+
+/*
+   Function prototypes
+*/
+
+   void cio_table_install (const double *data);
+
+   short int cio_table_lookup (double jd_tdb,
+
+                               double *ra_cio);
+
+#endif
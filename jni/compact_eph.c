@@ -0,0 +1,163 @@
+/*
+  jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+
+  compact_eph.c: Lookup in compact ephemeris
+*/
+
+#include "compact_eph.h"
+
+#define COMPACT_VERSION 1
+#define COMPACT_HEADER 5
+#define COMPACT_BODIES 11
+#define COMPACT_EARTH 3
+#define COMPACT_SUN 10
+
+/*
+   Installed compact ephemeris or NULL. Memory is owned by the Java
+   direct buffer, Java never releases an installed buffer because other
+   threads may still read it after it is replaced.
+*/
+
+static const double * volatile COMPACT_DATA = NULL;
+
+/********compact_install */
+
+void compact_install (const double *data)
+/*
+------------------------------------------------------------------------
+
+   PURPOSE:
+      Installs compact ephemeris used by compact_lookup or uninstalls it
+      if 'data' is NULL or has unsupported format.
+
+------------------------------------------------------------------------
+*/
+{
+   if (data != NULL && ((int) data[0] != COMPACT_VERSION ||
+      (int) data[4] != COMPACT_BODIES))
+      data = NULL;
+   COMPACT_DATA = data;
+}
+
+/********compact_segment */
+
+static void compact_segment (const double *data, double dt_high,
+                             double dt_low, short int body,
+
+                             double *position, double *velocity)
+{
+   const double *header = data + COMPACT_HEADER + 4 * (body - 1);
+   const double *c;
+   long int segments = (long int) header[0];
+   long int n = (long int) header[2];
+   long int segment, m;
+   double length = header[1];
+   double tau, t0, t1, t2, d0, d1, d2, scale;
+   double x, y, z, vx = 0.0, vy = 0.0, vz = 0.0;
+
+   segment = (long int) ((dt_high + dt_low) / length);
+   if (segment >= segments)
+      segment = segments - 1;
+   tau = 2.0 * ((dt_high - segment * length) + dt_low) / length - 1.0;
+   c = data + (long int) header[3] + segment * 3 * n;
+
+   x = c[0];
+   y = c[n];
+   z = c[2 * n];
+   t0 = 1.0;
+   t1 = tau;
+   d0 = 0.0;
+   d1 = 1.0;
+   for (m = 1; m < n; m++)
+   {
+      x += c[m] * t1;
+      y += c[n + m] * t1;
+      z += c[2 * n + m] * t1;
+      vx += c[m] * d1;
+      vy += c[n + m] * d1;
+      vz += c[2 * n + m] * d1;
+      t2 = 2.0 * tau * t1 - t0;
+      d2 = 2.0 * t1 + 2.0 * tau * d1 - d0;
+      t0 = t1;
+      t1 = t2;
+      d0 = d1;
+      d1 = d2;
+   }
+
+   scale = 2.0 / length;
+   position[0] = x;
+   position[1] = y;
+   position[2] = z;
+   velocity[0] = vx * scale;
+   velocity[1] = vy * scale;
+   velocity[2] = vz * scale;
+}
+
+/********compact_lookup */
+
+short int compact_lookup (double tjd_high, double tjd_low, short int body,
+
+                          short int origin, double *position, double *velocity)
+/*
+------------------------------------------------------------------------
+
+   PURPOSE:
+      Provides position and velocity of a body from installed compact
+      ephemeris, mirrors CompactEphemeris.solarSystemHP in Java.
+
+   INPUT
+   ARGUMENTS:
+      tjd_high, tjd_low (double)
+         TDB Julian date split into two parts.
+      body (short int)
+         Body identification number (1 = Mercury, ..., 10 = Sun,
+         11 = Moon).
+      origin (short int)
+         Origin code: 0 = barycenter, 1 = center of mass of the Sun,
+         2 = center of the Earth.
+
+   OUTPUT
+   ARGUMENTS:
+      *position (double)
+         Position vector of 'body' at tjd; equatorial rectangular
+         coordinates in AU referred to the ICRS.
+      *velocity (double)
+         Velocity vector of 'body' at tjd; equatorial rectangular
+         system referred to the ICRS, in AU/day.
+
+   RETURNED
+   VALUE:
+      (short int)
+         0 ... everything OK
+         1 ... no compact ephemeris installed, date out of its window,
+               invalid value of 'body' or 'origin'; caller should use
+               another ephemeris.
+
+------------------------------------------------------------------------
+*/
+{
+   const double *data = COMPACT_DATA;
+   double dt_high, dt, pos[3], vel[3];
+   short int i;
+
+   if (data == NULL || body < 1 || body > COMPACT_BODIES ||
+      origin < 0 || origin > 2)
+      return 1;
+   dt_high = tjd_high - data[1];
+   dt = dt_high + tjd_low;
+   if (!(dt >= 0.0) || dt > data[2] - data[1])
+      return 1;
+
+   compact_segment (data, dt_high, tjd_low, body, position, velocity);
+   if (origin != 0)
+   {
+      compact_segment (data, dt_high, tjd_low,
+         (short int) (origin == 1 ? COMPACT_SUN : COMPACT_EARTH), pos, vel);
+      for (i = 0; i < 3; i++)
+      {
+         position[i] -= pos[i];
+         velocity[i] -= vel[i];
+      }
+   }
+   return 0;
+}
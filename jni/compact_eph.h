@@ -0,0 +1,28 @@
+/*
+  jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+
+  compact_eph.h: Header file for compact_eph.c
+
+  Compact ephemeris is a set of Chebyshev segments compiled in Java by
+  eu.cloudmakers.astronometry.engine.CompactEphemeris, see its
+  documentation for layout of the data.
+*/
+
+#ifndef _COMPACT_EPH_
+   #define _COMPACT_EPH_
+
+#ifndef __STDLIB__
+   #include <stdlib.h>
+#endif
+
+/*
+   Function prototypes
+*/
+
+   void compact_install (const double *data);
+
+   short int compact_lookup (double tjd_high, double tjd_low, short int body,
+
+                             short int origin, double *position, double *velocity);
+
+#endif
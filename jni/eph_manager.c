@@ -14,6 +14,16 @@
    #include "eph_manager.h"
 #endif
 
+#ifdef _WIN32
+   #include <windows.h>
+   #include <io.h>
+   #include <string.h>
+#else
+   #include <unistd.h>
+   #include <sys/mman.h>
+   #include <sys/stat.h>
+#endif
+
 /*
    Define global variables
 */
@@ -26,14 +36,144 @@ short int KM;
 
 int IPT[3][12], LPT[3];
 
-long int NRL, NP, NV;
 long int RECORD_LENGTH;
 
-double SS[3], JPLAU, PC[18], VC[18], TWOT, EM_RATIO;
-double *BUFFER;
+/*
+   EPH_SERIAL is incremented whenever a file is opened, so threads can
+   detect that the record held in their BUFFER is stale.
+*/
+
+long int EPH_SERIAL = 0;
+
+double SS[3], JPLAU, EM_RATIO;
 
 FILE *EPHFILE = NULL;
 
+/*
+   Record buffer and Chebyshev polynomial values are kept per thread, so
+   concurrent calls of 'state' and 'interpolate' do not interfere.
+*/
+
+NOVAS_TLS long int NRL = 0, NP = 2, NV = 3;
+
+NOVAS_TLS double PC[18] = {1.0}, VC[18] = {0.0, 1.0}, TWOT = 0.0;
+NOVAS_TLS double BUFFER[MAX_RECORD_LENGTH / 8];
+
+static NOVAS_TLS long int NRL_SERIAL = 0;
+
+/*
+   Read-only mapping of the whole ephemeris file. When the mapping is
+   available, 'state' interpolates straight from the mapped records and
+   only the per thread record index NRL is kept; BUFFER and the file
+   are used only if the file could not be mapped.
+*/
+
+static const char *EPH_MAP = NULL;
+static size_t EPH_MAP_SIZE = 0;
+#ifdef _WIN32
+static HANDLE EPH_MAP_HANDLE = NULL;
+#endif
+
+/*
+   Access statistics, updated without locks.
+*/
+
+volatile long long int EPH_RECORD_LOADS = 0, EPH_FILE_READS = 0;
+
+/*
+   Map the opened ephemeris file, on failure EPH_MAP is left NULL.
+*/
+
+static void map_file (void)
+{
+#ifdef _WIN32
+   HANDLE handle = (HANDLE) _get_osfhandle (_fileno (EPHFILE));
+   LARGE_INTEGER size;
+
+   if (!GetFileSizeEx (handle, &size) || size.HighPart != 0)
+      return;
+   if ((EPH_MAP_HANDLE = CreateFileMapping (handle, NULL, PAGE_READONLY, 0,
+      0, NULL)) == NULL)
+      return;
+   if ((EPH_MAP = (const char *) MapViewOfFile (EPH_MAP_HANDLE,
+      FILE_MAP_READ, 0, 0, 0)) == NULL)
+   {
+      CloseHandle (EPH_MAP_HANDLE);
+      EPH_MAP_HANDLE = NULL;
+      return;
+   }
+   EPH_MAP_SIZE = (size_t) size.LowPart;
+#else
+   struct stat info;
+   void *map;
+
+   if (fstat (fileno (EPHFILE), &info) != 0 || info.st_size <= 0)
+      return;
+   map = mmap (NULL, (size_t) info.st_size, PROT_READ, MAP_SHARED,
+      fileno (EPHFILE), 0);
+   if (map == MAP_FAILED)
+      return;
+   EPH_MAP = (const char *) map;
+   EPH_MAP_SIZE = (size_t) info.st_size;
+#endif
+}
+
+/*
+   Release the mapping created by 'map_file'.
+*/
+
+static void unmap_file (void)
+{
+   if (EPH_MAP == NULL)
+      return;
+#ifdef _WIN32
+   UnmapViewOfFile ((LPCVOID) EPH_MAP);
+   CloseHandle (EPH_MAP_HANDLE);
+   EPH_MAP_HANDLE = NULL;
+#else
+   munmap ((void *) EPH_MAP, EPH_MAP_SIZE);
+#endif
+   EPH_MAP = NULL;
+   EPH_MAP_SIZE = 0;
+}
+
+/*
+   Get ephemeris access statistics: stats[0] is size of the mapped file
+   in bytes (0 if the file is not mapped), stats[1] number of records
+   selected by 'state' (a thread switched to another record) and
+   stats[2] number of records read from the file by a system call.
+*/
+
+void ephem_statistics (long long int stats[3])
+{
+   stats[0] = (long long int) EPH_MAP_SIZE;
+   stats[1] = EPH_RECORD_LOADS;
+   stats[2] = EPH_FILE_READS;
+}
+
+/*
+   Read record at offset 'rec' into 'buffer' without moving the shared
+   file position, so the file can be read by many threads at once.
+*/
+
+static short int read_record (long int rec, double *buffer)
+{
+#ifdef _WIN32
+   HANDLE handle = (HANDLE) _get_osfhandle (_fileno (EPHFILE));
+   OVERLAPPED overlapped;
+   DWORD size;
+
+   memset (&overlapped, 0, sizeof (overlapped));
+   overlapped.Offset = (DWORD) rec;
+   if (!ReadFile (handle, buffer, (DWORD) RECORD_LENGTH, &size, &overlapped))
+      return 1;
+   return (size == (DWORD) RECORD_LENGTH) ? 0 : 1;
+#else
+   return (pread (fileno (EPHFILE), buffer, (size_t) RECORD_LENGTH,
+      (off_t) rec) == (ssize_t) RECORD_LENGTH) ? 0 : 1;
+#endif
+}
+
 /********ephem_open */
 
 short int ephem_open (char *ephem_name,
@@ -132,10 +272,11 @@ short int ephem_open (char *ephem_name,
 
    int ncon, denum;
 
+   unmap_file ();
    if (EPHFILE)
    {
       fclose (EPHFILE);
-      free (BUFFER);
+      EPHFILE = NULL;
    }
 
 /*
@@ -254,7 +395,8 @@ short int ephem_open (char *ephem_name,
             break;
       }
 
-      BUFFER = (double *) calloc (RECORD_LENGTH / 8, sizeof(double));
+      map_file ();
+      EPH_SERIAL++;
 
       *de_number = (short int) denum;
       *jd_begin = SS[0];
@@ -318,10 +460,11 @@ short int ephem_close (void)
 {
    short int error = 0;
 
+   unmap_file ();
    if (EPHFILE)
    {
       error =  (short int) fclose (EPHFILE);
-      free (BUFFER);
+      EPHFILE = NULL;
    }
    return error;
 }
@@ -678,10 +821,8 @@ short int state (double *jed, short int target,
    FUNCTIONS
    CALLED:
       split             eph_manager.h
-      fseek             stdio.h
-      fread             stdio.h
+      read_record       eph_manager.c
       interpolate       eph_manager.h
-      ephem_close       eph_manager.h
 
    VER./DATE/
    PROGRAMMER:
@@ -711,7 +852,7 @@ short int state (double *jed, short int target,
 
    long int nr, rec;
 
-   double t[2], aufac = 1.0, jd[4], s;
+   double t[2], aufac = 1.0, jd[4], s, *record;
 
 /*
    Set units based on value of the 'KM' flag.
@@ -757,23 +898,45 @@ short int state (double *jed, short int target,
    Read correct record if it is not already in memory.
 */
 
-   if (nr != NRL)
+   rec = (nr - 1) * RECORD_LENGTH;
+   if (EPH_MAP != NULL)
    {
-      NRL = nr;
-      rec = (nr - 1) * RECORD_LENGTH;
-      fseek (EPHFILE, rec, SEEK_SET);
-      if (!fread (BUFFER, RECORD_LENGTH, 1, EPHFILE))
-      {
-         ephem_close ();
+      if ((size_t) (rec + RECORD_LENGTH) > EPH_MAP_SIZE)
          return 1;
+      record = (double *) (EPH_MAP + rec);
+      if ((nr != NRL) || (NRL_SERIAL != EPH_SERIAL))
+      {
+         NRL = nr;
+         NRL_SERIAL = EPH_SERIAL;
+         NOVAS_ATOMIC_INC (EPH_RECORD_LOADS);
+      }
+       else
+         metrics_count (METRICS_EPH_RECORD_HITS);
+   }
+    else
+   {
+      record = BUFFER;
+      if ((nr != NRL) || (NRL_SERIAL != EPH_SERIAL))
+      {
+         NRL = nr;
+         NRL_SERIAL = EPH_SERIAL;
+         NOVAS_ATOMIC_INC (EPH_RECORD_LOADS);
+         NOVAS_ATOMIC_INC (EPH_FILE_READS);
+         if (read_record (rec, BUFFER))
+         {
+            NRL = 0;
+            return 1;
+         }
       }
+       else
+         metrics_count (METRICS_EPH_RECORD_HITS);
    }
 
 /*
    Check and interpolate for requested body.
 */
 
-   interpolate (&BUFFER[IPT[0][target]-1],t,IPT[1][target],
+   interpolate (&record[IPT[0][target]-1],t,IPT[1][target],
       IPT[2][target], target_pos,target_vel);
 
    for (i = 0; i < 3; i++)
@@ -29,6 +29,20 @@
    #include <stdio.h>
 #endif
 
+#ifndef _THREAD_STORAGE_
+   #include "thread_storage.h"
+#endif
+
+#ifndef _METRICS_
+   #include "metrics.h"
+#endif
+
+/*
+   Largest record length of supported ephemeris files, in bytes.
+*/
+
+#define MAX_RECORD_LENGTH 8144
+
 /*
    External variables
 */
@@ -37,14 +51,27 @@ extern short int KM;
 
 extern int IPT[3][12], LPT[3];
 
-extern long int  NRL, NP, NV;
-extern long int RECORD_LENGTH;
+extern long int RECORD_LENGTH, EPH_SERIAL;
 
-extern double SS[3], JPLAU, PC[18], VC[18], TWOT, EM_RATIO;
-extern double *BUFFER;
+extern double SS[3], JPLAU, EM_RATIO;
 
 extern FILE *EPHFILE;
 
+/*
+   Per thread record buffer and interpolation state.
+*/
+
+extern NOVAS_TLS long int NRL, NP, NV;
+
+extern NOVAS_TLS double PC[18], VC[18], TWOT;
+extern NOVAS_TLS double BUFFER[MAX_RECORD_LENGTH / 8];
+
+/*
+   Ephemeris access statistics.
+*/
+
+extern volatile long long int EPH_RECORD_LOADS, EPH_FILE_READS;
+
 /*
    Function prototypes
 */
@@ -56,6 +83,8 @@ short int ephem_open (char *ephem_name,
 
 short int ephem_close (void);
 
+void ephem_statistics (long long int stats[3]);
+
 short int planet_ephemeris (double tjd[2], short int target, 
                             short int center, 
 
@@ -0,0 +1,150 @@
+/*
+  jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+
+  frame_table.c: Lookup in fitted nutation table
+*/
+
+#include "frame_table.h"
+
+#define FRAME_TABLE_VERSION 1
+#define FRAME_TABLE_HEADER 9
+#define FRAME_TABLE_QUANTITIES 12
+
+/*
+   Installed table or NULL. Memory is owned by the Java direct buffer,
+   Java never releases an installed buffer because other threads may
+   still read it after it is replaced.
+*/
+
+static const double * volatile FRAME_TABLE = NULL;
+
+/*
+   Table of the calling thread or NULL, used before the shared one.
+*/
+
+static NOVAS_TLS const double *FRAME_TABLE_LOCAL = NULL;
+
+/********frame_table_install */
+
+void frame_table_install (const double *data)
+/*
+------------------------------------------------------------------------
+
+   PURPOSE:
+      Installs table used by frame_table_lookup or uninstalls it if
+      'data' is NULL or has unsupported format.
+
+------------------------------------------------------------------------
+*/
+{
+   if (data != NULL && (int) data[0] != FRAME_TABLE_VERSION)
+      data = NULL;
+   FRAME_TABLE = data;
+}
+
+/********frame_table_install_local */
+
+void frame_table_install_local (const double *data)
+/*
+------------------------------------------------------------------------
+
+   PURPOSE:
+      Installs table used by frame_table_lookup in the calling thread
+      only (e.g. for the duration of a time series) or uninstalls it if
+      'data' is NULL or has unsupported format.
+
+------------------------------------------------------------------------
+*/
+{
+   if (data != NULL && (int) data[0] != FRAME_TABLE_VERSION)
+      data = NULL;
+   FRAME_TABLE_LOCAL = data;
+}
+
+/********frame_table_value */
+
+static double frame_table_value (const double *c, long int n, double tau)
+{
+   double b0, b1 = 0.0, b2 = 0.0;
+   long int m;
+
+   for (m = n - 1; m > 0; m--)
+   {
+      b0 = 2.0 * tau * b1 - b2 + c[m];
+      b2 = b1;
+      b1 = b0;
+   }
+   return tau * b1 - b2 + c[0];
+}
+
+/********frame_table_lookup */
+
+short int frame_table_lookup (double jd_tdb, short int accuracy,
+
+                              double *dpsi, double *deps,
+                              double *c_terms)
+/*
+------------------------------------------------------------------------
+
+   PURPOSE:
+      Provides nutation angles and complementary terms of the equation
+      of the equinoxes from table installed for the calling thread or
+      for all threads, mirrors FrameTable.nutationAngles in Java.
+
+   INPUT
+   ARGUMENTS:
+      jd_tdb (double)
+         TDB Julian date.
+      accuracy (short int)
+         Selection for accuracy
+            = 0 ... full accuracy
+            = 1 ... reduced accuracy
+
+   OUTPUT
+   ARGUMENTS:
+      *dpsi (double)
+         Nutation in longitude in arcseconds.
+      *deps (double)
+         Nutation in obliquity in arcseconds.
+      *c_terms (double)
+         Complementary terms of the equation of the equinoxes in
+         arcseconds.
+
+   RETURNED
+   VALUE:
+      (short int)
+         0 ... everything OK
+         1 ... no table installed, date out of its window or table built
+               for other accuracy; caller should evaluate the series.
+
+------------------------------------------------------------------------
+*/
+{
+   const double *data = FRAME_TABLE_LOCAL;
+   const double *c;
+   double dt, length, tau;
+   long int segments, segment, n;
+
+   if (data == NULL || (int) data[3] != accuracy || !(jd_tdb - data[1] >= 0.0)
+      || jd_tdb > data[2])
+      data = FRAME_TABLE;
+   if (data == NULL || (int) data[3] != accuracy)
+      return 1;
+   dt = jd_tdb - data[1];
+   if (!(dt >= 0.0) || dt > data[2] - data[1])
+      return 1;
+
+   segments = (long int) data[6];
+   length = data[7];
+   n = (long int) data[8];
+   segment = (long int) (dt / length);
+   if (segment >= segments)
+      segment = segments - 1;
+   tau = 2.0 * (dt - segment * length) / length - 1.0;
+   c = data + FRAME_TABLE_HEADER + segment * FRAME_TABLE_QUANTITIES * n;
+
+   *dpsi = frame_table_value (c, n, tau);
+   *deps = frame_table_value (c + n, n, tau);
+   *c_terms = frame_table_value (c + 2 * n, n, tau);
+   return 0;
+}
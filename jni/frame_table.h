@@ -0,0 +1,36 @@
+/*
+  jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+
+  frame_table.h: Header file for frame_table.c
+
+  Frame table is a set of Chebyshev segments of nutation angles and
+  complementary terms of the equation of the equinoxes compiled in Java
+  by eu.cloudmakers.astronometry.engine.FrameTable, see its
+  documentation for layout of the data.
+*/
+
+#ifndef _FRAME_TABLE_
+   #define _FRAME_TABLE_
+
+#ifndef __STDLIB__
+   #include <stdlib.h>
+#endif
+
+#ifndef _THREAD_STORAGE_
+   #include "thread_storage.h"
+#endif
+
+/*
+   Function prototypes
+*/
+
+   void frame_table_install (const double *data);
+
+   void frame_table_install_local (const double *data);
+
+   short int frame_table_lookup (double jd_tdb, short int accuracy,
+
+                                 double *dpsi, double *deps,
+                                 double *c_terms);
+
+#endif
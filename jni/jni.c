@@ -2,9 +2,17 @@
 
 #include "novas.h"
 #include "eph_manager.h"
+#include "compact_eph.h"
+#include "frame_table.h"
+#include "cio_table.h"
+#include "metrics.h"
 
 #define safe_strncpy(d, s, l) { strncpy(d, s, l); d[l-1]='\0'; }
 
+#ifndef NAN
+#define NAN (HUGE_VAL-HUGE_VAL)
+#endif
+
 short int solarsystem_1 (double tjd, short int body, short int origin, double *position, double *velocity);
 short int solarsystem_hp_1 (double tjd[2], short int body, short int origin, double *position, double *velocity);
 short int solarsystem_3 (double tjd, short int body, short int origin, double *position, double *velocity);
@@ -42,9 +50,10 @@ JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *reserved) {
 }
 
 int has_eph=0;
+volatile int use_analytic=0;
 
 JNIEXPORT jint JNICALL Java_eu_cloudmakers_astronometry_NOVAS_init(JNIEnv *env, jclass, jstring file) {
-  short result, de_num;
+  short result=0, de_num=0;
   char *str;
   double jd_beg, jd_end;
 
@@ -97,10 +106,11 @@ JNIEXPORT jint JNICALL Java_eu_cloudmakers_astronometry_NOVAS_init(JNIEnv *env,
   VALUE_FIELD=env->GetFieldID(DOUBLE_REF_CLASS, "value", "D");
   
   if (file != NULL) {
-    has_eph=1;
-  
     result=ephem_open (str=(char *)env->GetStringUTFChars(file, NULL), &jd_beg, &jd_end, &de_num);
     env->ReleaseStringUTFChars(file, str);
+
+    /* analytic ephemeris is used if the file can't be opened */
+    has_eph=result==0;
   
     env->SetStaticIntField(NOVAS_CLASS, EPH_DE_NO_FIELD, de_num);
     env->SetStaticDoubleField(NOVAS_CLASS, EPH_JD_BEGIN_FIELD, jd_beg);
@@ -112,94 +122,172 @@ JNIEXPORT jint JNICALL Java_eu_cloudmakers_astronometry_NOVAS_init(JNIEnv *env,
 }
 
 
-JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_place (JNIEnv *env, jclass, jdouble jd_tt, jobject cel_object, jobject location, jdouble delta_t, jint coord_sys, jint accuracy, jobject output) {
-  short result;
-  object _cel_object;
-  observer _location;
-  sky_pos _output;
-  jobject star, on_surf, in_space;
+static void read_cat_entry(JNIEnv *env, jobject entry, cat_entry *_entry) {
   jstring string;
   const char *str;
-  jdoubleArray array;
-  jdouble *elements;
 
-  memset(&_cel_object, 0, sizeof(object));
+  memset(_entry, 0, sizeof(cat_entry));
 
-  _cel_object.type=env->GetShortField(cel_object, TYPE_FIELD);
-  _cel_object.number=env->GetShortField(cel_object, NUMBER_FIELD);
-  if ((string=(jstring)env->GetObjectField(cel_object, NAME_FIELD))!=NULL) {
-    safe_strncpy(_cel_object.name, str=env->GetStringUTFChars(string, NULL), SIZE_OF_OBJ_NAME-1);
+  if ((string=(jstring)env->GetObjectField(entry, STARNAME_FIELD))!=NULL) {
+    safe_strncpy(_entry->starname, str=env->GetStringUTFChars(string, NULL), SIZE_OF_OBJ_NAME-1);
     env->ReleaseStringUTFChars(string, str);
   }
-  if ((star=env->GetObjectField(cel_object, STAR_FIELD))!=NULL) {
-    if ((string=(jstring)env->GetObjectField(star, STARNAME_FIELD))!=NULL) {
-      safe_strncpy(_cel_object.star.starname, str=env->GetStringUTFChars(string, NULL), SIZE_OF_OBJ_NAME-1);
-      env->ReleaseStringUTFChars(string, str);
-    }
-    if ((string=(jstring)env->GetObjectField(star, CATALOG_FIELD))!=NULL) {
-      safe_strncpy(_cel_object.star.catalog, str=env->GetStringUTFChars(string, NULL), SIZE_OF_CAT_NAME-1);
-      env->ReleaseStringUTFChars(string, str);
-    }
-    _cel_object.star.starnumber=env->GetIntField(star, STARNUMBER_FIELD);
-    _cel_object.star.ra=env->GetDoubleField(star, RA_FIELD);
-    _cel_object.star.dec=env->GetDoubleField(star, DEC_FIELD);
-    _cel_object.star.promora=env->GetDoubleField(star, PROMORA_FIELD);
-    _cel_object.star.promodec=env->GetDoubleField(star, PROMODEC_FIELD);
-    _cel_object.star.parallax=env->GetDoubleField(star, PARALLAX_FIELD);
-    _cel_object.star.radialvelocity=env->GetDoubleField(star, RADIALVELOCITY_FIELD);
+  if ((string=(jstring)env->GetObjectField(entry, CATALOG_FIELD))!=NULL) {
+    safe_strncpy(_entry->catalog, str=env->GetStringUTFChars(string, NULL), SIZE_OF_CAT_NAME-1);
+    env->ReleaseStringUTFChars(string, str);
   }
-  
-  _location.where=env->GetShortField(location, WHERE_FIELD);
+  _entry->starnumber=env->GetIntField(entry, STARNUMBER_FIELD);
+  _entry->ra=env->GetDoubleField(entry, RA_FIELD);
+  _entry->dec=env->GetDoubleField(entry, DEC_FIELD);
+  _entry->promora=env->GetDoubleField(entry, PROMORA_FIELD);
+  _entry->promodec=env->GetDoubleField(entry, PROMODEC_FIELD);
+  _entry->parallax=env->GetDoubleField(entry, PARALLAX_FIELD);
+  _entry->radialvelocity=env->GetDoubleField(entry, RADIALVELOCITY_FIELD);
+}
+
+static void read_object(JNIEnv *env, jobject cel_object, object *_cel_object) {
+  jobject star;
+  jstring string;
+  const char *str;
+
+  memset(_cel_object, 0, sizeof(object));
+
+  _cel_object->type=env->GetShortField(cel_object, TYPE_FIELD);
+  _cel_object->number=env->GetShortField(cel_object, NUMBER_FIELD);
+  if ((string=(jstring)env->GetObjectField(cel_object, NAME_FIELD))!=NULL) {
+    safe_strncpy(_cel_object->name, str=env->GetStringUTFChars(string, NULL), SIZE_OF_OBJ_NAME-1);
+    env->ReleaseStringUTFChars(string, str);
+  }
+  if ((star=env->GetObjectField(cel_object, STAR_FIELD))!=NULL)
+    read_cat_entry(env, star, &_cel_object->star);
+}
+
+static void read_observer(JNIEnv *env, jobject location, observer *_location) {
+  jobject on_surf, in_space;
+  jdoubleArray array;
+
+  memset(_location, 0, sizeof(observer));
+
+  _location->where=env->GetShortField(location, WHERE_FIELD);
   if ((on_surf=env->GetObjectField(location, ON_SURF_FIELD))!=NULL) {
-    _location.on_surf.latitude=env->GetDoubleField(on_surf, LATITUDE_FIELD);
-    _location.on_surf.longitude=env->GetDoubleField(on_surf, LONGITUDE_FIELD);
-    _location.on_surf.height=env->GetDoubleField(on_surf, HEIGHT_FIELD);
-    _location.on_surf.temperature=env->GetDoubleField(on_surf, TEMPERATURE_FIELD);
-    _location.on_surf.pressure=env->GetDoubleField(on_surf, PRESSURE_FIELD);
+    _location->on_surf.latitude=env->GetDoubleField(on_surf, LATITUDE_FIELD);
+    _location->on_surf.longitude=env->GetDoubleField(on_surf, LONGITUDE_FIELD);
+    _location->on_surf.height=env->GetDoubleField(on_surf, HEIGHT_FIELD);
+    _location->on_surf.temperature=env->GetDoubleField(on_surf, TEMPERATURE_FIELD);
+    _location->on_surf.pressure=env->GetDoubleField(on_surf, PRESSURE_FIELD);
   }
   if ((in_space=env->GetObjectField(location, NEAR_EARTH_FIELD))!=NULL) {
     if ((array=(jdoubleArray)env->GetObjectField(in_space, SC_POS_FIELD))!=NULL) {
-      elements=env->GetDoubleArrayElements(array, NULL);
-      _location.near_earth.sc_pos[0]=elements[0];
-      _location.near_earth.sc_pos[1]=elements[1];
-      _location.near_earth.sc_pos[2]=elements[2];
-      env->ReleaseDoubleArrayElements(array, elements, 0);
+      env->GetDoubleArrayRegion(array, 0, 3, _location->near_earth.sc_pos);
     }
     if ((array=(jdoubleArray)env->GetObjectField(in_space, SC_VEL_FIELD))!=NULL) {
-      elements=env->GetDoubleArrayElements(array, NULL);
-      _location.near_earth.sc_vel[0]=elements[0];
-      _location.near_earth.sc_vel[1]=elements[1];
-      _location.near_earth.sc_vel[2]=elements[2];
-      env->ReleaseDoubleArrayElements(array, elements, 0);
+      env->GetDoubleArrayRegion(array, 0, 3, _location->near_earth.sc_vel);
     }
   }
+}
+
+JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_placeObject (JNIEnv *env, jclass, jdouble jd_tt, jobject cel_object, jobject location, jdouble delta_t, jint coord_sys, jint accuracy, jobject output) {
+  metrics_call _call;
+  short result;
+  object _cel_object;
+  observer _location;
+  sky_pos _output;
+  jdoubleArray array;
+
+  metrics_begin(&_call, METRICS_PLACE);
+
+  read_object(env, cel_object, &_cel_object);
+  read_observer(env, location, &_location);
   
   result=place(jd_tt, &_cel_object, &_location, delta_t, coord_sys, accuracy, &_output);
-  
-  if ((array=(jdoubleArray)env->NewDoubleArray(3))!=NULL) {
-    elements=env->GetDoubleArrayElements(array, NULL);
-    elements[0]=_output.r_hat[0];
-    elements[1]=_output.r_hat[1];
-    elements[2]=_output.r_hat[2];
-    env->ReleaseDoubleArrayElements(array, elements, 0);
-    env->SetObjectField(output, R_HAT_FIELD, array);
+  /* place() leaves the output uninitialized on error */
+  if (result!=0)
+    _output.ra=_output.dec=_output.dis=_output.rv=_output.r_hat[0]=_output.r_hat[1]=_output.r_hat[2]=NAN;
+  
+  /* reuse rHat of the caller if possible, steady state calls allocate nothing */
+  if ((array=(jdoubleArray)env->GetObjectField(output, R_HAT_FIELD))==NULL || env->GetArrayLength(array)<3) {
+    if ((array=(jdoubleArray)env->NewDoubleArray(3))!=NULL)
+      env->SetObjectField(output, R_HAT_FIELD, array);
   }
+  if (array!=NULL)
+    env->SetDoubleArrayRegion(array, 0, 3, _output.r_hat);
   env->SetDoubleField(output, RA__FIELD, _output.ra);
   env->SetDoubleField(output, DEC__FIELD, _output.dec);
   env->SetDoubleField(output, RA__FIELD, _output.ra);
   env->SetDoubleField(output, DIS_FIELD, _output.dis);
   env->SetDoubleField(output, RV_FIELD, _output.rv);
   
+  metrics_status(&_call, result);
+  metrics_end(&_call);
+
+  return result;
+}
+
+JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_placeSeries(JNIEnv *env, jclass, jdouble ttStart, jdouble step, jint offset, jint count, jobject cel_object, jobject location, jdouble delta_t, jint coord_sys, jint accuracy, jdoubleArray ra, jdoubleArray dec, jdoubleArray dist, jdoubleArray rv, jobject frameTable) {
+  metrics_call _call;
+  short result=0, error;
+  object _cel_object;
+  observer _location;
+  sky_pos _output;
+  jarray arrays[4]={ ra, dec, dist, rv };
+  jdouble *elements[4]={ NULL, NULL, NULL, NULL };
+  double t_light, t_light1=0.0, t_light2=0.0, guess;
+  int i, failed=0;
+
+  metrics_begin(&_call, METRICS_PLACE_SERIES);
+
+  read_object(env, cel_object, &_cel_object);
+  read_observer(env, location, &_location);
+  if (frameTable!=NULL)
+    frame_table_install_local((const double *)env->GetDirectBufferAddress(frameTable));
+
+  /* no JNI calls are allowed until all critical arrays are released */
+  for (i=0; i<4; i++)
+    if (arrays[i]!=NULL && (elements[i]=(jdouble *)env->GetPrimitiveArrayCritical(arrays[i], NULL))==NULL)
+      failed=1;
+  if (!failed) {
+    for (i=offset; i<offset+count; i++) {
+      /* light-time changes smoothly, extrapolate it from previous steps */
+      guess=t_light2>0.0 ? 2.0*t_light1-t_light2 : t_light1;
+      error=place_lt(ttStart+i*step, &_cel_object, &_location, delta_t, coord_sys, accuracy, guess, &_output, &t_light);
+      if (error!=0) {
+        if (result==0)
+          result=error;
+        _output.ra=_output.dec=_output.dis=_output.rv=NAN;
+        t_light=0.0;
+      }
+      t_light2=t_light1;
+      t_light1=t_light;
+      elements[0][i]=_output.ra;
+      elements[1][i]=_output.dec;
+      if (elements[2]!=NULL)
+        elements[2][i]=_output.dis;
+      if (elements[3]!=NULL)
+        elements[3][i]=_output.rv;
+    }
+  }
+  for (i=3; i>=0; i--)
+    if (elements[i]!=NULL)
+      env->ReleasePrimitiveArrayCritical(arrays[i], elements[i], 0);
+  if (frameTable!=NULL)
+    frame_table_install_local(NULL);
+
+  metrics_status(&_call, result);
+  metrics_end(&_call);
+
   return result;
 }
 
 JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_transformCatalogEntry(JNIEnv *env, jclass, jint option, jdouble inDate, jobject inEntry, jdouble outDate, jstring outCatalog, jobject outEntry) {
+  metrics_call _call;
   short result;
   cat_entry _inEntry, _outEntry;
   jstring string;
   const char *str;
   char _outCatalog[SIZE_OF_CAT_NAME]="";
 
+  metrics_begin(&_call, METRICS_TRANSFORM_CAT);
+
   memset(&_inEntry, 0, sizeof(cat_entry));
   memset(&_outEntry, 0, sizeof(cat_entry));
 
@@ -236,14 +324,20 @@ JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_transformCatalog
   env->SetDoubleField(outEntry, PARALLAX_FIELD, _outEntry.parallax);
   env->SetDoubleField(outEntry, RADIALVELOCITY_FIELD, _outEntry.radialvelocity);
 
+  metrics_status(&_call, result);
+  metrics_end(&_call);
+
   return result;
 }
 
 
 JNIEXPORT void JNICALL Java_eu_cloudmakers_astronometry_NOVAS_transformHipparcosEntry(JNIEnv *env, jclass, jobject hipparcos, jobject hip2000) {
+  metrics_call _call;
   cat_entry _hipparcos, _hip2000;
   jstring string;
   const char *str;
+
+  metrics_begin(&_call, METRICS_TRANSFORM_HIP);
   
   memset(&_hipparcos, 0, sizeof(cat_entry));
   memset(&_hip2000, 0, sizeof(cat_entry));
@@ -275,14 +369,58 @@ JNIEXPORT void JNICALL Java_eu_cloudmakers_astronometry_NOVAS_transformHipparcos
   env->SetDoubleField(hip2000, PROMODEC_FIELD, _hip2000.promodec);
   env->SetDoubleField(hip2000, PARALLAX_FIELD, _hip2000.parallax);
   env->SetDoubleField(hip2000, RADIALVELOCITY_FIELD, _hip2000.radialvelocity);
+
+  metrics_end(&_call);
+}
+
+JNIEXPORT void JNICALL Java_eu_cloudmakers_astronometry_NOVAS_transformHipparcosBatch(JNIEnv *env, jclass, jdoubleArray ra, jdoubleArray dec, jdoubleArray raProperMotion, jdoubleArray decProperMotion, jdoubleArray parallax, jdoubleArray radialVelocity, jint offset, jint count) {
+  metrics_call _call;
+  cat_entry _hipparcos, _hip2000;
+  jarray arrays[6]={ ra, dec, raProperMotion, decProperMotion, parallax, radialVelocity };
+  jdouble *elements[6];
+  int i, j, failed=0;
+
+  metrics_begin(&_call, METRICS_TRANSFORM_HIP_BATCH);
+
+  memset(&_hipparcos, 0, sizeof(cat_entry));
+
+  /* no JNI calls are allowed until all critical arrays are released */
+  for (j=0; j<6; j++)
+    if ((elements[j]=(jdouble *)env->GetPrimitiveArrayCritical(arrays[j], NULL))==NULL)
+      failed=1;
+  if (!failed) {
+    for (i=offset; i<offset+count; i++) {
+      _hipparcos.ra=elements[0][i];
+      _hipparcos.dec=elements[1][i];
+      _hipparcos.promora=elements[2][i];
+      _hipparcos.promodec=elements[3][i];
+      _hipparcos.parallax=elements[4][i];
+      _hipparcos.radialvelocity=elements[5][i];
+      transform_hip(&_hipparcos, &_hip2000);
+      elements[0][i]=_hip2000.ra;
+      elements[1][i]=_hip2000.dec;
+      elements[2][i]=_hip2000.promora;
+      elements[3][i]=_hip2000.promodec;
+      elements[4][i]=_hip2000.parallax;
+      elements[5][i]=_hip2000.radialvelocity;
+    }
+  }
+  for (j=5; j>=0; j--)
+    if (elements[j]!=NULL)
+      env->ReleasePrimitiveArrayCritical(arrays[j], elements[j], 0);
+
+  metrics_end(&_call);
 }
 
 JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_appStar(JNIEnv *env, jclass, jdouble ttDate, jobject entry, jint accuracy, jobject ra, jobject dec) {
+  metrics_call _call;
   short result;
   cat_entry _entry;
   jstring string;
   const char *str;
   double _ra, _dec;
+
+  metrics_begin(&_call, METRICS_APP_STAR);
   
   memset(&_entry, 0, sizeof(cat_entry));
   
@@ -307,15 +445,21 @@ JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_appStar(JNIEnv *
   env->SetDoubleField(ra, VALUE_FIELD, _ra);
   env->SetDoubleField(dec, VALUE_FIELD, _dec);
   
+  metrics_status(&_call, result);
+  metrics_end(&_call);
+
   return result;
 }
 
 JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_virtualStar(JNIEnv *env, jclass, jdouble ttDate, jobject entry, jint accuracy, jobject ra, jobject dec) {
+  metrics_call _call;
   short result;
   cat_entry _entry;
   jstring string;
   const char *str;
   double _ra, _dec;
+
+  metrics_begin(&_call, METRICS_VIRTUAL_STAR);
   
   memset(&_entry, 0, sizeof(cat_entry));
   
@@ -340,15 +484,21 @@ JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_virtualStar(JNIE
   env->SetDoubleField(ra, VALUE_FIELD, _ra);
   env->SetDoubleField(dec, VALUE_FIELD, _dec);
   
+  metrics_status(&_call, result);
+  metrics_end(&_call);
+
   return result;
 }
 
 JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_astroStar(JNIEnv *env, jclass, jdouble ttDate, jobject entry, jint accuracy, jobject ra, jobject dec) {
+  metrics_call _call;
   short result;
   cat_entry _entry;
   jstring string;
   const char *str;
   double _ra, _dec;
+
+  metrics_begin(&_call, METRICS_ASTRO_STAR);
   
   memset(&_entry, 0, sizeof(cat_entry));
   
@@ -373,16 +523,22 @@ JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_astroStar(JNIEnv
   env->SetDoubleField(ra, VALUE_FIELD, _ra);
   env->SetDoubleField(dec, VALUE_FIELD, _dec);
   
+  metrics_status(&_call, result);
+  metrics_end(&_call);
+
   return result;
 }
 
 JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_localStar(JNIEnv *env, jclass, jdouble ttDate, jdouble deltaT, jobject entry, jobject position, jint accuracy, jobject ra, jobject dec) {
+  metrics_call _call;
   short result;
   cat_entry _entry;
   on_surface _position;
   jstring string;
   const char *str;
   double _ra, _dec;
+
+  metrics_begin(&_call, METRICS_LOCAL_STAR);
   
   memset(&_entry, 0, sizeof(cat_entry));
   
@@ -413,16 +569,22 @@ JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_localStar(JNIEnv
   env->SetDoubleField(ra, VALUE_FIELD, _ra);
   env->SetDoubleField(dec, VALUE_FIELD, _dec);
   
+  metrics_status(&_call, result);
+  metrics_end(&_call);
+
   return result;
 }
 
 JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_topoStar(JNIEnv *env, jclass, jdouble ttDate, jdouble deltaT, jobject entry, jobject position, jint accuracy, jobject ra, jobject dec) {
+  metrics_call _call;
   short result;
   cat_entry _entry;
   on_surface _position;
   jstring string;
   const char *str;
   double _ra, _dec;
+
+  metrics_begin(&_call, METRICS_TOPO_STAR);
   
   memset(&_entry, 0, sizeof(cat_entry));
   
@@ -453,16 +615,281 @@ JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_topoStar(JNIEnv
   env->SetDoubleField(ra, VALUE_FIELD, _ra);
   env->SetDoubleField(dec, VALUE_FIELD, _dec);
   
+  metrics_status(&_call, result);
+  metrics_end(&_call);
+
+  return result;
+}
+
+#define APP_STAR 0
+#define VIRTUAL_STAR 1
+#define ASTRO_STAR 2
+#define LOCAL_STAR 3
+#define TOPO_STAR 4
+
+static short star_batch_reduce(int kind, double ttDate, double deltaT, on_surface *position, short accuracy, cat_entry *entry, double *ra, double *dec) {
+  switch (kind) {
+  case APP_STAR:
+    return app_star(ttDate, entry, accuracy, ra, dec);
+  case VIRTUAL_STAR:
+    return virtual_star(ttDate, entry, accuracy, ra, dec);
+  case ASTRO_STAR:
+    return astro_star(ttDate, entry, accuracy, ra, dec);
+  case LOCAL_STAR:
+    return local_star(ttDate, deltaT, entry, position, accuracy, ra, dec);
+  case TOPO_STAR:
+    return topo_star(ttDate, deltaT, entry, position, accuracy, ra, dec);
+  }
+  return -1;
+}
+
+static void star_batch_position(JNIEnv *env, jobject position, on_surface *_position) {
+  memset(_position, 0, sizeof(on_surface));
+  if (position!=NULL) {
+    _position->latitude=env->GetDoubleField(position, LATITUDE_FIELD);
+    _position->longitude=env->GetDoubleField(position, LONGITUDE_FIELD);
+    _position->height=env->GetDoubleField(position, HEIGHT_FIELD);
+    _position->temperature=env->GetDoubleField(position, TEMPERATURE_FIELD);
+    _position->pressure=env->GetDoubleField(position, PRESSURE_FIELD);
+  }
+}
+
+JNIEXPORT void JNICALL Java_eu_cloudmakers_astronometry_NOVAS_starBatch(JNIEnv *env, jclass, jint kind, jdouble ttDate, jdouble deltaT, jobject position, jint accuracy, jdoubleArray ra, jdoubleArray dec, jdoubleArray raProperMotion, jdoubleArray decProperMotion, jdoubleArray parallax, jdoubleArray radialVelocity, jdoubleArray outRa, jdoubleArray outDec, jshortArray status, jint offset, jint count) {
+  metrics_call _call;
+  on_surface _position;
+  cat_entry _entry;
+  jarray arrays[9]={ ra, dec, raProperMotion, decProperMotion, parallax, radialVelocity, outRa, outDec, status };
+  void *elements[9];
+  jdouble *_ra, *_dec, *_promora, *_promodec, *_parallax, *_rv, *_outRa, *_outDec;
+  jshort *_status;
+  int i, failed=0;
+
+  metrics_begin(&_call, METRICS_STAR_BATCH);
+
+  star_batch_position(env, position, &_position);
+  memset(&_entry, 0, sizeof(cat_entry));
+
+  /* no JNI calls are allowed until all critical arrays are released */
+  for (i=0; i<9; i++)
+    if ((elements[i]=env->GetPrimitiveArrayCritical(arrays[i], NULL))==NULL)
+      failed=1;
+  if (!failed) {
+    _ra=(jdouble *)elements[0]+offset;
+    _dec=(jdouble *)elements[1]+offset;
+    _promora=(jdouble *)elements[2]+offset;
+    _promodec=(jdouble *)elements[3]+offset;
+    _parallax=(jdouble *)elements[4]+offset;
+    _rv=(jdouble *)elements[5]+offset;
+    _outRa=(jdouble *)elements[6]+offset;
+    _outDec=(jdouble *)elements[7]+offset;
+    _status=(jshort *)elements[8]+offset;
+    for (i=0; i<count; i++) {
+      _entry.ra=_ra[i];
+      _entry.dec=_dec[i];
+      _entry.promora=_promora[i];
+      _entry.promodec=_promodec[i];
+      _entry.parallax=_parallax[i];
+      _entry.radialvelocity=_rv[i];
+      _status[i]=star_batch_reduce(kind, ttDate, deltaT, &_position, accuracy, &_entry, &_outRa[i], &_outDec[i]);
+      metrics_status(&_call, _status[i]);
+    }
+  }
+  for (i=8; i>=0; i--)
+    if (elements[i]!=NULL)
+      env->ReleasePrimitiveArrayCritical(arrays[i], elements[i], i<6 ? JNI_ABORT : 0);
+
+  metrics_end(&_call);
+}
+
+JNIEXPORT void JNICALL Java_eu_cloudmakers_astronometry_NOVAS_starBatchDirect(JNIEnv *env, jclass, jint kind, jdouble ttDate, jdouble deltaT, jobject position, jint accuracy, jobject stars, jint starsOffset, jobject output, jint outputOffset, jobject status, jint statusOffset, jint count) {
+  metrics_call _call;
+  on_surface _position;
+  cat_entry _entry;
+  jdouble *_stars, *_output;
+  jshort *_status;
+  int i;
+
+  metrics_begin(&_call, METRICS_STAR_BATCH);
+
+  _stars=(jdouble *)((char *)env->GetDirectBufferAddress(stars)+starsOffset);
+  _output=(jdouble *)((char *)env->GetDirectBufferAddress(output)+outputOffset);
+  _status=(jshort *)((char *)env->GetDirectBufferAddress(status)+statusOffset);
+
+  star_batch_position(env, position, &_position);
+  memset(&_entry, 0, sizeof(cat_entry));
+
+  for (i=0; i<count; i++, _stars+=6, _output+=2) {
+    _entry.ra=_stars[0];
+    _entry.dec=_stars[1];
+    _entry.promora=_stars[2];
+    _entry.promodec=_stars[3];
+    _entry.parallax=_stars[4];
+    _entry.radialvelocity=_stars[5];
+    _status[i]=star_batch_reduce(kind, ttDate, deltaT, &_position, accuracy, &_entry, &_output[0], &_output[1]);
+    metrics_status(&_call, _status[i]);
+  }
+
+  metrics_end(&_call);
+}
+
+JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_starPlaceArray(JNIEnv *env, jclass, jint kind, jdouble ttDate, jdouble deltaT, jobject entry, jobject position, jint accuracy, jdoubleArray output, jint offset) {
+  metrics_call _call;
+  short result;
+  on_surface _position;
+  cat_entry _entry;
+  double _output[2];
+
+  metrics_begin(&_call, METRICS_APP_STAR+kind);
+
+  read_cat_entry(env, entry, &_entry);
+  star_batch_position(env, position, &_position);
+
+  result=star_batch_reduce(kind, ttDate, deltaT, &_position, accuracy, &_entry, &_output[0], &_output[1]);
+
+  env->SetDoubleArrayRegion(output, offset, 2, _output);
+
+  metrics_status(&_call, result);
+  metrics_end(&_call);
+
   return result;
 }
 
+/* kinds are shared with star_batch_reduce() */
+
+static short planet_reduce(int kind, double ttDate, object *body, double deltaT, on_surface *position, short accuracy, double *ra, double *dec, double *distance) {
+  switch (kind) {
+  case APP_STAR:
+    return app_planet(ttDate, body, accuracy, ra, dec, distance);
+  case VIRTUAL_STAR:
+    return virtual_planet(ttDate, body, accuracy, ra, dec, distance);
+  case ASTRO_STAR:
+    return astro_planet(ttDate, body, accuracy, ra, dec, distance);
+  case LOCAL_STAR:
+    return local_planet(ttDate, body, deltaT, position, accuracy, ra, dec, distance);
+  case TOPO_STAR:
+    return topo_planet(ttDate, body, deltaT, position, accuracy, ra, dec, distance);
+  }
+  return -1;
+}
+
+JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_planetPlaceArray(JNIEnv *env, jclass, jint kind, jdouble ttDate, jobject body, jdouble deltaT, jobject position, jint accuracy, jdoubleArray output, jint offset) {
+  metrics_call _call;
+  short result;
+  object _body;
+  on_surface _position;
+  double _output[3];
+
+  metrics_begin(&_call, METRICS_APP_PLANET+kind);
+
+  read_object(env, body, &_body);
+  star_batch_position(env, position, &_position);
+
+  result=planet_reduce(kind, ttDate, &_body, deltaT, &_position, accuracy, &_output[0], &_output[1], &_output[2]);
+
+  env->SetDoubleArrayRegion(output, offset, 3, _output);
+
+  metrics_status(&_call, result);
+  metrics_end(&_call);
+
+  return result;
+}
+
+/* vectors are position and velocity columns of starvectors() output or NULL */
+static void place_batch(metrics_call *call, double ttDate, double deltaT, observer *location, short coord_sys, short accuracy, const double *ra, const double *dec, const double *promora, const double *promodec, const double *parallax, const double *rv, const double *vectors[6], double *outRa, double *outDec, jshort *status, int count) {
+  object _cel_object;
+  sky_pos _output;
+  double _vectors[6];
+  int i, j;
+
+  memset(&_cel_object, 0, sizeof(object));
+  _cel_object.type=2;
+
+  for (i=0; i<count; i++) {
+    _cel_object.star.ra=ra[i];
+    _cel_object.star.dec=dec[i];
+    _cel_object.star.promora=promora[i];
+    _cel_object.star.promodec=promodec[i];
+    _cel_object.star.parallax=parallax[i];
+    _cel_object.star.radialvelocity=rv[i];
+    if (vectors!=NULL) {
+      for (j=0; j<6; j++)
+        _vectors[j]=vectors[j][i];
+      place_star_vectors(_vectors);
+    }
+    status[i]=place(ttDate, &_cel_object, location, deltaT, coord_sys, accuracy, &_output);
+    metrics_status(call, status[i]);
+    if (status[i]!=0)
+      _output.ra=_output.dec=NAN;
+    outRa[i]=_output.ra;
+    outDec[i]=_output.dec;
+  }
+}
+
+JNIEXPORT void JNICALL Java_eu_cloudmakers_astronometry_NOVAS_placeBatch(JNIEnv *env, jclass, jdouble ttDate, jdouble deltaT, jobject location, jint coord_sys, jint accuracy, jdoubleArray ra, jdoubleArray dec, jdoubleArray raProperMotion, jdoubleArray decProperMotion, jdoubleArray parallax, jdoubleArray radialVelocity, jdoubleArray outRa, jdoubleArray outDec, jshortArray status, jint offset, jint count) {
+  metrics_call _call;
+  observer _location;
+  jarray arrays[9]={ ra, dec, raProperMotion, decProperMotion, parallax, radialVelocity, outRa, outDec, status };
+  void *elements[9];
+  int i, failed=0;
+
+  metrics_begin(&_call, METRICS_PLACE_BATCH);
+
+  read_observer(env, location, &_location);
+
+  /* no JNI calls are allowed until all critical arrays are released */
+  for (i=0; i<9; i++)
+    if ((elements[i]=env->GetPrimitiveArrayCritical(arrays[i], NULL))==NULL)
+      failed=1;
+  if (!failed)
+    place_batch(&_call, ttDate, deltaT, &_location, coord_sys, accuracy, (jdouble *)elements[0]+offset, (jdouble *)elements[1]+offset, (jdouble *)elements[2]+offset, (jdouble *)elements[3]+offset, (jdouble *)elements[4]+offset, (jdouble *)elements[5]+offset, NULL, (jdouble *)elements[6]+offset, (jdouble *)elements[7]+offset, (jshort *)elements[8]+offset, count);
+  for (i=8; i>=0; i--)
+    if (elements[i]!=NULL)
+      env->ReleasePrimitiveArrayCritical(arrays[i], elements[i], i<6 ? JNI_ABORT : 0);
+
+  metrics_end(&_call);
+}
+
+JNIEXPORT void JNICALL Java_eu_cloudmakers_astronometry_NOVAS_placeBatchColumns(JNIEnv *env, jclass, jdouble ttDate, jdouble deltaT, jobject location, jint coord_sys, jint accuracy, jobjectArray columns, jdoubleArray outRa, jdoubleArray outDec, jshortArray status, jint offset, jint count) {
+  metrics_call _call;
+  observer _location;
+  const double *_columns[12];
+  jarray arrays[3]={ outRa, outDec, status };
+  void *elements[3];
+  int i, n=env->GetArrayLength(columns), failed=0;
+
+  metrics_begin(&_call, METRICS_PLACE_BATCH);
+
+  read_observer(env, location, &_location);
+  /* 6 angular columns, optionally followed by 6 columns of barycentric vectors */
+  for (i=0; i<n && i<12; i++) {
+    jobject column=env->GetObjectArrayElement(columns, i);
+    _columns[i]=(const double *)env->GetDirectBufferAddress(column)+offset;
+    env->DeleteLocalRef(column);
+  }
+
+  /* no JNI calls are allowed until all critical arrays are released */
+  for (i=0; i<3; i++)
+    if ((elements[i]=env->GetPrimitiveArrayCritical(arrays[i], NULL))==NULL)
+      failed=1;
+  if (!failed)
+    place_batch(&_call, ttDate, deltaT, &_location, coord_sys, accuracy, _columns[0], _columns[1], _columns[2], _columns[3], _columns[4], _columns[5], n>=12 ? &_columns[6] : NULL, (jdouble *)elements[0]+offset, (jdouble *)elements[1]+offset, (jshort *)elements[2]+offset, count);
+  for (i=2; i>=0; i--)
+    if (elements[i]!=NULL)
+      env->ReleasePrimitiveArrayCritical(arrays[i], elements[i], 0);
+
+  metrics_end(&_call);
+}
+
 JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_appPlanet(JNIEnv *env, jclass, jdouble ttDate, jobject body, jint accuracy, jobject ra, jobject dec, jobject distance) {
+  metrics_call _call;
   short result;
   object _body;
   jobject star;
   jstring string;
   const char *str;
   double _ra, _dec, _distance;
+
+  metrics_begin(&_call, METRICS_APP_PLANET);
   
   memset(&_body, 0, sizeof(object));
 
@@ -496,16 +923,22 @@ JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_appPlanet(JNIEnv
   env->SetDoubleField(dec, VALUE_FIELD, _dec);
   env->SetDoubleField(distance, VALUE_FIELD, _distance);
   
+  metrics_status(&_call, result);
+  metrics_end(&_call);
+
   return result;
 }
 
 JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_virtualPlanet(JNIEnv *env, jclass, jdouble ttDate, jobject body, jint accuracy, jobject ra, jobject dec, jobject distance) {
+  metrics_call _call;
   short result;
   object _body;
   jobject star;
   jstring string;
   const char *str;
   double _ra, _dec, _distance;
+
+  metrics_begin(&_call, METRICS_VIRTUAL_PLANET);
   
   memset(&_body, 0, sizeof(object));
 
@@ -539,16 +972,22 @@ JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_virtualPlanet(JN
   env->SetDoubleField(dec, VALUE_FIELD, _dec);
   env->SetDoubleField(distance, VALUE_FIELD, _distance);
   
+  metrics_status(&_call, result);
+  metrics_end(&_call);
+
   return result;
 }
 
 JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_astroPlanet(JNIEnv *env, jclass, jdouble ttDate, jobject body, jint accuracy, jobject ra, jobject dec, jobject distance) {
+  metrics_call _call;
   short result;
   object _body;
   jobject star;
   jstring string;
   const char *str;
   double _ra, _dec, _distance;
+
+  metrics_begin(&_call, METRICS_ASTRO_PLANET);
   
   memset(&_body, 0, sizeof(object));
 
@@ -582,10 +1021,14 @@ JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_astroPlanet(JNIE
   env->SetDoubleField(dec, VALUE_FIELD, _dec);
   env->SetDoubleField(distance, VALUE_FIELD, _distance);
   
+  metrics_status(&_call, result);
+  metrics_end(&_call);
+
   return result;
 }
 
 JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_localPlanet(JNIEnv *env, jclass, jdouble ttDate, jobject body, jdouble deltaT, jobject position, jint accuracy, jobject ra, jobject dec, jobject distance) {
+  metrics_call _call;
   short result;
   object _body;
   on_surface _position;
@@ -593,6 +1036,8 @@ JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_localPlanet(JNIE
   jstring string;
   const char *str;
   double _ra, _dec, _distance;
+
+  metrics_begin(&_call, METRICS_LOCAL_PLANET);
   
   memset(&_body, 0, sizeof(object));
 
@@ -632,10 +1077,14 @@ JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_localPlanet(JNIE
   env->SetDoubleField(dec, VALUE_FIELD, _dec);
   env->SetDoubleField(distance, VALUE_FIELD, _distance);
   
+  metrics_status(&_call, result);
+  metrics_end(&_call);
+
   return result;
 }
 
 JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_topoPlanet(JNIEnv *env, jclass, jdouble ttDate, jobject body, jdouble deltaT, jobject position, jint accuracy, jobject ra, jobject dec, jobject distance) {
+  metrics_call _call;
   short result;
   object _body;
   on_surface _position;
@@ -643,6 +1092,8 @@ JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_topoPlanet(JNIEn
   jstring string;
   const char *str;
   double _ra, _dec, _distance;
+
+  metrics_begin(&_call, METRICS_TOPO_PLANET);
   
   memset(&_body, 0, sizeof(object));
 
@@ -682,12 +1133,18 @@ JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_topoPlanet(JNIEn
   env->SetDoubleField(dec, VALUE_FIELD, _dec);
   env->SetDoubleField(distance, VALUE_FIELD, _distance);
   
+  metrics_status(&_call, result);
+  metrics_end(&_call);
+
   return result;
 }
 
 JNIEXPORT void JNICALL Java_eu_cloudmakers_astronometry_NOVAS_equatorialToHorizontal(JNIEnv *env, jclass, jdouble ut1Date, jdouble deltaT, jint accuracy, jdouble xp, jdouble yp, jobject position, jdouble ra, jdouble dec, jint refOption, jobject zd, jobject ad, jobject rar, jobject decr) {
+  metrics_call _call;
   on_surface _position;
   double _zd, _ad, _rar, _decr;
+
+  metrics_begin(&_call, METRICS_EQU2HOR);
   
   _position.latitude=env->GetDoubleField(position, LATITUDE_FIELD);
   _position.longitude=env->GetDoubleField(position, LONGITUDE_FIELD);
@@ -701,28 +1158,262 @@ JNIEXPORT void JNICALL Java_eu_cloudmakers_astronometry_NOVAS_equatorialToHorizo
   env->SetDoubleField(ad, VALUE_FIELD, _ad);
   env->SetDoubleField(rar, VALUE_FIELD, _rar);
   env->SetDoubleField(decr, VALUE_FIELD, _decr);
+
+  metrics_end(&_call);
 }
 
-JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_siderealTime(JNIEnv *env, jclass, jdouble ttDate, jdouble deltaT, jint gstType, jint method, jint accuracy, jobject gst) {
+JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_siderealTimeRef(JNIEnv *env, jclass, jdouble ttDate, jdouble deltaT, jint gstType, jint method, jint accuracy, jobject gst) {
+  metrics_call _call;
   double _gst;
   short result;
+
+  metrics_begin(&_call, METRICS_SIDEREAL_TIME);
   
-  result = sidereal_time(ttDate, 0.0, deltaT, accuracy, gstType, method, &_gst);
+  result = sidereal_time(ttDate, 0.0, deltaT, gstType, method, accuracy, &_gst);
   env->SetDoubleField(gst, VALUE_FIELD, _gst);
 
+  metrics_status(&_call, result);
+  metrics_end(&_call);
+
+  return result;
+}
+
+JNIEXPORT void JNICALL Java_eu_cloudmakers_astronometry_NOVAS_equatorialToHorizontalArray(JNIEnv *env, jclass, jdouble ut1Date, jdouble deltaT, jint accuracy, jdouble xp, jdouble yp, jobject position, jdouble ra, jdouble dec, jint refOption, jdoubleArray output, jint offset) {
+  metrics_call _call;
+  on_surface _position;
+  double _output[4];
+
+  metrics_begin(&_call, METRICS_EQU2HOR);
+
+  star_batch_position(env, position, &_position);
+
+  equ2hor(ut1Date, deltaT, accuracy, xp, yp, &_position, ra, dec, refOption, &_output[0], &_output[1], &_output[2], &_output[3]);
+
+  env->SetDoubleArrayRegion(output, offset, 4, _output);
+
+  metrics_end(&_call);
+}
+
+JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_siderealTimeArray(JNIEnv *env, jclass, jdouble ttDate, jdouble deltaT, jint gstType, jint method, jint accuracy, jdoubleArray gst, jint offset) {
+  metrics_call _call;
+  double _gst;
+  short result;
+
+  metrics_begin(&_call, METRICS_SIDEREAL_TIME);
+
+  result = sidereal_time(ttDate, 0.0, deltaT, gstType, method, accuracy, &_gst);
+  env->SetDoubleArrayRegion(gst, offset, 1, &_gst);
+
+  metrics_status(&_call, result);
+  metrics_end(&_call);
+
+  return result;
+}
+
+/* pin inputs ut1High, ut1Low and the output of a series, arrays which are the same object share one pointer */
+static int series_pin(JNIEnv *env, jarray arrays[3], jdouble *elements[3], int shared[3]) {
+  int i, j, failed=0;
+
+  for (i=0; i<3; i++) {
+    shared[i]=i;
+    for (j=0; j<i && arrays[i]!=NULL; j++)
+      if (arrays[j]!=NULL && env->IsSameObject(arrays[i], arrays[j])) {
+        shared[i]=j;
+        break;
+      }
+  }
+  /* no JNI calls are allowed until all critical arrays are released */
+  for (i=0; i<3; i++)
+    if (shared[i]!=i)
+      elements[i]=elements[shared[i]];
+    else if (arrays[i]!=NULL && (elements[i]=(jdouble *)env->GetPrimitiveArrayCritical(arrays[i], NULL))==NULL)
+      failed=1;
+  return failed;
+}
+
+/* release arrays pinned by series_pin(), only the array holding the output is copied back */
+static void series_release(JNIEnv *env, jarray arrays[3], jdouble *elements[3], int shared[3]) {
+  for (int i=2; i>=0; i--)
+    if (shared[i]==i && elements[i]!=NULL)
+      env->ReleasePrimitiveArrayCritical(arrays[i], elements[i], shared[2]==i ? 0 : JNI_ABORT);
+}
+
+JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_siderealTimeSeries(JNIEnv *env, jclass, jdoubleArray ut1High, jdoubleArray ut1Low, jint offset, jint count, jdouble deltaT, jint gstType, jint method, jint accuracy, jdoubleArray gst, jobject frameTable) {
+  metrics_call _call;
+  short result=0, error;
+  jarray arrays[3]={ ut1High, ut1Low, gst };
+  jdouble *elements[3]={ NULL, NULL, NULL };
+  double _gst;
+  int i, shared[3];
+
+  metrics_begin(&_call, METRICS_SIDEREAL_TIME_SERIES);
+
+  if (frameTable!=NULL)
+    frame_table_install_local((const double *)env->GetDirectBufferAddress(frameTable));
+
+  if (!series_pin(env, arrays, elements, shared)) {
+    for (i=offset; i<offset+count; i++) {
+      error=sidereal_time(elements[0][i], elements[1]!=NULL ? elements[1][i] : 0.0, deltaT, gstType, method, accuracy, &_gst);
+      if (error!=0) {
+        if (result==0)
+          result=error;
+        _gst=NAN;
+      }
+      elements[2][i]=_gst;
+    }
+  }
+  series_release(env, arrays, elements, shared);
+  if (frameTable!=NULL)
+    frame_table_install_local(NULL);
+
+  metrics_status(&_call, result);
+  metrics_end(&_call);
+
+  return result;
+}
+
+JNIEXPORT void JNICALL Java_eu_cloudmakers_astronometry_NOVAS_earthRotationAngleSeries(JNIEnv *env, jclass, jdoubleArray ut1High, jdoubleArray ut1Low, jint offset, jint count, jdoubleArray theta) {
+  metrics_call _call;
+  jarray arrays[3]={ ut1High, ut1Low, theta };
+  jdouble *elements[3]={ NULL, NULL, NULL };
+  int i, shared[3];
+
+  metrics_begin(&_call, METRICS_ERA_SERIES);
+
+  if (!series_pin(env, arrays, elements, shared))
+    for (i=offset; i<offset+count; i++)
+      elements[2][i]=era(elements[0][i], elements[1]!=NULL ? elements[1][i] : 0.0);
+  series_release(env, arrays, elements, shared);
+
+  metrics_end(&_call);
+}
+
+/* rotation matrix of cel2ter() or ter2cel(), both are linear so columns are images of base vectors */
+static short int rotation_matrix(int celestial, double jd_high, double jd_low, double delta_t, short int method, short int accuracy, short int option, double xp, double yp, double matrix[9]) {
+  double base[3], column[3];
+  short int result;
+
+  for (int j=0; j<3; j++) {
+    base[0]=base[1]=base[2]=0.0;
+    base[j]=1.0;
+    if (celestial)
+      result=ter2cel(jd_high, jd_low, delta_t, method, accuracy, option, xp, yp, base, column);
+    else
+      result=cel2ter(jd_high, jd_low, delta_t, method, accuracy, option, xp, yp, base, column);
+    if (result!=0)
+      return result;
+    for (int i=0; i<3; i++)
+      matrix[3*i+j]=column[i];
+  }
+  return 0;
+}
+
+JNIEXPORT jshort JNICALL Java_eu_cloudmakers_astronometry_NOVAS_rotateVectors(JNIEnv *env, jclass, jboolean celestial, jdouble ut1High, jdouble ut1Low, jdoubleArray ut1Lows, jdouble deltaT, jint method, jint accuracy, jint option, jdouble xp, jdouble yp, jdoubleArray input, jdoubleArray output, jint offset, jint count) {
+  metrics_call _call;
+  double matrix[9], x, y, z, low=0.0;
+  jdouble *lows=NULL, *in=NULL, *out=NULL;
+  int same=env->IsSameObject(input, output), failed=0;
+  short result=0;
+
+  metrics_begin(&_call, celestial ? METRICS_TER2CEL : METRICS_CEL2TER);
+
+  /* no JNI calls are allowed until all critical arrays are released */
+  if (ut1Lows!=NULL && (lows=(jdouble *)env->GetPrimitiveArrayCritical(ut1Lows, NULL))==NULL)
+    failed=1;
+  if ((in=(jdouble *)env->GetPrimitiveArrayCritical(input, NULL))==NULL)
+    failed=1;
+  if (same)
+    out=in;
+  else if ((out=(jdouble *)env->GetPrimitiveArrayCritical(output, NULL))==NULL)
+    failed=1;
+  if (!failed) {
+    if (lows==NULL)
+      result=rotation_matrix(celestial, ut1High, ut1Low, deltaT, method, accuracy, option, xp, yp, matrix);
+    for (int i=offset; result==0 && i<offset+count; i++) {
+      if (lows!=NULL && (i==offset || lows[i]!=low)) {
+        low=lows[i];
+        if ((result=rotation_matrix(celestial, ut1High, low, deltaT, method, accuracy, option, xp, yp, matrix))!=0)
+          break;
+      }
+      x=in[3*i];
+      y=in[3*i+1];
+      z=in[3*i+2];
+      out[3*i]=matrix[0]*x+matrix[1]*y+matrix[2]*z;
+      out[3*i+1]=matrix[3]*x+matrix[4]*y+matrix[5]*z;
+      out[3*i+2]=matrix[6]*x+matrix[7]*y+matrix[8]*z;
+    }
+  }
+  if (out!=NULL && !same)
+    env->ReleasePrimitiveArrayCritical(output, out, 0);
+  if (in!=NULL)
+    env->ReleasePrimitiveArrayCritical(input, in, same ? 0 : JNI_ABORT);
+  if (lows!=NULL)
+    env->ReleasePrimitiveArrayCritical(ut1Lows, lows, JNI_ABORT);
+
+  metrics_status(&_call, result);
+  metrics_end(&_call);
+
   return result;
 }
 
+JNIEXPORT void JNICALL Java_eu_cloudmakers_astronometry_NOVAS_ephemerisStatistics(JNIEnv *env, jclass, jlongArray statistics) {
+  long long int _statistics[3];
+  jlong values[3];
+
+  ephem_statistics(_statistics);
+  for (int i = 0; i < 3; i++)
+    values[i] = _statistics[i];
+  env->SetLongArrayRegion(statistics, 0, 3, values);
+}
+
+JNIEXPORT void JNICALL Java_eu_cloudmakers_astronometry_NOVAS_installCompactEphemeris(JNIEnv *env, jclass, jobject data) {
+  compact_install(data == NULL ? NULL : (const double *)env->GetDirectBufferAddress(data));
+}
+
+JNIEXPORT void JNICALL Java_eu_cloudmakers_astronometry_NOVAS_installFrameTable(JNIEnv *env, jclass, jobject data) {
+  frame_table_install(data == NULL ? NULL : (const double *)env->GetDirectBufferAddress(data));
+}
+
+JNIEXPORT void JNICALL Java_eu_cloudmakers_astronometry_NOVAS_installCioTable(JNIEnv *env, jclass, jobject data) {
+  cio_table_install(data == NULL ? NULL : (const double *)env->GetDirectBufferAddress(data));
+}
+
+JNIEXPORT void JNICALL Java_eu_cloudmakers_astronometry_NOVAS_selectAnalyticEphemeris(JNIEnv *env, jclass, jboolean analytic) {
+  use_analytic = analytic ? 1 : 0;
+}
+
+JNIEXPORT void JNICALL Java_eu_cloudmakers_astronometry_NOVAS_metricsEnable(JNIEnv *env, jclass, jboolean enabled) {
+  metrics_enable(enabled ? 1 : 0);
+}
+
+JNIEXPORT void JNICALL Java_eu_cloudmakers_astronometry_NOVAS_metricsReset(JNIEnv *env, jclass) {
+  metrics_reset();
+}
+
+JNIEXPORT jint JNICALL Java_eu_cloudmakers_astronometry_NOVAS_metricsSnapshot(JNIEnv *env, jclass, jlongArray values) {
+  long long int _values[METRICS_SNAPSHOT];
+
+  if (values==NULL || env->GetArrayLength(values)<METRICS_SNAPSHOT)
+    return METRICS_SNAPSHOT;
+  metrics_snapshot(_values);
+  env->SetLongArrayRegion(values, 0, METRICS_SNAPSHOT, (jlong *)_values);
+  return METRICS_SNAPSHOT;
+}
+
 short int solarsystem (double tjd, short int body, short int origin, double *position, double *velocity)
 {
-  if (has_eph)
+  if (compact_lookup (tjd, 0.0, body, origin, position, velocity) == 0)
+    return 0;
+  if (has_eph && !use_analytic)
     return solarsystem_1 (tjd, body, origin, position, velocity);
   return solarsystem_3 (tjd, body, origin, position, velocity);
 }
 
 short int solarsystem_hp (double tjd[2], short int body, short int origin, double *position, double *velocity)
 {
-  if (has_eph)
+  if (compact_lookup (tjd[0], tjd[1], body, origin, position, velocity) == 0)
+    return 0;
+  if (has_eph && !use_analytic)
     return solarsystem_hp_1 (tjd, body, origin, position, velocity);
   return solarsystem_hp_3 (tjd, body, origin, position, velocity);
 }
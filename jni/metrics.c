@@ -0,0 +1,241 @@
+/*
+  jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+
+  metrics.c: Call counters and latency histograms
+*/
+
+#include <string.h>
+
+#include "metrics.h"
+
+#if defined(_WIN32)
+   #include <windows.h>
+#elif defined(__APPLE__)
+   #include <mach/mach_time.h>
+#else
+   #include <time.h>
+#endif
+
+/*
+   Counters are striped, every thread increments its own stripe (unless
+   there are more threads than stripes), so concurrent threads don't
+   fight for the same cache lines. Snapshot sums all stripes.
+*/
+
+#define METRICS_STRIPES 16
+
+typedef struct
+{
+   volatile long long int counters[METRICS_COUNTERS];
+   volatile long long int calls[METRICS_METHODS];
+   volatile long long int errors[METRICS_METHODS];
+   volatile long long int latency[METRICS_METHODS][METRICS_BUCKETS];
+   volatile long long int codes[METRICS_CODES];
+   char padding[64];
+} metrics_stripe;
+
+static metrics_stripe STRIPES[METRICS_STRIPES];
+
+static volatile long long int NEXT_STRIPE = 0;
+
+static volatile int ENABLED = 1;
+
+static NOVAS_TLS metrics_stripe *STRIPE = NULL;
+
+static NOVAS_TLS int COUNTDOWN = 1;
+
+/********metrics_stripe_of_thread */
+
+static metrics_stripe *metrics_stripe_of_thread (void)
+{
+   if (STRIPE == NULL)
+      STRIPE = &STRIPES[NOVAS_ATOMIC_INC (NEXT_STRIPE) % METRICS_STRIPES];
+   return STRIPE;
+}
+
+/********metrics_now */
+
+static long long int metrics_now (void)
+{
+#if defined(_WIN32)
+   static double factor = 0.0;
+   LARGE_INTEGER counter, frequency;
+
+   if (factor == 0.0)
+   {
+      QueryPerformanceFrequency (&frequency);
+      factor = 1.0e9 / (double) frequency.QuadPart;
+   }
+   QueryPerformanceCounter (&counter);
+   return (long long int) ((double) counter.QuadPart * factor);
+#elif defined(__APPLE__)
+   static mach_timebase_info_data_t timebase;
+
+   if (timebase.denom == 0)
+      mach_timebase_info (&timebase);
+   return (long long int) (mach_absolute_time () * timebase.numer / timebase.denom);
+#else
+   struct timespec now;
+
+   clock_gettime (CLOCK_MONOTONIC, &now);
+   return (long long int) now.tv_sec * 1000000000LL + now.tv_nsec;
+#endif
+}
+
+/********metrics_enable */
+
+void metrics_enable (int enabled)
+/*
+------------------------------------------------------------------------
+
+   PURPOSE:
+      Enables or disables recording, disabled recording costs one test
+      per call.
+
+------------------------------------------------------------------------
+*/
+{
+   ENABLED = enabled;
+}
+
+/********metrics_reset */
+
+void metrics_reset (void)
+/*
+------------------------------------------------------------------------
+
+   PURPOSE:
+      Clears all counters. Increments made by other threads at the same
+      time may survive.
+
+------------------------------------------------------------------------
+*/
+{
+   memset ((void *) STRIPES, 0, sizeof (STRIPES));
+}
+
+/********metrics_snapshot */
+
+void metrics_snapshot (long long int *values)
+/*
+------------------------------------------------------------------------
+
+   PURPOSE:
+      Sums all stripes to 'values' of METRICS_SNAPSHOT elements: internal
+      counters, calls and errors of every method, latency histograms of
+      every method and error code counts.
+
+------------------------------------------------------------------------
+*/
+{
+   long int i, j, k, n;
+   metrics_stripe *stripe;
+
+   memset (values, 0, METRICS_SNAPSHOT * sizeof (long long int));
+   for (k = 0; k < METRICS_STRIPES; k++)
+   {
+      stripe = &STRIPES[k];
+      n = 0;
+      for (i = 0; i < METRICS_COUNTERS; i++)
+         values[n++] += stripe->counters[i];
+      for (i = 0; i < METRICS_METHODS; i++)
+         values[n++] += stripe->calls[i];
+      for (i = 0; i < METRICS_METHODS; i++)
+         values[n++] += stripe->errors[i];
+      for (i = 0; i < METRICS_METHODS; i++)
+         for (j = 0; j < METRICS_BUCKETS; j++)
+            values[n++] += stripe->latency[i][j];
+      for (i = 0; i < METRICS_CODES; i++)
+         values[n++] += stripe->codes[i];
+   }
+}
+
+/********metrics_count */
+
+void metrics_count (int counter)
+/*
+------------------------------------------------------------------------
+
+   PURPOSE:
+      Increments internal counter.
+
+------------------------------------------------------------------------
+*/
+{
+   if (ENABLED)
+      NOVAS_ATOMIC_INC (metrics_stripe_of_thread ()->counters[counter]);
+}
+
+/********metrics_begin */
+
+void metrics_begin (metrics_call *call, int method)
+/*
+------------------------------------------------------------------------
+
+   PURPOSE:
+      Counts call of 'method' and starts timing it if it is sampled.
+
+------------------------------------------------------------------------
+*/
+{
+   call->start = 0;
+   if (!ENABLED)
+   {
+      call->method = -1;
+      return;
+   }
+   call->method = method;
+   NOVAS_ATOMIC_INC (metrics_stripe_of_thread ()->calls[method]);
+   if (--COUNTDOWN == 0)
+   {
+      COUNTDOWN = METRICS_SAMPLE;
+      call->start = metrics_now ();
+   }
+}
+
+/********metrics_status */
+
+void metrics_status (metrics_call *call, short int error)
+/*
+------------------------------------------------------------------------
+
+   PURPOSE:
+      Counts non-zero error code returned by the call (batch calls
+      report status of every element).
+
+------------------------------------------------------------------------
+*/
+{
+   metrics_stripe *stripe;
+
+   if (error == 0 || call->method < 0)
+      return;
+   stripe = metrics_stripe_of_thread ();
+   NOVAS_ATOMIC_INC (stripe->errors[call->method]);
+   NOVAS_ATOMIC_INC (stripe->codes[error > 0 && error < METRICS_CODES ? error : METRICS_CODES - 1]);
+}
+
+/********metrics_end */
+
+void metrics_end (metrics_call *call)
+/*
+------------------------------------------------------------------------
+
+   PURPOSE:
+      Records latency of the call if it is sampled.
+
+------------------------------------------------------------------------
+*/
+{
+   metrics_stripe *stripe;
+   long long int nanos;
+   int bucket = 0;
+
+   if (call->start == 0 || call->method < 0)
+      return;
+   nanos = metrics_now () - call->start;
+   while (bucket < METRICS_BUCKETS - 1 && (nanos >> (bucket + 1)) != 0)
+      bucket++;
+   stripe = metrics_stripe_of_thread ();
+   NOVAS_ATOMIC_INC (stripe->latency[call->method][bucket]);
+}
@@ -0,0 +1,104 @@
+/*
+  jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+
+  metrics.h: Header file for metrics.c
+
+  Call counters, sampled latency histograms and error status counts of
+  the JNI entry points and counters of expensive internal operations,
+  read in Java by eu.cloudmakers.astronometry.NovasMetrics.
+*/
+
+#ifndef _METRICS_
+   #define _METRICS_
+
+#ifndef _THREAD_STORAGE_
+   #include "thread_storage.h"
+#endif
+
+/*
+   Measured entry points, indices must match NovasMetrics.METHODS.
+*/
+
+#define METRICS_PLACE 0
+#define METRICS_PLACE_SERIES 1
+#define METRICS_TRANSFORM_CAT 2
+#define METRICS_TRANSFORM_HIP 3
+#define METRICS_TRANSFORM_HIP_BATCH 4
+#define METRICS_APP_STAR 5
+#define METRICS_VIRTUAL_STAR 6
+#define METRICS_ASTRO_STAR 7
+#define METRICS_LOCAL_STAR 8
+#define METRICS_TOPO_STAR 9
+#define METRICS_STAR_BATCH 10
+#define METRICS_PLACE_BATCH 11
+#define METRICS_APP_PLANET 12
+#define METRICS_VIRTUAL_PLANET 13
+#define METRICS_ASTRO_PLANET 14
+#define METRICS_LOCAL_PLANET 15
+#define METRICS_TOPO_PLANET 16
+#define METRICS_EQU2HOR 17
+#define METRICS_SIDEREAL_TIME 18
+#define METRICS_TER2CEL 19
+#define METRICS_CEL2TER 20
+#define METRICS_SIDEREAL_TIME_SERIES 21
+#define METRICS_ERA_SERIES 22
+#define METRICS_METHODS 23
+
+/*
+   Internal counters, indices must match NovasMetrics.
+*/
+
+#define METRICS_EPH_RECORD_HITS 0
+#define METRICS_CIO_FILE_READS 1
+#define METRICS_IAU2000A 2
+#define METRICS_IAU2000B 3
+#define METRICS_NU2000K 4
+#define METRICS_COUNTERS 5
+
+/*
+   Latency buckets (bucket i counts samples of 2^i to 2^(i+1) - 1 ns),
+   tracked error codes (larger codes are counted in the last one) and
+   sampling interval of latency (every n-th call of a thread is timed).
+*/
+
+#define METRICS_BUCKETS 32
+#define METRICS_CODES 128
+#define METRICS_SAMPLE 16
+
+/*
+   Length of the snapshot: counters, calls, errors, latency histograms
+   and error codes.
+*/
+
+#define METRICS_SNAPSHOT (METRICS_COUNTERS + 2 * METRICS_METHODS + \
+   METRICS_METHODS * METRICS_BUCKETS + METRICS_CODES)
+
+/*
+   Structures
+*/
+
+   typedef struct
+   {
+      int method;
+      long long int start;
+   } metrics_call;
+
+/*
+   Function prototypes
+*/
+
+   void metrics_enable (int enabled);
+
+   void metrics_reset (void);
+
+   void metrics_snapshot (long long int *values);
+
+   void metrics_count (int counter);
+
+   void metrics_begin (metrics_call *call, int method);
+
+   void metrics_status (metrics_call *call, short int error);
+
+   void metrics_end (metrics_call *call);
+
+#endif
@@ -14,6 +14,14 @@
    #include "novas.h"
 #endif
 
+#ifndef _FRAME_TABLE_
+   #include "frame_table.h"
+#endif
+
+#ifndef _CIO_TABLE_
+   #include "cio_table.h"
+#endif
+
 #include <math.h>
 
 /*
@@ -26,6 +34,20 @@
 static double PSI_COR = 0.0;
 static double EPS_COR = 0.0;
 
+/*
+   jNOVAS: Barycentric position and velocity of the star of the next call
+   of 'place_lt' on this thread, see function 'place_star_vectors'.
+*/
+
+static NOVAS_TLS const double *STAR_VECTORS = NULL;
+
+/*
+   jNOVAS: Mutex of the CIO file state shared by all threads, see
+   function 'cio_array'.
+*/
+
+static NOVAS_MUTEX CIO_ARRAY_MUTEX = NOVAS_MUTEX_INITIALIZER;
+
 
 
 /********app_star */
@@ -1464,6 +1486,56 @@ short int place (double jd_tt, object *cel_object,
 
                  sky_pos *output)
 /*
+------------------------------------------------------------------------
+
+   PURPOSE:
+      jNOVAS: Wrapper of 'place_lt' without light-time guess, see
+      'place_lt' for arguments and returned value.
+
+------------------------------------------------------------------------
+*/
+{
+   double t_light;
+
+   return place_lt (jd_tt,cel_object,location,delta_t,coord_sys,
+      accuracy,0.0, output,&t_light);
+}
+
+/********place_star_vectors */
+
+void place_star_vectors (const double *vectors)
+/*
+------------------------------------------------------------------------
+
+   PURPOSE:
+      jNOVAS: Supplies barycentric position and velocity of the star
+      observed by the next call of 'place' or 'place_lt' on this thread,
+      so the call doesn't compute them from the catalog entry by
+      'starvectors' (e.g. vectors kept by a star catalog). The catalog
+      entry is still used for radial velocity.
+
+   INPUT
+   ARGUMENTS:
+      *vectors (double)
+         Position vector in AU followed by velocity vector in AU/day,
+         as returned by 'starvectors'; the array must stay valid until
+         the next call of 'place_lt', which resets it.
+
+------------------------------------------------------------------------
+*/
+{
+   STAR_VECTORS = vectors;
+}
+
+/********place_lt */
+
+short int place_lt (double jd_tt, object *cel_object,
+                    observer *location, double delta_t,
+                    short int coord_sys, short int accuracy,
+                    double t_light_guess,
+
+                    sky_pos *output, double *t_light_out)
+/*
 ------------------------------------------------------------------------
 
    PURPOSE:
@@ -1498,6 +1570,11 @@ short int place (double jd_tt, object *cel_object,
          Code specifying the relative accuracy of the output position.
             = 0 ... full accuracy
             = 1 ... reduced accuracy
+      t_light_guess (double)
+         jNOVAS: First approximation to light-time, in days, used to
+         start the light-time iteration for solar system bodies (e.g.
+         extrapolated from previous dates of a time series), or 0.0 to
+         start from the geometric distance.
 
    OUTPUT
    ARGUMENTS:
@@ -1505,6 +1582,8 @@ short int place (double jd_tt, object *cel_object,
          Output data specifying object's place on the sky at time
          'jd_tt', with respect to the specified output coordinate system
          (struct defined in novas.h).
+      *t_light_out (double)
+         jNOVAS: Light-time from object to observer, in days.
 
    RETURNED
    VALUE:
@@ -1584,13 +1663,13 @@ short int place (double jd_tt, object *cel_object,
 ------------------------------------------------------------------------
 */
 {
-   static short int first_time = 1;
+   static NOVAS_TLS short int first_time = 1;
    short int error = 0;
    short int loc, rs, i;
 
-   static double tlast1 = 0.0;
-   static double tlast2 = 0.0;
-   static double jd_tdb, peb[3], veb[3], psb[3], vsb[3], px[3], py[3],
+   static NOVAS_TLS double tlast1 = 0.0;
+   static NOVAS_TLS double tlast2 = 0.0;
+   static NOVAS_TLS double jd_tdb, peb[3], veb[3], psb[3], vsb[3], px[3], py[3],
       pz[3];
    double x, secdif, jd[2], pog[3], vog[3], pob[3], vob[3], pos1[3],
       vel1[3], dt, pos2[3], pos3[3], t_light, t_light0, pos4[3], frlimb,
@@ -1599,7 +1678,12 @@ short int place (double jd_tt, object *cel_object,
 
    cat_entry null_star;
 
-   static object earth, sun;
+   static NOVAS_TLS object earth, sun;
+
+   const double *star_vectors = STAR_VECTORS;
+
+   STAR_VECTORS = NULL;
+   *t_light_out = 0.0;
 
 /*
    Check for invalid value of 'coord_sys' or 'accuracy'.
@@ -1738,7 +1822,16 @@ short int place (double jd_tt, object *cel_object,
    Get position of star updated for its space motion.
 */
 
-      starvectors (&cel_object->star, pos1,vel1);
+      if (star_vectors != NULL)
+      {
+         for (i = 0; i < 3; i++)
+         {
+            pos1[i] = star_vectors[i];
+            vel1[i] = star_vectors[i+3];
+         }
+      }
+       else
+         starvectors (&cel_object->star, pos1,vel1);
       dt = d_light (pos1,pob);
       proper_motion (T0,pos1,vel1,(jd_tdb + dt), pos2);
 
@@ -1774,7 +1867,8 @@ short int place (double jd_tt, object *cel_object,
    Get position of body wrt observer, antedated for light-time.
 */
 
-      if ((error = light_time (jd_tdb,cel_object,pob,t_light0,accuracy,
+      if ((error = light_time (jd_tdb,cel_object,pob,
+           (t_light_guess > 0.0) ? t_light_guess : t_light0,accuracy,
            pos3,&t_light)) != 0)
          return (error += 50);
    }
@@ -1914,6 +2008,8 @@ short int place (double jd_tt, object *cel_object,
       output->r_hat[i] = pos8[i] / x;
    }
 
+   *t_light_out = t_light;
+
    return (error);
 }
 
@@ -2243,9 +2339,9 @@ short int equ2ecl_vec (double jd_tt, short int coord_sys,
 {
    short int error = 0;
 
-   static double t_last = 0.0;
-   static double ob2000 = 0.0;
-   static double oblm, oblt;
+   static NOVAS_TLS double t_last = 0.0;
+   static NOVAS_TLS double ob2000 = 0.0;
+   static NOVAS_TLS double oblm, oblt;
    double t, secdiff, jd_tdb, pos0[3], w, x, y, z, obl;
 
 /*
@@ -2392,9 +2488,9 @@ short int ecl2equ_vec (double jd_tt, short int coord_sys,
 {
    short int error = 0;
 
-   static double t_last = 0.0;
-   static double ob2000 = 0.0;
-   static double oblm, oblt;
+   static NOVAS_TLS double t_last = 0.0;
+   static NOVAS_TLS double ob2000 = 0.0;
+   static NOVAS_TLS double oblm, oblt;
    double t, secdiff, jd_tdb, pos0[3], w, x, y, z, obl = 0.0;
 
 /*
@@ -3027,8 +3123,8 @@ short int sidereal_time (double jd_high, double jd_low,
    short int error = 0;
    short int ref_sys;
 
-   static double ee;
-   static double jd_last = -99.0;
+   static NOVAS_TLS double ee;
+   static NOVAS_TLS double jd_last = -99.0;
    double unitx[3] = {1.0, 0.0, 0.0};
    double jd_ut, jd_tt, jd_tdb, tt_temp, t, theta, a, b, c, d,
       ra_cio, x[3], y[3], z[3], w1[3], w2[3], eq[3], ha_eq, st,
@@ -3802,8 +3898,8 @@ void spin (double angle, double *pos1,
 ------------------------------------------------------------------------
 */
 {
-   static double ang_last = -999.0;
-   static double xx, yx, zx, xy, yy, zy, xz, yz, zz;
+   static NOVAS_TLS double ang_last = -999.0;
+   static NOVAS_TLS double xx, yx, zx, xy, yy, zy, xz, yz, zz;
    double angr, cosang, sinang;
 
    if (fabs (angle - ang_last) >= 1.0e-12)
@@ -4064,10 +4160,10 @@ void terra (on_surface *location, double st,
 ------------------------------------------------------------------------
 */
 {
-   static short int first_entry = 1;
+   static NOVAS_TLS short int first_entry = 1;
    short int j;
 
-   static double erad_km, ht_km;
+   static NOVAS_TLS double erad_km, ht_km;
    double df, df2, phi, sinphi, cosphi, c, s, ach, ash, stlocl, sinst,
       cosst;
 
@@ -4181,6 +4277,7 @@ void e_tilt (double jd_tdb, short int accuracy,
 
    FUNCTIONS
    CALLED:
+      frame_table_lookup frame_table.c
       nutation_angles    novas.c
       ee_ct              novas.c
       mean_obliq         novas.c
@@ -4208,15 +4305,18 @@ void e_tilt (double jd_tdb, short int accuracy,
       of 'cel_pole' for details.
       2. This function is the C version of NOVAS Fortran routine
       'etilt'.
+      3. jNOVAS: nutation angles and complementary terms are taken from
+      the fitted table installed by frame_table_install, if it covers
+      'jd_tdb' and 'accuracy'.
 
 ------------------------------------------------------------------------
 */
 {
-   static short int accuracy_last = 0;
+   static NOVAS_TLS short int accuracy_last = 0;
    short int acc_diff;
 
-   static double jd_last = 0.0;
-   static double dp, de, c_terms;
+   static NOVAS_TLS double jd_last = 0.0;
+   static NOVAS_TLS double dp, de, c_terms;
    double t, d_psi, d_eps, mean_ob, true_ob, eq_eq;
 
 /*
@@ -4239,14 +4339,17 @@ void e_tilt (double jd_tdb, short int accuracy,
 
    if (((fabs (jd_tdb - jd_last)) > 1.0e-8) || (acc_diff != 0))
    {
-      nutation_angles (t,accuracy, &dp,&de);
+      if (frame_table_lookup (jd_tdb,accuracy, &dp,&de,&c_terms) != 0)
+      {
+         nutation_angles (t,accuracy, &dp,&de);
 
 /*
    Obtain complementary terms for equation of the equinoxes in
    arcseconds.
 */
 
-      c_terms = ee_ct (jd_tdb,0.0,accuracy) / ASEC2RAD;
+         c_terms = ee_ct (jd_tdb,0.0,accuracy) / ASEC2RAD;
+      }
 
 /*
    Reset the values of the last Julian date and last mode.
@@ -4836,7 +4939,7 @@ void frame_tie (double *pos1, short int direction,
 ------------------------------------------------------------------------
 */
 {
-   static short int compute_matrix = 1;
+   static NOVAS_TLS short int compute_matrix = 1;
 
 /*
    'xi0', 'eta0', and 'da0' are ICRS frame biases in arcseconds taken
@@ -4846,7 +4949,7 @@ void frame_tie (double *pos1, short int direction,
    const double xi0  = -0.0166170;
    const double eta0 = -0.0068192;
    const double da0  = -0.01460;
-   static double xx, yx, zx, xy, yy, zy, xz, yz, zz;
+   static NOVAS_TLS double xx, yx, zx, xy, yy, zy, xz, yz, zz;
 
 /*
    Compute elements of rotation matrix to first order the first time
@@ -5140,9 +5243,9 @@ short int geo_posvel (double jd_tt, double delta_t, short int accuracy,
 ------------------------------------------------------------------------
 */
 {
-   static double t_last = 0;
-   static double gast, fac;
-   static short int first_time = 1;
+   static NOVAS_TLS double t_last = 0;
+   static NOVAS_TLS double gast, fac;
+   static NOVAS_TLS short int first_time = 1;
 
    double x, secdif, gmst, x1, x2, x3, x4, eqeq, pos1[3], vel1[3],
       pos2[3], vel2[3], pos3[3], vel3[3], jd_tdb, jd_ut1;
@@ -5601,8 +5704,8 @@ short int grav_def (double jd_tdb, short int loc_code,
 
    const short int body_num[7] = {10, 5, 6, 11, 2, 7, 8};
 
-   static short int first_time = 1;
-   static short int nbodies_last = 0;
+   static NOVAS_TLS short int first_time = 1;
+   static NOVAS_TLS short int nbodies_last = 0;
 
    short int error = 0;
    short int nbodies, i;
@@ -5611,7 +5714,7 @@ short int grav_def (double jd_tdb, short int loc_code,
 
    cat_entry dummy_star;
 
-   static object body[7], earth;
+   static NOVAS_TLS object body[7], earth;
 
    jd[1] = 0.0;
 
@@ -6101,10 +6204,10 @@ void rad_vel (object *cel_object, double *pos, double *vel,
 ------------------------------------------------------------------------
 */
 {
-   static short int first_call = 1;
+   static NOVAS_TLS short int first_call = 1;
    short int i;
 
-   static double c2, toms, toms2;
+   static NOVAS_TLS double c2, toms, toms2;
    double v[3], ra, dec, radvel, posmag, uk[3], v2, vo2, r, phigeo,
       phisun, rel, rar, dcr, cosdec, du[3], zc, kv, zb1, kvobs, zobs1;
 
@@ -6384,11 +6487,11 @@ short int precession (double jd_tdb1, double *pos1, double jd_tdb2,
 ------------------------------------------------------------------------
 */
 {
-   static short int first_time = 1;
+   static NOVAS_TLS short int first_time = 1;
    short int error = 0;
 
-   static double t_last = 0.0;
-   static double xx, yx, zx, xy, yy, zy, xz, yz, zz;
+   static NOVAS_TLS double t_last = 0.0;
+   static NOVAS_TLS double xx, yx, zx, xy, yy, zy, xz, yz, zz;
    double eps0 = 84381.406;
    double  t, psia, omegaa, chia, sa, ca, sb, cb, sc, cc, sd, cd;
 
@@ -7430,6 +7533,7 @@ short int cio_location (double jd_tdb, short int accuracy,
 
    FUNCTIONS
    CALLED:
+      cio_table_lookup   cio_table.c
       cio_array          novas.c
       ira_equinox        novas.c
       fopen              stdio.h
@@ -7451,27 +7555,38 @@ short int cio_location (double jd_tdb, short int accuracy,
       provided with NOVAS-C.
       3. This function is the C version of NOVAS Fortran routine
       'cioloc'.
+      4. The in-memory table installed by cio_table_install, if it
+      covers 'jd_tdb', is used before the file and 'ref_sys' is set
+      to 1.
 
 ------------------------------------------------------------------------
 */
 {
-   static short int first_call = 1;
-   static short int ref_sys_last = 0;
-   static short int use_file = 0;
+   static NOVAS_TLS short int first_call = 1;
+   static NOVAS_TLS short int ref_sys_last = 0;
+   static NOVAS_TLS short int use_file = 0;
    short int error = 0;
 
-   long int n_pts = 6;
    long int i, j;
 
-   static double t_last = 0.0;
-   static double ra_last;
+   static NOVAS_TLS double t_last = 0.0;
+   static NOVAS_TLS double ra_last;
    double p, eq_origins;
 
-   size_t cio_size;
+   ra_of_cio cio[6];
+   long int n_pts = 6;
 
-   static ra_of_cio *cio;
+   FILE *cio_file;
 
-   static FILE *cio_file;
+/*
+   Interpolate in the in-memory table, no file is touched.
+*/
+
+   if (cio_table_lookup (jd_tdb, ra_cio) == 0)
+   {
+      *ref_sys = 1;
+      return (error = 0);
+   }
 
 /*
    Check if the input external binary file exists and can be read.
@@ -7488,6 +7603,7 @@ short int cio_location (double jd_tdb, short int accuracy,
          use_file = 1;
          fclose (cio_file);
       }
+      first_call = 0;
    }
 
 /*
@@ -7517,22 +7633,9 @@ short int cio_location (double jd_tdb, short int accuracy,
       case 1:
 
 /*
-   Allocate memory for the array 'cio'.  This array contains the values
-   to be interpolated, extracted from the CIO file.
-*/
-
-         if (first_call)
-         {
-            cio_size = sizeof (ra_of_cio);
-            cio = (ra_of_cio *) calloc ((size_t) n_pts, cio_size);
-            if (cio == NULL)
-               return (error = 1);
-             else
-               first_call = 0;
-         }
-
-/*
-   Get array of values to interpolate.
+   Get array of values to interpolate.  jNOVAS: the array 'cio' is on
+   the stack instead of being allocated on the first call of every
+   thread.
 */
 
          if ((error = cio_array (jd_tdb,n_pts, cio)) != 0)
@@ -7682,12 +7785,12 @@ short int cio_basis (double jd_tdb, double ra_cio, short int ref_sys,
 ------------------------------------------------------------------------
 */
 {
-   static short int ref_sys_last = 0;
+   static NOVAS_TLS short int ref_sys_last = 0;
    short int error = 0;
    short int i;
 
-   static double t_last = 0.0;
-   static double xx[3], yy[3], zz[3];
+   static NOVAS_TLS double t_last = 0.0;
+   static NOVAS_TLS double xx[3], yy[3], zz[3];
    double z0[3] = {0.0, 0.0, 1.0};
    double w0[3], w1[3], w2[3], sinra, cosra, xmag;
 
@@ -7828,11 +7931,11 @@ short int cio_basis (double jd_tdb, double ra_cio, short int ref_sys,
    return (error);
 }
 
-/********cio_array */
+/********cio_array_file */
 
-short int cio_array (double jd_tdb, long int n_pts,
+static short int cio_array_file (double jd_tdb, long int n_pts,
 
-                     ra_of_cio *cio)
+                                 ra_of_cio *cio)
 /*
 ------------------------------------------------------------------------
 
@@ -8046,6 +8149,7 @@ short int cio_array (double jd_tdb, long int n_pts,
 
    if ((abs_del_index > n_pts) || (del_n_pts != 0))
    {
+      metrics_count (METRICS_CIO_FILE_READS);
       fseek (cio_file, bytes_to_lo, SEEK_SET);
 
       for (i = 0L; i < n_pts; i++)
@@ -8090,6 +8194,7 @@ short int cio_array (double jd_tdb, long int n_pts,
             ra[j] = ra_temp;
          }
 
+         metrics_count (METRICS_CIO_FILE_READS);
          fseek (cio_file, bytes_to_lo, SEEK_SET);
 
          for (i = 0L; i < n_read; i++)
@@ -8117,6 +8222,7 @@ short int cio_array (double jd_tdb, long int n_pts,
             ra[i] = ra_temp;
          }
 
+         metrics_count (METRICS_CIO_FILE_READS);
          fseek (cio_file, bytes_to_lo + (n_swap * record_size),
             SEEK_SET);
 
@@ -8155,6 +8261,32 @@ short int cio_array (double jd_tdb, long int n_pts,
    return (error);
 }
 
+/********cio_array */
+
+short int cio_array (double jd_tdb, long int n_pts,
+
+                     ra_of_cio *cio)
+/*
+------------------------------------------------------------------------
+
+   PURPOSE:
+      jNOVAS: Thread-safe wrapper of 'cio_array_file', see it for
+      arguments and returned value.  The CIO file, its header and the
+      records read last are shared by all threads, so there is one file
+      handle and one pair of buffers per process instead of per thread,
+      and calls are serialized by a mutex.
+
+------------------------------------------------------------------------
+*/
+{
+   short int error;
+
+   NOVAS_LOCK (CIO_ARRAY_MUTEX);
+   error = cio_array_file (jd_tdb,n_pts, cio);
+   NOVAS_UNLOCK (CIO_ARRAY_MUTEX);
+   return (error);
+}
+
 /********ira_equinox */
 
 double ira_equinox (double jd_tdb, short int equinox,
@@ -8216,10 +8348,10 @@ double ira_equinox (double jd_tdb, short int equinox,
 ------------------------------------------------------------------------
 */
 {
-   static short int acc_last = 99;
+   static NOVAS_TLS short int acc_last = 99;
 
-   static double t_last = 0.0;
-   static double eq_eq = 0.0;
+   static NOVAS_TLS double t_last = 0.0;
+   static NOVAS_TLS double eq_eq = 0.0;
    double t, u, v, w, x, prec_ra, ra_eq;
 
 /*
@@ -9012,9 +9144,9 @@ void limb_angle (double pos_obj[3], double pos_obs[3],
 ------------------------------------------------------------------------
 */
 {
-   static short int first_entry = 1;
+   static NOVAS_TLS short int first_entry = 1;
 
-   static double pi, halfpi, rade;
+   static NOVAS_TLS double pi, halfpi, rade;
    double disobj, disobs, aprad, zdlim, coszd, zdobj;
 
    if (first_entry)
@@ -45,6 +45,14 @@
       #include "nutation.h"
    #endif
 
+   #ifndef _THREAD_STORAGE_
+      #include "thread_storage.h"
+   #endif
+
+   #ifndef _METRICS_
+      #include "metrics.h"
+   #endif
+
 
 /*
    Structures
@@ -296,6 +304,15 @@
 
                     sky_pos *output);
 
+   short int place_lt (double jd_tt, object *cel_object,
+                       observer *location, double delta_t,
+                       short int coord_sys, short int accuracy,
+                       double t_light_guess,
+
+                       sky_pos *output, double *t_light_out);
+
+   void place_star_vectors (const double *vectors);
+
    void equ2gal (double rai, double deci,
 
                  double *glon, double *glat);
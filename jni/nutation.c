@@ -2846,6 +2846,8 @@ void iau2000a (double jd_high, double jd_low,
       {    3.0,          0.0,          0.0,         -1.0},
       {    3.0,          0.0,          0.0,         -1.0}};
 
+   metrics_count (METRICS_IAU2000A);
+
 /*
    Interval between fundamental epoch J2000.0 and given date.
 */
@@ -3262,6 +3264,8 @@ void iau2000b (double jd_high, double jd_low,
       {      1405.0,       0.0,      4.0,     -610.0,     0.0,     2.0},
       {      1290.0,       0.0,      0.0,     -556.0,     0.0,     0.0}};
 
+   metrics_count (METRICS_IAU2000B);
+
 /*
    Interval between fundamental epoch J2000.0 and given date.
 */
@@ -4460,6 +4464,8 @@ void nu2000k (double jd_high, double jd_low,
       {  126.0,     -63.0,     -27.0,     -55.0},
       { -126.0,     -63.0,     -27.0,      55.0}};
 
+   metrics_count (METRICS_NU2000K);
+
 /*
    Interval between fundamental epoch J2000.0 and given date.
 */
@@ -138,8 +138,8 @@ short int solarsystem_3 (double tjd, short int body, short int origin,
 
    static const double obl = 23.4392794444;
 
-   static double tlast = 0.0;
-   static double tmass, a[3][4], b[3][4], pbary[3], vbary[3];
+   static NOVAS_TLS double tlast = 0.0;
+   static NOVAS_TLS double tmass, a[3][4], b[3][4], pbary[3], vbary[3];
 
    double oblr, se, ce, si, ci, sn, cn, sw, cw, p1, p2, p3, q1, q2, q3,
       roote, qjd, ras, decs, diss, pos1[3], p[3][3], e, mlon, ma, u,
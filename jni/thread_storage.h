@@ -0,0 +1,70 @@
+/*
+  jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+
+  thread_storage.h: Thread local storage for NOVAS caches
+
+  NOVAS functions cache date dependent quantities (matrices, ephemeris
+  records, Earth position, ...) in function level static variables.
+  All such variables are declared NOVAS_TLS, so every Java thread calling
+  into the library works with its own copy of the caches and concurrent
+  calls do not corrupt each other. The exception is the state of the CIO
+  file in 'cio_array', which is shared by all threads under a mutex, so
+  threads don't each keep an open file and buffers that are never freed.
+*/
+
+#ifndef _THREAD_STORAGE_
+   #define _THREAD_STORAGE_
+
+   #if defined(_MSC_VER)
+      #define NOVAS_TLS __declspec(thread)
+   #else
+      #define NOVAS_TLS __thread
+   #endif
+
+/*
+   Lock free increment of a shared 'volatile long long int' counter,
+   64 bits wide on all platforms ('long' is 32 bits on Win64 and on 32-bit
+   Linux, and such counters wrap in minutes at high call rates).
+*/
+
+   #if defined(_MSC_VER)
+      #include <intrin.h>
+      #if defined(_M_IX86)
+         static __inline long long int novas_atomic_inc (volatile long long int *counter)
+         {
+            long long int value;
+
+            do
+               value = *counter;
+            while (_InterlockedCompareExchange64 (counter, value + 1, value) != value);
+            return value + 1;
+         }
+         #define NOVAS_ATOMIC_INC(counter) novas_atomic_inc (&(counter))
+      #else
+         #define NOVAS_ATOMIC_INC(counter) _InterlockedIncrement64 ((volatile __int64 *) &(counter))
+      #endif
+   #else
+      #define NOVAS_ATOMIC_INC(counter) __sync_fetch_and_add (&(counter), 1LL)
+   #endif
+
+/*
+   Statically initialized mutex for state shared by all threads, a
+   waiting thread sleeps instead of spinning, as critical sections may
+   include file I/O.
+*/
+
+   #if defined(_MSC_VER)
+      #include <windows.h>
+      #define NOVAS_MUTEX SRWLOCK
+      #define NOVAS_MUTEX_INITIALIZER SRWLOCK_INIT
+      #define NOVAS_LOCK(mutex) AcquireSRWLockExclusive (&(mutex))
+      #define NOVAS_UNLOCK(mutex) ReleaseSRWLockExclusive (&(mutex))
+   #else
+      #include <pthread.h>
+      #define NOVAS_MUTEX pthread_mutex_t
+      #define NOVAS_MUTEX_INITIALIZER PTHREAD_MUTEX_INITIALIZER
+      #define NOVAS_LOCK(mutex) pthread_mutex_lock (&(mutex))
+      #define NOVAS_UNLOCK(mutex) pthread_mutex_unlock (&(mutex))
+   #endif
+
+#endif
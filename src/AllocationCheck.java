@@ -0,0 +1,124 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ * 
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Underlying JNI code and documentation is based on
+ * 
+ *    Naval Observatory Vector Astrometry Software (NOVAS)
+ *    C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+import java.lang.management.ManagementFactory;
+
+import eu.cloudmakers.astronometry.NOVAS;
+import eu.cloudmakers.astronometry.NOVAS.CatalogEntry;
+import eu.cloudmakers.astronometry.NOVAS.CelestialObject;
+import eu.cloudmakers.astronometry.NOVAS.Observer;
+import eu.cloudmakers.astronometry.NOVAS.PositionOnSurface;
+import eu.cloudmakers.astronometry.NOVAS.SkyPosition;
+
+/**
+ * Check that the per-call NOVAS methods writing into caller-owned outputs
+ * don't allocate in steady state. Every call is warmed up, then the bytes
+ * allocated by the current thread over a loop of calls (with a different
+ * date in every call) are read from
+ * com.sun.management.ThreadMXBean.getThreadAllocatedBytes(). The check fails
+ * with exit status 1 if any method allocates a byte per call or more.
+ * <p>
+ * Usage: AllocationCheck [iterations]
+ *
+ * @author Cloudmakers, s. r. o. (<a href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class AllocationCheck {
+
+  static double TT = 2456000.5;
+  static double DELTA_T = 66.0;
+  static double STEP = 1.0 / 1440.0;
+  static int ACCURACY = 1;
+  static PositionOnSurface POSITION = new PositionOnSurface(48.15, 17.117, 153.0, 10.0, 1010.0);
+  static Observer OBSERVER = new Observer(POSITION);
+  static CatalogEntry POLARIS = new CatalogEntry("POLARIS", "HIP", 11767, 2.530301028, 89.264109444, 44.22, -11.75, 7.56, -17.4);
+  static CelestialObject MARS = new CelestialObject((short) 0, (short) 4, "Mars");
+
+  static abstract class Call {
+    final String name;
+
+    Call(String name) {
+      this.name = name;
+    }
+
+    abstract void call(int i);
+  }
+
+  static final SkyPosition SKY_POSITION = new SkyPosition(new double[3], 0, 0, 0, 0);
+  static final double OUTPUT[] = new double[4];
+
+  static Call CALLS[] = {
+    new Call("place") {
+      void call(int i) {
+        NOVAS.place(TT + i * STEP, MARS, OBSERVER, DELTA_T, 1, ACCURACY, SKY_POSITION);
+      }
+    },
+    new Call("topoStar") {
+      void call(int i) {
+        NOVAS.topoStar(TT + i * STEP, DELTA_T, POLARIS, POSITION, ACCURACY, OUTPUT, 0);
+      }
+    },
+    new Call("topoPlanet") {
+      void call(int i) {
+        NOVAS.topoPlanet(TT + i * STEP, MARS, DELTA_T, POSITION, ACCURACY, OUTPUT, 0);
+      }
+    },
+    new Call("equatorialToHorizontal") {
+      void call(int i) {
+        NOVAS.equatorialToHorizontal(TT + i * STEP, DELTA_T, ACCURACY, 0.0, 0.0, POSITION, 2.5, 89.26, 1, OUTPUT, 0);
+      }
+    }
+  };
+
+  public static void main(String[] args) {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    if (!threads.isThreadAllocatedMemorySupported()) {
+      System.out.println("Thread allocated memory is not supported by this VM");
+      System.exit(2);
+    }
+    threads.setThreadAllocatedMemoryEnabled(true);
+    long thread = Thread.currentThread().getId();
+    boolean failed = false;
+    for (Call call : CALLS) {
+      for (int i = 0; i < iterations; i++)
+        call.call(i);
+      long start = threads.getThreadAllocatedBytes(thread);
+      for (int i = 0; i < iterations; i++)
+        call.call(iterations + i);
+      long allocated = threads.getThreadAllocatedBytes(thread) - start;
+      /* any allocation per call is at least one object header, measurement itself may allocate a few bytes */
+      boolean ok = allocated < iterations;
+      failed |= !ok;
+      System.out.printf("%-24s %10d bytes in %d calls %8.3f bytes/call %s%n", call.name, allocated, iterations, (double) allocated / iterations, ok ? "OK" : "FAILED");
+    }
+    if (failed)
+      System.exit(1);
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Underlying JNI code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS)
+ *    C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+
+import eu.cloudmakers.astronometry.NOVAS.CatalogEntry;
+import eu.cloudmakers.astronometry.NOVAS.DoubleRef;
+import eu.cloudmakers.astronometry.NOVAS.PositionOnSurface;
+import eu.cloudmakers.astronometry.engine.AnalyticEphemeris;
+import eu.cloudmakers.astronometry.engine.NovasEngine;
+
+/**
+ * CheckOut pure Java engine, equivalent of novas3.1/checkout-stars.c. Output
+ * should match novas3.1/checkout-stars-usno.txt.
+ *
+ * @author Cloudmakers, s. r. o. (<a href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class CheckOutEngine {
+
+  static int ACCURACY = 1;
+  static double DELTA_T = 60.0;
+  static double TJD[] = { 2450203.5, 2450203.5, 2450417.5, 2450300.5 };
+  static CatalogEntry STARS[] = { new CatalogEntry("POLARIS", "HIP", 0, 2.530301028, 89.264109444, 44.22, -11.75, 7.56, -17.4), new CatalogEntry("Delta ORI", "HIP", 1, 5.533444639, -0.299091944, 1.67, 0.56, 3.56, 16.0), new CatalogEntry("Theta CAR", "HIP", 2, 10.715944806, -64.394450000, -18.87, 12.06, 7.43, 24.0) };
+  static PositionOnSurface GEO_LOC = new PositionOnSurface(45.0, -75.0, 0.0, 10.0, 1010.0);
+
+  public static void main(String[] args) {
+
+    short error;
+    DoubleRef ra = new DoubleRef();
+    DoubleRef dec = new DoubleRef();
+    NovasEngine engine = new NovasEngine(new AnalyticEphemeris());
+
+    for (int i = 0; i < TJD.length; i++) {
+      for (int j = 0; j < STARS.length; j++) {
+        if ((error = engine.topoStar(TJD[i], DELTA_T, STARS[j], GEO_LOC, ACCURACY, ra, dec)) != 0)
+          System.out.printf("Error %d from topo_star. Star %d  Time %d\n", error, j, i);
+        else {
+          System.out.printf("JD = %f  Star = %s\n", TJD[i], STARS[j].name);
+          System.out.printf("RA = %12.9f  Dec = %12.8f\n", ra.value, dec.value);
+          System.out.printf("\n");
+        }
+      }
+      System.out.printf("\n");
+    }
+  }
+}
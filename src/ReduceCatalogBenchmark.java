@@ -0,0 +1,94 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ * 
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Underlying JNI code and documentation is based on
+ * 
+ *    Naval Observatory Vector Astrometry Software (NOVAS)
+ *    C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import eu.cloudmakers.astronometry.NOVAS;
+import eu.cloudmakers.astronometry.NOVAS.Observer;
+import eu.cloudmakers.astronometry.NOVAS.PositionOnSurface;
+
+/**
+ * Scaling benchmark of NOVAS.reduceCatalog(). Reduces a random all-sky
+ * catalog with 1, 2, 4, ... threads up to the number of available processors
+ * (or the second argument) and prints throughput, speedup and parallel
+ * efficiency.
+ * <p>
+ * Usage: ReduceCatalogBenchmark [stars [maxThreads [accuracy]]]
+ *
+ * @author Cloudmakers, s. r. o. (<a href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class ReduceCatalogBenchmark {
+
+  static double TT = 2456000.5;
+  static double DELTA_T = 66.0;
+  static Observer OBSERVER = new Observer(new PositionOnSurface(48.15, 17.117, 153.0, 10.0, 1010.0));
+  static int REPEAT = 5;
+
+  public static void main(String[] args) throws InterruptedException {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+    int accuracy = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+
+    Random random = new Random(1);
+    double ra[] = new double[count], dec[] = new double[count], raProperMotion[] = new double[count], decProperMotion[] = new double[count], parallax[] = new double[count], radialVelocity[] = new double[count];
+    for (int i = 0; i < count; i++) {
+      ra[i] = 24.0 * random.nextDouble();
+      dec[i] = Math.toDegrees(Math.asin(2.0 * random.nextDouble() - 1.0));
+      raProperMotion[i] = 100.0 * random.nextGaussian();
+      decProperMotion[i] = 100.0 * random.nextGaussian();
+      parallax[i] = 20.0 * random.nextDouble();
+      radialVelocity[i] = 30.0 * random.nextGaussian();
+    }
+    double outRa[] = new double[count], outDec[] = new double[count];
+    short status[] = new short[count];
+
+    System.out.printf("%d stars, accuracy %d, %d processors%n", count, accuracy, Runtime.getRuntime().availableProcessors());
+    System.out.printf("%8s %12s %14s %8s %10s%n", "threads", "time [ms]", "stars/s", "speedup", "efficiency");
+    double single = 0;
+    for (int threads = 1; threads <= maxThreads; threads = threads < maxThreads && 2 * threads > maxThreads ? maxThreads : 2 * threads) {
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      long best = Long.MAX_VALUE;
+      for (int r = 0; r < REPEAT; r++) {
+        long start = System.nanoTime();
+        /* shift the date so that no worker reuses date-dependent values from previous run */
+        NOVAS.reduceCatalog(TT + r + threads * REPEAT, DELTA_T, OBSERVER, 1, accuracy, ra, dec, raProperMotion, decProperMotion, parallax, radialVelocity, outRa, outDec, status, executor);
+        best = Math.min(best, System.nanoTime() - start);
+      }
+      executor.shutdown();
+      double seconds = best / 1e9;
+      if (threads == 1)
+        single = seconds;
+      System.out.printf("%8d %12.1f %14.0f %8.2f %9.0f%%%n", threads, seconds * 1e3, count / seconds, single / seconds, 100.0 * single / seconds / threads);
+    }
+  }
+}
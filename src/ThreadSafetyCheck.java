@@ -0,0 +1,185 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ * 
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Underlying JNI code and documentation is based on
+ * 
+ *    Naval Observatory Vector Astrometry Software (NOVAS)
+ *    C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import eu.cloudmakers.astronometry.NOVAS;
+import eu.cloudmakers.astronometry.NOVAS.CatalogEntry;
+import eu.cloudmakers.astronometry.NOVAS.CelestialObject;
+import eu.cloudmakers.astronometry.NOVAS.Observer;
+import eu.cloudmakers.astronometry.NOVAS.PositionOnSurface;
+import eu.cloudmakers.astronometry.NOVAS.SkyPosition;
+
+/**
+ * Stress check of the per-thread native NOVAS caches. A list of random
+ * cases (place() of planets and stars in all coordinate systems,
+ * topoStar(), topoPlanet(), equatorialToHorizontal(), siderealTime() and
+ * terrestrialToCelestial() at random dates over five decades, with both
+ * accuracies) is computed on one thread first. Then all threads compute
+ * the whole list at once, each starting at a different case, so the
+ * threads keep switching dates, ephemeris records and accuracies against
+ * each other. Every status must be equal to the single-threaded one and,
+ * for calls without error, every value must be bit-for-bit equal to it (the
+ * values of failed calls, e.g. planets without JPL ephemeris, are not
+ * compared). The check fails with exit status 1 otherwise.
+ * <p>
+ * Usage: ThreadSafetyCheck [threads [cases [rounds]]]
+ *
+ * @author Cloudmakers, s. r. o. (<a href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class ThreadSafetyCheck {
+
+  /* random dates stay within the bundled DE421 ephemeris, 2000 to 2052 */
+  static double TT = 2461136.5;
+  static double SPAN = 9000.0;
+  static double DELTA_T = 66.0;
+  static PositionOnSurface POSITION = new PositionOnSurface(48.15, 17.117, 153.0, 10.0, 1010.0);
+  static Observer GEOCENTER = new Observer();
+  static Observer SURFACE = new Observer(POSITION);
+  static CatalogEntry POLARIS = new CatalogEntry("POLARIS", "HIP", 11767, 2.530301028, 89.264109444, 44.22, -11.75, 7.56, -17.4);
+  static CelestialObject OBJECTS[] = { new CelestialObject((short) 0, (short) 11, "Moon"), new CelestialObject((short) 0, (short) 10, "Sun"), new CelestialObject((short) 0, (short) 4, "Mars"), new CelestialObject((short) 0, (short) 5, "Jupiter"), new CelestialObject(POLARIS) };
+  static int KINDS = 6;
+  static int VALUES = 5;
+
+  final double dates[];
+  final int kinds[];
+  final int objects[];
+  final int options[];
+  final int accuracies[];
+
+  ThreadSafetyCheck(int count, long seed) {
+    Random random = new Random(seed);
+    dates = new double[count];
+    kinds = new int[count];
+    objects = new int[count];
+    options = new int[count];
+    accuracies = new int[count];
+    for (int i = 0; i < count; i++) {
+      /* groups of nearby dates reuse cached values, jumps switch ephemeris records */
+      dates[i] = i > 0 && random.nextInt(4) > 0 ? dates[i - 1] + random.nextDouble() : TT + SPAN * (2.0 * random.nextDouble() - 1.0);
+      kinds[i] = random.nextInt(KINDS);
+      objects[i] = random.nextInt(OBJECTS.length);
+      options[i] = random.nextInt(4);
+      accuracies[i] = random.nextInt(2);
+    }
+  }
+
+  /**
+   * Compute one case, write values and status to output[offset .. offset + VALUES - 1].
+   */
+
+  void compute(int i, SkyPosition place, double vector[], double output[], int offset) {
+    double date = dates[i];
+    int accuracy = accuracies[i];
+    short status = 0;
+    for (int j = 0; j < VALUES; j++)
+      output[offset + j] = 0.0;
+    switch (kinds[i]) {
+    case 0:
+      status = NOVAS.place(date, OBJECTS[objects[i]], (options[i] & 1) == 0 ? GEOCENTER : SURFACE, DELTA_T, options[i], accuracy, place);
+      output[offset] = place.ra;
+      output[offset + 1] = place.dec;
+      output[offset + 2] = place.distance;
+      output[offset + 3] = place.radialVelocity;
+      break;
+    case 1:
+      status = NOVAS.topoStar(date, DELTA_T, POLARIS, POSITION, accuracy, output, offset);
+      break;
+    case 2:
+      status = NOVAS.topoPlanet(date, OBJECTS[objects[i] % 4], DELTA_T, POSITION, accuracy, output, offset);
+      break;
+    case 3:
+      NOVAS.equatorialToHorizontal(date, DELTA_T, accuracy, 0.1, 0.2, POSITION, 24.0 * objects[i] / OBJECTS.length, 90.0 - 30.0 * options[i], options[i] % 3, output, offset);
+      break;
+    case 4:
+      status = NOVAS.siderealTime(date, DELTA_T, options[i] & 1, options[i] >> 1, accuracy, output, offset);
+      break;
+    case 5:
+      vector[0] = 1.0;
+      vector[1] = 0.5;
+      vector[2] = 0.25;
+      status = NOVAS.terrestrialToCelestial(date, 0.0, DELTA_T, options[i] >> 1, accuracy, options[i] & 1, 0.1, 0.2, vector, vector);
+      System.arraycopy(vector, 0, output, offset, 3);
+      break;
+    }
+    output[offset + VALUES - 1] = status;
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    int threads = args.length > 0 ? Integer.parseInt(args[0]) : 2 * Runtime.getRuntime().availableProcessors();
+    final int count = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+    final ThreadSafetyCheck check = new ThreadSafetyCheck(count, 1);
+    final double expected[] = new double[count * VALUES];
+    SkyPosition place = new SkyPosition(new double[3], 0, 0, 0, 0);
+    double vector[] = new double[3];
+    for (int i = 0; i < count; i++)
+      check.compute(i, place, vector, expected, i * VALUES);
+
+    System.out.printf("%d cases, %d threads, %d rounds%n", count, threads, rounds);
+    final AtomicInteger mismatches = new AtomicInteger();
+    for (int round = 0; round < rounds; round++) {
+      Thread workers[] = new Thread[threads];
+      for (int t = 0; t < threads; t++) {
+        final int start = (int) ((long) count * t / threads);
+        workers[t] = new Thread() {
+          public void run() {
+            SkyPosition place = new SkyPosition(new double[3], 0, 0, 0, 0);
+            double vector[] = new double[3], output[] = new double[VALUES];
+            for (int k = 0; k < count; k++) {
+              int i = (start + k) % count;
+              check.compute(i, place, vector, output, 0);
+              /* status is the last value, values of failed calls are not compared */
+              for (int j = output[VALUES - 1] == 0.0 ? 0 : VALUES - 1; j < VALUES; j++)
+                if (Double.doubleToLongBits(output[j]) != Double.doubleToLongBits(expected[i * VALUES + j])) {
+                  if (mismatches.getAndIncrement() < 10)
+                    System.out.printf("case %d (kind %d, date %.6f) value %d: %s instead of %s%n", i, check.kinds[i], check.dates[i], j, output[j], expected[i * VALUES + j]);
+                  break;
+                }
+            }
+          }
+        };
+      }
+      long time = System.nanoTime();
+      for (Thread worker : workers)
+        worker.start();
+      for (Thread worker : workers)
+        worker.join();
+      time = System.nanoTime() - time;
+      System.out.printf("round %d: %.1f ms, %d mismatches%n", round, time / 1e6, mismatches.get());
+    }
+    if (mismatches.get() > 0) {
+      System.out.println("FAILED");
+      System.exit(1);
+    }
+    System.out.println("OK");
+  }
+}
@@ -0,0 +1,953 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+package eu.cloudmakers.astronometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import eu.cloudmakers.astronometry.NOVAS.CelestialObject;
+import eu.cloudmakers.astronometry.NOVAS.Observer;
+import eu.cloudmakers.astronometry.NOVAS.PositionOnSurface;
+import eu.cloudmakers.astronometry.NOVAS.SkyPosition;
+
+/**
+ * Non-blocking facade for many concurrent callers.
+ * <p>
+ * Requests are put to a bounded queue and answered by {@link Future} results
+ * and optional {@link Callback}s, the caller never runs native code. A fixed
+ * set of worker threads takes requests from the queue in micro-batches of up
+ * to {@link #MAX_BATCH_SIZE} requests and runs requests sharing the same
+ * epoch (date, observer and options) one after another, so the date-dependent
+ * state NOVAS keeps per thread (Earth position, nutation, sidereal time) is
+ * computed once per batch. Horizontal coordinates of at least
+ * {@link #HORIZON_BATCH_MIN} requests for the same date and site are computed
+ * by one {@link HorizonProjector}. Every worker is a platform thread owning
+ * its NOVAS state, workers don't share any mutable state.
+ * <p>
+ * Submission, {@link Future#get()} and subscriptions use only
+ * java.util.concurrent queues, latches and atomics, no monitors, so they are
+ * safe to call from virtual threads without pinning their carriers. For the
+ * same reason, {@link Subscriber} and {@link Subscription} mirror the
+ * interfaces of java.util.concurrent.Flow (and Reactive Streams) and are easy
+ * to adapt to them. Callbacks and subscribers are called by worker threads
+ * and should not block.
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class AsyncNovas {
+
+  /**
+   * Default capacity of the request queue.
+   */
+
+  public static final int DEFAULT_QUEUE_CAPACITY = 65536;
+
+  /**
+   * Maximal number of requests taken by a worker at once.
+   */
+
+  public static final int MAX_BATCH_SIZE = 1024;
+
+  /**
+   * Minimal number of horizontal coordinate requests for the same date and
+   * site computed by a {@link HorizonProjector}.
+   */
+
+  public static final int HORIZON_BATCH_MIN = 16;
+
+  /**
+   * Maximal number of tracking positions computed by one native call.
+   */
+
+  public static final int TRACK_CHUNK_SIZE = 256;
+
+  /**
+   * Receiver of the result of a request.
+   */
+
+  public interface Callback<V> {
+
+    /**
+     * Called when the result is computed.
+     *
+     * @param result
+     *          result of the request
+     */
+
+    void completed(V result);
+
+    /**
+     * Called when the request failed.
+     *
+     * @param failure
+     *          cause of the failure, {@link NovasException} for errors
+     *          reported by NOVAS
+     */
+
+    void failed(Throwable failure);
+  }
+
+  /**
+   * Receiver of a tracking stream, mirror of Flow.Subscriber.
+   */
+
+  public interface Subscriber<T> {
+
+    /**
+     * Called once, before any other method.
+     *
+     * @param subscription
+     *          subscription used to request items or cancel the stream
+     */
+
+    void onSubscribe(Subscription subscription);
+
+    /**
+     * Called for each item, never more times than requested.
+     *
+     * @param item
+     *          next item
+     */
+
+    void onNext(T item);
+
+    /**
+     * Called when the stream failed, no other method is called after it.
+     *
+     * @param failure
+     *          cause of the failure
+     */
+
+    void onError(Throwable failure);
+
+    /**
+     * Called after the last item.
+     */
+
+    void onComplete();
+  }
+
+  /**
+   * Link between a stream and its subscriber, mirror of Flow.Subscription.
+   */
+
+  public interface Subscription {
+
+    /**
+     * Request more items.
+     *
+     * @param n
+     *          number of items, must be positive
+     */
+
+    void request(long n);
+
+    /**
+     * Stop the stream, items already computed may still be delivered.
+     */
+
+    void cancel();
+  }
+
+  /**
+   * Failure of a request reported by NOVAS with a non-zero error code.
+   */
+
+  public static class NovasException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Error code returned by the NOVAS function.
+     */
+
+    public final short code;
+
+    /**
+     * Create exception.
+     */
+
+    public NovasException(String function, short code) {
+      super("Error " + code + " from " + function);
+      this.code = code;
+    }
+  }
+
+  /**
+   * Snapshot of queue and batch metrics.
+   */
+
+  public static class Statistics {
+
+    /**
+     * Number of requests waiting in the queue.
+     */
+
+    public int queueDepth;
+
+    /**
+     * Number of worker threads.
+     */
+
+    public int workers;
+
+    /**
+     * Number of requests taken by workers.
+     */
+
+    public long requests;
+
+    /**
+     * Number of micro-batches taken by workers.
+     */
+
+    public long batches;
+
+    /**
+     * Size of the largest micro-batch.
+     */
+
+    public int maxBatchSize;
+
+    /**
+     * Get average size of micro-batches.
+     *
+     * @return average number of requests per batch
+     */
+
+    public double getAverageBatchSize() {
+      return batches == 0 ? 0.0 : (double) requests / batches;
+    }
+
+    /**
+     * Dump attributes.
+     */
+
+    public String toString() {
+      return new Formatter().format("Statistics { %d, %d, %d, %d, %d, %.1f }", queueDepth, workers, requests, batches, maxBatchSize, getAverageBatchSize()).toString();
+    }
+  }
+
+  /**
+   * Key of requests sharing the date-dependent state.
+   */
+
+  private static class Epoch {
+    private final int kind;
+    private final double values[];
+
+    Epoch(int kind, double... values) {
+      this.kind = kind;
+      this.values = values;
+    }
+
+    public boolean equals(Object object) {
+      return object instanceof Epoch && ((Epoch) object).kind == kind && Arrays.equals(((Epoch) object).values, values);
+    }
+
+    public int hashCode() {
+      return 31 * kind + Arrays.hashCode(values);
+    }
+  }
+
+  /**
+   * Unit of work taken from the queue.
+   */
+
+  private abstract static class Task {
+
+    /**
+     * Key grouping tasks of a micro-batch, null for tasks never grouped.
+     */
+
+    abstract Epoch epoch();
+
+    /**
+     * Run group of tasks with the same epoch, this task is the first one.
+     */
+
+    void run(List<Task> group, Worker worker) {
+      for (Task task : group)
+        task.run(worker);
+    }
+
+    abstract void run(Worker worker);
+  }
+
+  /**
+   * Task with a result.
+   */
+
+  private abstract static class Request<V> extends Task implements Future<V> {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final AtomicBoolean completed = new AtomicBoolean();
+    private final Callback<? super V> callback;
+    private volatile V result;
+    private volatile Throwable failure;
+    private volatile boolean cancelled;
+
+    Request(Callback<? super V> callback) {
+      this.callback = callback;
+    }
+
+    void run(Worker worker) {
+      if (completed.get())
+        return;
+      try {
+        compute(worker);
+      } catch (Throwable throwable) {
+        fail(throwable);
+      }
+    }
+
+    abstract void compute(Worker worker);
+
+    void complete(V value) {
+      if (completed.compareAndSet(false, true)) {
+        result = value;
+        done.countDown();
+        if (callback != null)
+          callback.completed(value);
+      }
+    }
+
+    void fail(Throwable throwable) {
+      if (completed.compareAndSet(false, true)) {
+        failure = throwable;
+        done.countDown();
+        if (callback != null)
+          callback.failed(throwable);
+      }
+    }
+
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      if (!completed.compareAndSet(false, true))
+        return false;
+      cancelled = true;
+      done.countDown();
+      if (callback != null)
+        callback.failed(new CancellationException());
+      return true;
+    }
+
+    public boolean isCancelled() {
+      return cancelled;
+    }
+
+    public boolean isDone() {
+      return done.getCount() == 0;
+    }
+
+    public V get() throws InterruptedException, ExecutionException {
+      done.await();
+      return value();
+    }
+
+    public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      if (!done.await(timeout, unit))
+        throw new TimeoutException();
+      return value();
+    }
+
+    private V value() throws ExecutionException {
+      if (cancelled)
+        throw new CancellationException();
+      if (failure != null)
+        throw new ExecutionException(failure);
+      return result;
+    }
+  }
+
+  private static class PlaceRequest extends Request<SkyPosition> {
+    private final double ttDate, deltaT;
+    private final CelestialObject object;
+    private final Observer location;
+    private final int coordinateSystem, accuracy;
+
+    PlaceRequest(double ttDate, CelestialObject object, Observer location, double deltaT, int coordinateSystem, int accuracy, Callback<? super SkyPosition> callback) {
+      super(callback);
+      this.ttDate = ttDate;
+      this.object = object;
+      this.location = location;
+      this.deltaT = deltaT;
+      this.coordinateSystem = coordinateSystem;
+      this.accuracy = accuracy;
+    }
+
+    Epoch epoch() {
+      double key[] = observerKey(location, 4);
+      key[0] = ttDate;
+      key[1] = deltaT;
+      key[2] = coordinateSystem;
+      key[3] = accuracy;
+      return new Epoch(0, key);
+    }
+
+    void compute(Worker worker) {
+      SkyPosition output = new SkyPosition();
+      short error = NOVAS.place(ttDate, object, location, deltaT, coordinateSystem, accuracy, output);
+      if (error != 0)
+        fail(new NovasException("place", error));
+      else
+        complete(output);
+    }
+  }
+
+  private static class TopoPlanetRequest extends Request<SkyPosition> {
+    private final double ttDate, deltaT;
+    private final CelestialObject body;
+    private final PositionOnSurface position;
+    private final int accuracy;
+
+    TopoPlanetRequest(double ttDate, CelestialObject body, double deltaT, PositionOnSurface position, int accuracy, Callback<? super SkyPosition> callback) {
+      super(callback);
+      this.ttDate = ttDate;
+      this.body = body;
+      this.deltaT = deltaT;
+      this.position = position;
+      this.accuracy = accuracy;
+    }
+
+    Epoch epoch() {
+      return new Epoch(1, ttDate, deltaT, accuracy, position.latitude, position.longitude, position.height, position.temperature, position.pressure);
+    }
+
+    void compute(Worker worker) {
+      double output[] = worker.output;
+      short error = NOVAS.topoPlanet(ttDate, body, deltaT, position, accuracy, output, 0);
+      if (error != 0)
+        fail(new NovasException("topo_planet", error));
+      else
+        complete(skyPosition(output[0], output[1], output[2], 0.0));
+    }
+  }
+
+  private static class HorizontalRequest extends Request<double[]> {
+    private final double ut1Date, deltaT, xp, yp, ra, dec;
+    private final int accuracy, refOption;
+    private final PositionOnSurface position;
+
+    HorizontalRequest(double ut1Date, double deltaT, int accuracy, double xp, double yp, PositionOnSurface position, double ra, double dec, int refOption, Callback<? super double[]> callback) {
+      super(callback);
+      this.ut1Date = ut1Date;
+      this.deltaT = deltaT;
+      this.accuracy = accuracy;
+      this.xp = xp;
+      this.yp = yp;
+      this.position = position;
+      this.ra = ra;
+      this.dec = dec;
+      this.refOption = refOption;
+    }
+
+    Epoch epoch() {
+      return new Epoch(2, ut1Date, deltaT, accuracy, xp, yp, refOption, position.latitude, position.longitude, position.height, position.temperature, position.pressure);
+    }
+
+    void run(List<Task> group, Worker worker) {
+      if (group.size() < HORIZON_BATCH_MIN) {
+        super.run(group, worker);
+        return;
+      }
+      HorizonProjector projector;
+      try {
+        projector = new HorizonProjector(ut1Date, deltaT, accuracy, xp, yp, position, refOption);
+      } catch (RuntimeException exception) {
+        for (Task task : group)
+          ((HorizontalRequest) task).fail(exception);
+        return;
+      }
+      for (Task task : group) {
+        HorizontalRequest request = (HorizontalRequest) task;
+        if (!request.isDone()) {
+          double output[] = new double[4];
+          projector.project(request.ra, request.dec, output, 0);
+          request.complete(output);
+        }
+      }
+    }
+
+    void compute(Worker worker) {
+      double output[] = new double[4];
+      NOVAS.equatorialToHorizontal(ut1Date, deltaT, accuracy, xp, yp, position, ra, dec, refOption, output, 0);
+      complete(output);
+    }
+  }
+
+  /**
+   * Tracking stream, scheduled as a task whenever there is unsatisfied
+   * demand, at most one chunk is computed at a time.
+   */
+
+  private class Tracking extends Task implements Subscription {
+    private final CelestialObject object;
+    private final Observer location;
+    private final double deltaT, ttStart, step;
+    private final int coordinateSystem, accuracy, count;
+    private final Subscriber<? super SkyPosition> subscriber;
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean cancelled;
+    private int next;
+
+    Tracking(CelestialObject object, Observer location, double deltaT, int coordinateSystem, int accuracy, double ttStart, double step, int count, Subscriber<? super SkyPosition> subscriber) {
+      this.object = object;
+      this.location = location;
+      this.deltaT = deltaT;
+      this.coordinateSystem = coordinateSystem;
+      this.accuracy = accuracy;
+      this.ttStart = ttStart;
+      this.step = step;
+      this.count = count;
+      this.subscriber = subscriber;
+    }
+
+    Epoch epoch() {
+      return null;
+    }
+
+    public void request(long n) {
+      if (cancelled)
+        return;
+      if (n <= 0) {
+        cancelled = true;
+        subscriber.onError(new IllegalArgumentException("Non-positive request " + n));
+        return;
+      }
+      long current, updated;
+      do {
+        current = demand.get();
+        updated = current + n < 0 ? Long.MAX_VALUE : current + n;
+      } while (!demand.compareAndSet(current, updated));
+      schedule();
+    }
+
+    public void cancel() {
+      cancelled = true;
+    }
+
+    private void schedule() {
+      if (!cancelled && demand.get() > 0 && scheduled.compareAndSet(false, true)) {
+        if (shutdown || !queue.offer(this)) {
+          scheduled.set(false);
+          reject();
+        }
+      }
+    }
+
+    private void reject() {
+      cancelled = true;
+      subscriber.onError(new RejectedExecutionException(shutdown ? "Facade is shut down" : "Queue is full"));
+    }
+
+    void run(Worker worker) {
+      while (true) {
+        while (!cancelled && !shutdown && next < count && demand.get() > 0) {
+          int chunk = (int) Math.min(Math.min(demand.get(), TRACK_CHUNK_SIZE), count - next);
+          short error = NOVAS.placeSeries(ttStart + next * step, step, chunk, object, location, deltaT, coordinateSystem, accuracy, worker.ra, worker.dec, worker.distance, worker.radialVelocity);
+          if (error != 0) {
+            cancelled = true;
+            subscriber.onError(new NovasException("place", error));
+            return;
+          }
+          for (int i = 0; i < chunk && !cancelled; i++)
+            subscriber.onNext(skyPosition(worker.ra[i], worker.dec[i], worker.distance[i], worker.radialVelocity[i]));
+          next += chunk;
+          demand.addAndGet(-chunk);
+          // let other requests in the queue run between chunks
+          if (queue.size() > 0)
+            break;
+        }
+        if (!cancelled && next >= count) {
+          cancelled = true;
+          subscriber.onComplete();
+          return;
+        }
+        if (shutdown) {
+          if (!cancelled)
+            reject();
+          return;
+        }
+        scheduled.set(false);
+        if (cancelled || demand.get() <= 0 || !scheduled.compareAndSet(false, true))
+          return;
+        if (queue.offer(this))
+          return;
+        // the queue is full, continue in this worker
+      }
+    }
+  }
+
+  /**
+   * Worker thread with its own NOVAS state and scratch arrays.
+   */
+
+  private class Worker extends Thread {
+    final double output[] = new double[4];
+    final double ra[] = new double[TRACK_CHUNK_SIZE];
+    final double dec[] = new double[TRACK_CHUNK_SIZE];
+    final double distance[] = new double[TRACK_CHUNK_SIZE];
+    final double radialVelocity[] = new double[TRACK_CHUNK_SIZE];
+    private final List<Task> batch = new ArrayList<Task>();
+
+    Worker(int index) {
+      super("NOVAS async worker " + index);
+      setDaemon(true);
+    }
+
+    public void run() {
+      while (true) {
+        Task first;
+        if (shutdown) {
+          // finish the queued requests and stop
+          first = queue.poll();
+          if (first == null)
+            return;
+        } else {
+          try {
+            first = queue.take();
+          } catch (InterruptedException exception) {
+            continue;
+          }
+        }
+        batch.clear();
+        batch.add(first);
+        queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+        int size = batch.size();
+        requests.addAndGet(size);
+        batches.incrementAndGet();
+        int max;
+        while ((max = maxBatchSize.get()) < size && !maxBatchSize.compareAndSet(max, size))
+          ;
+        LinkedHashMap<Object, List<Task>> groups = new LinkedHashMap<Object, List<Task>>();
+        for (Task task : batch) {
+          Object key = task.epoch();
+          if (key == null)
+            key = task;
+          List<Task> group = groups.get(key);
+          if (group == null)
+            groups.put(key, group = new ArrayList<Task>());
+          group.add(task);
+        }
+        for (List<Task> group : groups.values()) {
+          try {
+            group.get(0).run(group, this);
+          } catch (Throwable throwable) {
+            for (Task task : group)
+              if (task instanceof Request<?>)
+                ((Request<?>) task).fail(throwable);
+              else if (task instanceof Tracking)
+                ((Tracking) task).cancelled = true;
+          }
+        }
+        batch.clear();
+      }
+    }
+  }
+
+  private final BlockingQueue<Task> queue;
+  private final Worker workers[];
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicInteger maxBatchSize = new AtomicInteger();
+  private volatile boolean shutdown;
+
+  /**
+   * Create facade with one worker for each available processor and queue of
+   * {@link #DEFAULT_QUEUE_CAPACITY} requests.
+   */
+
+  public AsyncNovas() {
+    this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY);
+  }
+
+  /**
+   * Create facade.
+   *
+   * @param workers
+   *          number of worker threads
+   * @param queueCapacity
+   *          maximal number of waiting requests, further requests are
+   *          rejected
+   * @throws IllegalArgumentException
+   *           if a parameter isn't positive
+   */
+
+  public AsyncNovas(int workers, int queueCapacity) {
+    if (workers <= 0 || queueCapacity <= 0)
+      throw new IllegalArgumentException("Number of workers and queue capacity must be positive");
+    queue = new LinkedBlockingQueue<Task>(queueCapacity);
+    this.workers = new Worker[workers];
+    for (int i = 0; i < workers; i++) {
+      this.workers[i] = new Worker(i + 1);
+      this.workers[i].start();
+    }
+  }
+
+  private <V> Future<V> submit(Request<V> request) {
+    if (shutdown || !queue.offer(request))
+      throw new RejectedExecutionException(shutdown ? "Facade is shut down" : "Queue is full");
+    if (shutdown && queue.remove(request))
+      throw new RejectedExecutionException("Facade is shut down");
+    return request;
+  }
+
+  /**
+   * Compute the apparent direction of a star or solar system body
+   * asynchronously, see
+   * {@link NOVAS#place(double, CelestialObject, Observer, double, int, int, SkyPosition)}.
+   * Objects passed to the method must not be modified until the request is
+   * done.
+   *
+   * @param callback
+   *          receiver of the result or null
+   * @return future result, failed by {@link NovasException} if place()
+   *         returns an error
+   * @throws RejectedExecutionException
+   *           if the queue is full or the facade is shut down
+   */
+
+  public Future<SkyPosition> place(double ttDate, CelestialObject object, Observer location, double deltaT, int coordinateSystem, int accuracy, Callback<? super SkyPosition> callback) {
+    if (object == null)
+      throw new NullPointerException("object");
+    if (location == null)
+      throw new NullPointerException("location");
+    return submit(new PlaceRequest(ttDate, object, location, deltaT, coordinateSystem, accuracy, callback));
+  }
+
+  /**
+   * Variant of
+   * {@link #place(double, CelestialObject, Observer, double, int, int, Callback)}
+   * without callback.
+   */
+
+  public Future<SkyPosition> place(double ttDate, CelestialObject object, Observer location, double deltaT, int coordinateSystem, int accuracy) {
+    return place(ttDate, object, location, deltaT, coordinateSystem, accuracy, null);
+  }
+
+  /**
+   * Compute the topocentric place of a solar system body asynchronously, see
+   * {@link NOVAS#topoPlanet(double, CelestialObject, double, PositionOnSurface, int, NOVAS.DoubleRef, NOVAS.DoubleRef, NOVAS.DoubleRef)}.
+   * The result holds right ascension, declination, distance and unit vector
+   * toward the body, radial velocity is zero.
+   *
+   * @param callback
+   *          receiver of the result or null
+   * @return future result, failed by {@link NovasException} if topo_planet()
+   *         returns an error
+   * @throws RejectedExecutionException
+   *           if the queue is full or the facade is shut down
+   */
+
+  public Future<SkyPosition> topoPlanet(double ttDate, CelestialObject body, double deltaT, PositionOnSurface position, int accuracy, Callback<? super SkyPosition> callback) {
+    if (body == null)
+      throw new NullPointerException("body");
+    if (position == null)
+      throw new NullPointerException("position");
+    return submit(new TopoPlanetRequest(ttDate, body, deltaT, position, accuracy, callback));
+  }
+
+  /**
+   * Variant of
+   * {@link #topoPlanet(double, CelestialObject, double, PositionOnSurface, int, Callback)}
+   * without callback.
+   */
+
+  public Future<SkyPosition> topoPlanet(double ttDate, CelestialObject body, double deltaT, PositionOnSurface position, int accuracy) {
+    return topoPlanet(ttDate, body, deltaT, position, accuracy, null);
+  }
+
+  /**
+   * Convert equatorial coordinates to horizontal coordinates asynchronously,
+   * see
+   * {@link NOVAS#equatorialToHorizontal(double, double, int, double, double, PositionOnSurface, double, double, int, double[], int)}.
+   * Requests for the same date and site taken in one micro-batch are
+   * computed by a {@link HorizonProjector}.
+   *
+   * @param callback
+   *          receiver of the result or null
+   * @return future array of zenith distance, azimuth, right ascension and
+   *         declination affected by refraction
+   * @throws RejectedExecutionException
+   *           if the queue is full or the facade is shut down
+   */
+
+  public Future<double[]> equatorialToHorizontal(double ut1Date, double deltaT, int accuracy, double xp, double yp, PositionOnSurface position, double ra, double dec, int refOption, Callback<? super double[]> callback) {
+    if (position == null)
+      throw new NullPointerException("position");
+    return submit(new HorizontalRequest(ut1Date, deltaT, accuracy, xp, yp, position, ra, dec, refOption, callback));
+  }
+
+  /**
+   * Variant of
+   * {@link #equatorialToHorizontal(double, double, int, double, double, PositionOnSurface, double, double, int, Callback)}
+   * without callback.
+   */
+
+  public Future<double[]> equatorialToHorizontal(double ut1Date, double deltaT, int accuracy, double xp, double yp, PositionOnSurface position, double ra, double dec, int refOption) {
+    return equatorialToHorizontal(ut1Date, deltaT, accuracy, xp, yp, position, ra, dec, refOption, null);
+  }
+
+  /**
+   * Stream places of an object for times <code>ttStart + i * step</code>,
+   * <code>i = 0 .. count - 1</code>, computed by
+   * {@link NOVAS#placeSeries(double, double, int, CelestialObject, Observer, double, int, int, double[], double[], double[], double[])}
+   * in chunks of at most {@link #TRACK_CHUNK_SIZE} requested positions. The
+   * subscriber gets {@link Subscriber#onSubscribe(Subscription)} before the
+   * method returns, positions are computed only after they are requested.
+   *
+   * @param subscriber
+   *          receiver of the stream
+   */
+
+  public void track(CelestialObject object, Observer location, double deltaT, int coordinateSystem, int accuracy, double ttStart, double step, int count, Subscriber<? super SkyPosition> subscriber) {
+    if (object == null)
+      throw new NullPointerException("object");
+    if (location == null)
+      throw new NullPointerException("location");
+    Tracking tracking = new Tracking(object, location, deltaT, coordinateSystem, accuracy, ttStart, step, count, subscriber);
+    subscriber.onSubscribe(tracking);
+    if (count <= 0 && !tracking.cancelled) {
+      tracking.cancelled = true;
+      subscriber.onComplete();
+    }
+  }
+
+  /**
+   * Get queue and batch metrics.
+   *
+   * @return new snapshot
+   */
+
+  public Statistics getStatistics() {
+    Statistics statistics = new Statistics();
+    statistics.queueDepth = queue.size();
+    statistics.workers = workers.length;
+    statistics.requests = requests.get();
+    statistics.batches = batches.get();
+    statistics.maxBatchSize = maxBatchSize.get();
+    return statistics;
+  }
+
+  /**
+   * Get number of requests waiting in the queue.
+   *
+   * @return queue depth
+   */
+
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  /**
+   * Reject new requests and stop workers after the queued requests are
+   * done. Tracking streams needing more positions fail with
+   * RejectedExecutionException.
+   */
+
+  public void shutdown() {
+    shutdown = true;
+    for (Worker worker : workers)
+      worker.interrupt();
+  }
+
+  /**
+   * Wait until all workers stop after {@link #shutdown()}.
+   *
+   * @param timeout
+   *          maximal time to wait
+   * @param unit
+   *          unit of timeout
+   * @return true if all workers stopped
+   * @throws InterruptedException
+   *           if the calling thread is interrupted while waiting
+   */
+
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    for (Worker worker : workers) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining > 0)
+        worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+      if (worker.isAlive())
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Key values of an observer appended after <code>offset</code> leading
+   * elements.
+   */
+
+  private static double[] observerKey(Observer location, int offset) {
+    double key[];
+    if (location.where == 1 && location.onSurface != null) {
+      PositionOnSurface position = location.onSurface;
+      key = new double[offset + 6];
+      key[offset + 1] = position.latitude;
+      key[offset + 2] = position.longitude;
+      key[offset + 3] = position.height;
+      key[offset + 4] = position.temperature;
+      key[offset + 5] = position.pressure;
+    } else if (location.where == 2 && location.nearEarth != null) {
+      key = new double[offset + 7];
+      System.arraycopy(location.nearEarth.position, 0, key, offset + 1, 3);
+      System.arraycopy(location.nearEarth.velocity, 0, key, offset + 4, 3);
+    } else {
+      key = new double[offset + 1];
+    }
+    key[offset] = location.where;
+    return key;
+  }
+
+  private static SkyPosition skyPosition(double ra, double dec, double distance, double radialVelocity) {
+    double alpha = ra * 15.0 * Math.PI / 180.0;
+    double delta = dec * Math.PI / 180.0;
+    double rHat[] = { Math.cos(delta) * Math.cos(alpha), Math.cos(delta) * Math.sin(alpha), Math.sin(delta) };
+    return new SkyPosition(rHat, ra, dec, distance, radialVelocity);
+  }
+}
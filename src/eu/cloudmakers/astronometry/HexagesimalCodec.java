@@ -0,0 +1,541 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+package eu.cloudmakers.astronometry;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.FormattableFlags;
+
+/**
+ * Allocation free parser and formatter for hexagesimal notation, companion of
+ * {@link Hexagesimal} for bulk catalog ingest and report generation.
+ * <p>
+ * Values are formatted as <code>DD MM SS.SS</code>, or with ALTERNATE flag as
+ * <code>DD&deg; MM' SS.SS"</code> (or <code>DDh MMm SS.SSs</code> with
+ * UPPERCASE flag as well) into <code>char[]</code>, <code>byte[]</code>,
+ * {@link StringBuilder} or {@link ByteBuffer}. Seconds are rounded to the
+ * precision with carry into minutes and degrees, so 59.999 s never prints
+ * as 60.00 s. Bytes are written in UTF-8.
+ * <p>
+ * Fields are parsed from {@link CharSequence}, <code>byte[]</code> or
+ * {@link ByteBuffer} ranges. Any of <code> :;&deg;'"hmsd</code> separate the
+ * fields and a leading sign applies to the whole value, so
+ * <code>-10 30 00</code> is -10.5 (unlike {@link Hexagesimal#valueOf(String)}
+ * which returns -9.5).
+ * <p>
+ * Instances keep parser state and a formatting buffer, use one instance per
+ * thread.
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class HexagesimalCodec {
+
+  private static final long SCALE[] = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L };
+
+  private static final double POW10[] = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18 };
+
+  private static final long MAX_MANTISSA = 100000000000000000L;
+
+  private final int width;
+  private final int precision;
+  private final long scale;
+  private final String degreeSeparator;
+  private final String minuteSeparator;
+  private final String secondSuffix;
+  private final char buffer[];
+
+  private boolean negative;
+  private boolean signed;
+  private boolean inField;
+  private boolean inFraction;
+  private long mantissa;
+  private int fractionDigits;
+  private double sum;
+  private double divisor;
+
+  /**
+   * Create codec for <code>DD MM SS.SS</code> format, equivalent to
+   * {@link Hexagesimal#toString(double)}.
+   */
+
+  public HexagesimalCodec() {
+    this(0, 13, 2);
+  }
+
+  /**
+   * Create codec for given format.
+   *
+   * @param flags
+   *          flags corresponding to FormattableFlags.
+   *
+   *          <blockquote>Use ALTERNATE flag for HMS or DMS separators instead
+   *          of spaces<br>
+   *          Use UPPERCASE flag for HMS separators instead of DMS
+   *          separators</blockquote>
+   * @param width
+   *          the minimum number of characters to be written to the output,
+   *          shorter output is padded by ' ' at the beginning.
+   * @param precision
+   *          the precision of seconds field, 0 to 9.
+   */
+
+  public HexagesimalCodec(int flags, int width, int precision) {
+    if (width < 0 || width > 1024)
+      throw new IllegalArgumentException("Invalid width " + width);
+    if (precision < 0 || precision >= SCALE.length)
+      throw new IllegalArgumentException("Invalid precision " + precision);
+    this.width = width;
+    this.precision = precision;
+    scale = SCALE[precision];
+    if ((flags & FormattableFlags.ALTERNATE) == 0) {
+      degreeSeparator = " ";
+      minuteSeparator = " ";
+      secondSuffix = "";
+    } else if ((flags & FormattableFlags.UPPERCASE) == 0) {
+      degreeSeparator = "\u00B0 ";
+      minuteSeparator = "' ";
+      secondSuffix = "\"";
+    } else {
+      degreeSeparator = "h ";
+      minuteSeparator = "m ";
+      secondSuffix = "s";
+    }
+    buffer = new char[Math.max(width, 64)];
+  }
+
+  /**
+   * Format value into character array.
+   *
+   * @param value
+   *          the value to be formatted.
+   * @param output
+   *          the output array.
+   * @param offset
+   *          the offset of first character in output.
+   * @return the offset after last character written.
+   * @throws ArrayIndexOutOfBoundsException
+   *           if the output is too short.
+   * @throws IllegalArgumentException
+   *           if the value is NaN or infinite.
+   */
+
+  public int format(double value, char output[], int offset) {
+    if (Double.isNaN(value) || Double.isInfinite(value))
+      throw new IllegalArgumentException("Can't format " + value);
+    long units = Math.round(Math.abs(value) * 3600 * scale);
+    long fraction = units % scale;
+    long seconds = units / scale;
+    long degrees = seconds / 3600;
+    int minutes = (int) (seconds / 60 % 60);
+    seconds %= 60;
+    boolean sign = value < 0 && units != 0;
+    int degreeDigits = 1;
+    for (long d = degrees; d >= 10; d /= 10)
+      degreeDigits++;
+    int length = (sign ? 1 : 0) + degreeDigits + degreeSeparator.length() + 2 + minuteSeparator.length() + 2 + (precision > 0 ? precision + 1 : 0) + secondSuffix.length();
+    if (offset + Math.max(length, width) > output.length)
+      throw new ArrayIndexOutOfBoundsException(offset + Math.max(length, width));
+    for (int i = length; i < width; i++)
+      output[offset++] = ' ';
+    if (sign)
+      output[offset++] = '-';
+    offset += degreeDigits;
+    for (int i = 1; i <= degreeDigits; i++) {
+      output[offset - i] = (char) ('0' + degrees % 10);
+      degrees /= 10;
+    }
+    offset = append(degreeSeparator, output, offset);
+    output[offset++] = (char) ('0' + minutes / 10);
+    output[offset++] = (char) ('0' + minutes % 10);
+    offset = append(minuteSeparator, output, offset);
+    output[offset++] = (char) ('0' + seconds / 10);
+    output[offset++] = (char) ('0' + seconds % 10);
+    if (precision > 0) {
+      output[offset++] = '.';
+      offset += precision;
+      for (int i = 1; i <= precision; i++) {
+        output[offset - i] = (char) ('0' + fraction % 10);
+        fraction /= 10;
+      }
+    }
+    return append(secondSuffix, output, offset);
+  }
+
+  /**
+   * Append formatted value to string builder.
+   *
+   * @param value
+   *          the value to be formatted.
+   * @param output
+   *          the output string builder.
+   * @return the output string builder.
+   */
+
+  public StringBuilder format(double value, StringBuilder output) {
+    return output.append(buffer, 0, format(value, buffer, 0));
+  }
+
+  /**
+   * Format value into byte array as UTF-8.
+   *
+   * @param value
+   *          the value to be formatted.
+   * @param output
+   *          the output array.
+   * @param offset
+   *          the offset of first byte in output.
+   * @return the offset after last byte written.
+   * @throws ArrayIndexOutOfBoundsException
+   *           if the output is too short.
+   */
+
+  public int format(double value, byte output[], int offset) {
+    int length = format(value, buffer, 0);
+    if (offset + encodedLength(length) > output.length)
+      throw new ArrayIndexOutOfBoundsException(offset + encodedLength(length));
+    for (int i = 0; i < length; i++) {
+      char c = buffer[i];
+      if (c < 0x80)
+        output[offset++] = (byte) c;
+      else {
+        output[offset++] = (byte) (0xC0 | c >> 6);
+        output[offset++] = (byte) (0x80 | c & 0x3F);
+      }
+    }
+    return offset;
+  }
+
+  /**
+   * Format value into byte buffer as UTF-8 at its position.
+   *
+   * @param value
+   *          the value to be formatted.
+   * @param output
+   *          the output buffer.
+   * @throws BufferOverflowException
+   *           if there is not enough space in the buffer, nothing is written
+   *           in that case.
+   */
+
+  public void format(double value, ByteBuffer output) {
+    int length = format(value, buffer, 0);
+    if (encodedLength(length) > output.remaining())
+      throw new BufferOverflowException();
+    put(output, length);
+  }
+
+  /**
+   * Format values as lines of text into byte buffer as UTF-8 at its
+   * position. Only complete lines are written, NaN is written as empty line.
+   *
+   * @param values
+   *          the values to be formatted.
+   * @param offset
+   *          the index of first value.
+   * @param count
+   *          the number of values.
+   * @param output
+   *          the output buffer.
+   * @return the number of values written, less than count if the buffer is
+   *         full.
+   */
+
+  public int formatColumn(double values[], int offset, int count, ByteBuffer output) {
+    for (int i = 0; i < count; i++) {
+      int length = Double.isNaN(values[offset + i]) ? 0 : format(values[offset + i], buffer, 0);
+      if (encodedLength(length) + 1 > output.remaining())
+        return i;
+      put(output, length);
+      output.put((byte) '\n');
+    }
+    return count;
+  }
+
+  /**
+   * Parse hexagesimal value from character sequence.
+   *
+   * @param text
+   *          the text to be parsed.
+   * @param start
+   *          the index of first character.
+   * @param end
+   *          the index after last character.
+   * @return the parsed value.
+   * @throws NumberFormatException
+   *           if the text doesn't contain a hexagesimal value.
+   */
+
+  public double parse(CharSequence text, int start, int end) {
+    reset();
+    for (int i = start; i < end; i++)
+      if (!accept(text.charAt(i)))
+        throw invalid(text.subSequence(start, end));
+    return result(text, start, end);
+  }
+
+  /**
+   * Parse hexagesimal value from string.
+   *
+   * @param text
+   *          the text to be parsed.
+   * @return the parsed value.
+   * @throws NumberFormatException
+   *           if the text doesn't contain a hexagesimal value.
+   */
+
+  public double parse(CharSequence text) {
+    return parse(text, 0, text.length());
+  }
+
+  /**
+   * Parse hexagesimal value from UTF-8 or ISO-8859-1 encoded byte array.
+   *
+   * @param text
+   *          the text to be parsed.
+   * @param start
+   *          the index of first byte.
+   * @param end
+   *          the index after last byte.
+   * @return the parsed value.
+   * @throws NumberFormatException
+   *           if the text doesn't contain a hexagesimal value.
+   */
+
+  public double parse(byte text[], int start, int end) {
+    reset();
+    for (int i = start; i < end; i++)
+      if (!accept(text[i] & 0xFF))
+        throw invalid(new String(text, start, end - start));
+    return result(null, 0, 0);
+  }
+
+  /**
+   * Parse hexagesimal value from UTF-8 or ISO-8859-1 encoded byte buffer
+   * range, buffer position is not changed.
+   *
+   * @param text
+   *          the text to be parsed.
+   * @param start
+   *          the index of first byte.
+   * @param end
+   *          the index after last byte.
+   * @return the parsed value.
+   * @throws NumberFormatException
+   *           if the text doesn't contain a hexagesimal value.
+   */
+
+  public double parse(ByteBuffer text, int start, int end) {
+    reset();
+    for (int i = start; i < end; i++)
+      if (!accept(text.get(i) & 0xFF))
+        throw invalid(text, start, end);
+    return result(null, 0, 0);
+  }
+
+  /**
+   * Parse one field of each line of text from byte buffer, starting at its
+   * position. Lines end with '\n' (trailing '\r' is ignored) or with the end
+   * of the buffer, the position is moved after the last line parsed. Empty or
+   * missing field is parsed as NaN.
+   * <p>
+   * Use with {@link java.nio.channels.FileChannel#map} to parse a column of
+   * whole file, e.g. RA (field 3) or Dec (field 4) of Hipparcos hip_main.dat
+   * separated by '|'.
+   *
+   * @param text
+   *          the text to be parsed.
+   * @param separator
+   *          the field separator.
+   * @param field
+   *          the index of field, 0 for the first field.
+   * @param values
+   *          the output array.
+   * @param offset
+   *          the index of first value in output.
+   * @param count
+   *          the maximum number of lines to parse.
+   * @return the number of lines parsed.
+   * @throws NumberFormatException
+   *           if a field doesn't contain a hexagesimal value.
+   */
+
+  public int parseColumn(ByteBuffer text, byte separator, int field, double values[], int offset, int count) {
+    if (field < 0)
+      throw new IllegalArgumentException("Invalid field " + field);
+    int position = text.position();
+    int limit = text.limit();
+    int lines = 0;
+    while (lines < count && position < limit) {
+      int index = 0;
+      int start = position;
+      int end = -1;
+      while (position < limit) {
+        byte c = text.get(position);
+        if (c == '\n')
+          break;
+        if (c == separator) {
+          if (index == field)
+            end = position;
+          if (++index == field)
+            start = position + 1;
+        }
+        position++;
+      }
+      if (index == field)
+        end = position > start && text.get(position - 1) == '\r' ? position - 1 : position;
+      values[offset + lines++] = end < 0 ? Double.NaN : parseField(text, start, end);
+      if (position < limit)
+        position++;
+    }
+    text.position(position);
+    return lines;
+  }
+
+  private double parseField(ByteBuffer text, int start, int end) {
+    while (start < end && text.get(start) == ' ')
+      start++;
+    return start == end ? Double.NaN : parse(text, start, end);
+  }
+
+  private void reset() {
+    negative = signed = inField = inFraction = false;
+    mantissa = 0;
+    fractionDigits = 0;
+    sum = 0;
+    divisor = 1;
+  }
+
+  private boolean accept(int c) {
+    if (c >= '0' && c <= '9') {
+      if (!inField) {
+        inField = true;
+        inFraction = false;
+        mantissa = 0;
+        fractionDigits = 0;
+      }
+      if (mantissa < MAX_MANTISSA) {
+        mantissa = 10 * mantissa + c - '0';
+        if (inFraction)
+          fractionDigits++;
+      } else if (!inFraction)
+        return false;
+      return true;
+    }
+    if (c == '.') {
+      if (inFraction)
+        return false;
+      if (!inField) {
+        inField = true;
+        mantissa = 0;
+        fractionDigits = 0;
+      }
+      inFraction = true;
+      return true;
+    }
+    if (c == '-' || c == '+') {
+      if (signed || inField || divisor != 1)
+        return false;
+      signed = true;
+      negative = c == '-';
+      return true;
+    }
+    switch (c) {
+    case ' ':
+    case '\t':
+    case ':':
+    case ';':
+    case '\'':
+    case '"':
+    case 'h':
+    case 'm':
+    case 's':
+    case 'd':
+    case 0xB0:
+    case 0xC2:
+      if (inField)
+        endField();
+      return true;
+    }
+    return false;
+  }
+
+  private void endField() {
+    sum += mantissa / POW10[fractionDigits] / divisor;
+    divisor *= 60;
+    inField = false;
+    inFraction = false;
+  }
+
+  private double result(CharSequence text, int start, int end) {
+    if (inField)
+      endField();
+    if (divisor == 1)
+      throw new NumberFormatException("No hexagesimal value" + (text == null ? "" : " in \"" + text.subSequence(start, end) + "\""));
+    return negative ? -sum : sum;
+  }
+
+  private NumberFormatException invalid(CharSequence text) {
+    return new NumberFormatException("Invalid hexagesimal value \"" + text + "\"");
+  }
+
+  private NumberFormatException invalid(ByteBuffer text, int start, int end) {
+    byte bytes[] = new byte[end - start];
+    for (int i = start; i < end; i++)
+      bytes[i - start] = text.get(i);
+    return invalid(new String(bytes));
+  }
+
+  private static int append(String string, char output[], int offset) {
+    for (int i = 0; i < string.length(); i++)
+      output[offset++] = string.charAt(i);
+    return offset;
+  }
+
+  private int encodedLength(int length) {
+    int encoded = length;
+    for (int i = 0; i < length; i++)
+      if (buffer[i] >= 0x80)
+        encoded++;
+    return encoded;
+  }
+
+  private void put(ByteBuffer output, int length) {
+    for (int i = 0; i < length; i++) {
+      char c = buffer[i];
+      if (c < 0x80)
+        output.put((byte) c);
+      else {
+        output.put((byte) (0xC0 | c >> 6));
+        output.put((byte) (0x80 | c & 0x3F));
+      }
+    }
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+
+package eu.cloudmakers.astronometry;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import eu.cloudmakers.astronometry.engine.StarCatalog;
+
+/**
+ * Importer of the Hipparcos main catalog (ESA 1997, file hip_main.dat) to
+ * {@link StarCatalog}.
+ * <p>
+ * Records are read as '|' separated fields, HIP number from field H1,
+ * position in degrees from fields H8 and H9, parallax and proper motions
+ * from fields H11 to H13. Records without astrometric solution are skipped.
+ * All stars are converted from epoch J1991.25 to J2000.0 in bulk by
+ * {@link NOVAS#transformHipparcosBatch(double[], double[], double[], double[], double[], double[])}
+ * . The result can be saved in the binary catalog format and opened by
+ * {@link StarCatalog#open(File)} in constant time afterwards.
+ * <p>
+ * Usage: HipparcosImporter hip_main.dat output.cat [vectors]
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class HipparcosImporter {
+
+  private int count;
+  private int numbers[] = new int[1 << 16];
+  private double ra[] = new double[1 << 16];
+  private double dec[] = new double[1 << 16];
+  private double raProperMotion[] = new double[1 << 16];
+  private double decProperMotion[] = new double[1 << 16];
+  private double parallax[] = new double[1 << 16];
+
+  private HipparcosImporter() {
+  }
+
+  /**
+   * Read Hipparcos main catalog and convert it to epoch J2000.0.
+   *
+   * @param input
+   *          catalog records
+   * @param vectors
+   *          true to keep barycentric vectors in the catalog
+   * @return new catalog
+   * @throws IOException
+   *           if the input can't be read or a record can't be parsed
+   */
+
+  public static StarCatalog read(Reader input, boolean vectors) throws IOException {
+    HipparcosImporter importer = new HipparcosImporter();
+    BufferedReader reader = new BufferedReader(input, 1 << 16);
+    String line;
+    int lineNumber = 0;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      if (line.trim().length() > 0) {
+        try {
+          importer.parseRecord(line);
+        } catch (RuntimeException exception) {
+          throw new IOException("Invalid record at line " + lineNumber + ": " + exception.getMessage());
+        }
+      }
+    }
+    return importer.catalog(vectors);
+  }
+
+  /**
+   * Import Hipparcos main catalog file to binary catalog file.
+   *
+   * @param input
+   *          hip_main.dat file
+   * @param output
+   *          binary catalog file to write
+   * @param vectors
+   *          true to keep barycentric vectors in the catalog
+   * @return imported catalog
+   * @throws IOException
+   *           if a file can't be read or written
+   */
+
+  public static StarCatalog importFile(File input, File output, boolean vectors) throws IOException {
+    Reader reader = new InputStreamReader(new FileInputStream(input), "US-ASCII");
+    StarCatalog catalog;
+    try {
+      catalog = read(reader, vectors);
+    } finally {
+      reader.close();
+    }
+    catalog.save(output);
+    return catalog;
+  }
+
+  private void parseRecord(String line) {
+    String fields[] = line.split("\\|", 15);
+    if (fields.length < 14)
+      throw new IllegalArgumentException("expected at least 14 fields");
+    String raField = fields[8].trim(), decField = fields[9].trim();
+    if (raField.length() == 0 || decField.length() == 0)
+      return;
+    if (count == ra.length)
+      grow();
+    numbers[count] = Integer.parseInt(fields[1].trim());
+    ra[count] = Double.parseDouble(raField);
+    dec[count] = Double.parseDouble(decField);
+    parallax[count] = parse(fields[11]);
+    raProperMotion[count] = parse(fields[12]);
+    decProperMotion[count] = parse(fields[13]);
+    count++;
+  }
+
+  private static double parse(String field) {
+    field = field.trim();
+    return field.length() == 0 ? 0.0 : Double.parseDouble(field);
+  }
+
+  private void grow() {
+    int length = 2 * ra.length;
+    int numbers[] = new int[length];
+    System.arraycopy(this.numbers, 0, numbers, 0, count);
+    this.numbers = numbers;
+    ra = grow(ra, length);
+    dec = grow(dec, length);
+    raProperMotion = grow(raProperMotion, length);
+    decProperMotion = grow(decProperMotion, length);
+    parallax = grow(parallax, length);
+  }
+
+  private double[] grow(double array[], int length) {
+    double result[] = new double[length];
+    System.arraycopy(array, 0, result, 0, count);
+    return result;
+  }
+
+  private StarCatalog catalog(boolean vectors) {
+    double radialVelocity[] = new double[count];
+    ra = grow(ra, count);
+    dec = grow(dec, count);
+    raProperMotion = grow(raProperMotion, count);
+    decProperMotion = grow(decProperMotion, count);
+    parallax = grow(parallax, count);
+    NOVAS.transformHipparcosBatch(ra, dec, raProperMotion, decProperMotion, parallax, radialVelocity);
+    StarCatalog catalog = new StarCatalog("HIP", count, vectors);
+    for (int i = 0; i < count; i++)
+      catalog.add(numbers[i], ra[i], dec[i], raProperMotion[i], decProperMotion[i], parallax[i], radialVelocity[i]);
+    return catalog;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: HipparcosImporter hip_main.dat output.cat [vectors]");
+      System.exit(1);
+    }
+    long start = System.currentTimeMillis();
+    StarCatalog catalog = importFile(new File(args[0]), new File(args[1]), args.length > 2 && args[2].equals("vectors"));
+    System.out.println(catalog.size() + " stars imported in " + (System.currentTimeMillis() - start) + " ms");
+  }
+}
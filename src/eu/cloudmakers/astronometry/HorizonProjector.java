@@ -0,0 +1,301 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+package eu.cloudmakers.astronometry;
+
+import eu.cloudmakers.astronometry.NOVAS.PositionOnSurface;
+import eu.cloudmakers.astronometry.engine.Astrometry;
+
+/**
+ * Conversion of equatorial coordinates to horizontal coordinates for one
+ * date and site.
+ * <p>
+ * Equivalent of
+ * {@link NOVAS#equatorialToHorizontal(double, double, int, double, double, PositionOnSurface, double, double, int, double[], int)}
+ * for many objects. The local zenith, north and west vectors rotated to the
+ * equator and equinox of date (sidereal time, polar motion and nutation
+ * applied by {@link NOVAS#terrestrialToCelestial}) are computed once, when
+ * the projector is created, so each object costs only a few trigonometric
+ * functions in Java and no native call. Refraction from refract() is read
+ * from a table of observed zenith distances fitted when the projector is
+ * created, with the same iteration as equ2hor(); the table differs from the
+ * formula by less than 1e-9 degree.
+ * <p>
+ * Projectors are immutable and thread-safe.
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class HorizonProjector {
+
+  private static final double DEG2RAD = Astrometry.DEG2RAD;
+  private static final double RAD2DEG = Astrometry.RAD2DEG;
+
+  /**
+   * Range of observed zenith distances with non-zero refraction, see
+   * {@link Astrometry#refract(PositionOnSurface, int, double)}.
+   */
+
+  private static final double REFRACTION_MIN = 0.1;
+  private static final double REFRACTION_MAX = 91.0;
+
+  /**
+   * Step of the refraction table in degrees.
+   */
+
+  private static final double REFRACTION_STEP = 1.0 / 128.0;
+
+  private final double ut1Date;
+  private final double uz[] = new double[3];
+  private final double un[] = new double[3];
+  private final double uw[] = new double[3];
+  private final int refOption;
+  private final double refraction[];
+
+  /**
+   * Create projector.
+   *
+   * @param ut1Date
+   *          UT1 Julian date
+   * @param deltaT
+   *          difference TT-UT1 at <code>ut1Date</code>, in seconds of time
+   * @param accuracy
+   *          code specifying the relative accuracy of the output position:
+   *          <blockquote> 0 &rarr; full accuracy<br>
+   *          1 &rarr; reduced accuracy </blockquote>
+   * @param xp
+   *          conventionally-defined x coordinate of celestial intermediate
+   *          pole with respect to ITRS reference pole, in arcseconds
+   * @param yp
+   *          conventionally-defined y coordinate of celestial intermediate
+   *          pole with respect to ITRS reference pole, in arcseconds
+   * @param position
+   *          location of the observer, it is not referenced by the projector
+   * @param refOption
+   *          refraction options <blockquote> 0 &rarr; no refraction<br>
+   *          1 &rarr; include refraction, using 'standard' atmospheric
+   *          conditions<br>
+   *          2 &rarr; include refraction, using atmospheric parameters input
+   *          in the <code>position</code> </blockquote>
+   * @throws IllegalArgumentException
+   *           if accuracy or refraction option is invalid
+   */
+
+  public HorizonProjector(double ut1Date, double deltaT, int accuracy, double xp, double yp, PositionOnSurface position, int refOption) {
+    if (position == null)
+      throw new NullPointerException("position");
+    if (refOption < 0 || refOption > 2)
+      throw new IllegalArgumentException("Invalid refraction option " + refOption);
+    this.ut1Date = ut1Date;
+    this.refOption = refOption;
+    double sinlat = Math.sin(position.latitude * DEG2RAD);
+    double coslat = Math.cos(position.latitude * DEG2RAD);
+    double sinlon = Math.sin(position.longitude * DEG2RAD);
+    double coslon = Math.cos(position.longitude * DEG2RAD);
+    double basis[] = { coslat * coslon, coslat * sinlon, sinlat, -sinlat * coslon, -sinlat * sinlon, coslat, sinlon, -coslon, 0.0 };
+    short error = NOVAS.terrestrialToCelestial(ut1Date, 0.0, deltaT, 1, accuracy, 1, xp, yp, basis, basis);
+    if (error != 0)
+      throw new IllegalArgumentException("Error " + error + " from ter2cel");
+    System.arraycopy(basis, 0, uz, 0, 3);
+    System.arraycopy(basis, 3, un, 0, 3);
+    System.arraycopy(basis, 6, uw, 0, 3);
+    if (refOption == 0) {
+      refraction = null;
+    } else {
+      refraction = new double[(int) Math.ceil((REFRACTION_MAX - REFRACTION_MIN) / REFRACTION_STEP) + 1];
+      for (int i = 0; i < refraction.length; i++)
+        refraction[i] = Astrometry.refract(position, refOption, Math.min(REFRACTION_MIN + i * REFRACTION_STEP, REFRACTION_MAX));
+    }
+  }
+
+  /**
+   * Refraction for observed zenith distance by cubic interpolation of the
+   * table.
+   */
+
+  private double refract(double zdObs) {
+    if (zdObs < REFRACTION_MIN || zdObs > REFRACTION_MAX)
+      return 0.0;
+    double u = (zdObs - REFRACTION_MIN) / REFRACTION_STEP;
+    int first = (int) u - 1;
+    if (first < 0)
+      first = 0;
+    else if (first > refraction.length - 4)
+      first = refraction.length - 4;
+    u -= first;
+    double r0 = refraction[first], r1 = refraction[first + 1], r2 = refraction[first + 2], r3 = refraction[first + 3];
+    double u1 = u - 1.0, u2 = u - 2.0, u3 = u - 3.0;
+    return (-r0 * u1 * u2 * u3 + 3.0 * r1 * u * u2 * u3 - 3.0 * r2 * u * u1 * u3 + r3 * u * u1 * u2) / 6.0;
+  }
+
+  /**
+   * Convert apparent equatorial coordinates of one object to horizontal
+   * coordinates, writes the same values as
+   * {@link NOVAS#equatorialToHorizontal(double, double, int, double, double, PositionOnSurface, double, double, int, double[], int)}.
+   *
+   * @param ra
+   *          topocentric right ascension of object of interest, in hours,
+   *          referred to true equator and equinox of date
+   * @param dec
+   *          topocentric declination of object of interest, in degrees,
+   *          referred to true equator and equinox of date
+   * @param output
+   *          output array, zenith distance and azimuth in degrees, right
+   *          ascension in hours and declination in degrees affected by
+   *          refraction are written to <code>output[offset .. offset + 3]</code>
+   * @param offset
+   *          index of the first output element
+   */
+
+  public void project(double ra, double dec, double output[], int offset) {
+    project(ra, dec, output, offset, output, offset + 1, output, offset + 2, output, offset + 3);
+  }
+
+  /**
+   * Convert apparent equatorial coordinates of objects
+   * <code>offset .. offset + count - 1</code> to horizontal coordinates.
+   * Outputs are written to the same indices as inputs, output arrays can be
+   * the input arrays.
+   *
+   * @param ra
+   *          topocentric right ascensions in hours, referred to true equator
+   *          and equinox of date
+   * @param dec
+   *          topocentric declinations in degrees, referred to true equator
+   *          and equinox of date
+   * @param offset
+   *          index of the first object
+   * @param count
+   *          number of objects
+   * @param zd
+   *          output topocentric zenith distances in degrees, affected by
+   *          refraction if the refraction option is non-zero
+   * @param az
+   *          output topocentric azimuths (measured east from north) in
+   *          degrees
+   * @param rar
+   *          output right ascensions in hours, affected by refraction if the
+   *          refraction option is non-zero, or null
+   * @param decr
+   *          output declinations in degrees, affected by refraction if the
+   *          refraction option is non-zero, or null
+   */
+
+  public void project(double ra[], double dec[], int offset, int count, double zd[], double az[], double rar[], double decr[]) {
+    for (int i = offset; i < offset + count; i++)
+      project(ra[i], dec[i], zd, i, az, i, rar, i, decr, i);
+  }
+
+  /**
+   * Convert apparent equatorial coordinates of all objects to horizontal
+   * coordinates.
+   *
+   * @see #project(double[], double[], int, int, double[], double[], double[], double[])
+   */
+
+  public void project(double ra[], double dec[], double zd[], double az[]) {
+    project(ra, dec, 0, ra.length, zd, az, null, null);
+  }
+
+  /**
+   * Body of equ2hor() after the basis vectors are computed.
+   */
+
+  private void project(double ra, double dec, double zd[], int zdIndex, double az[], int azIndex, double rar[], int rarIndex, double decr[], int decrIndex) {
+    double cosdc = Math.cos(dec * DEG2RAD);
+    double p0 = cosdc * Math.cos(ra * 15.0 * DEG2RAD);
+    double p1 = cosdc * Math.sin(ra * 15.0 * DEG2RAD);
+    double p2 = Math.sin(dec * DEG2RAD);
+    double pz = p0 * uz[0] + p1 * uz[1] + p2 * uz[2];
+    double pn = p0 * un[0] + p1 * un[1] + p2 * un[2];
+    double pw = p0 * uw[0] + p1 * uw[1] + p2 * uw[2];
+    double proj = Math.sqrt(pn * pn + pw * pw);
+    double azimuth = 0.0;
+    if (proj > 0.0)
+      azimuth = -Math.atan2(pw, pn) * RAD2DEG;
+    if (azimuth < 0.0)
+      azimuth += 360.0;
+    if (azimuth >= 360.0)
+      azimuth -= 360.0;
+    double zd0 = Math.atan2(proj, pz) * RAD2DEG;
+    double zenithDistance = zd0;
+    double raRefracted = ra, decRefracted = dec;
+    if (refOption != 0) {
+      double zd1, refr;
+      do {
+        zd1 = zenithDistance;
+        refr = refract(zenithDistance);
+        zenithDistance = zd0 - refr;
+      } while (Math.abs(zenithDistance - zd1) > 3.0e-5);
+      if (refr > 0.0 && zenithDistance > 3.0e-4 && (rar != null || decr != null)) {
+        double sinzd = Math.sin(zenithDistance * DEG2RAD);
+        double coszd = Math.cos(zenithDistance * DEG2RAD);
+        double sinzd0 = Math.sin(zd0 * DEG2RAD);
+        double coszd0 = Math.cos(zd0 * DEG2RAD);
+        double pr0 = ((p0 - coszd0 * uz[0]) / sinzd0) * sinzd + uz[0] * coszd;
+        double pr1 = ((p1 - coszd0 * uz[1]) / sinzd0) * sinzd + uz[1] * coszd;
+        double pr2 = ((p2 - coszd0 * uz[2]) / sinzd0) * sinzd + uz[2] * coszd;
+        proj = Math.sqrt(pr0 * pr0 + pr1 * pr1);
+        if (proj > 0.0)
+          raRefracted = Math.atan2(pr1, pr0) * RAD2DEG / 15.0;
+        if (raRefracted < 0.0)
+          raRefracted += 24.0;
+        if (raRefracted >= 24.0)
+          raRefracted -= 24.0;
+        decRefracted = Math.atan2(pr2, proj) * RAD2DEG;
+      }
+    }
+    zd[zdIndex] = zenithDistance;
+    az[azIndex] = azimuth;
+    if (rar != null)
+      rar[rarIndex] = raRefracted;
+    if (decr != null)
+      decr[decrIndex] = decRefracted;
+  }
+
+  /**
+   * Get UT1 Julian date of the projector.
+   *
+   * @return UT1 Julian date
+   */
+
+  public double getUt1Date() {
+    return ut1Date;
+  }
+
+  /**
+   * Get refraction option of the projector.
+   *
+   * @return refraction option
+   */
+
+  public int getRefOption() {
+    return refOption;
+  }
+}
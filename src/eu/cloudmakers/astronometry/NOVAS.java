@@ -38,12 +38,38 @@
 
 package eu.cloudmakers.astronometry;
 
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Formatter;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import eu.cloudmakers.astronometry.engine.CioTable;
+import eu.cloudmakers.astronometry.engine.CompactEphemeris;
+import eu.cloudmakers.astronometry.engine.FrameTable;
+import eu.cloudmakers.astronometry.engine.StarCatalog;
 
 /**
  * Wrapper for NOVAS 3.1 library.
@@ -64,7 +90,12 @@ import java.util.Formatter;
  * TEL: 818-354-0443<br>
  * FAX: 818-393-7631<br>
  * e-mail: William.Folkner@jpl.nasa.gov</blockquote>
- * 
+ *
+ * All methods may be called concurrently from any number of threads. Native
+ * caches of date dependent quantities (ephemeris record, precession and
+ * nutation matrices, Earth position, ...) are kept per thread, so threads
+ * never see each other's intermediate state and no global lock is needed.
+ *
  * @author Cloudmakers, s. r. o. (<a
  *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
  * @version 1.0
@@ -90,26 +121,144 @@ public class NOVAS {
 
   public static double EPH_JD_END;
 
-  private static String extract(String name, boolean force) {
+  /**
+   * System property with path of the native library. If set, the library is
+   * loaded in place, otherwise it is extracted from the class path.
+   */
+
+  public static final String LIBRARY_PROPERTY = "eu.cloudmakers.astronometry.library";
+
+  /**
+   * System property with path of the JPL ephemeris file. If set, the file is
+   * opened in place ("none" selects the analytic ephemeris), otherwise
+   * JPLEPH.421 is extracted from the class path.
+   */
+
+  public static final String EPHEMERIS_PROPERTY = "eu.cloudmakers.astronometry.ephemeris";
+
+  /**
+   * System property with directory for extracted files, .jnovas in the user's
+   * home directory by default. The directory is created accessible by its
+   * owner only; extraction is refused if it isn't owned by the current user or
+   * if other users can write to it.
+   */
+
+  public static final String EXTRACT_DIRECTORY_PROPERTY = "eu.cloudmakers.astronometry.extractDirectory";
+
+  /**
+   * System property with path of CIO table written by
+   * {@link CioTable#write(java.io.OutputStream)} to be installed before the
+   * first CIO based computation ("none" installs no table), otherwise
+   * {@link CioTable#getDefault()} is installed.
+   */
+
+  public static final String CIO_TABLE_PROPERTY = "eu.cloudmakers.astronometry.cioTable";
+
+  /**
+   * System property enabling the banner printed to stderr on load.
+   */
+
+  public static final String BANNER_PROPERTY = "eu.cloudmakers.astronometry.banner";
+
+  /**
+   * Get SHA-1 digest of stream content, the stream is closed.
+   */
+
+  private static byte[] digest(InputStream in) throws IOException {
     try {
-      File file = new File(System.getProperty("java.io.tmpdir"), name);
-      if (!(file.exists() && file.length()>0)|| force) {
+      MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      byte buffer[] = new byte[65536];
+      int size;
+      while ((size = in.read(buffer)) > 0)
+        digest.update(buffer, 0, size);
+      return digest.digest();
+    } catch (NoSuchAlgorithmException exception) {
+      throw new IOException(exception.getMessage());
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Get directory for extracted files, create it if it doesn't exist.
+   */
+
+  private static Path extractDirectory() throws IOException {
+    String name = System.getProperty(EXTRACT_DIRECTORY_PROPERTY);
+    Path directory = name != null ? Paths.get(name) : Paths.get(System.getProperty("user.home"), ".jnovas");
+    if (!Files.isDirectory(directory)) {
+      if (directory.getFileSystem().supportedFileAttributeViews().contains("posix"))
+        Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+      else
+        Files.createDirectories(directory);
+    }
+    return directory.toRealPath();
+  }
+
+  /**
+   * Check that directory is owned by the user and that other users can't
+   * create, replace or modify files in it.
+   */
+
+  private static void checkPrivate(Path directory, UserPrincipal user) throws IOException {
+    if (!Files.getOwner(directory).equals(user))
+      throw new IOException(directory + " is not owned by " + user.getName());
+    if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(directory);
+      if (permissions.contains(PosixFilePermission.GROUP_WRITE) || permissions.contains(PosixFilePermission.OTHERS_WRITE))
+        throw new IOException(directory + " is writable by other users");
+    }
+  }
+
+  /**
+   * Extract class path resource to a private directory, to a file named by
+   * its content hash. Existing file is reused only if it is owned by the
+   * current user and its content hash matches the resource, otherwise the
+   * resource is written under a temporary name and renamed over it, so
+   * concurrent JVMs never see it incomplete.
+   */
+
+  private static String extract(String name) {
+    if (NOVAS.class.getResource(name) == null)
+      return null;
+    try {
+      Path directory = extractDirectory();
+      Path temporary = Files.createTempFile(directory, "jnovas-", ".tmp");
+      try {
+        UserPrincipal user = Files.getOwner(temporary);
+        checkPrivate(directory, user);
+        byte hash[] = digest(NOVAS.class.getResourceAsStream(name));
+        Formatter formatter = new Formatter();
+        for (int i = 0; i < 8; i++)
+          formatter.format("%02x", hash[i]);
+        Path file = directory.resolve("jnovas-" + formatter + "-" + name);
+        if (Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS) && Files.getOwner(file, LinkOption.NOFOLLOW_LINKS).equals(user) && Arrays.equals(digest(Files.newInputStream(file, LinkOption.NOFOLLOW_LINKS)), hash))
+          return file.toString();
         InputStream in = NOVAS.class.getResourceAsStream(name);
-        OutputStream out = new FileOutputStream(file);
-        byte buffer[] = new byte[10240];
-        int size;
-        while ((size = in.read(buffer)) > 0)
-          out.write(buffer, 0, size);
-        out.close();
-        in.close();
+        try {
+          Files.copy(in, temporary, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+          in.close();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file.toString();
+      } finally {
+        Files.deleteIfExists(temporary);
       }
-      return file.getAbsolutePath();
-    } catch (Exception exception) {
-      System.err.println(name+" not found...");
+    } catch (IOException exception) {
+      System.err.println(name + " can't be extracted: " + exception.getMessage());
       return null;
     }
   }
 
+  /**
+   * Compact ephemerides and tables ever installed. Native code keeps only
+   * the address of their direct buffers and other threads may still read a
+   * replaced one, so they are never released.
+   */
+
+  private static final Set<Object> installed = new HashSet<Object>();
+
   // private static native int init(Node signature, String eph);
   private static native int init(String eph);
 
@@ -120,19 +269,34 @@ public class NOVAS {
 
     String jniLibraryName = null;
     if (os.indexOf("mac") >= 0) {
-      jniLibraryName = System.mapLibraryName("novas");
-      if (vendor.indexOf("oracle") >= 0)
-        jniLibraryName = jniLibraryName.substring(0, jniLibraryName.lastIndexOf(".")) + ".jnilib";
+      jniLibraryName = "novas";
     }
     else if (arch.indexOf("64") >= 0)
-      jniLibraryName = System.mapLibraryName("novas64");
+      jniLibraryName = "novas64";
     else
-      jniLibraryName = System.mapLibraryName("novas32");
-    System.err.println("jNOVAS 3.1 - Java wrapper for NOVAS 3.1 Library");
-    System.err.println("Copyright (c) 2012, CloudMakers, s. r. o.");
-    System.err.println();
-    System.load(extract(jniLibraryName, true));
-    init(extract("JPLEPH.421", false));
+      jniLibraryName = "novas32";
+    if (Boolean.getBoolean(BANNER_PROPERTY)) {
+      System.err.println("jNOVAS 3.1 - Java wrapper for NOVAS 3.1 Library");
+      System.err.println("Copyright (c) 2012, CloudMakers, s. r. o.");
+      System.err.println();
+    }
+    String library = System.getProperty(LIBRARY_PROPERTY);
+    if (library == null) {
+      String fileName = System.mapLibraryName(jniLibraryName);
+      if (os.indexOf("mac") >= 0 && vendor.indexOf("oracle") >= 0)
+        fileName = fileName.substring(0, fileName.lastIndexOf(".")) + ".jnilib";
+      library = extract(fileName);
+    }
+    if (library != null)
+      System.load(library);
+    else
+      System.loadLibrary(jniLibraryName);
+    String ephemeris = System.getProperty(EPHEMERIS_PROPERTY);
+    if (ephemeris == null)
+      ephemeris = extract("JPLEPH.421");
+    else if (ephemeris.equals("none"))
+      ephemeris = null;
+    init(ephemeris);
   }
 
   /**
@@ -642,6 +806,44 @@ public class NOVAS {
     }
   }
 
+  /**
+   * JPL ephemeris access statistics.
+   * <p>
+   * Counters are global for the library and are never reset, compare two
+   * snapshots to get values for an interval.
+   */
+
+  public static class EphemerisStatistics {
+
+    /**
+     * Size of memory mapped ephemeris file in bytes, 0 if the file is not
+     * mapped (records are then read into per thread buffers).
+     */
+
+    public long mappedBytes;
+
+    /**
+     * Number of times any thread switched to another ephemeris record.
+     */
+
+    public long recordLoads;
+
+    /**
+     * Number of ephemeris records read from the file by a system call, stays
+     * 0 if the file is mapped.
+     */
+
+    public long fileReads;
+
+    /**
+     * Dump attributes.
+     */
+
+    public String toString() {
+      return new Formatter().format("EphemerisStatistics { %d, %d, %d }", mappedBytes, recordLoads, fileReads).toString();
+    }
+  }
+
   /**
    * Compute the apparent direction of a star or solar system body at a
    * specified time and in a specified coordinate system.
@@ -671,7 +873,8 @@ public class NOVAS {
    * @param output
    *          output data specifying object's place on the sky at
    *          <code>ttDate</code>, with respect to the specified output
-   *          coordinate system
+   *          coordinate system, <code>output.rHat</code> is reused if it is
+   *          already allocated
    * @return error code: <blockquote> 0 &rarr; no problems<br>
    *         1 &rarr; invalid value of 'coord_sys'<br>
    *         2 &rarr; invalid value of 'accuracy'<br>
@@ -683,10 +886,112 @@ public class NOVAS {
    *         > 70, < 80 &rarr; 70 + error from function 'grav_def'<br>
    *         > 80, < 90 &rarr; 80 + error from function 'cio_location'<br>
    *         > 90, < 100 &rarr; 90 + error from function 'cio_basis'
-   *         </blockquote>
+   *         </blockquote> on error, all outputs are set to NaN
+   */
+
+  public static short place(double ttDate, CelestialObject object, Observer location, double deltaT, int coordinateSystem, int accuracy, SkyPosition output) {
+    if (coordinateSystem == 2)
+      needCioTable();
+    return placeObject(ttDate, object, location, deltaT, coordinateSystem, accuracy, output);
+  }
+
+  private static native short placeObject(double ttDate, CelestialObject object, Observer location, double deltaT, int coordinateSystem, int accuracy, SkyPosition output);
+
+  private static native short placeSeries(double ttStart, double step, int offset, int count, CelestialObject object, Observer location, double deltaT, int coordinateSystem, int accuracy, double ra[], double dec[], double distance[], double radialVelocity[], ByteBuffer frameTable);
+
+  /**
+   * Minimal number of steps per day of a time series paying off the fit of
+   * a temporary nutation table.
+   */
+
+  private static final int SERIES_TABLE_STEPS_PER_DAY = 256;
+
+  /**
+   * Longest time series in days for which a temporary nutation table is
+   * fitted.
+   */
+
+  private static final double SERIES_TABLE_MAX_DAYS = 32.0;
+
+  /**
+   * Fit a temporary nutation table for a series of count steps between TDB
+   * Julian dates first and last if it pays off and no installed table
+   * covers them.
+   */
+
+  private static ByteBuffer seriesTable(double first, double last, int count, int accuracy) {
+    FrameTable installed = getFrameTable();
+    if ((accuracy == 0 || accuracy == 1) && last - first <= SERIES_TABLE_MAX_DAYS && count >= SERIES_TABLE_STEPS_PER_DAY * (1.0 + last - first) && !(installed != null && installed.covers(first, accuracy) && installed.covers(last, accuracy)))
+      return FrameTable.build(first, last, accuracy).toByteBuffer();
+    return null;
+  }
+
+  /**
+   * Compute the apparent direction of a star or solar system body for a
+   * series of equidistant times.
+   * <p>
+   * Equivalent of calling {@link #place(double, CelestialObject, Observer, double, int, int, SkyPosition)}
+   * for <code>ttStart + i * step</code>, <code>i = 0 .. count - 1</code>, but
+   * object and observer are read only once, no objects are allocated per
+   * step and the light-time iteration for solar system bodies starts from
+   * the value extrapolated from the previous steps.
+   * <p>
+   * Unless a table covering the series is installed with
+   * {@link #useFrameTable(FrameTable)}, long enough series of up to 32 days
+   * fit a temporary {@link FrameTable} (with its default tolerance of 1
+   * microarcsecond) used by the calling thread for the duration of the call,
+   * so the nutation series is evaluated only a few times per day instead of
+   * for every step.
+   *
+   * @param ttStart
+   *          TT Julian date of the first step
+   * @param step
+   *          step in days
+   * @param count
+   *          number of steps
+   * @param object
+   *          the celestial object of interest
+   * @param location
+   *          the location of the observer
+   * @param deltaT
+   *          difference TT-UT1 in seconds of time
+   * @param coordinateSystem
+   *          code specifying coordinate system of the output position, see
+   *          {@link #place(double, CelestialObject, Observer, double, int, int, SkyPosition)}
+   * @param accuracy
+   *          code specifying the relative accuracy of the output position:
+   *          <blockquote> 0 &rarr; full accuracy<BR>
+   *          1 &rarr; reduced accuracy </blockquote>
+   * @param ra
+   *          output apparent right ascensions in hours
+   * @param dec
+   *          output apparent declinations in degrees
+   * @param distance
+   *          output true (geometric, Euclidian) distances to solar system
+   *          bodies in AU (0 for stars) or null
+   * @param radialVelocity
+   *          output radial velocities in km/s or null
+   * @return error code of the first failed step (see
+   *         {@link #place(double, CelestialObject, Observer, double, int, int, SkyPosition)}
+   *         ), outputs of failed steps are set to NaN
    */
 
-  public static native short place(double ttDate, CelestialObject object, Observer location, double deltaT, int coordinateSystem, int accuracy, SkyPosition output);
+  public static short placeSeries(double ttStart, double step, int count, CelestialObject object, Observer location, double deltaT, int coordinateSystem, int accuracy, double ra[], double dec[], double distance[], double radialVelocity[]) {
+    if (ra.length < count || dec.length < count || (distance != null && distance.length < count) || (radialVelocity != null && radialVelocity.length < count))
+      throw new IllegalArgumentException("All arrays must have at least " + count + " elements");
+    if (coordinateSystem == 2)
+      needCioTable();
+    short result = 0;
+    double first = Math.min(ttStart, ttStart + (count - 1) * step) - 0.001;
+    double last = Math.max(ttStart, ttStart + (count - 1) * step) + 0.001;
+    ByteBuffer table = seriesTable(first, last, count, accuracy);
+    for (int offset = 0; offset < count; offset += BATCH_CHUNK_SIZE) {
+      short error = placeSeries(ttStart, step, offset, Math.min(BATCH_CHUNK_SIZE, count - offset), object, location, deltaT, coordinateSystem, accuracy, ra, dec, distance, radialVelocity, table);
+      if (result == 0)
+        result = error;
+    }
+    return result;
+  }
 
   /**
    * Transform a star's catalog quantities for a change of epoch and/or equator
@@ -757,6 +1062,37 @@ public class NOVAS {
 
   public static native void transformHipparcosEntry(CatalogEntry hipparcos, CatalogEntry hip2000);
 
+  private static native void transformHipparcosBatch(double ra[], double dec[], double raProperMotion[], double decProperMotion[], double parallax[], double radialVelocity[], int offset, int count);
+
+  /**
+   * Convert many Hipparcos catalog entries to epoch J2000.0 in one native
+   * call per {@link #BATCH_CHUNK_SIZE} stars. Arrays are indexed by star and
+   * converted in place, from Hipparcos catalog units at epoch J1991.25 to
+   * units of {@link CatalogEntry} at epoch J2000.0, see
+   * {@link #transformHipparcosEntry(CatalogEntry, CatalogEntry)}.
+   *
+   * @param ra
+   *          right ascensions, degrees on input, hours on output
+   * @param dec
+   *          declinations in degrees
+   * @param raProperMotion
+   *          proper motions in right ascension in milliarcseconds/year
+   * @param decProperMotion
+   *          proper motions in declination in milliarcseconds/year
+   * @param parallax
+   *          parallaxes in milliarcseconds
+   * @param radialVelocity
+   *          radial velocities in km/s
+   */
+
+  public static void transformHipparcosBatch(double ra[], double dec[], double raProperMotion[], double decProperMotion[], double parallax[], double radialVelocity[]) {
+    int count = ra.length;
+    if (dec.length < count || raProperMotion.length < count || decProperMotion.length < count || parallax.length < count || radialVelocity.length < count)
+      throw new IllegalArgumentException("All arrays must have at least " + count + " elements");
+    for (int offset = 0; offset < count; offset += BATCH_CHUNK_SIZE)
+      transformHipparcosBatch(ra, dec, raProperMotion, decProperMotion, parallax, radialVelocity, offset, Math.min(BATCH_CHUNK_SIZE, count - offset));
+  }
+
   /**
    * Compute the apparent place of a star at date <code>ttDate</code>, given its
    * catalog mean place, proper motion, parallax, and radial velocity.
@@ -785,6 +1121,16 @@ public class NOVAS {
 
   public static native short appStar(double ttDate, CatalogEntry star, int accuracy, DoubleRef ra, DoubleRef dec);
 
+  /**
+   * Variant of {@link #appStar(double, CatalogEntry, int, DoubleRef, DoubleRef)} writing right ascension to
+   * <code>output[offset]</code> and declination to
+   * <code>output[offset + 1]</code>, steady state calls allocate nothing.
+   */
+
+  public static short appStar(double ttDate, CatalogEntry star, int accuracy, double output[], int offset) {
+    return starPlaceArray(APP_STAR, ttDate, 0, star, null, accuracy, output, offset);
+  }
+
   /**
    * Compute the virtual place of a star at date <code>ttDate</code>, given its
    * catalog mean place, proper motion, parallax, and radial velocity.
@@ -811,6 +1157,16 @@ public class NOVAS {
 
   public static native short virtualStar(double ttDate, CatalogEntry star, int accuracy, DoubleRef ra, DoubleRef dec);
 
+  /**
+   * Variant of {@link #virtualStar(double, CatalogEntry, int, DoubleRef, DoubleRef)} writing right ascension to
+   * <code>output[offset]</code> and declination to
+   * <code>output[offset + 1]</code>, steady state calls allocate nothing.
+   */
+
+  public static short virtualStar(double ttDate, CatalogEntry star, int accuracy, double output[], int offset) {
+    return starPlaceArray(VIRTUAL_STAR, ttDate, 0, star, null, accuracy, output, offset);
+  }
+
   /**
    * Compute the astrometric place of a star at date <code>ttDate</code>, given
    * its catalog mean place, proper motion, parallax, and radial velocity.
@@ -839,6 +1195,16 @@ public class NOVAS {
 
   public static native short astroStar(double ttDate, CatalogEntry star, int accuracy, DoubleRef ra, DoubleRef dec);
 
+  /**
+   * Variant of {@link #astroStar(double, CatalogEntry, int, DoubleRef, DoubleRef)} writing right ascension to
+   * <code>output[offset]</code> and declination to
+   * <code>output[offset + 1]</code>, steady state calls allocate nothing.
+   */
+
+  public static short astroStar(double ttDate, CatalogEntry star, int accuracy, double output[], int offset) {
+    return starPlaceArray(ASTRO_STAR, ttDate, 0, star, null, accuracy, output, offset);
+  }
+
   /**
    * Compute the local place of a star at date <code>ttDate</code>, given its
    * catalog mean place, proper motion, parallax, and radial velocity.
@@ -870,6 +1236,18 @@ public class NOVAS {
 
   public static native short localStar(double ttDate, double deltaT, CatalogEntry star, PositionOnSurface position, int accuracy, DoubleRef ra, DoubleRef dec);
 
+  /**
+   * Variant of {@link #localStar(double, double, CatalogEntry, PositionOnSurface, int, DoubleRef, DoubleRef)} writing right ascension to
+   * <code>output[offset]</code> and declination to
+   * <code>output[offset + 1]</code>, steady state calls allocate nothing.
+   */
+
+  public static short localStar(double ttDate, double deltaT, CatalogEntry star, PositionOnSurface position, int accuracy, double output[], int offset) {
+    if (position == null)
+      throw new NullPointerException("position");
+    return starPlaceArray(LOCAL_STAR, ttDate, deltaT, star, position, accuracy, output, offset);
+  }
+
   /**
    * Compute the topocentric place of a star at date <code>ttDate</code>, given
    * its catalog mean place, proper motion, parallax, and radial velocity.
@@ -903,6 +1281,468 @@ public class NOVAS {
 
   public static native short topoStar(double ttDate, double deltaT, CatalogEntry star, PositionOnSurface position, int accuracy, DoubleRef ra, DoubleRef dec);
 
+  /**
+   * Variant of {@link #topoStar(double, double, CatalogEntry, PositionOnSurface, int, DoubleRef, DoubleRef)} writing right ascension to
+   * <code>output[offset]</code> and declination to
+   * <code>output[offset + 1]</code>, steady state calls allocate nothing.
+   */
+
+  public static short topoStar(double ttDate, double deltaT, CatalogEntry star, PositionOnSurface position, int accuracy, double output[], int offset) {
+    if (position == null)
+      throw new NullPointerException("position");
+    return starPlaceArray(TOPO_STAR, ttDate, deltaT, star, position, accuracy, output, offset);
+  }
+
+  /**
+   * Number of bytes of one star record in direct buffer input of batch
+   * methods. Record is a sequence of six doubles in native byte order: ICRS
+   * right ascension in hours, ICRS declination in degrees, proper motion in
+   * right ascension and declination in milliarcseconds/year, parallax in
+   * milliarcseconds and radial velocity in km/s.
+   */
+
+  public static final int STAR_RECORD_BYTES = 6 * 8;
+
+  /**
+   * Number of bytes of one output record in direct buffer output of batch
+   * methods. Record is a sequence of two doubles in native byte order: right
+   * ascension in hours and declination in degrees.
+   */
+
+  public static final int PLACE_RECORD_BYTES = 2 * 8;
+
+  /**
+   * Number of bytes of one status record in direct buffer output of batch
+   * methods. Record is a short in native byte order.
+   */
+
+  public static final int STATUS_RECORD_BYTES = 2;
+
+  /**
+   * Maximal number of stars reduced in one native call by batch methods
+   * taking Java arrays. Arrays are pinned for the duration of the native call,
+   * so longer arrays are processed in chunks to keep garbage collector
+   * latency bounded.
+   */
+
+  public static final int BATCH_CHUNK_SIZE = 4096;
+
+  private static final int APP_STAR = 0;
+  private static final int VIRTUAL_STAR = 1;
+  private static final int ASTRO_STAR = 2;
+  private static final int LOCAL_STAR = 3;
+  private static final int TOPO_STAR = 4;
+
+  private static native void starBatch(int kind, double ttDate, double deltaT, PositionOnSurface position, int accuracy, double ra[], double dec[], double raProperMotion[], double decProperMotion[], double parallax[], double radialVelocity[], double outRa[], double outDec[], short status[], int offset, int count);
+
+  private static native void starBatchDirect(int kind, double ttDate, double deltaT, PositionOnSurface position, int accuracy, ByteBuffer stars, int starsOffset, ByteBuffer output, int outputOffset, ByteBuffer status, int statusOffset, int count);
+
+  private static native short starPlaceArray(int kind, double ttDate, double deltaT, CatalogEntry star, PositionOnSurface position, int accuracy, double output[], int offset);
+
+  private static native short planetPlaceArray(int kind, double ttDate, CelestialObject body, double deltaT, PositionOnSurface position, int accuracy, double output[], int offset);
+
+  private static void starBatch(int kind, double ttDate, double deltaT, PositionOnSurface position, int accuracy, double ra[], double dec[], double raProperMotion[], double decProperMotion[], double parallax[], double radialVelocity[], double outRa[], double outDec[], short status[]) {
+    int count = ra.length;
+    if (dec.length < count || raProperMotion.length < count || decProperMotion.length < count || parallax.length < count || radialVelocity.length < count || outRa.length < count || outDec.length < count || status.length < count)
+      throw new IllegalArgumentException("All arrays must have at least " + count + " elements");
+    if (position == null && (kind == LOCAL_STAR || kind == TOPO_STAR))
+      throw new NullPointerException("position");
+    for (int offset = 0; offset < count; offset += BATCH_CHUNK_SIZE)
+      starBatch(kind, ttDate, deltaT, position, accuracy, ra, dec, raProperMotion, decProperMotion, parallax, radialVelocity, outRa, outDec, status, offset, Math.min(BATCH_CHUNK_SIZE, count - offset));
+  }
+
+  private static void starBatch(int kind, double ttDate, double deltaT, PositionOnSurface position, int accuracy, ByteBuffer stars, ByteBuffer output, ByteBuffer status) {
+    int count = stars.remaining() / STAR_RECORD_BYTES;
+    if (!(stars.isDirect() && output.isDirect() && status.isDirect()))
+      throw new IllegalArgumentException("Buffers must be direct");
+    if (stars.order() != ByteOrder.nativeOrder() || output.order() != ByteOrder.nativeOrder() || status.order() != ByteOrder.nativeOrder())
+      throw new IllegalArgumentException("Buffers must use native byte order");
+    if (output.remaining() < count * PLACE_RECORD_BYTES || status.remaining() < count * STATUS_RECORD_BYTES)
+      throw new IllegalArgumentException("Output buffers must have space for " + count + " records");
+    if (position == null && (kind == LOCAL_STAR || kind == TOPO_STAR))
+      throw new NullPointerException("position");
+    starBatchDirect(kind, ttDate, deltaT, position, accuracy, stars, stars.position(), output, output.position(), status, status.position(), count);
+  }
+
+  /**
+   * Compute the apparent places of many stars at date <code>ttDate</code> in
+   * one native call. Input and output arrays are indexed by star, arrays are
+   * processed in chunks of {@link #BATCH_CHUNK_SIZE} stars.
+   * <p>
+   * See {@link #appStar(double, CatalogEntry, int, DoubleRef, DoubleRef)} for
+   * the description of the reduction.
+   *
+   * @param ttDate
+   *          TT Julian date for apparent place.
+   * @param ra
+   *          ICRS right ascensions in hours.
+   * @param dec
+   *          ICRS declinations in degrees.
+   * @param raProperMotion
+   *          ICRS proper motions in right ascension in milliarcseconds/year.
+   * @param decProperMotion
+   *          ICRS proper motions in declination in milliarcseconds/year.
+   * @param parallax
+   *          parallaxes in milliarcseconds.
+   * @param radialVelocity
+   *          radial velocities in km/s.
+   * @param accuracy
+   *          code specifying the relative accuracy of the output position:
+   *          <BLOCKQUOTE> 0 &rarr; full accuracy<BR>
+   *          1 &rarr; reduced accuracy </BLOCKQUOTE>
+   * @param outRa
+   *          apparent right ascensions in hours, referred to true equator and
+   *          equinox of date <code>ttDate</code>.
+   * @param outDec
+   *          apparent declinations in degrees, referred to true equator and
+   *          equinox of date <code>ttDate</code>.
+   * @param status
+   *          error codes as returned by
+   *          {@link #appStar(double, CatalogEntry, int, DoubleRef, DoubleRef)}.
+   */
+
+  public static void appStarBatch(double ttDate, double ra[], double dec[], double raProperMotion[], double decProperMotion[], double parallax[], double radialVelocity[], int accuracy, double outRa[], double outDec[], short status[]) {
+    starBatch(APP_STAR, ttDate, 0, null, accuracy, ra, dec, raProperMotion, decProperMotion, parallax, radialVelocity, outRa, outDec, status);
+  }
+
+  /**
+   * Compute the apparent places of many stars at date <code>ttDate</code> in
+   * one native call from and to direct buffers.
+   *
+   * @param ttDate
+   *          TT Julian date for apparent place.
+   * @param stars
+   *          direct buffer in native byte order with star records of
+   *          {@link #STAR_RECORD_BYTES} bytes between its position and limit.
+   * @param accuracy
+   *          code specifying the relative accuracy of the output position:
+   *          <BLOCKQUOTE> 0 &rarr; full accuracy<BR>
+   *          1 &rarr; reduced accuracy </BLOCKQUOTE>
+   * @param output
+   *          direct buffer in native byte order for output records of
+   *          {@link #PLACE_RECORD_BYTES} bytes, written from its position.
+   * @param status
+   *          direct buffer in native byte order for status records of
+   *          {@link #STATUS_RECORD_BYTES} bytes, written from its position.
+   */
+
+  public static void appStarBatch(double ttDate, ByteBuffer stars, int accuracy, ByteBuffer output, ByteBuffer status) {
+    starBatch(APP_STAR, ttDate, 0, null, accuracy, stars, output, status);
+  }
+
+  /**
+   * Compute the virtual places of many stars at date <code>ttDate</code> in
+   * one native call. See
+   * {@link #appStarBatch(double, double[], double[], double[], double[], double[], double[], int, double[], double[], short[])}
+   * for the description of parameters and
+   * {@link #virtualStar(double, CatalogEntry, int, DoubleRef, DoubleRef)} for
+   * the description of the reduction.
+   */
+
+  public static void virtualStarBatch(double ttDate, double ra[], double dec[], double raProperMotion[], double decProperMotion[], double parallax[], double radialVelocity[], int accuracy, double outRa[], double outDec[], short status[]) {
+    starBatch(VIRTUAL_STAR, ttDate, 0, null, accuracy, ra, dec, raProperMotion, decProperMotion, parallax, radialVelocity, outRa, outDec, status);
+  }
+
+  /**
+   * Compute the virtual places of many stars at date <code>ttDate</code> in
+   * one native call from and to direct buffers. See
+   * {@link #appStarBatch(double, ByteBuffer, int, ByteBuffer, ByteBuffer)} for
+   * the description of parameters.
+   */
+
+  public static void virtualStarBatch(double ttDate, ByteBuffer stars, int accuracy, ByteBuffer output, ByteBuffer status) {
+    starBatch(VIRTUAL_STAR, ttDate, 0, null, accuracy, stars, output, status);
+  }
+
+  /**
+   * Compute the astrometric places of many stars at date <code>ttDate</code>
+   * in one native call. See
+   * {@link #appStarBatch(double, double[], double[], double[], double[], double[], double[], int, double[], double[], short[])}
+   * for the description of parameters and
+   * {@link #astroStar(double, CatalogEntry, int, DoubleRef, DoubleRef)} for the
+   * description of the reduction.
+   */
+
+  public static void astroStarBatch(double ttDate, double ra[], double dec[], double raProperMotion[], double decProperMotion[], double parallax[], double radialVelocity[], int accuracy, double outRa[], double outDec[], short status[]) {
+    starBatch(ASTRO_STAR, ttDate, 0, null, accuracy, ra, dec, raProperMotion, decProperMotion, parallax, radialVelocity, outRa, outDec, status);
+  }
+
+  /**
+   * Compute the astrometric places of many stars at date <code>ttDate</code>
+   * in one native call from and to direct buffers. See
+   * {@link #appStarBatch(double, ByteBuffer, int, ByteBuffer, ByteBuffer)} for
+   * the description of parameters.
+   */
+
+  public static void astroStarBatch(double ttDate, ByteBuffer stars, int accuracy, ByteBuffer output, ByteBuffer status) {
+    starBatch(ASTRO_STAR, ttDate, 0, null, accuracy, stars, output, status);
+  }
+
+  /**
+   * Compute the local places of many stars at date <code>ttDate</code> in one
+   * native call. See
+   * {@link #appStarBatch(double, double[], double[], double[], double[], double[], double[], int, double[], double[], short[])}
+   * for the description of parameters and
+   * {@link #localStar(double, double, CatalogEntry, PositionOnSurface, int, DoubleRef, DoubleRef)}
+   * for the description of the reduction.
+   */
+
+  public static void localStarBatch(double ttDate, double deltaT, double ra[], double dec[], double raProperMotion[], double decProperMotion[], double parallax[], double radialVelocity[], PositionOnSurface position, int accuracy, double outRa[], double outDec[], short status[]) {
+    starBatch(LOCAL_STAR, ttDate, deltaT, position, accuracy, ra, dec, raProperMotion, decProperMotion, parallax, radialVelocity, outRa, outDec, status);
+  }
+
+  /**
+   * Compute the local places of many stars at date <code>ttDate</code> in one
+   * native call from and to direct buffers. See
+   * {@link #appStarBatch(double, ByteBuffer, int, ByteBuffer, ByteBuffer)} for
+   * the description of parameters.
+   */
+
+  public static void localStarBatch(double ttDate, double deltaT, ByteBuffer stars, PositionOnSurface position, int accuracy, ByteBuffer output, ByteBuffer status) {
+    starBatch(LOCAL_STAR, ttDate, deltaT, position, accuracy, stars, output, status);
+  }
+
+  /**
+   * Compute the topocentric places of many stars at date <code>ttDate</code>
+   * in one native call. See
+   * {@link #appStarBatch(double, double[], double[], double[], double[], double[], double[], int, double[], double[], short[])}
+   * for the description of parameters and
+   * {@link #topoStar(double, double, CatalogEntry, PositionOnSurface, int, DoubleRef, DoubleRef)}
+   * for the description of the reduction.
+   */
+
+  public static void topoStarBatch(double ttDate, double deltaT, double ra[], double dec[], double raProperMotion[], double decProperMotion[], double parallax[], double radialVelocity[], PositionOnSurface position, int accuracy, double outRa[], double outDec[], short status[]) {
+    starBatch(TOPO_STAR, ttDate, deltaT, position, accuracy, ra, dec, raProperMotion, decProperMotion, parallax, radialVelocity, outRa, outDec, status);
+  }
+
+  /**
+   * Compute the topocentric places of many stars at date <code>ttDate</code>
+   * in one native call from and to direct buffers. See
+   * {@link #appStarBatch(double, ByteBuffer, int, ByteBuffer, ByteBuffer)} for
+   * the description of parameters.
+   */
+
+  public static void topoStarBatch(double ttDate, double deltaT, ByteBuffer stars, PositionOnSurface position, int accuracy, ByteBuffer output, ByteBuffer status) {
+    starBatch(TOPO_STAR, ttDate, deltaT, position, accuracy, stars, output, status);
+  }
+
+  /**
+   * Number of stars in one task of
+   * {@link #reduceCatalog(double, double, Observer, int, int, double[], double[], double[], double[], double[], double[], double[], double[], short[], Executor)}
+   * . Tasks are small enough to balance load across many workers and large
+   * enough to amortize date-dependent computations cached by each worker.
+   */
+
+  public static final int CATALOG_CHUNK_SIZE = 1024;
+
+  private static Executor catalogExecutor;
+
+  private static native void placeBatch(double ttDate, double deltaT, Observer location, int coordinateSystem, int accuracy, double ra[], double dec[], double raProperMotion[], double decProperMotion[], double parallax[], double radialVelocity[], double outRa[], double outDec[], short status[], int offset, int count);
+
+  private static native void placeBatchColumns(double ttDate, double deltaT, Observer location, int coordinateSystem, int accuracy, ByteBuffer columns[], double outRa[], double outDec[], short status[], int offset, int count);
+
+  /**
+   * Get executor used by reduceCatalog() if no executor is given. It is a
+   * fixed pool of daemon threads, one for each available processor, created
+   * on first use.
+   *
+   * @return shared executor
+   */
+
+  public static synchronized Executor getCatalogExecutor() {
+    if (catalogExecutor == null) {
+      catalogExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+        private int count;
+
+        public synchronized Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "NOVAS catalog worker " + (++count));
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return catalogExecutor;
+  }
+
+  /**
+   * Compute places of stars of a catalog in parallel.
+   * <p>
+   * Catalog is split into tasks of {@link #CATALOG_CHUNK_SIZE} stars executed
+   * by <code>executor</code>, each task reduces its stars by place() in one
+   * native call and writes the results directly to its part of the output
+   * arrays. NOVAS keeps its date-dependent state per thread, so every worker
+   * thread has its own computation context and workers don't share any
+   * mutable state. The calling thread takes tasks too, so it never waits for
+   * a task queued behind it and the method can be called from a worker of
+   * <code>executor</code> (e.g. of the shared one) without deadlock, even
+   * with a single thread pool. Tasks rejected by the executor are left to
+   * the calling thread. The method returns when all tasks are finished.
+   * <p>
+   * If the calling thread is interrupted while waiting for tasks of other
+   * threads, no new task is started, but tasks already running keep writing
+   * to the output arrays after InterruptedException is thrown.
+   * <p>
+   * Input and output arrays are indexed by star, see
+   * {@link #appStarBatch(double, double[], double[], double[], double[], double[], double[], int, double[], double[], short[])}
+   * for units.
+   *
+   * @param ttDate
+   *          TT Julian date for place.
+   * @param deltaT
+   *          Difference TT-UT1 at <code>ttDate</code>, in seconds of time.
+   * @param location
+   *          Location of observer.
+   * @param coordinateSystem
+   *          Code specifying coordinate system of the output position, see
+   *          {@link #place(double, CelestialObject, Observer, double, int, int, SkyPosition)}
+   *          .
+   * @param accuracy
+   *          Code specifying the relative accuracy of the output position:
+   *          <BLOCKQUOTE> 0 &rarr; full accuracy<BR>
+   *          1 &rarr; reduced accuracy </BLOCKQUOTE>
+   * @param outRa
+   *          Output right ascensions in hours.
+   * @param outDec
+   *          Output declinations in degrees.
+   * @param status
+   *          Output error codes of place(), places of failed stars are set to
+   *          NaN.
+   * @param executor
+   *          Executor running the tasks, e.g. a ForkJoinPool, or null to use
+   *          {@link #getCatalogExecutor()}.
+   * @throws InterruptedException
+   *           if the calling thread is interrupted while waiting for tasks,
+   *           output arrays may still be written by running tasks
+   */
+
+  public static void reduceCatalog(final double ttDate, final double deltaT, final Observer location, final int coordinateSystem, final int accuracy, final double ra[], final double dec[], final double raProperMotion[], final double decProperMotion[], final double parallax[], final double radialVelocity[], final double outRa[], final double outDec[], final short status[], Executor executor) throws InterruptedException {
+    int count = ra.length;
+    if (dec.length < count || raProperMotion.length < count || decProperMotion.length < count || parallax.length < count || radialVelocity.length < count || outRa.length < count || outDec.length < count || status.length < count)
+      throw new IllegalArgumentException("All arrays must have at least " + count + " elements");
+    if (location == null)
+      throw new NullPointerException("location");
+    if (coordinateSystem == 2)
+      needCioTable();
+    runChunks(count, new CatalogChunk() {
+      void reduce(int offset, int count) {
+        placeBatch(ttDate, deltaT, location, coordinateSystem, accuracy, ra, dec, raProperMotion, decProperMotion, parallax, radialVelocity, outRa, outDec, status, offset, count);
+      }
+    }, executor);
+  }
+
+  /**
+   * Part of a catalog reduced by one task of reduceCatalog().
+   */
+
+  private static abstract class CatalogChunk {
+    abstract void reduce(int offset, int count);
+  }
+
+  private static void runChunks(final int count, final CatalogChunk chunk, Executor executor) throws InterruptedException {
+    if (executor == null)
+      executor = getCatalogExecutor();
+    final int chunks = (count + CATALOG_CHUNK_SIZE - 1) / CATALOG_CHUNK_SIZE;
+    final AtomicInteger next = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(chunks);
+    final Throwable failure[] = new Throwable[1];
+    /* every task (and the calling thread) takes chunks until none is left */
+    Runnable task = new Runnable() {
+      public void run() {
+        int i;
+        while ((i = next.getAndIncrement()) < chunks) {
+          int offset = i * CATALOG_CHUNK_SIZE;
+          try {
+            chunk.reduce(offset, Math.min(CATALOG_CHUNK_SIZE, count - offset));
+          } catch (Throwable throwable) {
+            synchronized (failure) {
+              if (failure[0] == null)
+                failure[0] = throwable;
+            }
+          } finally {
+            done.countDown();
+          }
+        }
+      }
+    };
+    for (int i = 1; i < chunks; i++) {
+      try {
+        executor.execute(task);
+      } catch (RejectedExecutionException exception) {
+        break;
+      }
+    }
+    task.run();
+    try {
+      done.await();
+    } catch (InterruptedException exception) {
+      next.set(chunks);
+      throw exception;
+    }
+    synchronized (failure) {
+      if (failure[0] instanceof RuntimeException)
+        throw (RuntimeException) failure[0];
+      if (failure[0] instanceof Error)
+        throw (Error) failure[0];
+    }
+  }
+
+  /**
+   * Compute places of a collection of stars in parallel. Outputs are indexed
+   * in iteration order of <code>stars</code>, see
+   * {@link #reduceCatalog(double, double, Observer, int, int, double[], double[], double[], double[], double[], double[], double[], double[], short[], Executor)}
+   * for details.
+   *
+   * @throws InterruptedException
+   *           if the calling thread is interrupted while waiting for tasks
+   */
+
+  public static void reduceCatalog(double ttDate, double deltaT, Observer location, int coordinateSystem, int accuracy, Collection<CatalogEntry> stars, double outRa[], double outDec[], short status[], Executor executor) throws InterruptedException {
+    int count = stars.size();
+    double ra[] = new double[count], dec[] = new double[count], raProperMotion[] = new double[count], decProperMotion[] = new double[count], parallax[] = new double[count], radialVelocity[] = new double[count];
+    int i = 0;
+    for (CatalogEntry star : stars) {
+      ra[i] = star.ra;
+      dec[i] = star.dec;
+      raProperMotion[i] = star.raProperMotion;
+      decProperMotion[i] = star.decProperMotion;
+      parallax[i] = star.parallax;
+      radialVelocity[i] = star.radialVelocity;
+      i++;
+    }
+    reduceCatalog(ttDate, deltaT, location, coordinateSystem, accuracy, ra, dec, raProperMotion, decProperMotion, parallax, radialVelocity, outRa, outDec, status, executor);
+  }
+
+  /**
+   * Compute places of stars of an off-heap catalog in parallel. Native code
+   * reads the columns of the catalog directly, no data is copied. If the
+   * catalog keeps barycentric vectors, place() starts from them instead of
+   * calling starvectors() for every star. Outputs are indexed like the
+   * catalog, see
+   * {@link #reduceCatalog(double, double, Observer, int, int, double[], double[], double[], double[], double[], double[], double[], double[], short[], Executor)}
+   * for details.
+   *
+   * @throws InterruptedException
+   *           if the calling thread is interrupted while waiting for tasks
+   */
+
+  public static void reduceCatalog(final double ttDate, final double deltaT, final Observer location, final int coordinateSystem, final int accuracy, StarCatalog catalog, final double outRa[], final double outDec[], final short status[], Executor executor) throws InterruptedException {
+    int count = catalog.size();
+    if (outRa.length < count || outDec.length < count || status.length < count)
+      throw new IllegalArgumentException("All arrays must have at least " + count + " elements");
+    if (location == null)
+      throw new NullPointerException("location");
+    if (coordinateSystem == 2)
+      needCioTable();
+    final ByteBuffer columns[] = new ByteBuffer[catalog.hasVectors() ? StarCatalog.VECTOR_COLUMNS : StarCatalog.ANGULAR_COLUMNS];
+    for (int i = 0; i < columns.length; i++)
+      columns[i] = catalog.getColumn(i);
+    runChunks(count, new CatalogChunk() {
+      void reduce(int offset, int count) {
+        placeBatchColumns(ttDate, deltaT, location, coordinateSystem, accuracy, columns, outRa, outDec, status, offset, count);
+      }
+    }, executor);
+  }
+
   /**
    * Compute the apparent place of a solar system body.
    * <p>
@@ -933,6 +1773,17 @@ public class NOVAS {
 
   public static native short appPlanet(double ttDate, CelestialObject body, int accuracy, DoubleRef ra, DoubleRef dec, DoubleRef distance);
 
+  /**
+   * Variant of
+   * {@link #appPlanet(double, CelestialObject, int, DoubleRef, DoubleRef, DoubleRef)}
+   * writing right ascension, declination and distance to
+   * <code>output[offset]</code> ... <code>output[offset + 2]</code>, steady state calls allocate nothing.
+   */
+
+  public static short appPlanet(double ttDate, CelestialObject body, int accuracy, double output[], int offset) {
+    return planetPlaceArray(APP_STAR, ttDate, body, 0, null, accuracy, output, offset);
+  }
+
   /**
    * Compute the virtual place of a solar system body.
    * <p>
@@ -961,6 +1812,17 @@ public class NOVAS {
 
   public static native short virtualPlanet(double ttDate, CelestialObject body, int accuracy, DoubleRef ra, DoubleRef dec, DoubleRef distance);
 
+  /**
+   * Variant of
+   * {@link #virtualPlanet(double, CelestialObject, int, DoubleRef, DoubleRef, DoubleRef)}
+   * writing right ascension, declination and distance to
+   * <code>output[offset]</code> ... <code>output[offset + 2]</code>, steady state calls allocate nothing.
+   */
+
+  public static short virtualPlanet(double ttDate, CelestialObject body, int accuracy, double output[], int offset) {
+    return planetPlaceArray(VIRTUAL_STAR, ttDate, body, 0, null, accuracy, output, offset);
+  }
+
   /**
    * Compute the astrometric place of a solar system body.
    * <p>
@@ -991,6 +1853,17 @@ public class NOVAS {
 
   public static native short astroPlanet(double ttDate, CelestialObject body, int accuracy, DoubleRef ra, DoubleRef dec, DoubleRef distance);
 
+  /**
+   * Variant of
+   * {@link #astroPlanet(double, CelestialObject, int, DoubleRef, DoubleRef, DoubleRef)}
+   * writing right ascension, declination and distance to
+   * <code>output[offset]</code> ... <code>output[offset + 2]</code>, steady state calls allocate nothing.
+   */
+
+  public static short astroPlanet(double ttDate, CelestialObject body, int accuracy, double output[], int offset) {
+    return planetPlaceArray(ASTRO_STAR, ttDate, body, 0, null, accuracy, output, offset);
+  }
+
   /**
    * Compute the local place of a solar system body.
    * <p>
@@ -1023,6 +1896,19 @@ public class NOVAS {
 
   public static native short localPlanet(double ttDate, CelestialObject body, double deltaT, PositionOnSurface position, int accuracy, DoubleRef ra, DoubleRef dec, DoubleRef distance);
 
+  /**
+   * Variant of
+   * {@link #localPlanet(double, CelestialObject, double, PositionOnSurface, int, DoubleRef, DoubleRef, DoubleRef)}
+   * writing right ascension, declination and distance to
+   * <code>output[offset]</code> ... <code>output[offset + 2]</code>, steady state calls allocate nothing.
+   */
+
+  public static short localPlanet(double ttDate, CelestialObject body, double deltaT, PositionOnSurface position, int accuracy, double output[], int offset) {
+    if (position == null)
+      throw new NullPointerException("position");
+    return planetPlaceArray(LOCAL_STAR, ttDate, body, deltaT, position, accuracy, output, offset);
+  }
+
   /**
    * Compute the topocentric place of a solar system body.
    * <p>
@@ -1057,6 +1943,19 @@ public class NOVAS {
 
   public static native short topoPlanet(double ttDate, CelestialObject body, double deltaT, PositionOnSurface position, int accuracy, DoubleRef ra, DoubleRef dec, DoubleRef distance);
 
+  /**
+   * Variant of
+   * {@link #topoPlanet(double, CelestialObject, double, PositionOnSurface, int, DoubleRef, DoubleRef, DoubleRef)}
+   * writing right ascension, declination and distance to
+   * <code>output[offset]</code> ... <code>output[offset + 2]</code>, steady state calls allocate nothing.
+   */
+
+  public static short topoPlanet(double ttDate, CelestialObject body, double deltaT, PositionOnSurface position, int accuracy, double output[], int offset) {
+    if (position == null)
+      throw new NullPointerException("position");
+    return planetPlaceArray(TOPO_STAR, ttDate, body, deltaT, position, accuracy, output, offset);
+  }
+
   /**
    * Transform topocentric right ascension and declination to zenith distance
    * and azimuth. It uses a method that properly accounts for polar motion,
@@ -1111,6 +2010,21 @@ public class NOVAS {
 
   public static native void equatorialToHorizontal(double ut1Date, double deltaT, int accuracy, double xp, double yp, PositionOnSurface position, double ra, double dec, int refOption, DoubleRef zd, DoubleRef ad, DoubleRef rar, DoubleRef decr);
 
+  private static native void equatorialToHorizontalArray(double ut1Date, double deltaT, int accuracy, double xp, double yp, PositionOnSurface position, double ra, double dec, int refOption, double output[], int offset);
+
+  /**
+   * Variant of
+   * {@link #equatorialToHorizontal(double, double, int, double, double, PositionOnSurface, double, double, int, DoubleRef, DoubleRef, DoubleRef, DoubleRef)}
+   * writing zenith distance, azimuth, right ascension and declination to
+   * <code>output[offset]</code> ... <code>output[offset + 3]</code>, steady state calls allocate nothing.
+   */
+
+  public static void equatorialToHorizontal(double ut1Date, double deltaT, int accuracy, double xp, double yp, PositionOnSurface position, double ra, double dec, int refOption, double output[], int offset) {
+    if (position == null)
+      throw new NullPointerException("position");
+    equatorialToHorizontalArray(ut1Date, deltaT, accuracy, xp, yp, position, ra, dec, refOption, output, offset);
+  }
+
   /**
    * Computes the Greenwich sidereal time, either mean or apparent, at Julian
    * date.
@@ -1141,6 +2055,512 @@ public class NOVAS {
    *          Greenwich (mean or apparent) sidereal time, in hours.
    */
 
-  public static native short siderealTime(double ttDate, double deltaT, int gstType, int method, int accuracy, DoubleRef gst);
+  public static short siderealTime(double ttDate, double deltaT, int gstType, int method, int accuracy, DoubleRef gst) {
+    if (method == 0)
+      needCioTable();
+    return siderealTimeRef(ttDate, deltaT, gstType, method, accuracy, gst);
+  }
+
+  private static native short siderealTimeRef(double ttDate, double deltaT, int gstType, int method, int accuracy, DoubleRef gst);
+
+  private static native short siderealTimeArray(double ttDate, double deltaT, int gstType, int method, int accuracy, double gst[], int offset);
+
+  /**
+   * Variant of
+   * {@link #siderealTime(double, double, int, int, int, DoubleRef)}
+   * writing sidereal time to <code>gst[offset]</code>, steady state calls allocate nothing.
+   */
+
+  public static short siderealTime(double ttDate, double deltaT, int gstType, int method, int accuracy, double gst[], int offset) {
+    if (method == 0)
+      needCioTable();
+    return siderealTimeArray(ttDate, deltaT, gstType, method, accuracy, gst, offset);
+  }
+
+  private static native short siderealTimeSeries(double ut1High[], double ut1Low[], int offset, int count, double deltaT, int gstType, int method, int accuracy, double gst[], ByteBuffer frameTable);
+
+  /**
+   * Compute the Greenwich sidereal time, either mean or apparent, for an
+   * array of UT1 Julian dates.
+   * <p>
+   * Equivalent of calling sidereal_time() for
+   * <code>ut1High[i] + ut1Low[i]</code>, <code>i = 0 .. ut1High.length - 1</code>,
+   * but with one native call per {@link #BATCH_CHUNK_SIZE} dates and with
+   * the split date passed through, so precision of the Earth rotation angle
+   * isn't lost for high resolution timestamps.
+   * <p>
+   * If the equation of the equinoxes or the CIO basis is needed (apparent
+   * sidereal time by the equinox method, any sidereal time by the CIO
+   * method), nutation angles and the complementary terms of the equation of
+   * the equinoxes are read from a nutation table instead of evaluating the
+   * series for every date. Unless a table covering the dates is installed
+   * with {@link #useFrameTable(FrameTable)}, a temporary {@link FrameTable}
+   * fitted with its default tolerance of 1 microarcsecond is used for dense
+   * enough dates spanning up to 32 days, or else for each chunk of dates
+   * spanning up to 32 days. The error of the equation of the equinoxes
+   * introduced by the table is thus below 1 microarcsecond (about 7e-11 s
+   * of sidereal time).
+   *
+   * @param ut1High
+   *          high-order parts of UT1 Julian dates
+   * @param ut1Low
+   *          low-order parts of UT1 Julian dates or null if zero
+   * @param deltaT
+   *          difference TT-UT1 in seconds of time
+   * @param gstType
+   *          selection for type, see
+   *          {@link #siderealTime(double, double, int, int, int, DoubleRef)}
+   * @param method
+   *          selection for method, see
+   *          {@link #siderealTime(double, double, int, int, int, DoubleRef)}
+   * @param accuracy
+   *          code specifying the relative accuracy: <BLOCKQUOTE> 0 &rarr;
+   *          full accuracy<BR>
+   *          1 &rarr; reduced accuracy </BLOCKQUOTE>
+   * @param gst
+   *          output Greenwich (mean or apparent) sidereal times in hours, can
+   *          be the same array as <code>ut1High</code> or
+   *          <code>ut1Low</code>
+   * @return error code of the first failed date (see
+   *         {@link #siderealTime(double, double, int, int, int, DoubleRef)}
+   *         ), outputs of failed dates are set to NaN
+   */
+
+  public static short siderealTimeSeries(double ut1High[], double ut1Low[], double deltaT, int gstType, int method, int accuracy, double gst[]) {
+    int count = ut1High.length;
+    if ((ut1Low != null && ut1Low.length < count) || gst.length < count)
+      throw new IllegalArgumentException("All arrays must have at least " + count + " elements");
+    if (method == 0)
+      needCioTable();
+    short result = 0;
+    ByteBuffer table = null;
+    boolean nutation = gstType == 1 || method == 0;
+    boolean chunked = false;
+    if (nutation && count > 0) {
+      double range[] = tdbRange(ut1High, ut1Low, 0, count, deltaT);
+      table = seriesTable(range[0], range[1], count, accuracy);
+      chunked = table == null && range[1] - range[0] > SERIES_TABLE_MAX_DAYS;
+    }
+    for (int offset = 0; offset < count; offset += BATCH_CHUNK_SIZE) {
+      int chunk = Math.min(BATCH_CHUNK_SIZE, count - offset);
+      if (chunked) {
+        double range[] = tdbRange(ut1High, ut1Low, offset, chunk, deltaT);
+        table = seriesTable(range[0], range[1], chunk, accuracy);
+      }
+      short error = siderealTimeSeries(ut1High, ut1Low, offset, chunk, deltaT, gstType, method, accuracy, gst, table);
+      if (result == 0)
+        result = error;
+    }
+    return result;
+  }
+
+  /**
+   * Get the range of TDB Julian dates (approximated by TT with a margin) for
+   * a part of an array of UT1 Julian dates.
+   */
+
+  private static double[] tdbRange(double ut1High[], double ut1Low[], int offset, int count, double deltaT) {
+    double first = Double.POSITIVE_INFINITY, last = Double.NEGATIVE_INFINITY;
+    for (int i = offset; i < offset + count; i++) {
+      double date = ut1Low == null ? ut1High[i] : ut1High[i] + ut1Low[i];
+      if (date < first)
+        first = date;
+      if (date > last)
+        last = date;
+    }
+    return new double[] { first + deltaT / 86400.0 - 0.001, last + deltaT / 86400.0 + 0.001 };
+  }
+
+  private static native void earthRotationAngleSeries(double ut1High[], double ut1Low[], int offset, int count, double theta[]);
+
+  /**
+   * Compute the Earth Rotation Angle (theta) for an array of UT1 Julian
+   * dates, with one native call per {@link #BATCH_CHUNK_SIZE} dates.
+   * <p>
+   * Wrapper for era() method, for more information, see
+   * NOVAS_C3.1_Guide.pdf.
+   *
+   * @param ut1High
+   *          high-order parts of UT1 Julian dates
+   * @param ut1Low
+   *          low-order parts of UT1 Julian dates or null if zero
+   * @param theta
+   *          output Earth Rotation Angles in degrees, can be the same array
+   *          as <code>ut1High</code> or <code>ut1Low</code>
+   */
+
+  public static void earthRotationAngleSeries(double ut1High[], double ut1Low[], double theta[]) {
+    int count = ut1High.length;
+    if ((ut1Low != null && ut1Low.length < count) || theta.length < count)
+      throw new IllegalArgumentException("All arrays must have at least " + count + " elements");
+    for (int offset = 0; offset < count; offset += BATCH_CHUNK_SIZE)
+      earthRotationAngleSeries(ut1High, ut1Low, offset, Math.min(BATCH_CHUNK_SIZE, count - offset), theta);
+  }
+
+  private static native short rotateVectors(boolean celestial, double ut1High, double ut1Low, double ut1Lows[], double deltaT, int method, int accuracy, int option, double xp, double yp, double input[], double output[], int offset, int count);
+
+  private static short rotateVectors(boolean celestial, double ut1High, double ut1Low, double ut1Lows[], double deltaT, int method, int accuracy, int option, double xp, double yp, double input[], double output[]) {
+    if (input.length % 3 != 0 || output.length < input.length)
+      throw new IllegalArgumentException("Input must contain xyz triples and output must have at least " + input.length + " elements");
+    int count = input.length / 3;
+    if (ut1Lows != null && ut1Lows.length < count)
+      throw new IllegalArgumentException("Dates must have at least " + count + " elements");
+    if (method == 0)
+      needCioTable();
+    short result = 0;
+    for (int offset = 0; result == 0 && offset < count; offset += BATCH_CHUNK_SIZE)
+      result = rotateVectors(celestial, ut1High, ut1Low, ut1Lows, deltaT, method, accuracy, option, xp, yp, input, output, offset, Math.min(BATCH_CHUNK_SIZE, count - offset));
+    return result;
+  }
+
+  /**
+   * Rotate vectors from the terrestrial to the celestial system, i.e. from
+   * ITRS (rotating earth-fixed system) to GCRS (a local space-fixed system)
+   * by applying rotations for polar motion, Earth rotation, nutation,
+   * precession, and the dynamical-to-GCRS frame tie.
+   * <p>
+   * Wrapper for ter2cel() applied to packed xyz triples, the rotation matrix
+   * is computed once per {@link #BATCH_CHUNK_SIZE} vectors and each vector
+   * costs one 3x3 multiply. Input and output may be the same array.
+   *
+   * @param ut1High
+   *          high-order part of UT1 Julian date.
+   * @param ut1Low
+   *          low-order part of UT1 Julian date.
+   * @param deltaT
+   *          value of Delta T (= TT - UT1) at the input UT1 Julian date.
+   * @param method
+   *          selection for method <BLOCKQUOTE> 0 &rarr; CIO-based method<BR>
+   *          1 &rarr; equinox-based method</BLOCKQUOTE>
+   * @param accuracy
+   *          selection for accuracy <BLOCKQUOTE> 0 &rarr; full accuracy<BR>
+   *          1 &rarr; reduced accuracy</BLOCKQUOTE>
+   * @param option
+   *          <BLOCKQUOTE> 0 &rarr; the output vectors are referred to GCRS
+   *          axes<BR>
+   *          1 &rarr; the output vectors are produced with respect to the
+   *          equator and equinox of date (equinox-based method only)
+   *          </BLOCKQUOTE>
+   * @param xp
+   *          conventionally-defined X coordinate of celestial intermediate
+   *          pole with respect to ITRS pole, in arcseconds (0 for no polar
+   *          motion).
+   * @param yp
+   *          conventionally-defined Y coordinate of celestial intermediate
+   *          pole with respect to ITRS pole, in arcseconds (0 for no polar
+   *          motion).
+   * @param input
+   *          position vectors as xyz triples, geocentric equatorial
+   *          rectangular coordinates, referred to ITRS axes.
+   * @param output
+   *          position vectors as xyz triples, geocentric equatorial
+   *          rectangular coordinates, referred to GCRS axes or with respect
+   *          to the equator and equinox of date, depending on 'option'.
+   * @return error code: <blockquote> 0 &rarr; no problems<br>
+   *         1 &rarr; invalid value of 'accuracy'<br>
+   *         2 &rarr; invalid value of 'method'<br>
+   *         > 10 &rarr; 10 + error from function 'cio_location'<br>
+   *         > 20 &rarr; 20 + error from function 'cio_basis'</blockquote>
+   */
+
+  public static short terrestrialToCelestial(double ut1High, double ut1Low, double deltaT, int method, int accuracy, int option, double xp, double yp, double input[], double output[]) {
+    return rotateVectors(true, ut1High, ut1Low, null, deltaT, method, accuracy, option, xp, yp, input, output);
+  }
+
+  /**
+   * Variant of
+   * {@link #terrestrialToCelestial(double, double, double, int, int, int, double, double, double[], double[])}
+   * with own UT1 date <code>ut1High + ut1Lows[i]</code> for each vector
+   * <code>i</code>. The rotation matrix is computed again only when the
+   * date differs from the date of the previous vector, so vectors should be
+   * grouped by date. Processing stops at the first error, vectors of
+   * previous dates are rotated.
+   */
+
+  public static short terrestrialToCelestial(double ut1High, double ut1Lows[], double deltaT, int method, int accuracy, int option, double xp, double yp, double input[], double output[]) {
+    return rotateVectors(true, ut1High, 0, ut1Lows, deltaT, method, accuracy, option, xp, yp, input, output);
+  }
+
+  /**
+   * Rotate vectors from the celestial to the terrestrial system, i.e. from
+   * GCRS (a local space-fixed system) to ITRS (a rotating earth-fixed system)
+   * by applying rotations for the GCRS-to-dynamical frame tie, precession,
+   * nutation, Earth rotation, and polar motion.
+   * <p>
+   * Wrapper for cel2ter() applied to packed xyz triples, the rotation matrix
+   * is computed once per {@link #BATCH_CHUNK_SIZE} vectors and each vector
+   * costs one 3x3 multiply. Input and output may be the same array.
+   *
+   * @param ut1High
+   *          high-order part of UT1 Julian date.
+   * @param ut1Low
+   *          low-order part of UT1 Julian date.
+   * @param deltaT
+   *          value of Delta T (= TT - UT1) at the input UT1 Julian date.
+   * @param method
+   *          selection for method <BLOCKQUOTE> 0 &rarr; CIO-based method<BR>
+   *          1 &rarr; equinox-based method</BLOCKQUOTE>
+   * @param accuracy
+   *          selection for accuracy <BLOCKQUOTE> 0 &rarr; full accuracy<BR>
+   *          1 &rarr; reduced accuracy</BLOCKQUOTE>
+   * @param option
+   *          <BLOCKQUOTE> 0 &rarr; the input vectors are referred to GCRS
+   *          axes<BR>
+   *          1 &rarr; the input vectors are produced with respect to the
+   *          equator and equinox of date (equinox-based method only)
+   *          </BLOCKQUOTE>
+   * @param xp
+   *          conventionally-defined X coordinate of celestial intermediate
+   *          pole with respect to ITRS pole, in arcseconds (0 for no polar
+   *          motion).
+   * @param yp
+   *          conventionally-defined Y coordinate of celestial intermediate
+   *          pole with respect to ITRS pole, in arcseconds (0 for no polar
+   *          motion).
+   * @param input
+   *          position vectors as xyz triples, geocentric equatorial
+   *          rectangular coordinates, referred to GCRS axes or with respect
+   *          to the equator and equinox of date, depending on 'option'.
+   * @param output
+   *          position vectors as xyz triples, geocentric equatorial
+   *          rectangular coordinates, referred to ITRS axes.
+   * @return error code: <blockquote> 0 &rarr; no problems<br>
+   *         1 &rarr; invalid value of 'accuracy'<br>
+   *         2 &rarr; invalid value of 'method'<br>
+   *         > 10 &rarr; 10 + error from function 'cio_location'<br>
+   *         > 20 &rarr; 20 + error from function 'cio_basis'</blockquote>
+   */
+
+  public static short celestialToTerrestrial(double ut1High, double ut1Low, double deltaT, int method, int accuracy, int option, double xp, double yp, double input[], double output[]) {
+    return rotateVectors(false, ut1High, ut1Low, null, deltaT, method, accuracy, option, xp, yp, input, output);
+  }
+
+  /**
+   * Variant of
+   * {@link #celestialToTerrestrial(double, double, double, int, int, int, double, double, double[], double[])}
+   * with own UT1 date <code>ut1High + ut1Lows[i]</code> for each vector
+   * <code>i</code>. The rotation matrix is computed again only when the
+   * date differs from the date of the previous vector, so vectors should be
+   * grouped by date. Processing stops at the first error, vectors of
+   * previous dates are rotated.
+   */
+
+  public static short celestialToTerrestrial(double ut1High, double ut1Lows[], double deltaT, int method, int accuracy, int option, double xp, double yp, double input[], double output[]) {
+    return rotateVectors(false, ut1High, 0, ut1Lows, deltaT, method, accuracy, option, xp, yp, input, output);
+  }
+
+  private static native void ephemerisStatistics(long statistics[]);
+
+  /**
+   * Get JPL ephemeris access statistics.
+   * <p>
+   * Ephemeris file is memory mapped and Chebyshev coefficients are
+   * interpolated straight from the mapped records, each thread keeps only
+   * index of its current record. In steady state
+   * {@link EphemerisStatistics#fileReads} doesn't grow.
+   *
+   * @return snapshot of statistics
+   */
+
+  public static EphemerisStatistics getEphemerisStatistics() {
+    long values[] = new long[3];
+    ephemerisStatistics(values);
+    EphemerisStatistics statistics = new EphemerisStatistics();
+    statistics.mappedBytes = values[0];
+    statistics.recordLoads = values[1];
+    statistics.fileReads = values[2];
+    return statistics;
+  }
+
+  private static native void installCompactEphemeris(ByteBuffer data);
+
+  private static CompactEphemeris compactEphemeris;
+
+  /**
+   * Install compact ephemeris to be used by all functions computing positions
+   * of solar system bodies.
+   * <p>
+   * Within the window of the compact ephemeris positions and velocities are
+   * evaluated from its Chebyshev segments, outside of it (or for bodies it
+   * doesn't provide) the JPL or analytic ephemeris is used as before.
+   * Ephemeris can be replaced while other threads compute positions, but an
+   * installed ephemeris is never released, so it stays in memory even after
+   * it is replaced.
+   *
+   * @param ephemeris
+   *          compact ephemeris or null to uninstall it
+   */
+
+  public static synchronized void useCompactEphemeris(CompactEphemeris ephemeris) {
+    if (ephemeris != null)
+      installed.add(ephemeris);
+    installCompactEphemeris(ephemeris == null ? null : ephemeris.toByteBuffer());
+    compactEphemeris = ephemeris;
+  }
+
+  /**
+   * Get installed compact ephemeris.
+   *
+   * @return compact ephemeris or null
+   */
+
+  public static synchronized CompactEphemeris getCompactEphemeris() {
+    return compactEphemeris;
+  }
+
+  private static native void installFrameTable(ByteBuffer data);
+
+  private static FrameTable frameTable;
+
+  /**
+   * Install fitted table of nutation angles and equation of the equinoxes.
+   * <p>
+   * For the dates and accuracy covered by the table all functions depending
+   * on e_tilt() (place(), siderealTime(), ...) use the table instead of
+   * evaluating the nutation series, otherwise the series is evaluated as
+   * before. Table can be replaced while other threads compute positions,
+   * but an installed table is never released, so it stays in memory even
+   * after it is replaced.
+   *
+   * @param table
+   *          table or null to uninstall it
+   */
+
+  public static synchronized void useFrameTable(FrameTable table) {
+    if (table != null)
+      installed.add(table);
+    installFrameTable(table == null ? null : table.toByteBuffer());
+    frameTable = table;
+  }
+
+  /**
+   * Get installed fitted table of nutation angles.
+   *
+   * @return table or null
+   */
+
+  public static synchronized FrameTable getFrameTable() {
+    return frameTable;
+  }
+
+  private static native void installCioTable(ByteBuffer data);
+
+  private static CioTable cioTable;
+
+  /**
+   * True once the table selected by {@link #CIO_TABLE_PROPERTY} has been
+   * installed or a table has been installed or removed by useCioTable().
+   */
+
+  private static volatile boolean cioTableSelected;
+
+  /**
+   * Install the table selected by {@link #CIO_TABLE_PROPERTY} before the first
+   * CIO based computation. Reading the default table takes tens of
+   * milliseconds, so it isn't done when the class is loaded.
+   */
+
+  private static void needCioTable() {
+    if (!cioTableSelected)
+      selectCioTable();
+  }
+
+  private static synchronized void selectCioTable() {
+    if (cioTableSelected)
+      return;
+    String cio = System.getProperty(CIO_TABLE_PROPERTY);
+    if (cio == null)
+      useCioTable(CioTable.getDefault());
+    else if (!cio.equals("none")) {
+      try {
+        InputStream in = new FileInputStream(cio);
+        try {
+          useCioTable(CioTable.read(in));
+        } finally {
+          in.close();
+        }
+      } catch (IOException exception) {
+        System.err.println(cio + " can't be read: " + exception.getMessage());
+      }
+    }
+    cioTableSelected = true;
+  }
+
+  /**
+   * Install table of the right ascension of the CIO.
+   * <p>
+   * For the dates covered by the table cio_location() interpolates in the
+   * table instead of reading cio_ra.bin or computing the equation of the
+   * origins, so CIO based functions (cel2ter(), siderealTime() with method
+   * 0, ...) do no I/O. The table returned by {@link CioTable#getDefault()}
+   * is installed before the first CIO based computation unless
+   * {@link #CIO_TABLE_PROPERTY} says otherwise or a table was installed or
+   * removed by this method before.
+   * Native library keeps the value for the date of the last call in
+   * per-thread caches, so installing or removing a table affects only new
+   * dates. An installed table is never released, so it stays in memory even
+   * after it is replaced.
+   *
+   * @param table
+   *          table or null to uninstall it
+   */
+
+  public static synchronized void useCioTable(CioTable table) {
+    if (table != null)
+      installed.add(table);
+    installCioTable(table == null ? null : table.toByteBuffer());
+    cioTable = table;
+    cioTableSelected = true;
+  }
+
+  /**
+   * Get installed table of the right ascension of the CIO.
+   *
+   * @return table or null
+   */
+
+  public static synchronized CioTable getCioTable() {
+    needCioTable();
+    return cioTable;
+  }
+
+  private static native void selectAnalyticEphemeris(boolean analytic);
+
+  private static boolean analyticEphemeris;
+
+  /**
+   * Switch between JPL ephemeris (solsys1.c) and analytic ephemeris
+   * (solsys3.c). Analytic ephemeris provides only the Earth and the Sun, it is
+   * used regardless of this switch if the JPL ephemeris file couldn't be
+   * opened. Compact ephemeris, if installed, takes precedence over both.
+   * Ephemeris shouldn't be switched while other threads compute positions,
+   * caches of the calling thread may keep positions for the last date.
+   *
+   * @param analytic
+   *          true to use analytic ephemeris
+   */
+
+  public static synchronized void useAnalyticEphemeris(boolean analytic) {
+    selectAnalyticEphemeris(analytic);
+    analyticEphemeris = analytic;
+  }
+
+  /**
+   * Check if analytic ephemeris was selected.
+   *
+   * @return true if analytic ephemeris is used
+   */
+
+  public static synchronized boolean isAnalyticEphemeris() {
+    return analyticEphemeris;
+  }
+
+  // metrics recorded by the native library, see NovasMetrics
+
+  static native void metricsEnable(boolean enabled);
+
+  static native void metricsReset();
+
+  static native int metricsSnapshot(long values[]);
 
 }
@@ -0,0 +1,372 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+
+package eu.cloudmakers.astronometry;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics of the NOVAS native library.
+ * <p>
+ * Every JNI entry point counts its calls and non-zero error codes, every
+ * {@value #SAMPLE}-th call of a thread is timed (including marshalling of
+ * arguments and results) and recorded in a logarithmic latency histogram of
+ * the method. Variants writing to arrays are counted with the corresponding
+ * DoubleRef method, batch methods count one call and every failed element.
+ * The library also counts ephemeris lookups served by the current record of
+ * the thread, CIO file reads and nutation series evaluations, so latency
+ * spikes can be attributed to ephemeris I/O or nutation.
+ * <p>
+ * Counters are striped per thread in native memory and incremented without
+ * locking, recording costs a few nanoseconds per call and is enabled by
+ * default. Metrics are exposed to JMX by {@link #register()}.
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class NovasMetrics implements NovasMetricsMBean {
+
+  /**
+   * JMX object name of the MBean.
+   */
+
+  public static final String OBJECT_NAME = "eu.cloudmakers.astronometry:type=NovasMetrics";
+
+  /**
+   * Sampling interval of latency.
+   */
+
+  public static final int SAMPLE = 16;
+
+  /**
+   * Number of latency histogram buckets.
+   */
+
+  public static final int BUCKETS = 32;
+
+  /**
+   * Number of tracked error codes.
+   */
+
+  public static final int CODES = 128;
+
+  private static final String METHODS[] = { "place", "placeSeries", "transformCatalogEntry", "transformHipparcosEntry", "transformHipparcosBatch", "appStar", "virtualStar", "astroStar", "localStar", "topoStar", "starBatch", "placeBatch", "appPlanet", "virtualPlanet", "astroPlanet", "localPlanet", "topoPlanet", "equatorialToHorizontal", "siderealTime", "terrestrialToCelestial", "celestialToTerrestrial", "siderealTimeSeries", "earthRotationAngleSeries" };
+
+  private static final int COUNTERS = 5;
+
+  private static final int SNAPSHOT = COUNTERS + 2 * METHODS.length + METHODS.length * BUCKETS + CODES;
+
+  private static final NovasMetrics INSTANCE = new NovasMetrics();
+
+  /**
+   * Snapshot of all metrics.
+   */
+
+  public static class Snapshot {
+
+    /**
+     * Method names, indices match other arrays.
+     */
+
+    public String methods[] = METHODS.clone();
+
+    /**
+     * Number of calls of each method.
+     */
+
+    public long calls[] = new long[METHODS.length];
+
+    /**
+     * Number of non-zero error codes returned by each method.
+     */
+
+    public long errors[] = new long[METHODS.length];
+
+    /**
+     * Latency histograms of sampled calls, <code>latency[method][i]</code>
+     * counts latencies from 2^i to 2^(i+1) - 1 ns.
+     */
+
+    public long latency[][] = new long[METHODS.length][BUCKETS];
+
+    /**
+     * Number of occurrences of each error code.
+     */
+
+    public long codes[] = new long[CODES];
+
+    /**
+     * Ephemeris lookups served by the current record of the thread.
+     */
+
+    public long ephemerisRecordHits;
+
+    /**
+     * Number of times any thread switched to another ephemeris record.
+     */
+
+    public long ephemerisRecordLoads;
+
+    /**
+     * Ephemeris records read from the file by a system call.
+     */
+
+    public long ephemerisFileReads;
+
+    /**
+     * Reads from the CIO file.
+     */
+
+    public long cioFileReads;
+
+    /**
+     * IAU 2000A nutation evaluations.
+     */
+
+    public long iau2000a;
+
+    /**
+     * IAU 2000B nutation evaluations.
+     */
+
+    public long iau2000b;
+
+    /**
+     * NU2000K nutation evaluations.
+     */
+
+    public long nu2000k;
+
+    /**
+     * Get index of a method.
+     *
+     * @param method
+     *          method name
+     * @return index
+     * @throws IllegalArgumentException
+     *           if method isn't measured
+     */
+
+    public int indexOf(String method) {
+      for (int i = 0; i < methods.length; i++)
+        if (methods[i].equals(method))
+          return i;
+      throw new IllegalArgumentException("Unknown method " + method);
+    }
+
+    /**
+     * Get upper bound of a latency percentile.
+     *
+     * @param method
+     *          method index
+     * @param percentile
+     *          percentile (0 - 100)
+     * @return upper bound of the bucket containing the percentile in ns, 0 if
+     *         no call was sampled
+     */
+
+    public long percentile(int method, double percentile) {
+      long samples = 0;
+      for (int i = 0; i < BUCKETS; i++)
+        samples += latency[method][i];
+      if (samples == 0)
+        return 0;
+      double limit = samples * percentile / 100.0;
+      long count = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        count += latency[method][i];
+        if (count >= limit && count > 0)
+          return (2L << i) - 1;
+      }
+      return (2L << (BUCKETS - 1)) - 1;
+    }
+
+    /**
+     * Dump counters of the library.
+     */
+
+    public String toString() {
+      return new Formatter().format("Snapshot { %d, %d, %d, %d, %d, %d, %d }", ephemerisRecordHits, ephemerisRecordLoads, ephemerisFileReads, cioFileReads, iau2000a, iau2000b, nu2000k).toString();
+    }
+  }
+
+  private boolean enabled = true;
+  private long recordLoadsBase, fileReadsBase;
+
+  private NovasMetrics() {
+  }
+
+  /**
+   * Get the metrics.
+   *
+   * @return metrics
+   */
+
+  public static NovasMetrics getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Register the metrics in the platform MBean server, if it isn't registered
+   * yet.
+   *
+   * @return object name
+   * @throws JMException
+   *           if registration fails
+   */
+
+  public static synchronized ObjectName register() throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(OBJECT_NAME);
+    if (!server.isRegistered(name))
+      server.registerMBean(INSTANCE, name);
+    return name;
+  }
+
+  /**
+   * Take snapshot of all metrics.
+   *
+   * @return snapshot
+   */
+
+  public Snapshot snapshot() {
+    long values[] = new long[SNAPSHOT];
+    if (NOVAS.metricsSnapshot(values) != SNAPSHOT)
+      throw new IllegalStateException("Incompatible native library");
+    NOVAS.EphemerisStatistics statistics = NOVAS.getEphemerisStatistics();
+    Snapshot snapshot = new Snapshot();
+    int n = 0;
+    snapshot.ephemerisRecordHits = values[n++];
+    snapshot.cioFileReads = values[n++];
+    snapshot.iau2000a = values[n++];
+    snapshot.iau2000b = values[n++];
+    snapshot.nu2000k = values[n++];
+    for (int i = 0; i < METHODS.length; i++)
+      snapshot.calls[i] = values[n++];
+    for (int i = 0; i < METHODS.length; i++)
+      snapshot.errors[i] = values[n++];
+    for (int i = 0; i < METHODS.length; i++)
+      for (int j = 0; j < BUCKETS; j++)
+        snapshot.latency[i][j] = values[n++];
+    for (int i = 0; i < CODES; i++)
+      snapshot.codes[i] = values[n++];
+    synchronized (this) {
+      snapshot.ephemerisRecordLoads = statistics.recordLoads - recordLoadsBase;
+      snapshot.ephemerisFileReads = statistics.fileReads - fileReadsBase;
+    }
+    return snapshot;
+  }
+
+  public synchronized boolean isEnabled() {
+    return enabled;
+  }
+
+  public synchronized void setEnabled(boolean enabled) {
+    NOVAS.metricsEnable(enabled);
+    this.enabled = enabled;
+  }
+
+  public synchronized void reset() {
+    NOVAS.metricsReset();
+    NOVAS.EphemerisStatistics statistics = NOVAS.getEphemerisStatistics();
+    recordLoadsBase = statistics.recordLoads;
+    fileReadsBase = statistics.fileReads;
+  }
+
+  public String[] getMethodNames() {
+    return METHODS.clone();
+  }
+
+  public long[] getCallCounts() {
+    return snapshot().calls;
+  }
+
+  public long[] getErrorCounts() {
+    return snapshot().errors;
+  }
+
+  public long[] getErrorCodeCounts() {
+    return snapshot().codes;
+  }
+
+  public long getEphemerisRecordHits() {
+    return snapshot().ephemerisRecordHits;
+  }
+
+  public long getEphemerisRecordLoads() {
+    return snapshot().ephemerisRecordLoads;
+  }
+
+  public long getEphemerisFileReads() {
+    return snapshot().ephemerisFileReads;
+  }
+
+  public long getCioFileReads() {
+    return snapshot().cioFileReads;
+  }
+
+  public long getIau2000aEvaluations() {
+    return snapshot().iau2000a;
+  }
+
+  public long getIau2000bEvaluations() {
+    return snapshot().iau2000b;
+  }
+
+  public long getNu2000kEvaluations() {
+    return snapshot().nu2000k;
+  }
+
+  public long[] getLatencyHistogram(String method) {
+    Snapshot snapshot = snapshot();
+    return snapshot.latency[snapshot.indexOf(method)];
+  }
+
+  public long getLatencyPercentile(String method, double percentile) {
+    Snapshot snapshot = snapshot();
+    return snapshot.percentile(snapshot.indexOf(method), percentile);
+  }
+
+  public String[] getSummary() {
+    Snapshot snapshot = snapshot();
+    List<String> lines = new ArrayList<String>();
+    for (int i = 0; i < METHODS.length; i++)
+      if (snapshot.calls[i] > 0)
+        lines.add(new Formatter().format("%s: %d calls, %d errors, p50 < %d ns, p99 < %d ns", METHODS[i], snapshot.calls[i], snapshot.errors[i], snapshot.percentile(i, 50), snapshot.percentile(i, 99)).toString());
+    return lines.toArray(new String[lines.size()]);
+  }
+}
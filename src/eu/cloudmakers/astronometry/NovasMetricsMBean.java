@@ -0,0 +1,186 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+
+package eu.cloudmakers.astronometry;
+
+/**
+ * Management interface of {@link NovasMetrics}.
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public interface NovasMetricsMBean {
+
+  /**
+   * Check if recording is enabled.
+   *
+   * @return true if enabled
+   */
+
+  boolean isEnabled();
+
+  /**
+   * Enable or disable recording.
+   *
+   * @param enabled
+   *          true to enable
+   */
+
+  void setEnabled(boolean enabled);
+
+  /**
+   * Clear all counters.
+   */
+
+  void reset();
+
+  /**
+   * Get names of measured methods, indices match other arrays.
+   *
+   * @return method names
+   */
+
+  String[] getMethodNames();
+
+  /**
+   * Get number of calls of each method.
+   *
+   * @return call counts
+   */
+
+  long[] getCallCounts();
+
+  /**
+   * Get number of non-zero error codes returned by each method (batch
+   * methods count every failed element).
+   *
+   * @return error counts
+   */
+
+  long[] getErrorCounts();
+
+  /**
+   * Get number of occurrences of each error code, the last element counts
+   * all larger codes.
+   *
+   * @return counts indexed by error code
+   */
+
+  long[] getErrorCodeCounts();
+
+  /**
+   * Get number of ephemeris lookups served by the current record of the
+   * thread.
+   *
+   * @return record hits
+   */
+
+  long getEphemerisRecordHits();
+
+  /**
+   * Get number of times any thread switched to another ephemeris record.
+   *
+   * @return record loads
+   */
+
+  long getEphemerisRecordLoads();
+
+  /**
+   * Get number of ephemeris records read from the file by a system call.
+   *
+   * @return file reads
+   */
+
+  long getEphemerisFileReads();
+
+  /**
+   * Get number of reads from the CIO file (cio_ra.bin).
+   *
+   * @return CIO file reads
+   */
+
+  long getCioFileReads();
+
+  /**
+   * Get number of IAU 2000A nutation evaluations (full accuracy).
+   *
+   * @return evaluations
+   */
+
+  long getIau2000aEvaluations();
+
+  /**
+   * Get number of IAU 2000B nutation evaluations.
+   *
+   * @return evaluations
+   */
+
+  long getIau2000bEvaluations();
+
+  /**
+   * Get number of NU2000K nutation evaluations (reduced accuracy).
+   *
+   * @return evaluations
+   */
+
+  long getNu2000kEvaluations();
+
+  /**
+   * Get latency histogram of a method.
+   *
+   * @param method
+   *          method name
+   * @return sampled calls in buckets, bucket i counts latencies from 2^i to
+   *         2^(i+1) - 1 ns
+   */
+
+  long[] getLatencyHistogram(String method);
+
+  /**
+   * Get upper bound of a latency percentile of a method.
+   *
+   * @param method
+   *          method name
+   * @param percentile
+   *          percentile (0 - 100)
+   * @return upper bound of the bucket containing the percentile in ns, 0 if
+   *         no call was sampled
+   */
+
+  long getLatencyPercentile(String method, double percentile);
+
+  /**
+   * Get one line summary of every called method.
+   *
+   * @return summary lines
+   */
+
+  String[] getSummary();
+}
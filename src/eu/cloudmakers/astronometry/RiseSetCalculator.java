@@ -0,0 +1,441 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+
+package eu.cloudmakers.astronometry;
+
+import java.util.Formatter;
+
+import eu.cloudmakers.astronometry.NOVAS.CelestialObject;
+import eu.cloudmakers.astronometry.NOVAS.PositionOnSurface;
+
+/**
+ * Rise, upper transit and set times of objects observed from the surface of
+ * the Earth.
+ * <p>
+ * Events are searched for the diurnal pass with upper transit within one day
+ * from the given UT1 date. Each evaluation of the position computes the
+ * topocentric place by {@link NOVAS#topoStar} or {@link NOVAS#topoPlanet} and
+ * the horizontal coordinates by {@link NOVAS#equatorialToHorizontal}, with the
+ * refraction option of the calculator and without polar motion. Upper transit
+ * is found by secant iteration on the local hour angle, rise and set are
+ * predicted from the hour angle of the horizon at declination of the transit,
+ * bracketed by the transit and lower culminations and refined by safeguarded
+ * Newton iteration. Typical pass takes 10 to 12 evaluations for a precision of
+ * {@link #TOLERANCE}, instead of hundreds needed by sampling.
+ * <p>
+ * Calculator is immutable and thread-safe.
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class RiseSetCalculator {
+
+  /**
+   * Status of a pass with rise, transit and set found.
+   */
+
+  public static final short OK = 0;
+
+  /**
+   * Status of a pass above the horizon all the time, only transit is found.
+   */
+
+  public static final short CIRCUMPOLAR = 1;
+
+  /**
+   * Status of a pass below the horizon all the time, only transit is found.
+   */
+
+  public static final short NEVER_RISES = 2;
+
+  /**
+   * Status of a day without upper transit (happens to the Moon), no event is
+   * found.
+   */
+
+  public static final short NO_TRANSIT = 3;
+
+  /**
+   * Precision of event times in days (one second).
+   */
+
+  public static final double TOLERANCE = 1.0 / 86400.0;
+
+  /**
+   * Hour angle rate of a fixed star in hours per UT1 day.
+   */
+
+  private static final double SIDEREAL_RATE = 24.0 * 1.00273781191135448;
+
+  private static final int MAX_ITERATIONS = 30;
+
+  /**
+   * Events of one diurnal pass.
+   */
+
+  public static class Events {
+
+    /**
+     * Status of the pass, {@link RiseSetCalculator#OK},
+     * {@link RiseSetCalculator#CIRCUMPOLAR},
+     * {@link RiseSetCalculator#NEVER_RISES} or
+     * {@link RiseSetCalculator#NO_TRANSIT}.
+     */
+
+    public short status;
+
+    /**
+     * Error code from function topoStar or topoPlanet, zero if there were no
+     * problems. All events are NaN if non-zero.
+     */
+
+    public short error;
+
+    /**
+     * Rise time as UT1 Julian date, NaN if object doesn't cross the horizon
+     * before transit.
+     */
+
+    public double rise;
+
+    /**
+     * Upper transit time as UT1 Julian date.
+     */
+
+    public double transit;
+
+    /**
+     * Set time as UT1 Julian date, NaN if object doesn't cross the horizon
+     * after transit.
+     */
+
+    public double set;
+
+    /**
+     * Altitude at upper transit in degrees, affected by refraction if
+     * refraction option is non-zero.
+     */
+
+    public double transitAltitude;
+
+    /**
+     * Number of position evaluations used for the pass.
+     */
+
+    public int evaluations;
+
+    @Override
+    public String toString() {
+      return new Formatter().format("Events { %d, %d, %.6f, %.6f, %.6f, %3.2f, %d }", status, error, rise, transit, set, transitAltitude, evaluations).toString();
+    }
+  }
+
+  private double deltaT;
+  private int accuracy;
+  private int refOption;
+  private double horizon;
+
+  /**
+   * Create calculator.
+   *
+   * @param deltaT
+   *          difference TT-UT1 in seconds
+   * @param accuracy
+   *          code specifying the relative accuracy: <BLOCKQUOTE> 0 &rarr; full
+   *          accuracy<BR>
+   *          1 &rarr; reduced accuracy </BLOCKQUOTE>
+   * @param refOption
+   *          refraction option of
+   *          {@link NOVAS#equatorialToHorizontal(double, double, int, double, double, PositionOnSurface, double, double, int, double[], int)}
+   * @param horizon
+   *          altitude of the horizon in degrees, e.g. 0 for the center of a
+   *          star with refraction, -0.8333 for the upper limb of the Sun
+   *          without refraction
+   */
+
+  public RiseSetCalculator(double deltaT, int accuracy, int refOption, double horizon) {
+    if (accuracy < 0 || accuracy > 1)
+      throw new IllegalArgumentException("Invalid accuracy " + accuracy);
+    if (refOption < 0 || refOption > 2)
+      throw new IllegalArgumentException("Invalid refraction option " + refOption);
+    this.deltaT = deltaT;
+    this.accuracy = accuracy;
+    this.refOption = refOption;
+    this.horizon = horizon;
+  }
+
+  /**
+   * Find events of the pass with upper transit in one day.
+   *
+   * @param ut1Date
+   *          UT1 Julian date of the beginning of the day
+   * @param object
+   *          star (type 2) or solar system body
+   * @param site
+   *          location of the observer
+   * @return events
+   */
+
+  public Events compute(double ut1Date, CelestialObject object, PositionOnSurface site) {
+    Events events = new Events();
+    new Pass(object, site).compute(ut1Date, Double.NaN, events);
+    return events;
+  }
+
+  /**
+   * Find events for all combinations of objects, sites and days. Results are
+   * stored in <code>results[(object * sites.length + site) * days + day]</code>
+   * , missing elements are created, existing ones are reused. Transit
+   * of each day is predicted from transits of the preceding days.
+   *
+   * @param ut1Date
+   *          UT1 Julian date of the beginning of the first day
+   * @param days
+   *          number of days
+   * @param objects
+   *          stars (type 2) or solar system bodies
+   * @param sites
+   *          locations of the observer
+   * @param results
+   *          events, at least <code>objects.length * sites.length * days</code>
+   *          elements
+   * @return total number of evaluations
+   */
+
+  public long compute(double ut1Date, int days, CelestialObject objects[], PositionOnSurface sites[], Events results[]) {
+    if (results.length < objects.length * sites.length * days)
+      throw new IllegalArgumentException("Results array too short");
+    long evaluations = 0;
+    int index = 0;
+    for (int i = 0; i < objects.length; i++) {
+      for (int j = 0; j < sites.length; j++) {
+        Pass pass = new Pass(objects[i], sites[j]);
+        double previous = Double.NaN;
+        double period = Double.NaN;
+        for (int k = 0; k < days; k++, index++) {
+          Events events = results[index];
+          if (events == null)
+            results[index] = events = new Events();
+          double guess = Double.NaN;
+          if (!Double.isNaN(previous))
+            guess = previous + (Double.isNaN(period) ? 24.0 / SIDEREAL_RATE : period);
+          pass.compute(ut1Date + k, guess, events);
+          evaluations += events.evaluations;
+          if (events.error != 0 || Double.isNaN(events.transit)) {
+            previous = period = Double.NaN;
+          } else {
+            if (!Double.isNaN(previous))
+              period = events.transit - previous;
+            previous = events.transit;
+          }
+        }
+      }
+    }
+    return evaluations;
+  }
+
+  /**
+   * Error from topoStar or topoPlanet aborting the pass.
+   */
+
+  private static class PlaceError extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private short error;
+
+    PlaceError(short error) {
+      this.error = error;
+    }
+  }
+
+  /**
+   * Search state for one object and one site.
+   */
+
+  private class Pass {
+
+    private CelestialObject object;
+    private PositionOnSurface site;
+    private double sinLatitude, cosLatitude;
+    private double output[] = new double[7];
+    private int evaluations;
+
+    // last evaluation: altitude (deg), declination (deg), hour angle (h)
+
+    private double altitude, declination, hourAngle;
+
+    // hour angle rate (h/day) estimated by the last transit search
+
+    private double rate;
+
+    Pass(CelestialObject object, PositionOnSurface site) {
+      this.object = object;
+      this.site = site;
+      double latitude = Math.toRadians(site.latitude);
+      sinLatitude = Math.sin(latitude);
+      cosLatitude = Math.cos(latitude);
+    }
+
+    void evaluate(double ut1Date) {
+      double ttDate = ut1Date + deltaT / 86400.0;
+      short error;
+      if (object.type == 2)
+        error = NOVAS.topoStar(ttDate, deltaT, object.star, site, accuracy, output, 0);
+      else
+        error = NOVAS.topoPlanet(ttDate, object, deltaT, site, accuracy, output, 0);
+      evaluations++;
+      if (error != 0)
+        throw new PlaceError(error);
+      NOVAS.equatorialToHorizontal(ut1Date, deltaT, accuracy, 0.0, 0.0, site, output[0], output[1], refOption, output, 3);
+      altitude = 90.0 - output[3];
+      declination = output[1];
+      double h = Math.toRadians(altitude);
+      double az = Math.toRadians(output[4]);
+      double cosAltitude = Math.cos(h);
+      // hour angle of the refracted position, shifted by refraction in right
+      // ascension to the hour angle of the unrefracted one
+
+      hourAngle = Math.toDegrees(Math.atan2(-Math.sin(az) * cosAltitude, cosLatitude * Math.sin(h) - sinLatitude * cosAltitude * Math.cos(az))) / 15.0 + output[5] - output[0];
+      hourAngle -= 24.0 * Math.floor(hourAngle / 24.0 + 0.5);
+    }
+
+    void compute(double ut1Date, double guess, Events events) {
+      evaluations = 0;
+      events.status = OK;
+      events.error = 0;
+      events.rise = events.transit = events.set = events.transitAltitude = Double.NaN;
+      try {
+        solve(ut1Date, guess, events);
+      } catch (PlaceError e) {
+        events.error = e.error;
+        events.rise = events.transit = events.set = events.transitAltitude = Double.NaN;
+      }
+      events.evaluations = evaluations;
+    }
+
+    private void solve(double ut1Date, double guess, Events events) {
+      double t = Double.isNaN(guess) ? ut1Date + 0.5 : guess;
+      double rate = SIDEREAL_RATE;
+      int shifts = 0;
+      double transit;
+      while (true) {
+        transit = transit(t, rate);
+        rate = this.rate;
+        double period = 24.0 / rate;
+        if (transit < ut1Date)
+          t = transit + period;
+        else if (transit >= ut1Date + 1)
+          t = transit - period;
+        else
+          break;
+        if (++shifts > 2 || t < ut1Date - TOLERANCE || t >= ut1Date + 1 + TOLERANCE) {
+          events.status = NO_TRANSIT;
+          return;
+        }
+      }
+      events.transit = transit;
+      events.transitAltitude = altitude;
+      double transitDeclination = declination;
+      double f = altitude - horizon;
+      if (f < 0) {
+        events.status = NEVER_RISES;
+        return;
+      }
+      double half = 12.0 / rate;
+      double cosH = (Math.sin(Math.toRadians(horizon)) - sinLatitude * Math.sin(Math.toRadians(transitDeclination))) / (cosLatitude * Math.cos(Math.toRadians(transitDeclination)));
+      double offset = Math.abs(cosH) < 1 ? Math.toDegrees(Math.acos(cosH)) / 15.0 / rate : Double.NaN;
+      evaluate(transit - half);
+      double fRise = altitude - horizon;
+      if (fRise < 0)
+        events.rise = crossing(transit - half, fRise, transit, f, transit - offset, rate);
+      evaluate(transit + half);
+      double fSet = altitude - horizon;
+      if (fSet < 0)
+        events.set = crossing(transit, f, transit + half, fSet, transit + offset, rate);
+      if (Double.isNaN(events.rise) && Double.isNaN(events.set))
+        events.status = CIRCUMPOLAR;
+    }
+
+    private double transit(double t, double rate) {
+      evaluate(t);
+      double h0 = hourAngle;
+      double t0 = t;
+      double t1 = t - h0 / rate;
+      this.rate = rate;
+      for (int i = 0; i < MAX_ITERATIONS; i++) {
+        evaluate(t1);
+        double h1 = hourAngle;
+        double dh = h1 - h0;
+        dh -= 24.0 * Math.floor(dh / 24.0 + 0.5);
+        if (t1 != t0) {
+          double estimate = dh / (t1 - t0);
+          if (estimate > 0.5 * SIDEREAL_RATE && estimate < 1.5 * SIDEREAL_RATE)
+            this.rate = estimate;
+        }
+        double t2 = t1 - h1 / this.rate;
+        if (Math.abs(t2 - t1) < TOLERANCE)
+          return t2;
+        t0 = t1;
+        h0 = h1;
+        t1 = t2;
+      }
+      return t1;
+    }
+
+    private double crossing(double a, double fa, double b, double fb, double t, double rate) {
+      if (!(t > a && t < b))
+        t = a + (b - a) * fa / (fa - fb);
+      double radRate = Math.toRadians(rate * 15.0);
+      for (int i = 0; i < MAX_ITERATIONS; i++) {
+        evaluate(t);
+        double f = altitude - horizon;
+        if (f == 0)
+          return t;
+        if ((f < 0) == (fa < 0)) {
+          a = t;
+          fa = f;
+        } else {
+          b = t;
+          fb = f;
+        }
+        double h = Math.toRadians(altitude);
+        double derivative = -cosLatitude * Math.cos(Math.toRadians(declination)) * Math.sin(Math.toRadians(hourAngle * 15.0)) * radRate / Math.cos(h);
+        double next = t - Math.toRadians(f) / derivative;
+        if (!(next > a && next < b))
+          next = 0.5 * (a + b);
+        if (Math.abs(next - t) < TOLERANCE)
+          return next;
+        t = next;
+      }
+      return t;
+    }
+  }
+}
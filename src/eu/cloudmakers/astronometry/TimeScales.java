@@ -0,0 +1,720 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+package eu.cloudmakers.astronometry;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Formatter;
+
+import eu.cloudmakers.astronometry.engine.Astrometry;
+
+/**
+ * Conversions between UTC, TAI, TT, TDB and UT1 time scales backed by a leap
+ * second table and IERS Earth orientation parameters (UT1-UTC and polar
+ * motion).
+ * <p>
+ * Both tables are expanded to one entry per day when loaded, so lookups are
+ * O(1) and interpolation between daily EOP values is a single multiply-add.
+ * UT1-UTC is interpolated as UT1-TAI to stay continuous over leap seconds.
+ * <p>
+ * {@link Epoch} holds one instant in all time scales as a two-part Julian
+ * date together with deltaT and polar motion, ready to be passed to
+ * {@link NOVAS#place}, {@link NOVAS#equatorialToHorizontal} or
+ * {@link NOVAS#siderealTime}.
+ * <p>
+ * Dates before the first leap second entry use TAI-UTC of 1972, dates outside
+ * of the EOP table use its first or last values. Without EOP table UT1-UTC and
+ * polar motion are zero. Instances are immutable and thread safe.
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class TimeScales {
+
+  /**
+   * Coordinated Universal Time.
+   */
+
+  public static final int UTC = 0;
+
+  /**
+   * International Atomic Time.
+   */
+
+  public static final int TAI = 1;
+
+  /**
+   * Terrestrial Time.
+   */
+
+  public static final int TT = 2;
+
+  /**
+   * Barycentric Dynamical Time.
+   */
+
+  public static final int TDB = 3;
+
+  /**
+   * Universal Time corrected for polar motion.
+   */
+
+  public static final int UT1 = 4;
+
+  /**
+   * Difference TT-TAI in seconds.
+   */
+
+  public static final double TT_MINUS_TAI = 32.184;
+
+  /**
+   * Julian date of Modified Julian Date origin.
+   */
+
+  public static final double MJD_ORIGIN = 2400000.5;
+
+  /**
+   * System property with path of IERS finals file (finals.all,
+   * finals2000A.data, ...) loaded by {@link #getDefault()}.
+   */
+
+  public static final String FINALS_PROPERTY = "eu.cloudmakers.astronometry.finals";
+
+  /**
+   * System property with path of leap second file (IERS Leap_Second.dat or
+   * IETF leap-seconds.list) loaded by {@link #getDefault()}.
+   */
+
+  public static final String LEAP_SECONDS_PROPERTY = "eu.cloudmakers.astronometry.leapSeconds";
+
+  private static final int LEAP_MJD[] = { 41317, 41499, 41683, 42048, 42413, 42778, 43144, 43509, 43874, 44239, 44786, 45151, 45516, 46247, 47161, 47892, 48257, 48804, 49169, 49534, 50083, 50630, 51179, 53736, 54832, 56109, 57204, 57754 };
+
+  private static final int NTP_MJD = 15020;
+
+  private static final double DAY = 86400.0;
+
+  private static TimeScales defaultInstance;
+
+  private final int leapFirst;
+  private final byte leapTable[];
+  private final int eopFirst;
+  private final int eopCount;
+  private final double ut1Tai[];
+  private final double ut1TaiRate[];
+  private final double xp[];
+  private final double xpRate[];
+  private final double yp[];
+  private final double ypRate[];
+
+  /**
+   * Instant in all supported time scales.
+   * <p>
+   * Dates are split into <code>day</code>, the Julian date of 0h UTC, and
+   * fractions of day since it in each time scale, so no precision is lost to
+   * the magnitude of Julian date. Use e.g. <code>ttDate()</code> where single
+   * Julian date is expected.
+   */
+
+  public static class Epoch {
+
+    /**
+     * Julian date of 0h UTC of the day.
+     */
+
+    public double day;
+
+    /**
+     * UTC as fraction of day since <code>day</code>.
+     */
+
+    public double utc;
+
+    /**
+     * TAI as fraction of day since <code>day</code>.
+     */
+
+    public double tai;
+
+    /**
+     * TT as fraction of day since <code>day</code>.
+     */
+
+    public double tt;
+
+    /**
+     * TDB as fraction of day since <code>day</code>.
+     */
+
+    public double tdb;
+
+    /**
+     * UT1 as fraction of day since <code>day</code>.
+     */
+
+    public double ut1;
+
+    /**
+     * TAI-UTC in seconds.
+     */
+
+    public int leapSeconds;
+
+    /**
+     * UT1-UTC in seconds.
+     */
+
+    public double ut1MinusUtc;
+
+    /**
+     * TT-UT1 in seconds.
+     */
+
+    public double deltaT;
+
+    /**
+     * Polar motion x in arcseconds.
+     */
+
+    public double xp;
+
+    /**
+     * Polar motion y in arcseconds.
+     */
+
+    public double yp;
+
+    /**
+     * Get UTC Julian date.
+     */
+
+    public double utcDate() {
+      return day + utc;
+    }
+
+    /**
+     * Get TAI Julian date.
+     */
+
+    public double taiDate() {
+      return day + tai;
+    }
+
+    /**
+     * Get TT Julian date.
+     */
+
+    public double ttDate() {
+      return day + tt;
+    }
+
+    /**
+     * Get TDB Julian date.
+     */
+
+    public double tdbDate() {
+      return day + tdb;
+    }
+
+    /**
+     * Get UT1 Julian date.
+     */
+
+    public double ut1Date() {
+      return day + ut1;
+    }
+
+    public String toString() {
+      return new Formatter().format("Epoch [day=%.1f utc=%.12f tai=%.12f tt=%.12f tdb=%.12f ut1=%.12f leapSeconds=%d ut1MinusUtc=%.7f deltaT=%.7f xp=%.6f yp=%.6f]", day, utc, tai, tt, tdb, ut1, leapSeconds, ut1MinusUtc, deltaT, xp, yp).toString();
+    }
+  }
+
+  /**
+   * Get shared instance. It is created on the first call from files named by
+   * {@link #LEAP_SECONDS_PROPERTY} and {@link #FINALS_PROPERTY} system
+   * properties, the built-in leap second table is used and EOP are zero if
+   * they are not set or the files can't be read.
+   */
+
+  public static synchronized TimeScales getDefault() {
+    if (defaultInstance == null) {
+      try {
+        defaultInstance = new TimeScales(open(LEAP_SECONDS_PROPERTY), open(FINALS_PROPERTY));
+      } catch (IOException exception) {
+        System.err.println("Time scale tables can't be read: " + exception.getMessage());
+        defaultInstance = new TimeScales();
+      }
+    }
+    return defaultInstance;
+  }
+
+  /**
+   * Replace shared instance, e.g. after download of new IERS bulletin.
+   */
+
+  public static synchronized void setDefault(TimeScales timeScales) {
+    if (timeScales == null)
+      throw new IllegalArgumentException("Time scales can't be null");
+    defaultInstance = timeScales;
+  }
+
+  private static InputStream open(String property) throws IOException {
+    String path = System.getProperty(property);
+    return path == null ? null : new FileInputStream(path);
+  }
+
+  /**
+   * Create instance with built-in leap second table (up to 2017-01-01) and
+   * without EOP.
+   */
+
+  public TimeScales() {
+    leapFirst = LEAP_MJD[0];
+    leapTable = expand(LEAP_MJD, LEAP_MJD.length);
+    eopFirst = 0;
+    eopCount = 0;
+    ut1Tai = ut1TaiRate = xp = xpRate = yp = ypRate = null;
+  }
+
+  /**
+   * Create instance from leap second and EOP tables. Streams are read and
+   * closed.
+   *
+   * @param leapSeconds
+   *          IERS Leap_Second.dat or IETF leap-seconds.list, null for built-in
+   *          table.
+   * @param finals
+   *          IERS finals file (finals.all, finals.daily, finals2000A.data,
+   *          ...) with Bulletin A UT1-UTC and polar motion, null for no EOP.
+   * @throws IOException
+   *           if a table can't be read or parsed.
+   */
+
+  public TimeScales(InputStream leapSeconds, InputStream finals) throws IOException {
+    if (leapSeconds == null) {
+      leapFirst = LEAP_MJD[0];
+      leapTable = expand(LEAP_MJD, LEAP_MJD.length);
+    } else {
+      int mjd[] = new int[64];
+      int seconds[] = new int[64];
+      int count = 0;
+      BufferedReader reader = new BufferedReader(new InputStreamReader(leapSeconds, "US-ASCII"));
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          int comment = line.indexOf('#');
+          String fields[] = (comment < 0 ? line : line.substring(0, comment)).trim().split("\\s+");
+          if (fields.length < 2)
+            continue;
+          if (count == mjd.length) {
+            mjd = grow(mjd);
+            seconds = grow(seconds);
+          }
+          try {
+            double value = Double.parseDouble(fields[0]);
+            mjd[count] = value > 1e9 ? (int) (value / DAY) + NTP_MJD : (int) value;
+            seconds[count] = Integer.parseInt(fields[fields.length - 1]);
+          } catch (NumberFormatException exception) {
+            throw new IOException("Invalid leap second entry \"" + line + "\"");
+          }
+          if (count > 0 && mjd[count] <= mjd[count - 1])
+            throw new IOException("Leap second entries are not in ascending order");
+          count++;
+        }
+      } finally {
+        reader.close();
+      }
+      if (count == 0)
+        throw new IOException("No leap second entries found");
+      leapFirst = mjd[0];
+      leapTable = expand(mjd, count, seconds);
+    }
+    if (finals == null) {
+      eopFirst = 0;
+      eopCount = 0;
+      ut1Tai = ut1TaiRate = xp = xpRate = yp = ypRate = null;
+    } else {
+      double ut1[] = new double[16384];
+      double x[] = new double[16384];
+      double y[] = new double[16384];
+      int first = 0, count = 0;
+      BufferedReader reader = new BufferedReader(new InputStreamReader(finals, "US-ASCII"));
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (line.length() < 68 || line.substring(58, 68).trim().length() == 0)
+            continue;
+          int mjd;
+          try {
+            mjd = (int) Double.parseDouble(line.substring(7, 15).trim());
+            if (count == ut1.length) {
+              ut1 = grow(ut1);
+              x = grow(x);
+              y = grow(y);
+            }
+            x[count] = Double.parseDouble(line.substring(18, 27).trim());
+            y[count] = Double.parseDouble(line.substring(37, 46).trim());
+            ut1[count] = Double.parseDouble(line.substring(58, 68).trim()) - leapSeconds(mjd);
+          } catch (NumberFormatException exception) {
+            throw new IOException("Invalid EOP entry \"" + line + "\"");
+          }
+          if (count == 0)
+            first = mjd;
+          else if (mjd != first + count)
+            throw new IOException("EOP entries are not consecutive days at MJD " + mjd);
+          count++;
+        }
+      } finally {
+        reader.close();
+      }
+      if (count == 0)
+        throw new IOException("No EOP entries found");
+      eopFirst = first;
+      eopCount = count;
+      ut1Tai = ut1;
+      xp = x;
+      yp = y;
+      ut1TaiRate = rates(ut1, count);
+      xpRate = rates(x, count);
+      ypRate = rates(y, count);
+    }
+  }
+
+  private static byte[] expand(int mjd[], int count) {
+    int seconds[] = new int[count];
+    for (int i = 0; i < count; i++)
+      seconds[i] = 10 + i;
+    return expand(mjd, count, seconds);
+  }
+
+  private static byte[] expand(int mjd[], int count, int seconds[]) {
+    byte table[] = new byte[mjd[count - 1] - mjd[0] + 1];
+    for (int i = 0, j = 0; i < table.length; i++) {
+      if (j + 1 < count && mjd[0] + i >= mjd[j + 1])
+        j++;
+      table[i] = (byte) seconds[j];
+    }
+    return table;
+  }
+
+  private static double[] rates(double values[], int count) {
+    double rates[] = new double[count];
+    for (int i = 0; i + 1 < count; i++)
+      rates[i] = values[i + 1] - values[i];
+    return rates;
+  }
+
+  private static int[] grow(int array[]) {
+    int result[] = new int[2 * array.length];
+    System.arraycopy(array, 0, result, 0, array.length);
+    return result;
+  }
+
+  private static double[] grow(double array[]) {
+    double result[] = new double[2 * array.length];
+    System.arraycopy(array, 0, result, 0, array.length);
+    return result;
+  }
+
+  private int leapSeconds(int mjd) {
+    int index = mjd - leapFirst;
+    if (index < 0)
+      return leapTable[0];
+    if (index >= leapTable.length)
+      return leapTable[leapTable.length - 1];
+    return leapTable[index];
+  }
+
+  private int eopIndex(int mjd) {
+    int index = mjd - eopFirst;
+    return index < 0 ? -1 : index >= eopCount ? eopCount - 1 : index;
+  }
+
+  private double ut1MinusUtc(int mjd, double fraction) {
+    if (eopCount == 0)
+      return 0;
+    int index = eopIndex(mjd);
+    if (index < 0)
+      return ut1Tai[0] + leapSeconds(eopFirst);
+    return ut1Tai[index] + fraction * ut1TaiRate[index] + leapSeconds(mjd);
+  }
+
+  /**
+   * Get TAI-UTC.
+   *
+   * @param utcDate
+   *          UTC Julian date
+   * @return TAI-UTC in seconds
+   */
+
+  public int leapSeconds(double utcDate) {
+    return leapSeconds((int) Math.floor(utcDate - MJD_ORIGIN));
+  }
+
+  /**
+   * Get UT1-UTC.
+   *
+   * @param utcDate
+   *          UTC Julian date
+   * @return UT1-UTC in seconds
+   */
+
+  public double ut1MinusUtc(double utcDate) {
+    double mjd = utcDate - MJD_ORIGIN;
+    double day = Math.floor(mjd);
+    return ut1MinusUtc((int) day, mjd - day);
+  }
+
+  /**
+   * Get TT-UT1 as used by NOVAS functions.
+   *
+   * @param utcDate
+   *          UTC Julian date
+   * @return TT-UT1 in seconds
+   */
+
+  public double deltaT(double utcDate) {
+    return leapSeconds(utcDate) + TT_MINUS_TAI - ut1MinusUtc(utcDate);
+  }
+
+  /**
+   * Get x coordinate of celestial intermediate pole.
+   *
+   * @param utcDate
+   *          UTC Julian date
+   * @return polar motion x in arcseconds
+   */
+
+  public double xp(double utcDate) {
+    return interpolate(xp, xpRate, utcDate);
+  }
+
+  /**
+   * Get y coordinate of celestial intermediate pole.
+   *
+   * @param utcDate
+   *          UTC Julian date
+   * @return polar motion y in arcseconds
+   */
+
+  public double yp(double utcDate) {
+    return interpolate(yp, ypRate, utcDate);
+  }
+
+  private double interpolate(double values[], double rates[], double utcDate) {
+    if (eopCount == 0)
+      return 0;
+    double mjd = utcDate - MJD_ORIGIN;
+    double day = Math.floor(mjd);
+    int index = eopIndex((int) day);
+    if (index < 0)
+      return values[0];
+    return values[index] + (mjd - day) * rates[index];
+  }
+
+  /**
+   * Get first and last UTC Julian date covered by EOP table.
+   *
+   * @return range of EOP table or null if there is no EOP table.
+   */
+
+  public double[] getEarthOrientationRange() {
+    if (eopCount == 0)
+      return null;
+    return new double[] { eopFirst + MJD_ORIGIN, eopFirst + eopCount - 1 + MJD_ORIGIN };
+  }
+
+  /**
+   * Convert Julian date between time scales.
+   *
+   * @param date
+   *          Julian date in <code>from</code> time scale.
+   * @param from
+   *          source time scale ({@link #UTC}, {@link #TAI}, {@link #TT},
+   *          {@link #TDB} or {@link #UT1}).
+   * @param to
+   *          target time scale.
+   * @return Julian date in <code>to</code> time scale.
+   */
+
+  public double convert(double date, int from, int to) {
+    if (from == to) {
+      check(from);
+      return date;
+    }
+    return fromUtc(toUtc(date, from), to);
+  }
+
+  /**
+   * Convert Julian dates between time scales, <code>output</code> may be the
+   * same array as <code>dates</code>.
+   *
+   * @param from
+   *          source time scale.
+   * @param to
+   *          target time scale.
+   * @param dates
+   *          Julian dates in <code>from</code> time scale.
+   * @param offset
+   *          index of first date.
+   * @param output
+   *          output array for Julian dates in <code>to</code> time scale.
+   * @param outputOffset
+   *          index of first output date.
+   * @param count
+   *          number of dates.
+   */
+
+  public void convert(int from, int to, double dates[], int offset, double output[], int outputOffset, int count) {
+    check(from);
+    check(to);
+    if (from == to)
+      System.arraycopy(dates, offset, output, outputOffset, count);
+    else
+      for (int i = 0; i < count; i++)
+        output[outputOffset + i] = fromUtc(toUtc(dates[offset + i], from), to);
+  }
+
+  /**
+   * Compute TT-UT1 for UTC Julian dates, e.g. for
+   * {@link NOVAS#placeSeries}.
+   *
+   * @param utcDates
+   *          UTC Julian dates.
+   * @param offset
+   *          index of first date.
+   * @param output
+   *          output array for TT-UT1 in seconds.
+   * @param outputOffset
+   *          index of first output value.
+   * @param count
+   *          number of dates.
+   */
+
+  public void deltaT(double utcDates[], int offset, double output[], int outputOffset, int count) {
+    for (int i = 0; i < count; i++)
+      output[outputOffset + i] = deltaT(utcDates[offset + i]);
+  }
+
+  /**
+   * Compute instant in all time scales from two-part UTC Julian date.
+   *
+   * @param utcHigh
+   *          high-order part of UTC Julian date.
+   * @param utcLow
+   *          low-order part of UTC Julian date.
+   * @param output
+   *          epoch to be filled.
+   * @return output.
+   */
+
+  public Epoch epoch(double utcHigh, double utcLow, Epoch output) {
+    double day = Math.floor(utcHigh - 0.5) + 0.5;
+    double utc = (utcHigh - day) + utcLow;
+    double shift = Math.floor(utc);
+    day += shift;
+    utc -= shift;
+    int mjd = (int) (day - MJD_ORIGIN);
+    int leapSeconds = leapSeconds(mjd);
+    double ut1MinusUtc = ut1MinusUtc(mjd, utc);
+    output.day = day;
+    output.utc = utc;
+    output.leapSeconds = leapSeconds;
+    output.tai = utc + leapSeconds / DAY;
+    output.tt = output.tai + TT_MINUS_TAI / DAY;
+    output.tdb = output.tt + Astrometry.tdbMinusTT(day + output.tt) / DAY;
+    output.ut1MinusUtc = ut1MinusUtc;
+    output.ut1 = utc + ut1MinusUtc / DAY;
+    output.deltaT = leapSeconds + TT_MINUS_TAI - ut1MinusUtc;
+    output.xp = interpolate(xp, xpRate, mjd, utc);
+    output.yp = interpolate(yp, ypRate, mjd, utc);
+    return output;
+  }
+
+  /**
+   * Compute instant in all time scales from UTC Julian date.
+   *
+   * @param utcDate
+   *          UTC Julian date.
+   * @return new epoch.
+   */
+
+  public Epoch epoch(double utcDate) {
+    return epoch(utcDate, 0, new Epoch());
+  }
+
+  private double interpolate(double values[], double rates[], int mjd, double fraction) {
+    if (eopCount == 0)
+      return 0;
+    int index = eopIndex(mjd);
+    if (index < 0)
+      return values[0];
+    return values[index] + fraction * rates[index];
+  }
+
+  private double toUtc(double date, int from) {
+    if (from == UTC)
+      return date;
+    if (from == UT1)
+      return date - ut1MinusUtc(date - ut1MinusUtc(date) / DAY) / DAY;
+    /* TDB to TT to TAI to UTC, starting at the step of the given scale */
+    if (from == TDB)
+      date -= Astrometry.tdbMinusTT(date) / DAY;
+    if (from == TDB || from == TT)
+      date -= TT_MINUS_TAI / DAY;
+    if (from == TDB || from == TT || from == TAI)
+      return date - leapSeconds(date - leapSeconds(date) / DAY) / DAY;
+    throw new IllegalArgumentException("Invalid time scale " + from);
+  }
+
+  private double fromUtc(double utcDate, int to) {
+    switch (to) {
+    case UTC:
+      return utcDate;
+    case TAI:
+      return utcDate + leapSeconds(utcDate) / DAY;
+    case TT:
+      return utcDate + (leapSeconds(utcDate) + TT_MINUS_TAI) / DAY;
+    case TDB:
+      double ttDate = utcDate + (leapSeconds(utcDate) + TT_MINUS_TAI) / DAY;
+      return ttDate + Astrometry.tdbMinusTT(ttDate) / DAY;
+    case UT1:
+      return utcDate + ut1MinusUtc(utcDate) / DAY;
+    }
+    throw new IllegalArgumentException("Invalid time scale " + to);
+  }
+
+  private static void check(int scale) {
+    if (scale < UTC || scale > UT1)
+      throw new IllegalArgumentException("Invalid time scale " + scale);
+  }
+}
@@ -0,0 +1,408 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+package eu.cloudmakers.astronometry;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import eu.cloudmakers.astronometry.NOVAS.CelestialObject;
+import eu.cloudmakers.astronometry.NOVAS.Observer;
+import eu.cloudmakers.astronometry.NOVAS.PositionOnSurface;
+import eu.cloudmakers.astronometry.NOVAS.SkyPosition;
+import eu.cloudmakers.astronometry.engine.Chebyshev;
+
+/**
+ * Topocentric equatorial and horizontal coordinates of one object for a
+ * mount control loop running at high rate.
+ * <p>
+ * Exact positions are computed by
+ * {@link NOVAS#place(double, CelestialObject, Observer, double, int, int, SkyPosition)}
+ * (topocentric, true equator and equinox of date) and
+ * {@link NOVAS#equatorialToHorizontal(double, double, int, double, double, PositionOnSurface, double, double, int, double[], int)}
+ * at the {@link #NODES} Chebyshev nodes of consecutive time segments. Each
+ * segment is verified against exact positions at its ends and between the
+ * nodes; if the on-sky error of any coordinate exceeds the tolerance, the
+ * segment is halved and fitted again, down to one second. Segments with
+ * error well below the tolerance let the next segment be twice as long, up
+ * to four hours. Queries evaluate the Chebyshev series of the current segment
+ * in tens of nanoseconds without allocation and without native calls.
+ * <p>
+ * When a query enters a new segment, the following one is fitted in the
+ * background by the executor, so a loop moving forward in time never waits
+ * for exact evaluations. Queries outside of the fitted segments (a jump, a
+ * query going back in time or a background fit not finished yet) fit the
+ * needed segment in the calling thread.
+ * <p>
+ * Queries must be made by one thread at a time, the background fit runs
+ * concurrently with them.
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class TrackingInterpolator {
+
+  /**
+   * Index of topocentric right ascension in hours in the output.
+   */
+
+  public static final int RA = 0;
+
+  /**
+   * Index of topocentric declination in degrees in the output.
+   */
+
+  public static final int DEC = 1;
+
+  /**
+   * Index of topocentric zenith distance in degrees, affected by refraction
+   * if the refraction option is non-zero, in the output.
+   */
+
+  public static final int ZENITH_DISTANCE = 2;
+
+  /**
+   * Index of topocentric azimuth (measured east from north) in degrees in
+   * the output.
+   */
+
+  public static final int AZIMUTH = 3;
+
+  /**
+   * Number of output values.
+   */
+
+  public static final int QUANTITIES = 4;
+
+  /**
+   * Number of Chebyshev nodes (and coefficients) of a segment.
+   */
+
+  public static final int NODES = 8;
+
+  private static final double INITIAL_LENGTH = 600.0 / 86400.0;
+  private static final double MIN_LENGTH = 1.0 / 86400.0;
+  private static final double MAX_LENGTH = 4.0 / 24.0;
+
+  /**
+   * Ratio of the tolerance to the error of a segment letting the next
+   * segment be twice as long.
+   */
+
+  private static final double GROWTH_MARGIN = 16.0;
+
+  private static final double DEG2RAD = Math.PI / 180.0;
+
+  /**
+   * Fitted time segment.
+   */
+
+  private static class Segment {
+    final double start;
+    final double length;
+    final double coefficients[] = new double[QUANTITIES * NODES];
+    double error;
+
+    Segment(double start, double length) {
+      this.start = start;
+      this.length = length;
+    }
+
+    boolean covers(double ttDate) {
+      double dt = ttDate - start;
+      return dt >= 0.0 && dt <= length;
+    }
+  }
+
+  private final CelestialObject object;
+  private final Observer location;
+  private final double deltaT;
+  private final int accuracy;
+  private final double xp;
+  private final double yp;
+  private final int refOption;
+  private final double tolerance;
+  private final Executor executor;
+  private final AtomicBoolean pending = new AtomicBoolean();
+  private final AtomicLong evaluations = new AtomicLong();
+  private volatile Segment current;
+  private volatile Segment next;
+  private volatile double maxError;
+
+  /**
+   * Create interpolator. Nothing is computed until the first query.
+   *
+   * @param object
+   *          the celestial object of interest
+   * @param position
+   *          location of the observer
+   * @param deltaT
+   *          difference TT-UT1 in seconds of time
+   * @param accuracy
+   *          code specifying the relative accuracy: <blockquote> 0 &rarr;
+   *          full accuracy<br>
+   *          1 &rarr; reduced accuracy </blockquote>
+   * @param xp
+   *          conventionally-defined x coordinate of celestial intermediate
+   *          pole with respect to ITRS reference pole, in arcseconds
+   * @param yp
+   *          conventionally-defined y coordinate of celestial intermediate
+   *          pole with respect to ITRS reference pole, in arcseconds
+   * @param refOption
+   *          refraction option, see
+   *          {@link NOVAS#equatorialToHorizontal(double, double, int, double, double, PositionOnSurface, double, double, int, double[], int)}
+   * @param tolerance
+   *          maximal on-sky error of interpolated coordinates in arcseconds
+   * @param executor
+   *          executor fitting next segments in the background, or null to
+   *          use {@link NOVAS#getCatalogExecutor()}
+   * @throws IllegalArgumentException
+   *           if the tolerance isn't positive or the refraction option is
+   *           invalid
+   */
+
+  public TrackingInterpolator(CelestialObject object, PositionOnSurface position, double deltaT, int accuracy, double xp, double yp, int refOption, double tolerance, Executor executor) {
+    if (object == null)
+      throw new NullPointerException("object");
+    if (position == null)
+      throw new NullPointerException("position");
+    if (!(tolerance > 0.0))
+      throw new IllegalArgumentException("Invalid tolerance " + tolerance);
+    if (refOption < 0 || refOption > 2)
+      throw new IllegalArgumentException("Invalid refraction option " + refOption);
+    this.object = object;
+    this.location = new Observer(position);
+    this.deltaT = deltaT;
+    this.accuracy = accuracy;
+    this.xp = xp;
+    this.yp = yp;
+    this.refOption = refOption;
+    this.tolerance = tolerance;
+    this.executor = executor == null ? NOVAS.getCatalogExecutor() : executor;
+  }
+
+  /**
+   * Get interpolated coordinates.
+   *
+   * @param ttDate
+   *          TT Julian date
+   * @param output
+   *          output array, coordinates are written to
+   *          <code>output[offset + RA .. offset + AZIMUTH]</code>
+   * @param offset
+   *          index of the first output element
+   * @throws IllegalStateException
+   *           if an exact evaluation needed for the query fails
+   */
+
+  public void evaluate(double ttDate, double output[], int offset) {
+    Segment segment = current;
+    if (segment == null || !segment.covers(ttDate))
+      segment = advance(ttDate);
+    double tau = 2.0 * (ttDate - segment.start) / segment.length - 1.0;
+    double c[] = segment.coefficients;
+    double ra = Chebyshev.value(c, RA * NODES, NODES, tau) % 24.0;
+    double az = Chebyshev.value(c, AZIMUTH * NODES, NODES, tau) % 360.0;
+    output[offset + RA] = ra < 0.0 ? ra + 24.0 : ra;
+    output[offset + DEC] = Chebyshev.value(c, DEC * NODES, NODES, tau);
+    output[offset + ZENITH_DISTANCE] = Chebyshev.value(c, ZENITH_DISTANCE * NODES, NODES, tau);
+    output[offset + AZIMUTH] = az < 0.0 ? az + 360.0 : az;
+  }
+
+  /**
+   * Get exact coordinates computed by NOVAS.
+   *
+   * @param ttDate
+   *          TT Julian date
+   * @param output
+   *          output array, coordinates are written to
+   *          <code>output[offset + RA .. offset + AZIMUTH]</code>
+   * @param offset
+   *          index of the first output element
+   * @throws IllegalStateException
+   *           if place() fails
+   */
+
+  public void evaluateExact(double ttDate, double output[], int offset) {
+    evaluateExact(ttDate, new SkyPosition(), output, offset);
+  }
+
+  private void evaluateExact(double ttDate, SkyPosition place, double output[], int offset) {
+    evaluations.incrementAndGet();
+    short error = NOVAS.place(ttDate, object, location, deltaT, 1, accuracy, place);
+    if (error != 0)
+      throw new IllegalStateException("Error " + error + " from place");
+    NOVAS.equatorialToHorizontal(ttDate - deltaT / 86400.0, deltaT, accuracy, xp, yp, location.onSurface, place.ra, place.dec, refOption, output, offset);
+    double zd = output[offset], az = output[offset + 1];
+    output[offset + RA] = place.ra;
+    output[offset + DEC] = place.dec;
+    output[offset + ZENITH_DISTANCE] = zd;
+    output[offset + AZIMUTH] = az;
+  }
+
+  /**
+   * Make the segment covering the date current and schedule the fit of the
+   * following one.
+   */
+
+  private Segment advance(double ttDate) {
+    Segment segment = current;
+    Segment following = next;
+    if (following != null && following.covers(ttDate)) {
+      segment = following;
+    } else {
+      double length = segment == null ? INITIAL_LENGTH : nextLength(segment);
+      double start = segment != null && ttDate > segment.start + segment.length && ttDate < segment.start + segment.length + length ? segment.start + segment.length : ttDate;
+      segment = fit(start, length);
+      // a segment shorter than requested may still not cover the date
+      if (!segment.covers(ttDate))
+        segment = fit(ttDate, segment.length);
+    }
+    current = segment;
+    next = null;
+    scheduleNext(segment);
+    return segment;
+  }
+
+  private void scheduleNext(final Segment segment) {
+    if (!pending.compareAndSet(false, true))
+      return;
+    Runnable task = new Runnable() {
+      public void run() {
+        try {
+          Segment following = fit(segment.start + segment.length, nextLength(segment));
+          if (current == segment)
+            next = following;
+        } catch (RuntimeException exception) {
+          // the segment will be fitted by the query needing it
+        } finally {
+          pending.set(false);
+        }
+      }
+    };
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException exception) {
+      pending.set(false);
+    }
+  }
+
+  private double nextLength(Segment segment) {
+    if (segment.error * GROWTH_MARGIN < tolerance)
+      return Math.min(segment.length * 2.0, MAX_LENGTH);
+    return segment.length;
+  }
+
+  /**
+   * Fit segment starting at the date, halving its length until the
+   * tolerance is met.
+   */
+
+  private Segment fit(double start, double length) {
+    SkyPosition place = new SkyPosition();
+    double values[][] = new double[QUANTITIES][NODES];
+    double exact[] = new double[QUANTITIES];
+    double sample[] = new double[QUANTITIES];
+    while (true) {
+      Segment segment = new Segment(start, length);
+      for (int j = 0; j < NODES; j++) {
+        evaluateExact(start + (Chebyshev.node(j, NODES) + 1.0) * 0.5 * length, place, sample, 0);
+        // consecutive nodes are adjacent in time, unwrap each against the previous one
+        values[RA][j] = j == 0 ? sample[RA] : unwrap(sample[RA], values[RA][j - 1], 24.0);
+        values[DEC][j] = sample[DEC];
+        values[ZENITH_DISTANCE][j] = sample[ZENITH_DISTANCE];
+        values[AZIMUTH][j] = j == 0 ? sample[AZIMUTH] : unwrap(sample[AZIMUTH], values[AZIMUTH][j - 1], 360.0);
+      }
+      for (int q = 0; q < QUANTITIES; q++)
+        Chebyshev.fit(values[q], NODES, segment.coefficients, q * NODES);
+      // verify at both ends and between the nodes
+      double error = 0.0;
+      for (int k = 0; k <= NODES; k++) {
+        double tau = k == 0 ? 1.0 : k == NODES ? -1.0 : 0.5 * (Chebyshev.node(k - 1, NODES) + Chebyshev.node(k, NODES));
+        evaluateExact(start + (tau + 1.0) * 0.5 * length, place, exact, 0);
+        double c[] = segment.coefficients;
+        double dRa = unwrap(Chebyshev.value(c, RA * NODES, NODES, tau) - exact[RA], 0.0, 24.0) * 15.0 * Math.cos(exact[DEC] * DEG2RAD);
+        double dDec = Chebyshev.value(c, DEC * NODES, NODES, tau) - exact[DEC];
+        double dZd = Chebyshev.value(c, ZENITH_DISTANCE * NODES, NODES, tau) - exact[ZENITH_DISTANCE];
+        double dAz = unwrap(Chebyshev.value(c, AZIMUTH * NODES, NODES, tau) - exact[AZIMUTH], 0.0, 360.0) * Math.sin(exact[ZENITH_DISTANCE] * DEG2RAD);
+        error = Math.max(error, Math.max(Math.max(Math.abs(dRa), Math.abs(dDec)), Math.max(Math.abs(dZd), Math.abs(dAz))) * 3600.0);
+      }
+      segment.error = error;
+      if (error <= tolerance || length <= MIN_LENGTH) {
+        if (error > maxError)
+          maxError = error;
+        return segment;
+      }
+      length = Math.max(length * 0.5, MIN_LENGTH);
+    }
+  }
+
+  /**
+   * Shift angle by whole periods to be closest to the reference.
+   */
+
+  private static double unwrap(double value, double reference, double period) {
+    return value - period * Math.floor((value - reference) / period + 0.5);
+  }
+
+  /**
+   * Get tolerance of the interpolator.
+   *
+   * @return on-sky tolerance in arcseconds
+   */
+
+  public double getTolerance() {
+    return tolerance;
+  }
+
+  /**
+   * Get the largest verified error of fitted segments. It exceeds the
+   * tolerance only if the tolerance can't be met by one second segments,
+   * e.g. for an object passing close to the zenith or for the step of
+   * refraction at zenith distance of 91 degrees, where refract() stops.
+   *
+   * @return on-sky error in arcseconds
+   */
+
+  public double getMaxError() {
+    return maxError;
+  }
+
+  /**
+   * Get number of exact evaluations made so far.
+   *
+   * @return number of place() and equatorialToHorizontal() pairs
+   */
+
+  public long getExactEvaluations() {
+    return evaluations.get();
+  }
+}
@@ -31,6 +31,7 @@ package eu.cloudmakers.astronometry;
 import java.util.Date;
 
 import eu.cloudmakers.astronometry.NOVAS.DoubleRef;
+import eu.cloudmakers.astronometry.TimeScales.Epoch;
 
 /**
  * The utility functions for astronometry package.
@@ -44,7 +45,23 @@ import eu.cloudmakers.astronometry.NOVAS.DoubleRef;
 public class Utils {
 
 	public static final double JD_ORIGIN = 2440587.5;
+
+	/**
+	 * TT-UT1 valid in 2012 only.
+	 * 
+	 * @deprecated use {@link TimeScales#deltaT(double)}
+	 */
+
+	@Deprecated
 	public static final double DELTA_T = 34 + 32.184 + 0.477677;
+
+	/**
+	 * UT1-UTC in days valid in 2012 only.
+	 * 
+	 * @deprecated use {@link TimeScales#ut1MinusUtc(double)}
+	 */
+
+	@Deprecated
 	public static final double DELTA_UTC_UT1 = -0.477677 / 86400.0;
 
 	/**
@@ -72,12 +89,13 @@ public class Utils {
 	}
 
 	/**
-	 * Compute Greenwich sidereal time
+	 * Compute Greenwich sidereal time using {@link TimeScales#getDefault()}
 	 */
 
 	public static double GST() {
 		DoubleRef gst = new DoubleRef();
-		NOVAS.siderealTime(JDNow() + Utils.DELTA_UTC_UT1, DELTA_T, 1, 0, 0, gst);
+		Epoch epoch = TimeScales.getDefault().epoch(JDNow());
+		NOVAS.siderealTime(epoch.ut1Date(), epoch.deltaT, 1, 0, 0, gst);
 		return gst.value;
 	}
 }
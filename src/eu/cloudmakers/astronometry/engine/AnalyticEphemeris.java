@@ -0,0 +1,221 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+package eu.cloudmakers.astronometry.engine;
+
+import static eu.cloudmakers.astronometry.engine.Astrometry.ASEC2RAD;
+import static eu.cloudmakers.astronometry.engine.Astrometry.RAD2DEG;
+import static eu.cloudmakers.astronometry.engine.Astrometry.T0;
+import static eu.cloudmakers.astronometry.engine.Astrometry.TWOPI;
+
+/**
+ * Self-contained Sun-Earth ephemeris, port of solsys3.c.
+ * <p>
+ * Provides positions and velocities of the Earth and the Sun only, within
+ * three centuries of J2000.0, to reduced accuracy. High precision requests
+ * fail with error 3 exactly as solarsystem_hp_3() does. Instances keep the
+ * last barycenter computation and are not thread-safe.
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class AnalyticEphemeris implements Ephemeris {
+
+  private static final double PM[] = { 1047.349, 3497.898, 22903.0, 19412.2 };
+  private static final double PA[] = { 5.203363, 9.537070, 19.191264, 30.068963 };
+  private static final double PE[] = { 0.048393, 0.054151, 0.047168, 0.008586 };
+  private static final double PJ[] = { 0.022782, 0.043362, 0.013437, 0.030878 };
+  private static final double PO[] = { 1.755036, 1.984702, 1.295556, 2.298977 };
+  private static final double PW[] = { 0.257503, 1.613242, 2.983889, 0.784898 };
+  private static final double PL[] = { 0.600470, 0.871693, 5.466933, 5.321160 };
+  private static final double PN[] = { 1.450138e-3, 5.841727e-4, 2.047497e-4, 1.043891e-4 };
+  private static final double OBL = 23.4392794444;
+
+  private static final double TMASS;
+  private static final double A[][] = new double[3][4];
+  private static final double B[][] = new double[3][4];
+
+  static {
+    double tmass = 1.0 + 5.977e-6;
+    double oblr = OBL * TWOPI / 360.0;
+    double se = Math.sin(oblr);
+    double ce = Math.cos(oblr);
+    for (int i = 0; i < 4; i++) {
+      tmass += 1.0 / PM[i];
+      double si = Math.sin(PJ[i]);
+      double ci = Math.cos(PJ[i]);
+      double sn = Math.sin(PO[i]);
+      double cn = Math.cos(PO[i]);
+      double sw = Math.sin(PW[i] - PO[i]);
+      double cw = Math.cos(PW[i] - PO[i]);
+      double p1 = cw * cn - sw * sn * ci;
+      double p2 = (cw * sn + sw * cn * ci) * ce - sw * si * se;
+      double p3 = (cw * sn + sw * cn * ci) * se + sw * si * ce;
+      double q1 = -sw * cn - cw * sn * ci;
+      double q2 = (-sw * sn + cw * cn * ci) * ce - cw * si * se;
+      double q3 = (-sw * sn + cw * cn * ci) * se + cw * si * ce;
+      double roote = Math.sqrt(1.0 - PE[i] * PE[i]);
+      A[0][i] = PA[i] * p1;
+      A[1][i] = PA[i] * p2;
+      A[2][i] = PA[i] * p3;
+      B[0][i] = PA[i] * roote * q1;
+      B[1][i] = PA[i] * roote * q2;
+      B[2][i] = PA[i] * roote * q3;
+    }
+    TMASS = tmass;
+  }
+
+  private static final double SUN_L[] = { 403406.0, 195207.0, 119433.0, 112392.0, 3891.0, 2819.0, 1721.0, 0.0, 660.0, 350.0, 334.0, 314.0, 268.0, 242.0, 234.0, 158.0, 132.0, 129.0, 114.0, 99.0, 93.0, 86.0, 78.0, 72.0, 68.0, 64.0, 46.0, 38.0, 37.0, 32.0, 29.0, 28.0, 27.0, 27.0, 25.0, 24.0, 21.0, 21.0, 20.0, 18.0, 17.0, 14.0, 13.0, 13.0, 13.0, 12.0, 10.0, 10.0, 10.0, 10.0 };
+  private static final double SUN_R[] = { 0.0, -97597.0, -59715.0, -56188.0, -1556.0, -1126.0, -861.0, 941.0, -264.0, -163.0, 0.0, 309.0, -158.0, 0.0, -54.0, 0.0, -93.0, -20.0, 0.0, -47.0, 0.0, 0.0, -33.0, -32.0, 0.0, -10.0, -16.0, 0.0, 0.0, -24.0, -13.0, 0.0, -9.0, 0.0, -17.0, -11.0, 0.0, 31.0, -10.0, 0.0, -12.0, 0.0, -5.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, -9.0 };
+  private static final double SUN_ALPHA[] = { 4.721964, 5.937458, 1.115589, 5.781616, 5.5474, 1.5120, 4.1897, 1.163, 5.415, 4.315, 4.553, 5.198, 5.989, 2.911, 1.423, 0.061, 2.317, 3.193, 2.828, 0.52, 4.65, 4.35, 2.75, 4.50, 3.23, 1.22, 0.14, 3.44, 4.37, 1.14, 2.84, 5.96, 5.09, 1.72, 2.56, 1.92, 0.09, 5.98, 4.03, 4.27, 0.79, 4.24, 2.01, 2.65, 4.98, 0.93, 2.21, 3.59, 1.50, 2.55 };
+  private static final double SUN_NU[] = { 1.621043, 62830.348067, 62830.821524, 62829.634302, 125660.5691, 125660.9845, 62832.4766, 0.813, 125659.310, 57533.850, -33.931, 777137.715, 78604.191, 5.412, 39302.098, -34.861, 115067.698, 15774.337, 5296.670, 58849.27, 5296.11, -3980.70, 52237.69, 55076.47, 261.08, 15773.85, 188491.03, -7756.55, 264.89, 117906.27, 55075.75, -7961.39, 188489.81, 2132.19, 109771.03, 54868.56, 25443.93, -55731.43, 60697.74, 2132.79, 109771.63, -7752.82, 188491.91, 207.81, 29424.63, -7.99, 46941.14, -68.29, 21463.25, 157208.40 };
+
+  private double tlast = 0.0;
+  private final double pbary[] = new double[3];
+  private final double vbary[] = new double[3];
+  private final double pos1[] = new double[3];
+  private final double p[][] = new double[3][3];
+  private final double matrix[] = new double[9];
+
+  /**
+   * Create new instance.
+   */
+
+  public AnalyticEphemeris() {
+  }
+
+  /**
+   * Provide the position and velocity of the Earth or the Sun, port of
+   * solarsystem_3().
+   * <p>
+   * Set <code>body</code> to 0, 1 or 10 for the Sun and to 2 or 3 for the
+   * Earth. Origin 2 is not supported.
+   */
+
+  public short solarSystem(double tdbDate, int body, int origin, double position[], double velocity[]) {
+    if ((tdbDate < 2340000.5) || (tdbDate > 2560000.5))
+      return 1;
+    if ((body == 0) || (body == 1) || (body == 10)) {
+      for (int i = 0; i < 3; i++)
+        position[i] = velocity[i] = 0.0;
+    } else if ((body == 2) || (body == 3)) {
+      double radec[] = new double[3];
+      for (int i = 0; i < 3; i++) {
+        double qjd = tdbDate + (double) (i - 1) * 0.1;
+        sunEphemeris(qjd, radec);
+        Astrometry.radec2vector(radec[0], radec[1], radec[2], pos1);
+        Astrometry.precessionMatrix((qjd - T0) / 36525.0, matrix);
+        Astrometry.rotateInverse(matrix, pos1, position);
+        p[i][0] = -position[0];
+        p[i][1] = -position[1];
+        p[i][2] = -position[2];
+      }
+      for (int i = 0; i < 3; i++) {
+        position[i] = p[1][i];
+        velocity[i] = (p[2][i] - p[0][i]) / 0.2;
+      }
+    } else
+      return 2;
+    if (origin == 0) {
+      if (Math.abs(tdbDate - tlast) >= 1.0e-06) {
+        for (int i = 0; i < 3; i++)
+          pbary[i] = vbary[i] = 0.0;
+        for (int i = 0; i < 4; i++) {
+          double e = PE[i];
+          double mlon = PL[i] + PN[i] * (tdbDate - T0);
+          double ma = (mlon - PW[i]) % TWOPI;
+          double u = ma + e * Math.sin(ma) + 0.5 * e * e * Math.sin(2.0 * ma);
+          double sinu = Math.sin(u);
+          double cosu = Math.cos(u);
+          double anr = PN[i] / (1.0 - e * cosu);
+          double f = 1.0 / (PM[i] * TMASS);
+          for (int j = 0; j < 3; j++) {
+            pbary[j] += (A[j][i] * (cosu - e) + B[j][i] * sinu) * f;
+            vbary[j] += (anr * (-A[j][i] * sinu + B[j][i] * cosu)) * f;
+          }
+        }
+        tlast = tdbDate;
+      }
+      for (int i = 0; i < 3; i++) {
+        position[i] -= pbary[i];
+        velocity[i] -= vbary[i];
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * High precision is not available from the analytic theory, port of
+   * solarsystem_hp_3().
+   *
+   * @return always 3
+   */
+
+  public short solarSystemHP(double tdbHigh, double tdbLow, int body, int origin, double position[], double velocity[]) {
+    return 3;
+  }
+
+  /**
+   * Compute equatorial spherical coordinates of Sun referred to the mean
+   * equator and equinox of date, port of sun_eph() from solsys3.c.
+   *
+   * @param jd
+   *          TDB Julian date
+   * @param radec
+   *          output array of length 3 with right ascension in hours,
+   *          declination in degrees and geocentric distance in AU
+   */
+
+  static void sunEphemeris(double jd, double radec[]) {
+    double factor = 1.0e-07;
+    double u = (jd - T0) / 3652500.0;
+    double t = u * 100.0;
+    double sumLon = 0.0;
+    double sumR = 0.0;
+    for (int i = 0; i < 50; i++) {
+      double arg = SUN_ALPHA[i] + SUN_NU[i] * u;
+      sumLon += SUN_L[i] * Math.sin(arg);
+      sumR += SUN_R[i] * Math.cos(arg);
+    }
+    double lon = 4.9353929 + 62833.1961680 * u + factor * sumLon;
+    lon += ((-0.1371679461 - 0.2918293271 * t) * ASEC2RAD);
+    lon = lon % TWOPI;
+    if (lon < 0.0)
+      lon += TWOPI;
+    radec[2] = 1.0001026 + factor * sumR;
+    double emean = (84381.406 + (-46.836769 + (-0.0001831 + 0.00200340 * t) * t) * t) * ASEC2RAD;
+    double sinLon = Math.sin(lon);
+    double ra = Math.atan2((Math.cos(emean) * sinLon), Math.cos(lon)) * RAD2DEG;
+    ra = ra % 360.0;
+    if (ra < 0.0)
+      ra += 360.0;
+    radec[0] = ra / 15.0;
+    radec[1] = Math.asin(Math.sin(emean) * sinLon) * RAD2DEG;
+  }
+}
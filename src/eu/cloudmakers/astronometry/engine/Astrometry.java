@@ -0,0 +1,990 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+package eu.cloudmakers.astronometry.engine;
+
+import eu.cloudmakers.astronometry.NOVAS.CatalogEntry;
+import eu.cloudmakers.astronometry.NOVAS.PositionOnSurface;
+
+/**
+ * Constants and stateless functions of NOVAS 3.1 ported to Java.
+ * <p>
+ * Methods are straight ports of the functions with the same name in novas.c
+ * and novascon.c. Output vectors are passed in as arrays of length 3 and may
+ * be the same arrays as the input vectors unless stated otherwise. Nothing is
+ * cached, so all methods are safe to call from any thread; date dependent
+ * caching is done by {@link NovasEngine}.
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public final class Astrometry {
+
+  /**
+   * TDB Julian date of epoch J2000.0.
+   */
+
+  public static final double T0 = 2451545.00000000;
+
+  /**
+   * Speed of light in meters/second is a defining physical constant.
+   */
+
+  public static final double C = 299792458.0;
+
+  /**
+   * Light-time for one astronomical unit (AU) in seconds, from DE-405.
+   */
+
+  public static final double AU_SEC = 499.0047838061;
+
+  /**
+   * Speed of light in AU/day.
+   */
+
+  public static final double C_AUDAY = 173.1446326846693;
+
+  /**
+   * Astronomical unit in meters.
+   */
+
+  public static final double AU = 1.4959787069098932e+11;
+
+  /**
+   * Astronomical Unit in kilometers.
+   */
+
+  public static final double AU_KM = 1.4959787069098932e+8;
+
+  /**
+   * Heliocentric gravitational constant in meters^3 / second^2, from DE-405.
+   */
+
+  public static final double GS = 1.32712440017987e+20;
+
+  /**
+   * Geocentric gravitational constant in meters^3 / second^2, from DE-405.
+   */
+
+  public static final double GE = 3.98600433e+14;
+
+  /**
+   * Radius of Earth in meters from IERS Conventions (2003).
+   */
+
+  public static final double ERAD = 6378136.6;
+
+  /**
+   * Earth ellipsoid flattening from IERS Conventions (2003).
+   */
+
+  public static final double F = 0.003352819697896;
+
+  /**
+   * Rotational angular velocity of Earth in radians/sec from IERS Conventions
+   * (2003).
+   */
+
+  public static final double ANGVEL = 7.2921150e-5;
+
+  /**
+   * Reciprocal masses of solar system bodies, from DE-405 (Sun mass / body
+   * mass). RMASS[0] = Earth/Moon barycenter, RMASS[1] = Mercury, ...,
+   * RMASS[9] = Pluto, RMASS[10] = Sun, RMASS[11] = Moon.
+   */
+
+  static final double RMASS[] = { 328900.561400, 6023600.0, 408523.71, 332946.050895, 3098708.0, 1047.3486, 3497.898, 22902.98, 19412.24, 135200000.0, 1.0, 27068700.387534 };
+
+  /**
+   * Value of 2 * pi in radians.
+   */
+
+  public static final double TWOPI = 6.283185307179586476925287;
+
+  /**
+   * Number of arcseconds in 360 degrees.
+   */
+
+  public static final double ASEC360 = 1296000.0;
+
+  /**
+   * Angle conversion constant, arcseconds to radians.
+   */
+
+  public static final double ASEC2RAD = 4.848136811095359935899141e-6;
+
+  /**
+   * Angle conversion constant, degrees to radians.
+   */
+
+  public static final double DEG2RAD = 0.017453292519943296;
+
+  /**
+   * Angle conversion constant, radians to degrees.
+   */
+
+  public static final double RAD2DEG = 57.295779513082321;
+
+  private static final double FRAME_TIE[] = new double[9];
+
+  static {
+    double xi0 = -0.0166170;
+    double eta0 = -0.0068192;
+    double da0 = -0.01460;
+    double yx = -da0 * ASEC2RAD;
+    double zx = xi0 * ASEC2RAD;
+    double zy = eta0 * ASEC2RAD;
+    FRAME_TIE[0] = 1.0 - 0.5 * (yx * yx + zx * zx);
+    FRAME_TIE[1] = yx;
+    FRAME_TIE[2] = zx;
+    FRAME_TIE[3] = da0 * ASEC2RAD;
+    FRAME_TIE[4] = 1.0 - 0.5 * (yx * yx + zy * zy);
+    FRAME_TIE[5] = zy;
+    FRAME_TIE[6] = -xi0 * ASEC2RAD;
+    FRAME_TIE[7] = -eta0 * ASEC2RAD;
+    FRAME_TIE[8] = 1.0 - 0.5 * (zy * zy + zx * zx);
+  }
+
+  private Astrometry() {
+  }
+
+  /**
+   * Compute the difference TDB-TT in seconds at TDB Julian date.
+   * <p>
+   * Port of tdb2tt() from novas.c, the TT date itself is
+   * <code>tdbDate - tdbMinusTT(tdbDate) / 86400.0</code>.
+   *
+   * @param tdbDate
+   *          TDB Julian date
+   * @return difference TDB-TT in seconds
+   */
+
+  public static double tdbMinusTT(double tdbDate) {
+    double t = (tdbDate - T0) / 36525.0;
+    return 0.001657 * Math.sin(628.3076 * t + 6.2401) + 0.000022 * Math.sin(575.3385 * t + 4.2970) + 0.000014 * Math.sin(1256.6152 * t + 6.1969) + 0.000005 * Math.sin(606.9777 * t + 4.0212) + 0.000005 * Math.sin(52.9691 * t + 0.4444) + 0.000002 * Math.sin(21.3299 * t + 5.5431) + 0.000010 * t * Math.sin(628.3076 * t + 4.2490);
+  }
+
+  /**
+   * Compute TDB Julian date corresponding to TT Julian date, the same way as
+   * place() and geo_posvel() do in novas.c.
+   *
+   * @param ttDate
+   *          TT Julian date
+   * @return TDB Julian date
+   */
+
+  public static double ttToTDB(double ttDate) {
+    return ttDate + tdbMinusTT(ttDate) / 86400.0;
+  }
+
+  /**
+   * Compute the Earth Rotation Angle (theta) for a given UT1 Julian date.
+   * <p>
+   * Port of era() from novas.c.
+   *
+   * @param jdHigh
+   *          high-order part of UT1 Julian date
+   * @param jdLow
+   *          low-order part of UT1 Julian date
+   * @return the Earth Rotation Angle in degrees
+   */
+
+  public static double era(double jdHigh, double jdLow) {
+    double thet1 = 0.7790572732640 + 0.00273781191135448 * (jdHigh - T0);
+    double thet2 = 0.00273781191135448 * jdLow;
+    double thet3 = jdHigh % 1.0 + jdLow % 1.0;
+    double theta = ((thet1 + thet2 + thet3) % 1.0) * 360.0;
+    if (theta < 0.0)
+      theta += 360.0;
+    return theta;
+  }
+
+  /**
+   * Compute the mean obliquity of the ecliptic.
+   * <p>
+   * Port of mean_obliq() from novas.c.
+   *
+   * @param tdbDate
+   *          TDB Julian date
+   * @return mean obliquity of the ecliptic in arcseconds
+   */
+
+  public static double meanObliquity(double tdbDate) {
+    double t = (tdbDate - T0) / 36525.0;
+    return ((((-0.0000000434 * t - 0.000000576) * t + 0.00200340) * t - 0.0001831) * t - 46.836769) * t + 84381.406;
+  }
+
+  /**
+   * Normalize angle into the range 0 &lt;= angle &lt; (2 * pi).
+   * <p>
+   * Port of norm_ang() from novas.c.
+   */
+
+  public static double normalizeAngle(double angle) {
+    double a = angle % TWOPI;
+    if (a < 0.0)
+      a += TWOPI;
+    return a;
+  }
+
+  /**
+   * Compute the fundamental arguments (mean elements) of the Sun and Moon.
+   * <p>
+   * Port of fund_args() from novas.c.
+   *
+   * @param t
+   *          TDB time in Julian centuries since J2000.0
+   * @param a
+   *          output array of length 5 with l, l', F, D and Omega in radians
+   */
+
+  public static void fundamentalArguments(double t, double a[]) {
+    a[0] = (485868.249036 + t * (1717915923.2178 + t * (31.8792 + t * (0.051635 + t * (-0.00024470))))) % ASEC360 * ASEC2RAD;
+    a[1] = (1287104.79305 + t * (129596581.0481 + t * (-0.5532 + t * (0.000136 + t * (-0.00001149))))) % ASEC360 * ASEC2RAD;
+    a[2] = (335779.526232 + t * (1739527262.8478 + t * (-12.7512 + t * (-0.001037 + t * (0.00000417))))) % ASEC360 * ASEC2RAD;
+    a[3] = (1072260.70369 + t * (1602961601.2090 + t * (-6.3706 + t * (0.006593 + t * (-0.00003169))))) % ASEC360 * ASEC2RAD;
+    a[4] = (450160.398036 + t * (-6962890.5431 + t * (7.4722 + t * (0.007702 + t * (-0.00005939))))) % ASEC360 * ASEC2RAD;
+  }
+
+  /**
+   * Compute the nutation angles.
+   * <p>
+   * Port of nutation_angles() from novas.c. Full accuracy uses IAU 2000A,
+   * reduced accuracy uses NU2000K, exactly as the native library does.
+   *
+   * @param t
+   *          TDB time in Julian centuries since J2000.0
+   * @param accuracy
+   *          0 for full accuracy, 1 for reduced accuracy
+   * @param angles
+   *          output array of length 2 with nutation in longitude and
+   *          obliquity in arcseconds
+   */
+
+  public static void nutationAngles(double t, int accuracy, double angles[]) {
+    if (accuracy == 0)
+      Nutation.iau2000a(T0, t * 36525.0, angles);
+    else
+      Nutation.nu2000k(T0, t * 36525.0, angles);
+    angles[0] /= ASEC2RAD;
+    angles[1] /= ASEC2RAD;
+  }
+
+  /**
+   * Compute the "complementary terms" of the equation of the equinoxes.
+   * <p>
+   * Port of ee_ct() from novas.c.
+   *
+   * @param jdHigh
+   *          high-order part of TT Julian date
+   * @param jdLow
+   *          low-order part of TT Julian date
+   * @param accuracy
+   *          0 for full accuracy, 1 for reduced accuracy
+   * @return complementary terms in radians
+   */
+
+  public static double eeCT(double jdHigh, double jdLow, int accuracy) {
+    double t = ((jdHigh - T0) + jdLow) / 36525.0;
+    double cTerms;
+    if (accuracy == 0) {
+      double fa[] = new double[14];
+      fa[0] = normalizeAngle((485868.249036 + (715923.2178 + (31.8792 + (0.051635 + (-0.00024470) * t) * t) * t) * t) * ASEC2RAD + (1325.0 * t % 1.0) * TWOPI);
+      fa[1] = normalizeAngle((1287104.793048 + (1292581.0481 + (-0.5532 + (+0.000136 + (-0.00001149) * t) * t) * t) * t) * ASEC2RAD + (99.0 * t % 1.0) * TWOPI);
+      fa[2] = normalizeAngle((335779.526232 + (295262.8478 + (-12.7512 + (-0.001037 + (0.00000417) * t) * t) * t) * t) * ASEC2RAD + (1342.0 * t % 1.0) * TWOPI);
+      fa[3] = normalizeAngle((1072260.703692 + (1105601.2090 + (-6.3706 + (0.006593 + (-0.00003169) * t) * t) * t) * t) * ASEC2RAD + (1236.0 * t % 1.0) * TWOPI);
+      fa[4] = normalizeAngle((450160.398036 + (-482890.5431 + (7.4722 + (0.007702 + (-0.00005939) * t) * t) * t) * t) * ASEC2RAD + (-5.0 * t % 1.0) * TWOPI);
+      fa[5] = normalizeAngle(4.402608842 + 2608.7903141574 * t);
+      fa[6] = normalizeAngle(3.176146697 + 1021.3285546211 * t);
+      fa[7] = normalizeAngle(1.753470314 + 628.3075849991 * t);
+      fa[8] = normalizeAngle(6.203480913 + 334.0612426700 * t);
+      fa[9] = normalizeAngle(0.599546497 + 52.9690962641 * t);
+      fa[10] = normalizeAngle(0.874016757 + 21.3299104960 * t);
+      fa[11] = normalizeAngle(5.481293872 + 7.4781598567 * t);
+      fa[12] = normalizeAngle(5.311886287 + 3.8133035638 * t);
+      fa[13] = (0.024381750 + 0.00000538691 * t) * t;
+      double s0 = 0.0;
+      for (int i = 32; i >= 0; i--) {
+        double a = 0.0;
+        for (int j = 0; j < 14; j++)
+          a += KE0_T[i][j] * fa[j];
+        s0 += SE0_T[i][0] * Math.sin(a) + SE0_T[i][1] * Math.cos(a);
+      }
+      double s1 = -0.87e-6 * Math.sin(fa[4]) + 0.00e-6 * Math.cos(fa[4]);
+      cTerms = s0 + s1 * t;
+    } else {
+      double fa2[] = new double[5];
+      fundamentalArguments(t, fa2);
+      cTerms = 2640.96e-6 * Math.sin(fa2[4]) + 63.52e-6 * Math.sin(2.0 * fa2[4]) + 11.75e-6 * Math.sin(2.0 * fa2[2] - 2.0 * fa2[3] + 3.0 * fa2[4]) + 11.21e-6 * Math.sin(2.0 * fa2[2] - 2.0 * fa2[3] + fa2[4]) - 4.55e-6 * Math.sin(2.0 * fa2[2] - 2.0 * fa2[3] + 2.0 * fa2[4]) + 2.02e-6 * Math.sin(2.0 * fa2[2] + 3.0 * fa2[4]) + 1.98e-6 * Math.sin(2.0 * fa2[2] + fa2[4]) - 1.72e-6 * Math.sin(3.0 * fa2[4]) - 0.87e-6 * t * Math.sin(fa2[4]);
+    }
+    return cTerms * ASEC2RAD;
+  }
+
+  private static final int KE0_T[][] = { { 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 0, 0, 0, 2, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 0, 2, -2, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 0, 2, -2, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 0, 2, -2, 2, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 0, 2, 0, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 0, 2, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 0, 0, 0, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 1, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 1, 0, 0, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 1, 0, 0, 0, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 1, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 1, 2, -2, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 1, 2, -2, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 0, 4, -4, 4, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 0, 1, -1, 1, 0, -8, 12, 0, 0, 0, 0, 0, 0 }, { 0, 0, 2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 0, 2, 0, 2, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 1, 0, 2, 0, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 1, 0, 2, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 0, 2, -2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 1, -2, 2, -3, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 1, -2, 2, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 0, 0, 0, 0, 0, 8, -13, 0, 0, 0, 0, 0, -1 }, { 0, 0, 0, 2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 2, 0, -2, 0, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 1, 0, 0, -2, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 1, 2, -2, 2, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 1, 0, 0, -2, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 0, 4, -2, 4, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 0, 0, 2, -2, 4, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 1, 0, -2, 0, -3, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, { 1, 0, -2, 0, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0 } };
+
+  private static final double SE0_T[][] = { { +2640.96e-6, -0.39e-6 }, { +63.52e-6, -0.02e-6 }, { +11.75e-6, +0.01e-6 }, { +11.21e-6, +0.01e-6 }, { -4.55e-6, +0.00e-6 }, { +2.02e-6, +0.00e-6 }, { +1.98e-6, +0.00e-6 }, { -1.72e-6, +0.00e-6 }, { -1.41e-6, -0.01e-6 }, { -1.26e-6, -0.01e-6 }, { -0.63e-6, +0.00e-6 }, { -0.63e-6, +0.00e-6 }, { +0.46e-6, +0.00e-6 }, { +0.45e-6, +0.00e-6 }, { +0.36e-6, +0.00e-6 }, { -0.24e-6, -0.12e-6 }, { +0.32e-6, +0.00e-6 }, { +0.28e-6, +0.00e-6 }, { +0.27e-6, +0.00e-6 }, { +0.26e-6, +0.00e-6 }, { -0.21e-6, +0.00e-6 }, { +0.19e-6, +0.00e-6 }, { +0.18e-6, +0.00e-6 }, { -0.10e-6, +0.05e-6 }, { +0.15e-6, +0.00e-6 }, { -0.14e-6, +0.00e-6 }, { +0.14e-6, +0.00e-6 }, { -0.14e-6, +0.00e-6 }, { +0.14e-6, +0.00e-6 }, { +0.13e-6, +0.00e-6 }, { -0.11e-6, +0.00e-6 }, { +0.11e-6, +0.00e-6 }, { +0.11e-6, +0.00e-6 } };
+
+  /**
+   * Compute the precession rotation matrix between J2000.0 and the given
+   * epoch.
+   * <p>
+   * Matrix part of precession() from novas.c, 4-angle formulation from
+   * Capitaine et al. (2003). The matrix rotates from J2000.0 to epoch when
+   * applied with {@link #rotate(double[], double[], double[])} and from epoch
+   * to J2000.0 when applied with
+   * {@link #rotateInverse(double[], double[], double[])}.
+   *
+   * @param t
+   *          TDB time in Julian centuries from J2000.0 to the epoch
+   * @param matrix
+   *          output row-major matrix of length 9
+   */
+
+  public static void precessionMatrix(double t, double matrix[]) {
+    double eps0 = 84381.406;
+    double psia = ((((-0.0000000951 * t + 0.000132851) * t - 0.00114045) * t - 1.0790069) * t + 5038.481507) * t;
+    double omegaa = ((((+0.0000003337 * t - 0.000000467) * t - 0.00772503) * t + 0.0512623) * t - 0.025754) * t + eps0;
+    double chia = ((((-0.0000000560 * t + 0.000170663) * t - 0.00121197) * t - 2.3814292) * t + 10.556403) * t;
+    eps0 = eps0 * ASEC2RAD;
+    psia = psia * ASEC2RAD;
+    omegaa = omegaa * ASEC2RAD;
+    chia = chia * ASEC2RAD;
+    double sa = Math.sin(eps0);
+    double ca = Math.cos(eps0);
+    double sb = Math.sin(-psia);
+    double cb = Math.cos(-psia);
+    double sc = Math.sin(-omegaa);
+    double cc = Math.cos(-omegaa);
+    double sd = Math.sin(chia);
+    double cd = Math.cos(chia);
+    matrix[0] = cd * cb - sb * sd * cc;
+    matrix[1] = cd * sb * ca + sd * cc * cb * ca - sa * sd * sc;
+    matrix[2] = cd * sb * sa + sd * cc * cb * sa + ca * sd * sc;
+    matrix[3] = -sd * cb - sb * cd * cc;
+    matrix[4] = -sd * sb * ca + cd * cc * cb * ca - sa * cd * sc;
+    matrix[5] = -sd * sb * sa + cd * cc * cb * sa + ca * cd * sc;
+    matrix[6] = sb * sc;
+    matrix[7] = -sc * cb * ca - sa * cc;
+    matrix[8] = -sc * cb * sa + cc * ca;
+  }
+
+  /**
+   * Precess equatorial rectangular coordinates from one epoch to another.
+   * <p>
+   * Port of precession() from novas.c. One of the two epochs must be J2000.0.
+   *
+   * @param tdbDate1
+   *          TDB Julian date of first epoch
+   * @param pos1
+   *          position vector referred to mean dynamical equator and equinox of
+   *          first epoch
+   * @param tdbDate2
+   *          TDB Julian date of second epoch
+   * @param pos2
+   *          output position vector referred to mean dynamical equator and
+   *          equinox of second epoch
+   * @return error code: <blockquote> 0 &rarr; no problems<br>
+   *         1 &rarr; precession not to or from J2000.0</blockquote>
+   */
+
+  public static short precession(double tdbDate1, double pos1[], double tdbDate2, double pos2[]) {
+    if ((tdbDate1 != T0) && (tdbDate2 != T0))
+      return 1;
+    double matrix[] = new double[9];
+    if (tdbDate2 == T0) {
+      precessionMatrix((tdbDate1 - tdbDate2) / 36525.0, matrix);
+      rotateInverse(matrix, pos1, pos2);
+    } else {
+      precessionMatrix((tdbDate2 - tdbDate1) / 36525.0, matrix);
+      rotate(matrix, pos1, pos2);
+    }
+    return 0;
+  }
+
+  /**
+   * Compute the nutation rotation matrix from mean and true obliquity and
+   * nutation in longitude.
+   * <p>
+   * Matrix part of nutation() from novas.c. The matrix rotates from mean to
+   * true equator and equinox of date when applied with
+   * {@link #rotate(double[], double[], double[])}.
+   *
+   * @param meanObliquity
+   *          mean obliquity of the ecliptic in degrees
+   * @param trueObliquity
+   *          true obliquity of the ecliptic in degrees
+   * @param psi
+   *          nutation in longitude in arcseconds
+   * @param matrix
+   *          output row-major matrix of length 9
+   */
+
+  public static void nutationMatrix(double meanObliquity, double trueObliquity, double psi, double matrix[]) {
+    double cobm = Math.cos(meanObliquity * DEG2RAD);
+    double sobm = Math.sin(meanObliquity * DEG2RAD);
+    double cobt = Math.cos(trueObliquity * DEG2RAD);
+    double sobt = Math.sin(trueObliquity * DEG2RAD);
+    double cpsi = Math.cos(psi * ASEC2RAD);
+    double spsi = Math.sin(psi * ASEC2RAD);
+    matrix[0] = cpsi;
+    matrix[1] = -spsi * cobm;
+    matrix[2] = -spsi * sobm;
+    matrix[3] = spsi * cobt;
+    matrix[4] = cpsi * cobm * cobt + sobm * sobt;
+    matrix[5] = cpsi * sobm * cobt - cobm * sobt;
+    matrix[6] = spsi * sobt;
+    matrix[7] = cpsi * cobm * sobt - sobm * cobt;
+    matrix[8] = cpsi * sobm * sobt + cobm * cobt;
+  }
+
+  /**
+   * Transform a vector from the dynamical reference system to the ICRS, or
+   * vice versa.
+   * <p>
+   * Port of frame_tie() from novas.c.
+   *
+   * @param pos1
+   *          position vector, equatorial rectangular coordinates
+   * @param direction
+   *          set <code>direction &lt; 0</code> for dynamical to ICRS
+   *          transformation, <code>direction &gt;= 0</code> for ICRS to
+   *          dynamical transformation
+   * @param pos2
+   *          output position vector, equatorial rectangular coordinates
+   */
+
+  public static void frameTie(double pos1[], int direction, double pos2[]) {
+    if (direction < 0)
+      rotate(FRAME_TIE, pos1, pos2);
+    else
+      rotateInverse(FRAME_TIE, pos1, pos2);
+  }
+
+  /**
+   * Apply a row-major rotation matrix to a vector. Output may be the same
+   * array as input.
+   */
+
+  public static void rotate(double matrix[], double pos1[], double pos2[]) {
+    double x = pos1[0], y = pos1[1], z = pos1[2];
+    pos2[0] = matrix[0] * x + matrix[1] * y + matrix[2] * z;
+    pos2[1] = matrix[3] * x + matrix[4] * y + matrix[5] * z;
+    pos2[2] = matrix[6] * x + matrix[7] * y + matrix[8] * z;
+  }
+
+  /**
+   * Apply the inverse (transpose) of a row-major rotation matrix to a vector.
+   * Output may be the same array as input.
+   */
+
+  public static void rotateInverse(double matrix[], double pos1[], double pos2[]) {
+    double x = pos1[0], y = pos1[1], z = pos1[2];
+    pos2[0] = matrix[0] * x + matrix[3] * y + matrix[6] * z;
+    pos2[1] = matrix[1] * x + matrix[4] * y + matrix[7] * z;
+    pos2[2] = matrix[2] * x + matrix[5] * y + matrix[8] * z;
+  }
+
+  /**
+   * Apply proper motion, including foreshortening effects, to a star's
+   * position.
+   * <p>
+   * Port of proper_motion() from novas.c.
+   *
+   * @param tdbDate1
+   *          TDB Julian date of first epoch
+   * @param pos
+   *          position vector at first epoch
+   * @param vel
+   *          velocity vector at first epoch
+   * @param tdbDate2
+   *          TDB Julian date of second epoch
+   * @param pos2
+   *          output position vector at second epoch
+   */
+
+  public static void properMotion(double tdbDate1, double pos[], double vel[], double tdbDate2, double pos2[]) {
+    double dt = tdbDate2 - tdbDate1;
+    for (int j = 0; j < 3; j++)
+      pos2[j] = pos[j] + (vel[j] * dt);
+  }
+
+  /**
+   * Move the origin of coordinates from the barycenter of the solar system to
+   * the observer (or the geocenter), i.e. this function accounts for
+   * parallax (annual+geocentric or just annual).
+   * <p>
+   * Port of bary2obs() from novas.c.
+   *
+   * @param pos
+   *          position vector, referred to origin at solar system barycenter,
+   *          components in AU
+   * @param posObs
+   *          position vector of observer (or the geocenter), with respect to
+   *          origin at solar system barycenter, components in AU
+   * @param pos2
+   *          output position vector, referred to origin at center of mass of
+   *          the Earth, components in AU
+   * @return light time from object to Earth in days
+   */
+
+  public static double bary2obs(double pos[], double posObs[], double pos2[]) {
+    for (int j = 0; j < 3; j++)
+      pos2[j] = pos[j] - posObs[j];
+    return Math.sqrt(pos2[0] * pos2[0] + pos2[1] * pos2[1] + pos2[2] * pos2[2]) / C_AUDAY;
+  }
+
+  /**
+   * Correct the position vector for the deflection of light in the
+   * gravitational field of an arbitrary body.
+   * <p>
+   * Port of grav_vec() from novas.c.
+   *
+   * @param pos1
+   *          position vector of observed object, with respect to origin at
+   *          observer (or the geocenter), components in AU
+   * @param posObs
+   *          position vector of observer (or the geocenter), with respect to
+   *          origin at solar system barycenter, components in AU
+   * @param posBody
+   *          position vector of gravitating body, with respect to origin at
+   *          solar system barycenter, components in AU
+   * @param rmass
+   *          reciprocal mass of gravitating body in solar mass units
+   * @param pos2
+   *          output position vector of observed object, with respect to
+   *          origin at observer (or the geocenter), corrected for
+   *          gravitational deflection, components in AU
+   */
+
+  public static void gravVec(double pos1[], double posObs[], double posBody[], double rmass, double pos2[]) {
+    double pq0 = posObs[0] + pos1[0] - posBody[0];
+    double pq1 = posObs[1] + pos1[1] - posBody[1];
+    double pq2 = posObs[2] + pos1[2] - posBody[2];
+    double pe0 = posObs[0] - posBody[0];
+    double pe1 = posObs[1] - posBody[1];
+    double pe2 = posObs[2] - posBody[2];
+    double pmag = Math.sqrt(pos1[0] * pos1[0] + pos1[1] * pos1[1] + pos1[2] * pos1[2]);
+    double emag = Math.sqrt(pe0 * pe0 + pe1 * pe1 + pe2 * pe2);
+    double qmag = Math.sqrt(pq0 * pq0 + pq1 * pq1 + pq2 * pq2);
+    double phat0 = pos1[0] / pmag, phat1 = pos1[1] / pmag, phat2 = pos1[2] / pmag;
+    double ehat0 = pe0 / emag, ehat1 = pe1 / emag, ehat2 = pe2 / emag;
+    double qhat0 = pq0 / qmag, qhat1 = pq1 / qmag, qhat2 = pq2 / qmag;
+    double pdotq = phat0 * qhat0 + phat1 * qhat1 + phat2 * qhat2;
+    double edotp = ehat0 * phat0 + ehat1 * phat1 + ehat2 * phat2;
+    double qdote = qhat0 * ehat0 + qhat1 * ehat1 + qhat2 * ehat2;
+    if (Math.abs(edotp) > 0.99999999999) {
+      for (int i = 0; i < 3; i++)
+        pos2[i] = pos1[i];
+    } else {
+      double fac1 = 2.0 * GS / (C * C * emag * AU * rmass);
+      double fac2 = 1.0 + qdote;
+      pos2[0] = (phat0 + fac1 * (pdotq * ehat0 - edotp * qhat0) / fac2) * pmag;
+      pos2[1] = (phat1 + fac1 * (pdotq * ehat1 - edotp * qhat1) / fac2) * pmag;
+      pos2[2] = (phat2 + fac1 * (pdotq * ehat2 - edotp * qhat2) / fac2) * pmag;
+    }
+  }
+
+  /**
+   * Correct the position vector for aberration of light, including
+   * relativistic terms.
+   * <p>
+   * Port of aberration() from novas.c.
+   *
+   * @param pos
+   *          position vector of the observed object with respect to origin at
+   *          observer, components in AU
+   * @param ve
+   *          velocity vector of observer with respect to origin at solar
+   *          system barycenter, components in AU/day
+   * @param lighttime
+   *          light time from object to Earth in days or zero to compute it
+   * @param pos2
+   *          output position vector, referred to origin at center of mass of
+   *          the Earth, corrected for aberration, components in AU
+   */
+
+  public static void aberration(double pos[], double ve[], double lighttime, double pos2[]) {
+    double p1mag;
+    if (lighttime == 0.0) {
+      p1mag = Math.sqrt(pos[0] * pos[0] + pos[1] * pos[1] + pos[2] * pos[2]);
+      lighttime = p1mag / C_AUDAY;
+    } else
+      p1mag = lighttime * C_AUDAY;
+    double vemag = Math.sqrt(ve[0] * ve[0] + ve[1] * ve[1] + ve[2] * ve[2]);
+    double beta = vemag / C_AUDAY;
+    double dot = pos[0] * ve[0] + pos[1] * ve[1] + pos[2] * ve[2];
+    double cosd = dot / (p1mag * vemag);
+    double gammai = Math.sqrt(1.0 - beta * beta);
+    double p = beta * cosd;
+    double q = (1.0 + p / (1.0 + gammai)) * lighttime;
+    double r = 1.0 + p;
+    double x = pos[0], y = pos[1], z = pos[2];
+    pos2[0] = (gammai * x + q * ve[0]) / r;
+    pos2[1] = (gammai * y + q * ve[1]) / r;
+    pos2[2] = (gammai * z + q * ve[2]) / r;
+  }
+
+  /**
+   * Compute the position and velocity vectors of a terrestrial observer with
+   * respect to the center of the Earth.
+   * <p>
+   * Port of terra() from novas.c.
+   *
+   * @param location
+   *          location of observer
+   * @param st
+   *          local apparent sidereal time at reference meridian in hours
+   * @param pos
+   *          output position vector of observer with respect to center of
+   *          Earth, equatorial rectangular coordinates, referred to true
+   *          equator and equinox of date, components in AU
+   * @param vel
+   *          output velocity vector of observer with respect to center of
+   *          Earth, equatorial rectangular coordinates, referred to true
+   *          equator and equinox of date, components in AU/day
+   */
+
+  public static void terra(PositionOnSurface location, double st, double pos[], double vel[]) {
+    double eradKm = ERAD / 1000.0;
+    double df = 1.0 - F;
+    double df2 = df * df;
+    double phi = location.latitude * DEG2RAD;
+    double sinphi = Math.sin(phi);
+    double cosphi = Math.cos(phi);
+    double c = 1.0 / Math.sqrt(cosphi * cosphi + df2 * sinphi * sinphi);
+    double s = df2 * c;
+    double htKm = location.height / 1000.0;
+    double ach = eradKm * c + htKm;
+    double ash = eradKm * s + htKm;
+    double stlocl = (st * 15.0 + location.longitude) * DEG2RAD;
+    double sinst = Math.sin(stlocl);
+    double cosst = Math.cos(stlocl);
+    pos[0] = ach * cosphi * cosst;
+    pos[1] = ach * cosphi * sinst;
+    pos[2] = ash * sinphi;
+    vel[0] = -ANGVEL * ach * cosphi * sinst;
+    vel[1] = ANGVEL * ach * cosphi * cosst;
+    vel[2] = 0.0;
+    for (int j = 0; j < 3; j++) {
+      pos[j] /= AU_KM;
+      vel[j] /= AU_KM;
+      vel[j] *= 86400.0;
+    }
+  }
+
+  /**
+   * Compute atmospheric refraction in zenith distance. This version computes
+   * approximate refraction for optical wavelengths.
+   * <p>
+   * Port of refract() from novas.c.
+   *
+   * @param location
+   *          location of observer, pressure and temperature are used only
+   *          if <code>refOption</code> is 2
+   * @param refOption
+   *          1 &rarr; use 'standard' atmospheric conditions<br>
+   *          2 &rarr; use atmospheric parameters of the location
+   * @param zdObs
+   *          observed zenith distance in degrees
+   * @return atmospheric refraction in degrees, zero outside of zenith
+   *         distances between 0.1 and 91 degrees
+   */
+
+  public static double refract(PositionOnSurface location, int refOption, double zdObs) {
+    if (zdObs < 0.1 || zdObs > 91.0)
+      return 0.0;
+    double p, t;
+    if (refOption == 2) {
+      p = location.pressure;
+      t = location.temperature;
+    } else {
+      p = 1010.0 * Math.exp(-location.height / 9.1e3);
+      t = 10.0;
+    }
+    double h = 90.0 - zdObs;
+    double r = 0.016667 / Math.tan((h + 7.31 / (h + 4.4)) * DEG2RAD);
+    return r * (0.28 * p / (t + 273.0));
+  }
+
+  /**
+   * Convert angular quantities for a star to vectors.
+   * <p>
+   * Port of starvectors() from novas.c.
+   *
+   * @param star
+   *          catalog entry of the star
+   * @param pos
+   *          output position vector, equatorial rectangular coordinates,
+   *          components in AU
+   * @param vel
+   *          output velocity vector, equatorial rectangular coordinates,
+   *          components in AU/day
+   */
+
+  public static void starVectors(CatalogEntry star, double pos[], double vel[]) {
+    starVectors(star.ra, star.dec, star.raProperMotion, star.decProperMotion, star.parallax, star.radialVelocity, pos, vel);
+  }
+
+  /**
+   * Convert angular quantities for a star given as individual values to
+   * vectors.
+   *
+   * @see #starVectors(CatalogEntry, double[], double[])
+   */
+
+  public static void starVectors(double ra, double dec, double raProperMotion, double decProperMotion, double parallax, double radialVelocity, double pos[], double vel[]) {
+    double paralx = parallax;
+    if (parallax <= 0.0)
+      paralx = 1.0e-6;
+    double dist = 1.0 / Math.sin(paralx * 1.0e-3 * ASEC2RAD);
+    double r = ra * 15.0 * DEG2RAD;
+    double d = dec * DEG2RAD;
+    double cra = Math.cos(r);
+    double sra = Math.sin(r);
+    double cdc = Math.cos(d);
+    double sdc = Math.sin(d);
+    pos[0] = dist * cdc * cra;
+    pos[1] = dist * cdc * sra;
+    pos[2] = dist * sdc;
+    double k = 1.0 / (1.0 - radialVelocity / C * 1000.0);
+    double pmr = raProperMotion / (paralx * 365.25) * k;
+    double pmd = decProperMotion / (paralx * 365.25) * k;
+    double rvl = radialVelocity * 86400.0 / AU_KM * k;
+    vel[0] = -pmr * sra - pmd * sdc * cra + rvl * cdc * cra;
+    vel[1] = pmr * cra - pmd * sdc * sra + rvl * cdc * sra;
+    vel[2] = pmd * cdc + rvl * sdc;
+  }
+
+  /**
+   * Convert a vector in equatorial rectangular coordinates to equatorial
+   * spherical coordinates.
+   * <p>
+   * Port of vector2radec() from novas.c.
+   *
+   * @param pos
+   *          position vector, equatorial rectangular coordinates
+   * @param radec
+   *          output array of length 2 with right ascension in hours and
+   *          declination in degrees
+   * @return error code: <blockquote> 0 &rarr; no problems<br>
+   *         1 &rarr; all vector components are zero<br>
+   *         2 &rarr; both x and y vector components are zero</blockquote>
+   */
+
+  public static short vector2radec(double pos[], double radec[]) {
+    double xyproj = Math.sqrt(pos[0] * pos[0] + pos[1] * pos[1]);
+    if ((xyproj == 0.0) && (pos[2] == 0)) {
+      radec[0] = 0.0;
+      radec[1] = 0.0;
+      return 1;
+    } else if (xyproj == 0.0) {
+      radec[0] = 0.0;
+      radec[1] = pos[2] < 0.0 ? -90.0 : 90.0;
+      return 2;
+    }
+    radec[0] = Math.atan2(pos[1], pos[0]) / ASEC2RAD / 54000.0;
+    radec[1] = Math.atan2(pos[2], xyproj) / ASEC2RAD / 3600.0;
+    if (radec[0] < 0.0)
+      radec[0] += 24.0;
+    return 0;
+  }
+
+  /**
+   * Convert equatorial spherical coordinates to a vector (equatorial
+   * rectangular coordinates).
+   * <p>
+   * Port of radec2vector() from novas.c.
+   *
+   * @param ra
+   *          right ascension in hours
+   * @param dec
+   *          declination in degrees
+   * @param dist
+   *          distance in AU
+   * @param vector
+   *          output position vector, equatorial rectangular coordinates
+   */
+
+  public static void radec2vector(double ra, double dec, double dist, double vector[]) {
+    vector[0] = dist * Math.cos(DEG2RAD * dec) * Math.cos(DEG2RAD * 15.0 * ra);
+    vector[1] = dist * Math.cos(DEG2RAD * dec) * Math.sin(DEG2RAD * 15.0 * ra);
+    vector[2] = dist * Math.sin(DEG2RAD * dec);
+  }
+
+  /**
+   * Compute the difference in light-time, for a star, between the barycenter
+   * of the solar system and the observer (or the geocenter).
+   * <p>
+   * Port of d_light() from novas.c.
+   *
+   * @param pos1
+   *          position vector of star, with respect to origin at solar system
+   *          barycenter
+   * @param posObs
+   *          position vector of observer (or the geocenter), with respect to
+   *          origin at solar system barycenter, components in AU
+   * @return difference in light time in days
+   */
+
+  public static double dLight(double pos1[], double posObs[]) {
+    double dis = Math.sqrt(pos1[0] * pos1[0] + pos1[1] * pos1[1] + pos1[2] * pos1[2]);
+    return (posObs[0] * (pos1[0] / dis) + posObs[1] * (pos1[1] / dis) + posObs[2] * (pos1[2] / dis)) / C_AUDAY;
+  }
+
+  /**
+   * Compute the angle of an object above or below the Earth's limb (horizon).
+   * <p>
+   * Port of limb_angle() from novas.c.
+   *
+   * @param posObj
+   *          position vector of observed object, with respect to origin at
+   *          geocenter, components in AU
+   * @param posObs
+   *          position vector of observer, with respect to origin at
+   *          geocenter, components in AU
+   * @param angles
+   *          output array of length 2 with angle of observed object above
+   *          (+) or below (-) limb in degrees and nadir angle of observed
+   *          object as a fraction of apparent radius of limb
+   */
+
+  public static void limbAngle(double posObj[], double posObs[], double angles[]) {
+    double pi = TWOPI / 2.0;
+    double halfpi = pi / 2.0;
+    double rade = ERAD / AU;
+    double disobj = Math.sqrt(posObj[0] * posObj[0] + posObj[1] * posObj[1] + posObj[2] * posObj[2]);
+    double disobs = Math.sqrt(posObs[0] * posObs[0] + posObs[1] * posObs[1] + posObs[2] * posObs[2]);
+    double aprad = disobs >= rade ? Math.asin(rade / disobs) : halfpi;
+    double zdlim = pi - aprad;
+    double coszd = (posObj[0] * posObs[0] + posObj[1] * posObs[1] + posObj[2] * posObs[2]) / (disobj * disobs);
+    double zdobj;
+    if (coszd <= -1.0)
+      zdobj = pi;
+    else if (coszd >= 1.0)
+      zdobj = 0.0;
+    else
+      zdobj = Math.acos(coszd);
+    angles[0] = (zdlim - zdobj) * RAD2DEG;
+    angles[1] = (pi - zdobj) / aprad;
+  }
+
+  /**
+   * Predict the radial velocity of the observed object as it would be
+   * measured by spectroscopic means.
+   * <p>
+   * Port of rad_vel() from novas.c.
+   *
+   * @param star
+   *          catalog entry for objects outside the solar system or
+   *          <code>null</code> for solar system bodies
+   * @param pos
+   *          geometric position vector of object with respect to observer,
+   *          corrected for light-time, in AU
+   * @param vel
+   *          velocity vector of object with respect to solar system
+   *          barycenter, in AU/day
+   * @param velObs
+   *          velocity vector of observer with respect to solar system
+   *          barycenter, in AU/day
+   * @param dObsGeo
+   *          distance from observer to geocenter, in AU
+   * @param dObsSun
+   *          distance from observer to Sun, in AU
+   * @param dObjSun
+   *          distance from object to Sun, in AU
+   * @return radial velocity measure of object in km/s
+   */
+
+  public static double radVel(CatalogEntry star, double pos[], double vel[], double velObs[], double dObsGeo, double dObsSun, double dObjSun) {
+    double c2 = C * C;
+    double toms = AU / 86400.0;
+    double toms2 = toms * toms;
+    double v0 = vel[0], v1 = vel[1], v2v = vel[2];
+    if (star != null && star.parallax <= 0.0) {
+      v0 = 0.0;
+      v1 = 0.0;
+      v2v = 0.0;
+    }
+    double posmag = Math.sqrt(pos[0] * pos[0] + pos[1] * pos[1] + pos[2] * pos[2]);
+    double uk0 = pos[0] / posmag, uk1 = pos[1] / posmag, uk2 = pos[2] / posmag;
+    double v2 = (v0 * v0 + v1 * v1 + v2v * v2v) * toms2;
+    double vo2 = (velObs[0] * velObs[0] + velObs[1] * velObs[1] + velObs[2] * velObs[2]) * toms2;
+    double r = dObsGeo * AU;
+    double phigeo = r > 1.0e6 ? GE / r : 0.0;
+    r = dObsSun * AU;
+    double phisun = r > 1.0e8 ? GS / r : 0.0;
+    double rel;
+    if ((dObsGeo != 0.0) || (dObsSun != 0.0))
+      rel = 1.0 - (phigeo + phisun) / c2 - 0.5 * vo2 / c2;
+    else
+      rel = 1.0 - 1.550e-8;
+    double zb1, kvobs, zobs1;
+    if (star != null) {
+      double rar = star.ra * 15.0 * DEG2RAD;
+      double dcr = star.dec * DEG2RAD;
+      double cosdec = Math.cos(dcr);
+      double du0 = uk0 - (cosdec * Math.cos(rar));
+      double du1 = uk1 - (cosdec * Math.sin(rar));
+      double du2 = uk2 - Math.sin(dcr);
+      double zc = star.radialVelocity * 1.0e3 + (v0 * du0 + v1 * du1 + v2v * du2) * toms;
+      zb1 = 1.0 + zc / C;
+      kvobs = (uk0 * velObs[0] + uk1 * velObs[1] + uk2 * velObs[2]) * toms;
+      zobs1 = zb1 * rel / (1.0 + kvobs / C);
+    } else {
+      r = dObjSun * AU;
+      phisun = (r > 1.0e8) && (r < 1.0e16) ? GS / r : 0.0;
+      double kv = (uk0 * vel[0] + uk1 * vel[1] + uk2 * vel[2]) * toms;
+      zb1 = (1.0 + kv / C) / (1.0 - phisun / c2 - 0.5 * v2 / c2);
+      kvobs = (uk0 * velObs[0] + uk1 * velObs[1] + uk2 * velObs[2]) * toms;
+      zobs1 = zb1 * rel / (1.0 + kvobs / C);
+    }
+    return (zobs1 - 1.0) * C / 1000.0;
+  }
+
+  /**
+   * Compute the intermediate right ascension of the equinox at the given
+   * date, given the equation of the equinoxes.
+   * <p>
+   * Port of ira_equinox() from novas.c with the equation of the equinoxes
+   * supplied by the caller.
+   *
+   * @param tdbDate
+   *          TDB Julian date
+   * @param equationOfEquinoxes
+   *          equation of the equinoxes in seconds of time for the true
+   *          equinox or 0.0 for the mean equinox
+   * @return intermediate right ascension of the equinox in hours
+   */
+
+  public static double iraEquinox(double tdbDate, double equationOfEquinoxes) {
+    double t = (tdbDate - T0) / 36525.0;
+    double precRA = 0.014506 + ((((-0.0000000368 * t - 0.000029956) * t - 0.00000044) * t + 1.3915817) * t + 4612.156534) * t;
+    return -(precRA / 15.0 + equationOfEquinoxes) / 3600.0;
+  }
+}
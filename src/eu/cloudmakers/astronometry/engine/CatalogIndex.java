@@ -0,0 +1,464 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+
+package eu.cloudmakers.astronometry.engine;
+
+import static eu.cloudmakers.astronometry.engine.Astrometry.ASEC2RAD;
+import static eu.cloudmakers.astronometry.engine.Astrometry.DEG2RAD;
+import static eu.cloudmakers.astronometry.engine.Astrometry.T0;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import eu.cloudmakers.astronometry.NOVAS.Observer;
+
+/**
+ * Spatial index of a {@link StarCatalog} for cone searches at arbitrary
+ * epochs.
+ * <p>
+ * Stars are assigned to HEALPix pixels of the nested scheme by their catalog
+ * positions at J2000.0 and stored as a permutation of star indices sorted by
+ * pixel. Cone search finds the pixels intersecting the cone, widened by the
+ * largest proper motion drift since the catalog epoch and by
+ * {@link #APPARENT_MARGIN} for aberration, light deflection and parallax,
+ * checks the catalog position of every candidate against its own drift and
+ * reduces only the remaining candidates. Stars with proper motion larger
+ * than {@link #FAST_PROPER_MOTION} are kept in a separate list checked by
+ * every search, so they don't widen the search for all others.
+ * <p>
+ * Index is immutable and thread-safe, index data are stored off-heap.
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class CatalogIndex {
+
+  /**
+   * Margin in arcseconds covering the difference between catalog and
+   * apparent or topocentric direction of a star apart from proper motion:
+   * annual and diurnal aberration, light deflection and parallax.
+   */
+
+  public static final double APPARENT_MARGIN = 60.0;
+
+  /**
+   * Limit of proper motion in milliarcseconds/year, stars moving faster are
+   * checked by every search.
+   */
+
+  public static final double FAST_PROPER_MOTION = 1000.0;
+
+  /**
+   * Average number of stars in one pixel used to choose default order.
+   */
+
+  public static final int STARS_PER_PIXEL = 32;
+
+  /**
+   * Maximal order of the index.
+   */
+
+  public static final int MAX_ORDER = 10;
+
+  private static final int JRLL[] = { 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4 };
+  private static final int JPLL[] = { 1, 3, 5, 7, 0, 2, 4, 6, 1, 3, 5, 7 };
+
+  private final StarCatalog catalog;
+  private final int order;
+  private final IntBuffer offsets;
+  private final IntBuffer stars;
+  private final int fastStars[];
+  private final double maxPixelRadius[];
+
+  /**
+   * Create index with order chosen for about {@link #STARS_PER_PIXEL} stars
+   * in one pixel.
+   *
+   * @param catalog
+   *          indexed catalog
+   */
+
+  public CatalogIndex(StarCatalog catalog) {
+    this(catalog, defaultOrder(catalog.size()));
+  }
+
+  /**
+   * Create index.
+   *
+   * @param catalog
+   *          indexed catalog
+   * @param order
+   *          HEALPix order of the index, 0 ... {@link #MAX_ORDER}, the index
+   *          has <code>12 * 4^order</code> pixels
+   */
+
+  public CatalogIndex(StarCatalog catalog, int order) {
+    if (order < 0 || order > MAX_ORDER)
+      throw new IllegalArgumentException("Invalid order " + order);
+    this.catalog = catalog;
+    this.order = order;
+    int size = catalog.size(), pixels = 12 << (2 * order);
+    maxPixelRadius = new double[order + 1];
+    for (int i = 0; i <= order; i++)
+      maxPixelRadius[i] = maxPixelRadius(1 << i);
+    int pixel[] = new int[size];
+    int fast = 0;
+    offsets = allocate(pixels + 1);
+    for (int i = 0; i < size; i++) {
+      if (properMotion(i) > FAST_PROPER_MOTION) {
+        pixel[i] = -1;
+        fast++;
+      } else {
+        pixel[i] = pixel(order, catalog.get(StarCatalog.RA, i) * 15.0 * DEG2RAD, catalog.get(StarCatalog.DEC, i) * DEG2RAD);
+        offsets.put(pixel[i] + 1, offsets.get(pixel[i] + 1) + 1);
+      }
+    }
+    for (int p = 0; p < pixels; p++)
+      offsets.put(p + 1, offsets.get(p + 1) + offsets.get(p));
+    stars = allocate(size - fast);
+    fastStars = new int[fast];
+    IntBuffer next = allocate(pixels), first = offsets.duplicate();
+    first.limit(pixels);
+    next.put(first);
+    fast = 0;
+    for (int i = 0; i < size; i++) {
+      int p = pixel[i];
+      if (p < 0)
+        fastStars[fast++] = i;
+      else {
+        int position = next.get(p);
+        stars.put(position, i);
+        next.put(p, position + 1);
+      }
+    }
+  }
+
+  private static int defaultOrder(int size) {
+    int order = 0;
+    while (order < MAX_ORDER && (12L << (2 * order)) * STARS_PER_PIXEL < size)
+      order++;
+    return order;
+  }
+
+  private static IntBuffer allocate(int count) {
+    return ByteBuffer.allocateDirect(4 * count).order(ByteOrder.nativeOrder()).asIntBuffer();
+  }
+
+  private double properMotion(int i) {
+    double pmra = catalog.get(StarCatalog.RA_PROPER_MOTION, i), pmdec = catalog.get(StarCatalog.DEC_PROPER_MOTION, i);
+    return Math.sqrt(pmra * pmra + pmdec * pmdec);
+  }
+
+  /**
+   * Find stars inside a cone, computing their places for the frame.
+   *
+   * @param frame
+   *          epoch frame defining date, observer, coordinate system and
+   *          accuracy of the places
+   * @param centerRa
+   *          right ascension of the center in hours, in the coordinate system
+   *          of the frame
+   * @param centerDec
+   *          declination of the center in degrees, in the coordinate system
+   *          of the frame
+   * @param radius
+   *          radius of the cone in degrees
+   * @param indices
+   *          output catalog indices of found stars
+   * @param ra
+   *          output right ascensions of found stars in hours
+   * @param dec
+   *          output declinations of found stars in degrees
+   * @return number of found stars, if it is larger than length of output
+   *         arrays, only the first stars fitting in the arrays are stored
+   */
+
+  public int coneSearch(EpochFrame frame, double centerRa, double centerDec, double radius, int indices[], double ra[], double dec[]) {
+    double center[] = new double[3], icrs[] = new double[3];
+    unitVector(centerRa * 15.0 * DEG2RAD, centerDec * DEG2RAD, center);
+    frame.toICRS(center, icrs);
+    double years = Math.abs(frame.getTDBDate() - T0) / 365.25;
+    double r = radius * DEG2RAD, margin = APPARENT_MARGIN * ASEC2RAD;
+    double searchRadius = Math.min(Math.PI, r + margin + FAST_PROPER_MOTION * 1.0e-3 * ASEC2RAD * years);
+    double cosRadius = Math.cos(r);
+    Search search = new Search(frame, icrs, center, r + margin, years, cosRadius, indices, ra, dec);
+    for (int face = 0; face < 12; face++)
+      query(0, face, searchRadius, search);
+    for (int i = 0; i < fastStars.length; i++)
+      search.check(fastStars[i]);
+    return search.count;
+  }
+
+  /**
+   * Find stars inside a cone.
+   *
+   * @param ttDate
+   *          TT Julian date
+   * @param deltaT
+   *          difference TT-UT1 at <code>ttDate</code> in seconds of time
+   * @param location
+   *          location of the observer
+   * @param coordinateSystem
+   *          code specifying coordinate system of the center and output
+   *          places, see
+   *          {@link EpochFrame#EpochFrame(NovasEngine, double, double, Observer, int, int)}
+   * @param accuracy
+   *          0 for full accuracy, 1 for reduced accuracy
+   * @see #coneSearch(EpochFrame, double, double, double, int[], double[],
+   *      double[])
+   */
+
+  public int coneSearch(double ttDate, double deltaT, Observer location, int coordinateSystem, int accuracy, double centerRa, double centerDec, double radius, int indices[], double ra[], double dec[]) {
+    return coneSearch(new EpochFrame(ttDate, deltaT, location, coordinateSystem, accuracy), centerRa, centerDec, radius, indices, ra, dec);
+  }
+
+  private class Search {
+    final EpochFrame frame;
+    final double icrs[];
+    final double center[];
+    final double radius;
+    final double years;
+    final double cosRadius;
+    final int indices[];
+    final double ra[];
+    final double dec[];
+    final double pos[] = new double[3];
+    final double pixel[] = new double[3];
+    final double radec[] = new double[2];
+    int count;
+
+    Search(EpochFrame frame, double icrs[], double center[], double radius, double years, double cosRadius, int indices[], double ra[], double dec[]) {
+      this.frame = frame;
+      this.icrs = icrs;
+      this.center = center;
+      this.radius = radius;
+      this.years = years;
+      this.cosRadius = cosRadius;
+      this.indices = indices;
+      this.ra = ra;
+      this.dec = dec;
+    }
+
+    void check(int i) {
+      unitVector(catalog.get(StarCatalog.RA, i) * 15.0 * DEG2RAD, catalog.get(StarCatalog.DEC, i) * DEG2RAD, pos);
+      double limit = Math.min(Math.PI, radius + properMotion(i) * 1.0e-3 * ASEC2RAD * years);
+      if (pos[0] * icrs[0] + pos[1] * icrs[1] + pos[2] * icrs[2] < Math.cos(limit))
+        return;
+      frame.place(catalog, i, radec, pos);
+      if (pos[0] * center[0] + pos[1] * center[1] + pos[2] * center[2] < cosRadius)
+        return;
+      if (count < indices.length && count < ra.length && count < dec.length) {
+        indices[count] = i;
+        ra[count] = radec[0];
+        dec[count] = radec[1];
+      }
+      count++;
+    }
+  }
+
+  private void query(int level, int pixel, double searchRadius, Search search) {
+    double pos[] = search.pixel;
+    pixelCenter(level, pixel, pos);
+    double distance = angle(pos, search.icrs);
+    double pixelRadius = maxPixelRadius[level];
+    if (distance > searchRadius + pixelRadius)
+      return;
+    if (level == order || distance + pixelRadius <= searchRadius) {
+      int shift = 2 * (order - level);
+      int first = offsets.get(pixel << shift), last = offsets.get((pixel + 1) << shift);
+      for (int k = first; k < last; k++)
+        search.check(stars.get(k));
+    } else {
+      for (int child = 0; child < 4; child++)
+        query(level + 1, 4 * pixel + child, searchRadius, search);
+    }
+  }
+
+  private static void unitVector(double ra, double dec, double pos[]) {
+    double cdec = Math.cos(dec);
+    pos[0] = cdec * Math.cos(ra);
+    pos[1] = cdec * Math.sin(ra);
+    pos[2] = Math.sin(dec);
+  }
+
+  private static double angle(double a[], double b[]) {
+    double cx = a[1] * b[2] - a[2] * b[1], cy = a[2] * b[0] - a[0] * b[2], cz = a[0] * b[1] - a[1] * b[0];
+    return Math.atan2(Math.sqrt(cx * cx + cy * cy + cz * cz), a[0] * b[0] + a[1] * b[1] + a[2] * b[2]);
+  }
+
+  /**
+   * Compute nested HEALPix pixel of a direction, port of ang2pix_nest().
+   *
+   * @param order
+   *          HEALPix order
+   * @param ra
+   *          right ascension in radians
+   * @param dec
+   *          declination in radians
+   * @return pixel number
+   */
+
+  static int pixel(int order, double ra, double dec) {
+    int nside = 1 << order;
+    double z = Math.sin(dec), za = Math.abs(z);
+    double tt = ra % (2.0 * Math.PI);
+    if (tt < 0.0)
+      tt += 2.0 * Math.PI;
+    tt *= 2.0 / Math.PI;
+    int face, ix, iy;
+    if (za <= 2.0 / 3.0) {
+      double temp1 = nside * (0.5 + tt), temp2 = nside * z * 0.75;
+      int jp = (int) (temp1 - temp2), jm = (int) (temp1 + temp2);
+      int ifp = jp >> order, ifm = jm >> order;
+      face = ifp == ifm ? (ifp | 4) : (ifp < ifm ? ifp : ifm + 8);
+      ix = jm & (nside - 1);
+      iy = nside - (jp & (nside - 1)) - 1;
+    } else {
+      int ntt = Math.min(3, (int) tt);
+      double tp = tt - ntt;
+      double tmp = nside * Math.sqrt(3.0 * (1.0 - za));
+      int jp = Math.min(nside - 1, (int) (tp * tmp)), jm = Math.min(nside - 1, (int) ((1.0 - tp) * tmp));
+      if (z >= 0) {
+        face = ntt;
+        ix = nside - jm - 1;
+        iy = nside - jp - 1;
+      } else {
+        face = ntt + 8;
+        ix = jp;
+        iy = jm;
+      }
+    }
+    return (face << (2 * order)) + spread(ix) + (spread(iy) << 1);
+  }
+
+  /**
+   * Compute unit vector of the center of a nested HEALPix pixel, port of
+   * pix2ang_nest().
+   *
+   * @param order
+   *          HEALPix order
+   * @param pixel
+   *          pixel number
+   * @param pos
+   *          output unit vector
+   */
+
+  static void pixelCenter(int order, int pixel, double pos[]) {
+    int nside = 1 << order;
+    long npix = 12L << (2 * order);
+    int face = pixel >> (2 * order), ipf = pixel & ((1 << (2 * order)) - 1);
+    int ix = compress(ipf), iy = compress(ipf >> 1);
+    int jr = JRLL[face] * nside - ix - iy - 1;
+    double fact2 = 4.0 / npix, z;
+    int nr, kshift;
+    if (jr < nside) {
+      nr = jr;
+      z = 1.0 - nr * (double) nr * fact2;
+      kshift = 0;
+    } else if (jr > 3 * nside) {
+      nr = 4 * nside - jr;
+      z = nr * (double) nr * fact2 - 1.0;
+      kshift = 0;
+    } else {
+      nr = nside;
+      z = (2 * nside - jr) * 2.0 * nside * fact2;
+      kshift = (jr - nside) & 1;
+    }
+    int jp = (JPLL[face] * nr + ix - iy + 1 + kshift) / 2;
+    if (jp > 4 * nside)
+      jp -= 4 * nside;
+    if (jp < 1)
+      jp += 4 * nside;
+    double phi = (jp - (kshift + 1) * 0.5) * (Math.PI / 2.0 / nr);
+    double sth = Math.sqrt((1.0 - z) * (1.0 + z));
+    pos[0] = sth * Math.cos(phi);
+    pos[1] = sth * Math.sin(phi);
+    pos[2] = z;
+  }
+
+  /**
+   * Compute upper limit of the angular distance of any point of a pixel from
+   * its center, port of max_pixrad() with a small safety factor.
+   */
+
+  private static double maxPixelRadius(int nside) {
+    double a[] = new double[3], b[] = new double[3];
+    double za = 2.0 / 3.0, phi = Math.PI / (4.0 * nside), sa = Math.sqrt((1.0 - za) * (1.0 + za));
+    a[0] = sa * Math.cos(phi);
+    a[1] = sa * Math.sin(phi);
+    a[2] = za;
+    double t1 = 1.0 - 1.0 / nside;
+    t1 *= t1;
+    double zb = 1.0 - t1 / 3.0, sb = Math.sqrt((1.0 - zb) * (1.0 + zb));
+    b[0] = sb;
+    b[1] = 0.0;
+    b[2] = zb;
+    return 1.01 * angle(a, b);
+  }
+
+  private static int spread(int value) {
+    long x = value & 0xFFFFL;
+    x = (x | (x << 8)) & 0x00FF00FFL;
+    x = (x | (x << 4)) & 0x0F0F0F0FL;
+    x = (x | (x << 2)) & 0x33333333L;
+    x = (x | (x << 1)) & 0x55555555L;
+    return (int) x;
+  }
+
+  private static int compress(int value) {
+    int x = value & 0x55555555;
+    x = (x | (x >>> 1)) & 0x33333333;
+    x = (x | (x >>> 2)) & 0x0F0F0F0F;
+    x = (x | (x >>> 4)) & 0x00FF00FF;
+    x = (x | (x >>> 8)) & 0x0000FFFF;
+    return x;
+  }
+
+  /**
+   * Get indexed catalog.
+   *
+   * @return catalog
+   */
+
+  public StarCatalog getCatalog() {
+    return catalog;
+  }
+
+  /**
+   * Get HEALPix order of the index.
+   *
+   * @return order
+   */
+
+  public int getOrder() {
+    return order;
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.cloudmakers.astronometry.engine;
+
+/**
+ * Chebyshev interpolation helpers shared by the fitted tables of the engine
+ * and by {@link eu.cloudmakers.astronometry.TrackingInterpolator}.
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class Chebyshev {
+
+  private Chebyshev() {
+  }
+
+  /**
+   * Get j-th of n Chebyshev nodes of the first kind in [-1, 1].
+   */
+
+  public static double node(int j, int n) {
+    return Math.cos(Math.PI * (j + 0.5) / n);
+  }
+
+  /**
+   * Compute n coefficients interpolating values sampled at the nodes
+   * {@link #node(int, int)}.
+   */
+
+  public static void fit(double values[], int n, double coefficients[], int offset) {
+    for (int m = 0; m < n; m++) {
+      double sum = 0.0;
+      for (int j = 0; j < n; j++)
+        sum += values[j] * Math.cos(Math.PI * m * (j + 0.5) / n);
+      coefficients[offset + m] = (m == 0 ? 1.0 : 2.0) * sum / n;
+    }
+  }
+
+  /**
+   * Evaluate Chebyshev series of n coefficients at tau in [-1, 1].
+   */
+
+  public static double value(double coefficients[], int offset, int n, double tau) {
+    double b1 = 0.0, b2 = 0.0, tau2 = 2.0 * tau;
+    for (int m = n - 1; m > 0; m--) {
+      double b0 = tau2 * b1 - b2 + coefficients[offset + m];
+      b2 = b1;
+      b1 = b0;
+    }
+    return tau * b1 - b2 + coefficients[offset];
+  }
+}
@@ -0,0 +1,349 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+package eu.cloudmakers.astronometry.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Table of the right ascension of the celestial intermediate origin (CIO)
+ * with respect to the GCRS, in-memory replacement of the cio_ra.bin file.
+ * <p>
+ * Values are tabulated at equal steps of TDB and interpolated by the same 6
+ * point Lagrange formula as cio_location() in novas.c. Tables are generated
+ * by {@link #generate(double, double, double, int)} from the equinox based
+ * method (the right ascension of the CIO basis vector computed by
+ * {@link NovasEngine#cioBasis(double, double, int, double[], double[], double[])}
+ * for the CIO located by the equation of the origins), saved by
+ * {@link #write(OutputStream)} and loaded by {@link #read(InputStream)}. The
+ * build ships a table covering years 1900 to 2100 as a class path resource
+ * returned by {@link #getDefault()}, which NOVAS installs before the first
+ * CIO based computation with
+ * {@link eu.cloudmakers.astronometry.NOVAS#useCioTable(CioTable)}, so CIO
+ * based functions never read files.
+ * <p>
+ * Instances are immutable and thread-safe. Layout of the compiled form (see
+ * {@link #toByteBuffer()}) and of the stream (big endian) is: <blockquote>
+ * [0] format version (1)<br>
+ * [1] TDB Julian date of the first point<br>
+ * [2] step in days<br>
+ * [3] number of points<br>
+ * right ascensions of the CIO in arcseconds </blockquote>
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class CioTable {
+
+  /**
+   * Name of the class path resource with the default table.
+   */
+
+  public static final String RESOURCE = "cio_ra.tbl";
+
+  /**
+   * Default step in days, the same as of cio_ra.bin.
+   */
+
+  public static final double DEFAULT_STEP = 1.2;
+
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER = 4;
+  private static final int POINTS = 6;
+  private static final double RAD2ASEC = 180.0 * 3600.0 / Math.PI;
+
+  /**
+   * Denominators of Lagrange basis polynomials for nodes 0..5.
+   */
+
+  private static final double WEIGHTS[] = { -1.0 / 120.0, 1.0 / 24.0, -1.0 / 12.0, 1.0 / 12.0, -1.0 / 24.0, 1.0 / 120.0 };
+
+  private static CioTable defaultTable;
+  private static boolean defaultLoaded;
+
+  private final double data[];
+  private final double jdStart;
+  private final double step;
+  private final int count;
+  private ByteBuffer buffer;
+
+  private CioTable(double data[]) {
+    this.data = data;
+    jdStart = data[1];
+    step = data[2];
+    count = (int) data[3];
+  }
+
+  /**
+   * Generate table from the equinox based method.
+   *
+   * @param jdStart
+   *          first TDB Julian date
+   * @param jdEnd
+   *          last TDB Julian date, the table is extended to cover it
+   * @param step
+   *          step in days
+   * @param accuracy
+   *          0 for full accuracy (IAU 2000A), 1 for reduced accuracy
+   * @return new table
+   * @throws IllegalArgumentException
+   *           if the window is empty or too short for interpolation, step
+   *           isn't positive or accuracy is invalid
+   */
+
+  public static CioTable generate(double jdStart, double jdEnd, double step, int accuracy) {
+    if (!(step > 0.0))
+      throw new IllegalArgumentException("Invalid step " + step);
+    if (!(jdEnd - jdStart >= (POINTS - 1) * step))
+      throw new IllegalArgumentException("Window is shorter than " + POINTS + " points");
+    if (accuracy != 0 && accuracy != 1)
+      throw new IllegalArgumentException("Invalid accuracy " + accuracy);
+    int count = (int) Math.ceil((jdEnd - jdStart) / step - 1.0e-9) + 1;
+    double data[] = new double[HEADER + count];
+    data[0] = FORMAT_VERSION;
+    data[1] = jdStart;
+    data[2] = step;
+    data[3] = count;
+    NovasEngine engine = new NovasEngine(new AnalyticEphemeris());
+    double x[] = new double[3], y[] = new double[3], z[] = new double[3];
+    for (int i = 0; i < count; i++) {
+      double tdbDate = jdStart + i * step;
+      engine.cioBasis(tdbDate, engine.cioLocation(tdbDate, accuracy), accuracy, x, y, z);
+      data[HEADER + i] = Math.atan2(x[1], x[0]) * RAD2ASEC;
+    }
+    return new CioTable(data);
+  }
+
+  /**
+   * Read table written by {@link #write(OutputStream)}. The stream is not
+   * closed.
+   *
+   * @param input
+   *          input stream
+   * @return table
+   * @throws IOException
+   *           if the stream can't be read or doesn't contain a table
+   */
+
+  public static CioTable read(InputStream input) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+    double header[] = new double[HEADER];
+    for (int i = 0; i < HEADER; i++)
+      header[i] = in.readDouble();
+    if ((int) header[0] != FORMAT_VERSION || !(header[2] > 0.0) || !(header[3] >= POINTS) || header[3] > Integer.MAX_VALUE - HEADER)
+      throw new IOException("Unsupported CIO table format");
+    double data[] = new double[HEADER + (int) header[3]];
+    System.arraycopy(header, 0, data, 0, HEADER);
+    for (int i = HEADER; i < data.length; i++)
+      data[i] = in.readDouble();
+    return new CioTable(data);
+  }
+
+  /**
+   * Get table shipped as class path resource {@link #RESOURCE}, it is loaded
+   * on the first call.
+   *
+   * @return table or null if the resource is missing or can't be read
+   */
+
+  public static synchronized CioTable getDefault() {
+    if (!defaultLoaded) {
+      defaultLoaded = true;
+      InputStream in = CioTable.class.getResourceAsStream(RESOURCE);
+      if (in != null) {
+        try {
+          try {
+            defaultTable = read(in);
+          } finally {
+            in.close();
+          }
+        } catch (IOException exception) {
+          System.err.println(RESOURCE + " can't be read: " + exception.getMessage());
+        }
+      }
+    }
+    return defaultTable;
+  }
+
+  /**
+   * Write table in big endian format. The stream is flushed but not closed.
+   *
+   * @param output
+   *          output stream
+   * @throws IOException
+   *           if the stream can't be written
+   */
+
+  public void write(OutputStream output) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+    for (int i = 0; i < data.length; i++)
+      out.writeDouble(data[i]);
+    out.flush();
+  }
+
+  /**
+   * Check whether the table can be used for given date.
+   *
+   * @param tdbDate
+   *          TDB Julian date
+   * @return true if the date is in the window of the table
+   */
+
+  public boolean covers(double tdbDate) {
+    double dt = tdbDate - jdStart;
+    return dt >= 0.0 && dt <= (count - 1) * step;
+  }
+
+  /**
+   * Get the right ascension of the CIO with respect to the GCRS,
+   * replacement of cio_location() with cio_ra.bin.
+   *
+   * @param tdbDate
+   *          TDB Julian date
+   * @param ra
+   *          output array of length 1 for right ascension of the CIO in
+   *          hours
+   * @return error code: <blockquote> 0 &rarr; no problems<br>
+   *         1 &rarr; date out of the window</blockquote>
+   */
+
+  public short cioLocation(double tdbDate, double ra[]) {
+    double u = (tdbDate - jdStart) / step;
+    if (!(u >= 0.0) || u > count - 1)
+      return 1;
+    int first = (int) u - 2;
+    if (first < 0)
+      first = 0;
+    else if (first > count - POINTS)
+      first = count - POINTS;
+    u -= first;
+    double product = 1.0, sum = 0.0;
+    for (int j = 0; j < POINTS; j++) {
+      double d = u - j;
+      if (d == 0.0) {
+        ra[0] = data[HEADER + first + j] / 54000.0;
+        return 0;
+      }
+      product *= d;
+      sum += WEIGHTS[j] * data[HEADER + first + j] / d;
+    }
+    ra[0] = product * sum / 54000.0;
+    return 0;
+  }
+
+  /**
+   * Get the compiled form as a read-only direct buffer in native byte order,
+   * as used by the native library.
+   *
+   * @return compiled form
+   */
+
+  public synchronized ByteBuffer toByteBuffer() {
+    if (buffer == null) {
+      buffer = ByteBuffer.allocateDirect(data.length * 8).order(ByteOrder.nativeOrder());
+      buffer.asDoubleBuffer().put(data);
+    }
+    return buffer.asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Get TDB Julian date of the first point.
+   *
+   * @return first TDB Julian date
+   */
+
+  public double getJdStart() {
+    return jdStart;
+  }
+
+  /**
+   * Get TDB Julian date of the last point.
+   *
+   * @return last TDB Julian date
+   */
+
+  public double getJdEnd() {
+    return jdStart + (count - 1) * step;
+  }
+
+  /**
+   * Get step of the table.
+   *
+   * @return step in days
+   */
+
+  public double getStep() {
+    return step;
+  }
+
+  /**
+   * Get number of points of the table.
+   *
+   * @return number of points
+   */
+
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Generate table and write it to file, used by the build to create the
+   * class path resource.
+   *
+   * @param args
+   *          first TDB Julian date, last TDB Julian date, step in days and
+   *          output file
+   */
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 4) {
+      System.err.println("Usage: CioTable first_jd last_jd step output.tbl");
+      System.exit(1);
+    }
+    long start = System.currentTimeMillis();
+    CioTable table = generate(Double.parseDouble(args[0]), Double.parseDouble(args[1]), Double.parseDouble(args[2]), 0);
+    OutputStream out = new FileOutputStream(new File(args[3]));
+    try {
+      table.write(out);
+    } finally {
+      out.close();
+    }
+    System.out.println(table.size() + " points generated in " + (System.currentTimeMillis() - start) + " ms");
+  }
+}
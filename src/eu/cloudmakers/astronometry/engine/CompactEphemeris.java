@@ -0,0 +1,495 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+package eu.cloudmakers.astronometry.engine;
+
+import static eu.cloudmakers.astronometry.engine.Astrometry.ASEC2RAD;
+import static eu.cloudmakers.astronometry.engine.Astrometry.AU_KM;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Compact solar system ephemeris for a limited time window.
+ * <p>
+ * Barycentric positions of the Sun, the Moon and the planets are resampled
+ * from a source ephemeris (by default the bundled JPL ephemeris) into
+ * Chebyshev segments. Segment length and polynomial order are chosen per body
+ * as the smallest representation meeting the requested tolerance, so lookups
+ * only evaluate one short polynomial and never touch a file. Velocities are
+ * derivatives of the position polynomials. Barycentric positions are fitted
+ * to half of the tolerance, so positions relative to the Sun or the Earth
+ * meet it as well.
+ * <p>
+ * Instances are immutable and thread-safe. The compiled form can be saved to
+ * and loaded from a file, and installed into the native library with
+ * {@link eu.cloudmakers.astronometry.NOVAS#useCompactEphemeris(CompactEphemeris)}
+ * . Layout of the compiled form (array of doubles, see
+ * {@link #toByteBuffer()}) is:
+ * <blockquote> [0] format version (1)<br>
+ * [1] first TDB Julian date of the window<br>
+ * [2] last TDB Julian date of the window<br>
+ * [3] tolerance in km<br>
+ * [4] number of bodies (11)<br>
+ * [5 + 4 * (body - 1) + 0..3] number of segments, segment length in days,
+ * number of coefficients per coordinate and index of the first coefficient
+ * of the body<br>
+ * coefficients of segments, each segment holds coefficients of x, y and z in
+ * AU </blockquote>
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class CompactEphemeris implements Ephemeris {
+
+  /**
+   * Number of bodies in the compiled form (NOVAS body numbers 1 to 11).
+   */
+
+  public static final int BODY_COUNT = 11;
+
+  private static final int FORMAT_VERSION = 1;
+  private static final int FILE_MAGIC = 0x4A4E4345;
+  private static final int HEADER = 5;
+  private static final int MIN_COEFFICIENTS = 4;
+  private static final int MAX_COEFFICIENTS = 18;
+  private static final double MIN_SEGMENT_LENGTH = 0.125;
+  private static final int EARTH = 3;
+  private static final int SUN = 10;
+  private static final int MOON = 11;
+
+  private final double data[];
+  private final double jdStart;
+  private final double jdEnd;
+  private ByteBuffer buffer;
+
+  private CompactEphemeris(double data[]) {
+    if (data.length < HEADER + 4 * BODY_COUNT || (int) data[0] != FORMAT_VERSION || (int) data[4] != BODY_COUNT)
+      throw new IllegalArgumentException("Unsupported compact ephemeris format");
+    if (!(data[2] > data[1]) || Double.isInfinite(data[2] - data[1]))
+      throw new IllegalArgumentException("Invalid compact ephemeris window");
+    // the native library follows the layout without any checks
+    for (int body = 1; body <= BODY_COUNT; body++) {
+      int base = HEADER + 4 * (body - 1);
+      double segments = data[base], length = data[base + 1], coefficients = data[base + 2], offset = data[base + 3];
+      if (!(segments >= 1.0 && length > 0.0 && coefficients >= 1.0 && offset >= HEADER + 4 * BODY_COUNT) || Double.isInfinite(length) || segments != Math.floor(segments) || coefficients != Math.floor(coefficients) || offset != Math.floor(offset) || offset + segments * 3.0 * coefficients > data.length)
+        throw new IllegalArgumentException("Invalid layout of body " + body);
+    }
+    this.data = data;
+    jdStart = data[1];
+    jdEnd = data[2];
+  }
+
+  /**
+   * Build compact ephemeris from the JPL ephemeris bundled with jNOVAS.
+   *
+   * @param jdStart
+   *          first TDB Julian date of the window
+   * @param jdEnd
+   *          last TDB Julian date of the window
+   * @param tolerance
+   *          maximal position error in km
+   * @return new compact ephemeris
+   * @throws IllegalStateException
+   *           if JPL ephemeris is not bundled
+   */
+
+  public static CompactEphemeris build(double jdStart, double jdEnd, double tolerance) {
+    Ephemeris source = JPLEphemeris.bundled();
+    if (source == null)
+      throw new IllegalStateException("JPL ephemeris is not available");
+    return build(source, jdStart, jdEnd, tolerance);
+  }
+
+  /**
+   * Build compact ephemeris from given source ephemeris.
+   *
+   * @param source
+   *          source ephemeris, must provide all bodies over the whole window
+   *          with origin at the solar system barycenter
+   * @param jdStart
+   *          first TDB Julian date of the window
+   * @param jdEnd
+   *          last TDB Julian date of the window
+   * @param tolerance
+   *          maximal position error in km
+   * @return new compact ephemeris
+   * @throws IllegalArgumentException
+   *           if the window is empty or the source fails
+   */
+
+  public static CompactEphemeris build(Ephemeris source, double jdStart, double jdEnd, double tolerance) {
+    double tolerances[] = new double[BODY_COUNT + 1];
+    for (int body = 1; body <= BODY_COUNT; body++)
+      tolerances[body] = tolerance;
+    return build(source, jdStart, jdEnd, tolerance, tolerances);
+  }
+
+  /**
+   * Build compact ephemeris from given source ephemeris with tolerance given
+   * as an angle seen from the Earth.
+   * <p>
+   * Tolerance of each body in km is the angular tolerance at the smallest
+   * geocentric distance of the body within the window. The Earth itself uses
+   * the tolerance of the Moon.
+   *
+   * @param source
+   *          source ephemeris, must provide all bodies over the whole window
+   *          with origin at the solar system barycenter
+   * @param jdStart
+   *          first TDB Julian date of the window
+   * @param jdEnd
+   *          last TDB Julian date of the window
+   * @param tolerance
+   *          maximal geocentric direction error in arcseconds
+   * @return new compact ephemeris
+   * @throws IllegalArgumentException
+   *           if the window is empty or the source fails
+   */
+
+  public static CompactEphemeris buildAngular(Ephemeris source, double jdStart, double jdEnd, double tolerance) {
+    double tolerances[] = new double[BODY_COUNT + 1];
+    double earth[] = new double[3], body[] = new double[3], velocity[] = new double[3];
+    double minimum = Double.MAX_VALUE;
+    for (int i = 1; i <= BODY_COUNT; i++)
+      tolerances[i] = Double.MAX_VALUE;
+    int samples = Math.max(64, (int) ((jdEnd - jdStart) * 4.0));
+    for (int j = 0; j <= samples; j++) {
+      double jd = jdStart + (jdEnd - jdStart) * j / samples;
+      check(source.solarSystem(jd, EARTH, 0, earth, velocity));
+      for (int i = 1; i <= BODY_COUNT; i++) {
+        if (i == EARTH)
+          continue;
+        check(source.solarSystem(jd, i, 0, body, velocity));
+        double dx = body[0] - earth[0], dy = body[1] - earth[1], dz = body[2] - earth[2];
+        double km = tolerance * ASEC2RAD * Math.sqrt(dx * dx + dy * dy + dz * dz) * AU_KM;
+        tolerances[i] = Math.min(tolerances[i], km);
+        minimum = Math.min(minimum, km);
+      }
+    }
+    tolerances[EARTH] = tolerances[MOON];
+    return build(source, jdStart, jdEnd, minimum, tolerances);
+  }
+
+  private static CompactEphemeris build(Ephemeris source, double jdStart, double jdEnd, double tolerance, double tolerances[]) {
+    if (!(jdEnd > jdStart))
+      throw new IllegalArgumentException("Empty window");
+    double span = jdEnd - jdStart;
+    double bodies[][] = new double[BODY_COUNT + 1][];
+    double layout[][] = new double[BODY_COUNT + 1][];
+    int size = HEADER + 4 * BODY_COUNT;
+    for (int body = 1; body <= BODY_COUNT; body++) {
+      double toleranceAU = 0.5 * tolerances[body] / AU_KM;
+      double best[] = null;
+      int bestSegments = 0, bestCoefficients = 0;
+      int maxCoefficients = MAX_COEFFICIENTS;
+      for (int segments = 1; best == null || segments * MIN_COEFFICIENTS < bestSegments * bestCoefficients; segments *= 2) {
+        double length = span / segments;
+        if (length < MIN_SEGMENT_LENGTH && best != null)
+          break;
+        for (int coefficients = MIN_COEFFICIENTS; coefficients <= maxCoefficients; coefficients++) {
+          double fit[] = fit(source, body, jdStart, length, segments, coefficients, toleranceAU);
+          if (fit != null) {
+            if (best == null || segments * coefficients < bestSegments * bestCoefficients) {
+              best = fit;
+              bestSegments = segments;
+              bestCoefficients = coefficients;
+            }
+            maxCoefficients = coefficients;
+            break;
+          }
+        }
+        if (length < MIN_SEGMENT_LENGTH && best == null)
+          throw new IllegalArgumentException("Tolerance " + tolerances[body] + " km can't be met for body " + body);
+      }
+      bodies[body] = best;
+      layout[body] = new double[] { bestSegments, span / bestSegments, bestCoefficients, size };
+      size += best.length;
+    }
+    double data[] = new double[size];
+    data[0] = FORMAT_VERSION;
+    data[1] = jdStart;
+    data[2] = jdEnd;
+    data[3] = tolerance;
+    data[4] = BODY_COUNT;
+    for (int body = 1; body <= BODY_COUNT; body++) {
+      System.arraycopy(layout[body], 0, data, HEADER + 4 * (body - 1), 4);
+      System.arraycopy(bodies[body], 0, data, (int) layout[body][3], bodies[body].length);
+    }
+    return new CompactEphemeris(data);
+  }
+
+  private static void check(short error) {
+    if (error != 0)
+      throw new IllegalArgumentException("Source ephemeris error " + error);
+  }
+
+  /**
+   * Fit all segments of one body by Chebyshev interpolation at Chebyshev
+   * nodes and verify the error between the nodes.
+   *
+   * @return coefficients or null if the tolerance is not met
+   */
+
+  private static double[] fit(Ephemeris source, int body, double jdStart, double length, int segments, int coefficients, double tolerance) {
+    double result[] = new double[segments * 3 * coefficients];
+    double values[][] = new double[3][coefficients];
+    double position[] = new double[3], velocity[] = new double[3];
+    for (int segment = 0; segment < segments; segment++) {
+      double start = jdStart + segment * length;
+      for (int j = 0; j < coefficients; j++) {
+        double tau = Chebyshev.node(j, coefficients);
+        check(source.solarSystem(start + (tau + 1.0) * 0.5 * length, body, 0, position, velocity));
+        for (int c = 0; c < 3; c++)
+          values[c][j] = position[c];
+      }
+      int base = segment * 3 * coefficients;
+      for (int c = 0; c < 3; c++)
+        Chebyshev.fit(values[c], coefficients, result, base + c * coefficients);
+      int checks = 2 * coefficients;
+      double check[] = new double[3];
+      for (int j = 0; j <= checks; j++) {
+        double tau = -1.0 + 2.0 * j / checks;
+        check(source.solarSystem(start + (tau + 1.0) * 0.5 * length, body, 0, position, velocity));
+        evaluate(result, base, coefficients, tau, check, null);
+        double dx = check[0] - position[0], dy = check[1] - position[1], dz = check[2] - position[2];
+        if (Math.sqrt(dx * dx + dy * dy + dz * dz) > tolerance)
+          return null;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Evaluate Chebyshev series of one segment and optionally its derivative
+   * with respect to <code>tau</code>.
+   */
+
+  private static void evaluate(double data[], int base, int coefficients, double tau, double position[], double velocity[]) {
+    double x = data[base], y = data[base + coefficients], z = data[base + 2 * coefficients];
+    double vx = 0.0, vy = 0.0, vz = 0.0;
+    double t0 = 1.0, t1 = tau, d0 = 0.0, d1 = 1.0;
+    for (int m = 1; m < coefficients; m++) {
+      double cx = data[base + m], cy = data[base + coefficients + m], cz = data[base + 2 * coefficients + m];
+      x += cx * t1;
+      y += cy * t1;
+      z += cz * t1;
+      vx += cx * d1;
+      vy += cy * d1;
+      vz += cz * d1;
+      double t2 = 2.0 * tau * t1 - t0;
+      double d2 = 2.0 * t1 + 2.0 * tau * d1 - d0;
+      t0 = t1;
+      t1 = t2;
+      d0 = d1;
+      d1 = d2;
+    }
+    position[0] = x;
+    position[1] = y;
+    position[2] = z;
+    if (velocity != null) {
+      velocity[0] = vx;
+      velocity[1] = vy;
+      velocity[2] = vz;
+    }
+  }
+
+  /**
+   * Load compact ephemeris saved by {@link #save(File)}.
+   *
+   * @param file
+   *          file to read
+   * @return loaded compact ephemeris
+   * @throws IOException
+   *           if the file can't be read or has unsupported format
+   */
+
+  public static CompactEphemeris load(File file) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      if (in.readInt() != FILE_MAGIC)
+        throw new IOException("Not a compact ephemeris file");
+      int length = in.readInt();
+      if (length < HEADER + 4 * BODY_COUNT || length > (file.length() - 8) / 8)
+        throw new IOException("Invalid compact ephemeris length " + length);
+      double data[] = new double[length];
+      for (int i = 0; i < data.length; i++)
+        data[i] = in.readDouble();
+      try {
+        return new CompactEphemeris(data);
+      } catch (IllegalArgumentException exception) {
+        throw new IOException(exception.getMessage());
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Save compact ephemeris to file.
+   *
+   * @param file
+   *          file to write
+   * @throws IOException
+   *           if the file can't be written
+   */
+
+  public void save(File file) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      out.writeInt(FILE_MAGIC);
+      out.writeInt(data.length);
+      for (int i = 0; i < data.length; i++)
+        out.writeDouble(data[i]);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Get the compiled form as a read-only direct buffer in native byte order,
+   * as used by the native library.
+   *
+   * @return compiled form
+   */
+
+  public synchronized ByteBuffer toByteBuffer() {
+    if (buffer == null) {
+      buffer = ByteBuffer.allocateDirect(data.length * 8).order(ByteOrder.nativeOrder());
+      buffer.asDoubleBuffer().put(data);
+    }
+    return buffer.asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Get first TDB Julian date of the window.
+   *
+   * @return first TDB Julian date
+   */
+
+  public double getJdStart() {
+    return jdStart;
+  }
+
+  /**
+   * Get last TDB Julian date of the window.
+   *
+   * @return last TDB Julian date
+   */
+
+  public double getJdEnd() {
+    return jdEnd;
+  }
+
+  /**
+   * Get tolerance the ephemeris was built with.
+   *
+   * @return tolerance in km
+   */
+
+  public double getTolerance() {
+    return data[3];
+  }
+
+  /**
+   * Get number of coefficients stored for all bodies.
+   *
+   * @return size of the compiled form in doubles
+   */
+
+  public int size() {
+    return data.length;
+  }
+
+  /**
+   * Provide the position and velocity of a body.
+   *
+   * @return error code: <blockquote> 0 &rarr; no problems<br>
+   *         1 &rarr; date out of the window or invalid value of body<br>
+   *         2 &rarr; invalid value of origin</blockquote>
+   */
+
+  public short solarSystem(double tdbDate, int body, int origin, double position[], double velocity[]) {
+    return solarSystemHP(tdbDate, 0.0, body, origin, position, velocity);
+  }
+
+  /**
+   * Provide the position and velocity of a body, the split date is used to
+   * keep full precision of the time argument.
+   *
+   * @return error code, see
+   *         {@link #solarSystem(double, int, int, double[], double[])}
+   */
+
+  public short solarSystemHP(double tdbHigh, double tdbLow, int body, int origin, double position[], double velocity[]) {
+    double dtHigh = tdbHigh - jdStart;
+    double dt = dtHigh + tdbLow;
+    if ((body < 1) || (body > BODY_COUNT) || !(dt >= 0.0) || (dt > jdEnd - jdStart))
+      return 1;
+    if ((origin < 0) || (origin > 2))
+      return 2;
+    lookup(dtHigh, tdbLow, body, position, velocity);
+    if (origin != 0) {
+      double x = position[0], y = position[1], z = position[2];
+      double vx = velocity[0], vy = velocity[1], vz = velocity[2];
+      lookup(dtHigh, tdbLow, origin == 1 ? SUN : EARTH, position, velocity);
+      position[0] = x - position[0];
+      position[1] = y - position[1];
+      position[2] = z - position[2];
+      velocity[0] = vx - velocity[0];
+      velocity[1] = vy - velocity[1];
+      velocity[2] = vz - velocity[2];
+    }
+    return 0;
+  }
+
+  private void lookup(double dtHigh, double dtLow, int body, double position[], double velocity[]) {
+    int index = HEADER + 4 * (body - 1);
+    int segments = (int) data[index];
+    double length = data[index + 1];
+    int coefficients = (int) data[index + 2];
+    int segment = (int) ((dtHigh + dtLow) / length);
+    if (segment >= segments)
+      segment = segments - 1;
+    double tau = 2.0 * ((dtHigh - segment * length) + dtLow) / length - 1.0;
+    evaluate(data, (int) data[index + 3] + segment * 3 * coefficients, coefficients, tau, position, velocity);
+    double scale = 2.0 / length;
+    velocity[0] *= scale;
+    velocity[1] *= scale;
+    velocity[2] *= scale;
+  }
+}
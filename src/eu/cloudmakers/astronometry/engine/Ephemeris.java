@@ -0,0 +1,94 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+package eu.cloudmakers.astronometry.engine;
+
+/**
+ * Source of positions and velocities of the major solar system bodies.
+ * <p>
+ * Java counterpart of the solarsystem() / solarsystem_hp() interface from
+ * solarsystem.h. Body numbers are the NOVAS ones: Mercury &rarr; 1, ..., Pluto
+ * &rarr; 9, Sun &rarr; 10, Moon &rarr; 11. Implementations are not required to
+ * be thread-safe; {@link NovasEngine} uses its own instance per thread.
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public interface Ephemeris {
+
+  /**
+   * Provide the position and velocity of a body, equivalent of
+   * solarsystem().
+   *
+   * @param tdbDate
+   *          TDB Julian date
+   * @param body
+   *          body identification number
+   * @param origin
+   *          origin code: <blockquote> 0 &rarr; solar system barycenter<br>
+   *          1 &rarr; center of mass of the Sun<br>
+   *          2 &rarr; center of Earth</blockquote>
+   * @param position
+   *          output position vector of body at <code>tdbDate</code>;
+   *          equatorial rectangular coordinates in AU referred to the ICRS
+   * @param velocity
+   *          output velocity vector of body at <code>tdbDate</code>;
+   *          equatorial rectangular system referred to the ICRS, in AU/day
+   * @return error code: <blockquote> 0 &rarr; no problems<br>
+   *         1 &rarr; invalid value of body or date out of range<br>
+   *         2 &rarr; invalid value of origin or body</blockquote>
+   */
+
+  public short solarSystem(double tdbDate, int body, int origin, double position[], double velocity[]);
+
+  /**
+   * Provide the position and velocity of a body to the highest precision,
+   * equivalent of solarsystem_hp().
+   *
+   * @param tdbHigh
+   *          high-order part of TDB Julian date
+   * @param tdbLow
+   *          low-order part of TDB Julian date
+   * @param body
+   *          body identification number
+   * @param origin
+   *          origin code, see
+   *          {@link #solarSystem(double, int, int, double[], double[])}
+   * @param position
+   *          output position vector of body
+   * @param velocity
+   *          output velocity vector of body
+   * @return error code: <blockquote> 0 &rarr; no problems<br>
+   *         1, 2 &rarr; see
+   *         {@link #solarSystem(double, int, int, double[], double[])}<br>
+   *         3 &rarr; high precision is not available</blockquote>
+   */
+
+  public short solarSystemHP(double tdbHigh, double tdbLow, int body, int origin, double position[], double velocity[]);
+}
@@ -0,0 +1,437 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+
+package eu.cloudmakers.astronometry.engine;
+
+import static eu.cloudmakers.astronometry.engine.Astrometry.RMASS;
+import static eu.cloudmakers.astronometry.engine.Astrometry.T0;
+
+import eu.cloudmakers.astronometry.NOVAS.CatalogEntry;
+import eu.cloudmakers.astronometry.NOVAS.CelestialObject;
+import eu.cloudmakers.astronometry.NOVAS.Observer;
+import eu.cloudmakers.astronometry.NOVAS.SkyPosition;
+
+/**
+ * Star-independent quantities of place() for one date, observer, coordinate
+ * system and accuracy.
+ * <p>
+ * Position and velocity of the observer, positions and motions of the
+ * deflecting bodies and the rotation to the output coordinate system are
+ * computed once, when the frame is created. Reduction of a star then only
+ * applies proper motion, parallax, light deflection, aberration and the
+ * rotation. Positions of deflecting bodies at the time of closest approach
+ * of the light ray are extrapolated from the date of the frame by a second
+ * order polynomial instead of a new ephemeris lookup, results agree with
+ * place() to well below a microarcsecond.
+ * <p>
+ * Frames are immutable and thread-safe, one frame can be shared by any
+ * number of threads reducing parts of a catalog.
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class EpochFrame {
+
+  private static final CelestialObject EARTH = new CelestialObject((short) 0, (short) 3, "Earth");
+  private static final CelestialObject SUN = new CelestialObject((short) 0, (short) 10, "Sun");
+  private static final CelestialObject GRAVITATING_BODIES[] = { SUN, new CelestialObject((short) 0, (short) 5, "Jupiter"), new CelestialObject((short) 0, (short) 6, "Saturn") };
+
+  /**
+   * Step in days used to estimate accelerations of deflecting bodies.
+   */
+
+  private static final double ACCELERATION_STEP = 0.01;
+
+  private final double ttDate;
+  private final double jdTDB;
+  private final int coordinateSystem;
+  private final int accuracy;
+  private final boolean topocentric;
+  private final double peb[] = new double[3];
+  private final double veb[] = new double[3];
+  private final double psb[] = new double[3];
+  private final double pog[] = new double[3];
+  private final double pob[] = new double[3];
+  private final double vob[] = new double[3];
+  private final double bodyPos[][];
+  private final double bodyVel[][];
+  private final double bodyAcc[][];
+  private final double bodyObs[][];
+  private final double bodyMass[];
+  private final double matrix[];
+  private final double dObsGeo;
+  private final double dObsSun;
+
+  private static class Scratch {
+    final double pos1[] = new double[3];
+    final double vel1[] = new double[3];
+    final double pos2[] = new double[3];
+    final double pos3[] = new double[3];
+    final double pos4[] = new double[3];
+    final double pbody[] = new double[3];
+    final double angles[] = new double[2];
+    final double radec[] = new double[2];
+  }
+
+  /**
+   * Create frame using a new engine with the default ephemeris.
+   *
+   * @see #EpochFrame(NovasEngine, double, double, Observer, int, int)
+   */
+
+  public EpochFrame(double ttDate, double deltaT, Observer location, int coordinateSystem, int accuracy) {
+    this(new NovasEngine(), ttDate, deltaT, location, coordinateSystem, accuracy);
+  }
+
+  /**
+   * Create frame.
+   *
+   * @param engine
+   *          engine used to compute the star-independent quantities, it is
+   *          not referenced by the frame
+   * @param ttDate
+   *          TT Julian date
+   * @param deltaT
+   *          difference TT-UT1 at <code>ttDate</code> in seconds of time
+   * @param location
+   *          the location of the observer
+   * @param coordinateSystem
+   *          code specifying coordinate system of the output position:
+   *          <blockquote> 0 &rarr; GCRS or "local GCRS"<br>
+   *          1 &rarr; true equator and equinox of date<br>
+   *          2 &rarr; true equator and CIO of date<br>
+   *          3 &rarr; astrometric coordinates, i.e., without light deflection
+   *          or aberration) </blockquote>
+   * @param accuracy
+   *          0 for full accuracy, 1 for reduced accuracy
+   * @throws IllegalArgumentException
+   *           with the error code of place() if the quantities can't be
+   *           computed
+   */
+
+  public EpochFrame(NovasEngine engine, double ttDate, double deltaT, Observer location, int coordinateSystem, int accuracy) {
+    short error;
+    if ((coordinateSystem < 0) || (coordinateSystem > 3))
+      throw new IllegalArgumentException("place() error 1");
+    if ((accuracy < 0) || (accuracy > 1))
+      throw new IllegalArgumentException("place() error 2");
+    this.ttDate = ttDate;
+    this.coordinateSystem = coordinateSystem;
+    this.accuracy = accuracy;
+    jdTDB = Astrometry.ttToTDB(ttDate);
+    double jd[] = { jdTDB, 0.0 };
+    double vsb[] = new double[3], vog[] = new double[3];
+    if ((error = engine.ephemeris(jd, EARTH, 0, accuracy, peb, veb)) != 0)
+      throw new IllegalArgumentException("place() error " + (error + 10));
+    if ((error = engine.ephemeris(jd, SUN, 0, accuracy, psb, vsb)) != 0)
+      throw new IllegalArgumentException("place() error " + (error + 10));
+    topocentric = (location.where == 1) || (location.where == 2);
+    if (topocentric && (error = engine.geoPosvel(ttDate, deltaT, accuracy, location, pog, vog)) != 0)
+      throw new IllegalArgumentException("place() error " + (error + 40));
+    for (int i = 0; i < 3; i++) {
+      pob[i] = peb[i] + pog[i];
+      vob[i] = veb[i] + vog[i];
+    }
+    int bodies = accuracy == 0 ? 3 : 1;
+    bodyPos = new double[bodies][3];
+    bodyVel = new double[bodies][3];
+    bodyAcc = new double[bodies][3];
+    bodyObs = new double[bodies][3];
+    bodyMass = new double[bodies];
+    double pos[] = new double[3], vel[] = new double[3];
+    for (int i = 0; i < bodies; i++) {
+      CelestialObject body = GRAVITATING_BODIES[i];
+      jd[0] = jdTDB;
+      if ((error = engine.ephemeris(jd, body, 0, accuracy, bodyPos[i], bodyVel[i])) != 0)
+        throw new IllegalArgumentException("place() error " + (error + 70));
+      jd[0] = jdTDB - ACCELERATION_STEP;
+      if ((error = engine.ephemeris(jd, body, 0, accuracy, pos, vel)) != 0)
+        throw new IllegalArgumentException("place() error " + (error + 70));
+      for (int j = 0; j < 3; j++)
+        bodyAcc[i][j] = (bodyVel[i][j] - vel[j]) / ACCELERATION_STEP;
+      Astrometry.bary2obs(bodyPos[i], pob, bodyObs[i]);
+      bodyMass[i] = RMASS[body.number];
+    }
+    switch (coordinateSystem) {
+    case 1:
+      matrix = new double[9];
+      for (int j = 0; j < 3; j++) {
+        pos[0] = pos[1] = pos[2] = 0.0;
+        pos[j] = 1.0;
+        Astrometry.frameTie(pos, 1, pos);
+        engine.precession(T0, pos, jdTDB, pos);
+        engine.nutation(jdTDB, 0, accuracy, pos, pos);
+        for (int i = 0; i < 3; i++)
+          matrix[3 * i + j] = pos[i];
+      }
+      break;
+    case 2:
+      double px[] = new double[3], py[] = new double[3], pz[] = new double[3];
+      engine.cioBasis(jdTDB, engine.cioLocation(jdTDB, accuracy), accuracy, px, py, pz);
+      matrix = new double[] { px[0], px[1], px[2], py[0], py[1], py[2], pz[0], pz[1], pz[2] };
+      break;
+    default:
+      matrix = null;
+    }
+    dObsGeo = distance(pob, peb);
+    dObsSun = distance(pob, psb);
+  }
+
+  private static double distance(double a[], double b[]) {
+    double d0 = a[0] - b[0], d1 = a[1] - b[1], d2 = a[2] - b[2];
+    return Math.sqrt(d0 * d0 + d1 * d1 + d2 * d2);
+  }
+
+  /**
+   * Reduce one star, the position ends in <code>s.pos4</code>, geometric
+   * position with respect to observer in <code>s.pos3</code>.
+   */
+
+  private void reduce(double ra, double dec, double raProperMotion, double decProperMotion, double parallax, double radialVelocity, Scratch s) {
+    Astrometry.starVectors(ra, dec, raProperMotion, decProperMotion, parallax, radialVelocity, s.pos1, s.vel1);
+    reduce(s);
+  }
+
+  /**
+   * Reduce one star given by barycentric vectors in <code>s.pos1</code> and
+   * <code>s.vel1</code>.
+   */
+
+  private void reduce(Scratch s) {
+    double dt = Astrometry.dLight(s.pos1, pob);
+    Astrometry.properMotion(T0, s.pos1, s.vel1, jdTDB + dt, s.pos2);
+    double tLight = Astrometry.bary2obs(s.pos2, pob, s.pos3);
+    double pos[] = s.pos4;
+    for (int i = 0; i < 3; i++)
+      pos[i] = s.pos3[i];
+    if (coordinateSystem != 3) {
+      for (int i = 0; i < bodyPos.length; i++) {
+        double t = Astrometry.dLight(pos, bodyObs[i]);
+        if (t < 0.0)
+          t = 0.0;
+        else if (tLight < t)
+          t = tLight;
+        double p[] = bodyPos[i], v[] = bodyVel[i], a[] = bodyAcc[i];
+        for (int j = 0; j < 3; j++)
+          s.pbody[j] = p[j] - (v[j] - 0.5 * a[j] * t) * t;
+        Astrometry.gravVec(pos, pob, s.pbody, bodyMass[i], pos);
+      }
+      if (topocentric) {
+        Astrometry.limbAngle(s.pos3, pog, s.angles);
+        if (s.angles[1] >= 0.8)
+          Astrometry.gravVec(pos, pob, peb, RMASS[3], pos);
+      }
+      Astrometry.aberration(pos, vob, tLight, pos);
+    }
+    if (matrix != null)
+      Astrometry.rotate(matrix, pos, pos);
+  }
+
+  /**
+   * Compute place of a star.
+   *
+   * @param star
+   *          catalog entry of the star
+   * @param output
+   *          output data specifying star's place on the sky,
+   *          <code>output.rHat</code> is reused if it is already allocated
+   */
+
+  public void place(CatalogEntry star, SkyPosition output) {
+    Scratch s = new Scratch();
+    reduce(star.ra, star.dec, star.raProperMotion, star.decProperMotion, star.parallax, star.radialVelocity, s);
+    output.distance = 0.0;
+    output.radialVelocity = Astrometry.radVel(star, s.pos3, s.vel1, vob, dObsGeo, dObsSun, 0.0);
+    Astrometry.vector2radec(s.pos4, s.radec);
+    output.ra = s.radec[0];
+    output.dec = s.radec[1];
+    double x = Math.sqrt(s.pos4[0] * s.pos4[0] + s.pos4[1] * s.pos4[1] + s.pos4[2] * s.pos4[2]);
+    if (output.rHat == null)
+      output.rHat = new double[3];
+    for (int i = 0; i < 3; i++)
+      output.rHat[i] = s.pos4[i] / x;
+  }
+
+  /**
+   * Compute places of stars given as columns of catalog data. Input and
+   * output arrays are used from <code>offset</code> to
+   * <code>offset + count - 1</code>.
+   *
+   * @param ra
+   *          ICRS right ascensions in hours
+   * @param dec
+   *          ICRS declinations in degrees
+   * @param raProperMotion
+   *          ICRS proper motions in right ascension in milliarcseconds/year
+   * @param decProperMotion
+   *          ICRS proper motions in declination in milliarcseconds/year
+   * @param parallax
+   *          parallaxes in milliarcseconds
+   * @param radialVelocity
+   *          radial velocities in km/s
+   * @param outRa
+   *          output right ascensions in hours
+   * @param outDec
+   *          output declinations in degrees
+   * @param offset
+   *          index of the first star
+   * @param count
+   *          number of stars
+   */
+
+  public void place(double ra[], double dec[], double raProperMotion[], double decProperMotion[], double parallax[], double radialVelocity[], double outRa[], double outDec[], int offset, int count) {
+    Scratch s = new Scratch();
+    for (int i = offset; i < offset + count; i++) {
+      reduce(ra[i], dec[i], raProperMotion[i], decProperMotion[i], parallax[i], radialVelocity[i], s);
+      Astrometry.vector2radec(s.pos4, s.radec);
+      outRa[i] = s.radec[0];
+      outDec[i] = s.radec[1];
+    }
+  }
+
+  /**
+   * Compute places of stars of an off-heap catalog. Reduction starts from
+   * barycentric vectors if the catalog keeps them. Output arrays are indexed
+   * like the catalog.
+   *
+   * @param catalog
+   *          star catalog
+   * @param outRa
+   *          output right ascensions in hours
+   * @param outDec
+   *          output declinations in degrees
+   * @param offset
+   *          index of the first star
+   * @param count
+   *          number of stars
+   */
+
+  public void place(StarCatalog catalog, double outRa[], double outDec[], int offset, int count) {
+    Scratch s = new Scratch();
+    for (int i = offset; i < offset + count; i++) {
+      reduce(catalog, i, s);
+      outRa[i] = s.radec[0];
+      outDec[i] = s.radec[1];
+    }
+  }
+
+  /**
+   * Compute place of one star of an off-heap catalog.
+   *
+   * @param catalog
+   *          star catalog
+   * @param index
+   *          index of the star
+   * @param radec
+   *          output array of length 2 with right ascension in hours and
+   *          declination in degrees
+   * @param pos
+   *          output unit vector of the place or null
+   */
+
+  public void place(StarCatalog catalog, int index, double radec[], double pos[]) {
+    Scratch s = new Scratch();
+    reduce(catalog, index, s);
+    radec[0] = s.radec[0];
+    radec[1] = s.radec[1];
+    if (pos != null) {
+      double x = Math.sqrt(s.pos4[0] * s.pos4[0] + s.pos4[1] * s.pos4[1] + s.pos4[2] * s.pos4[2]);
+      for (int i = 0; i < 3; i++)
+        pos[i] = s.pos4[i] / x;
+    }
+  }
+
+  private void reduce(StarCatalog catalog, int i, Scratch s) {
+    if (catalog.hasVectors()) {
+      catalog.getVectors(i, s.pos1, s.vel1);
+      reduce(s);
+    } else
+      reduce(catalog.get(StarCatalog.RA, i), catalog.get(StarCatalog.DEC, i), catalog.get(StarCatalog.RA_PROPER_MOTION, i), catalog.get(StarCatalog.DEC_PROPER_MOTION, i), catalog.get(StarCatalog.PARALLAX, i), catalog.get(StarCatalog.RADIAL_VELOCITY, i), s);
+    Astrometry.vector2radec(s.pos4, s.radec);
+  }
+
+  /**
+   * Rotate a vector from the output coordinate system of the frame back to
+   * ICRS axes. Output may be the same array as input.
+   *
+   * @param pos
+   *          vector in the output coordinate system
+   * @param pos2
+   *          output vector referred to ICRS axes
+   */
+
+  public void toICRS(double pos[], double pos2[]) {
+    if (matrix != null)
+      Astrometry.rotateInverse(matrix, pos, pos2);
+    else if (pos2 != pos)
+      System.arraycopy(pos, 0, pos2, 0, 3);
+  }
+
+  /**
+   * Get TT Julian date of the frame.
+   *
+   * @return TT Julian date
+   */
+
+  public double getTTDate() {
+    return ttDate;
+  }
+
+  /**
+   * Get TDB Julian date of the frame.
+   *
+   * @return TDB Julian date
+   */
+
+  public double getTDBDate() {
+    return jdTDB;
+  }
+
+  /**
+   * Get coordinate system of the output positions.
+   *
+   * @return coordinate system code, see
+   *         {@link #EpochFrame(NovasEngine, double, double, Observer, int, int)}
+   */
+
+  public int getCoordinateSystem() {
+    return coordinateSystem;
+  }
+
+  /**
+   * Get accuracy of the frame.
+   *
+   * @return 0 for full accuracy, 1 for reduced accuracy
+   */
+
+  public int getAccuracy() {
+    return accuracy;
+  }
+}
@@ -0,0 +1,466 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+package eu.cloudmakers.astronometry.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * JPL binary planetary ephemeris reader, port of eph_manager.c and
+ * solsys1.c.
+ * <p>
+ * The whole file is held in one read-only buffer (memory mapped when opened
+ * from a file) and Chebyshev coefficients are interpolated straight from it,
+ * so there is no record buffer to refill. Instances keep scratch polynomial
+ * values and are not thread-safe; use
+ * {@link #JPLEphemeris(JPLEphemeris)} to create another reader over the same
+ * data for another thread.
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class JPLEphemeris implements Ephemeris {
+
+  private static final int SS_OFFSET = 252 + 2400;
+  private static final int AU_OFFSET = SS_OFFSET + 3 * 8 + 4;
+  private static final int EM_RATIO_OFFSET = AU_OFFSET + 8;
+  private static final int IPT_OFFSET = EM_RATIO_OFFSET + 8;
+  private static final int DENUM_OFFSET = IPT_OFFSET + 36 * 4;
+
+  private static JPLEphemeris bundled;
+  private static boolean bundledLoaded;
+
+  /**
+   * Ephemeris number (e.g. 421).
+   */
+
+  public final int deNumber;
+
+  /**
+   * First Julian date covered by the ephemeris.
+   */
+
+  public final double jdBegin;
+
+  /**
+   * Last Julian date covered by the ephemeris.
+   */
+
+  public final double jdEnd;
+
+  private final ByteBuffer buffer;
+  private final int recordLength;
+  private final double ss[];
+  private final double au;
+  private final double emRatio;
+  private final int ipt[][];
+
+  private final double pc[] = new double[18];
+  private final double vc[] = new double[18];
+  private int np = 2;
+  private int nv = 3;
+  private double twot = 0.0;
+
+  private final double t[] = new double[2];
+  private final double jd[] = new double[4];
+  private final double posEarth[] = new double[3];
+  private final double velEarth[] = new double[3];
+  private final double posMoon[] = new double[3];
+  private final double velMoon[] = new double[3];
+  private final double centerPos[] = new double[3];
+  private final double centerVel[] = new double[3];
+
+  /**
+   * Open ephemeris file, the file is memory mapped.
+   *
+   * @param file
+   *          JPL binary ephemeris file (DE200, DE403-DE406 or DE421)
+   * @throws IOException
+   *           if the file can't be read or is not supported
+   */
+
+  public JPLEphemeris(File file) throws IOException {
+    this(map(file));
+  }
+
+  /**
+   * Read ephemeris from stream, the stream is read to the end but not closed.
+   *
+   * @param in
+   *          stream with JPL binary ephemeris (DE200, DE403-DE406 or DE421)
+   * @throws IOException
+   *           if the stream can't be read or is not supported
+   */
+
+  public JPLEphemeris(InputStream in) throws IOException {
+    this(read(in));
+  }
+
+  /**
+   * Create new reader sharing the ephemeris data of another one.
+   *
+   * @param ephemeris
+   *          reader to share data with
+   */
+
+  public JPLEphemeris(JPLEphemeris ephemeris) {
+    buffer = ephemeris.buffer.duplicate().order(ephemeris.buffer.order());
+    deNumber = ephemeris.deNumber;
+    jdBegin = ephemeris.jdBegin;
+    jdEnd = ephemeris.jdEnd;
+    recordLength = ephemeris.recordLength;
+    ss = ephemeris.ss;
+    au = ephemeris.au;
+    emRatio = ephemeris.emRatio;
+    ipt = ephemeris.ipt;
+    pc[0] = 1.0;
+    vc[1] = 1.0;
+  }
+
+  private JPLEphemeris(ByteBuffer buffer) throws IOException {
+    if (buffer.capacity() < DENUM_OFFSET + 4 * 4)
+      throw new IOException("Ephemeris file is too short");
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    if (recordLength(buffer.getInt(DENUM_OFFSET)) == 0)
+      buffer.order(ByteOrder.BIG_ENDIAN);
+    this.buffer = buffer;
+    deNumber = buffer.getInt(DENUM_OFFSET);
+    recordLength = recordLength(deNumber);
+    if (recordLength == 0)
+      throw new IOException("Unsupported ephemeris file");
+    ss = new double[3];
+    for (int i = 0; i < 3; i++)
+      ss[i] = buffer.getDouble(SS_OFFSET + 8 * i);
+    au = buffer.getDouble(AU_OFFSET);
+    emRatio = buffer.getDouble(EM_RATIO_OFFSET);
+    ipt = new int[3][12];
+    for (int i = 0; i < 12; i++)
+      for (int j = 0; j < 3; j++)
+        ipt[j][i] = buffer.getInt(IPT_OFFSET + 4 * (i * 3 + j));
+    jdBegin = ss[0];
+    jdEnd = ss[1];
+    pc[0] = 1.0;
+    vc[1] = 1.0;
+  }
+
+  private static int recordLength(int denum) {
+    switch (denum) {
+    case 200:
+      return 6608;
+    case 403:
+    case 405:
+    case 421:
+      return 8144;
+    case 404:
+    case 406:
+      return 5824;
+    default:
+      return 0;
+    }
+  }
+
+  private static ByteBuffer map(File file) throws IOException {
+    FileInputStream in = new FileInputStream(file);
+    try {
+      FileChannel channel = in.getChannel();
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      in.close();
+    }
+  }
+
+  private static ByteBuffer read(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+    byte chunk[] = new byte[10240];
+    int size;
+    while ((size = in.read(chunk)) > 0)
+      out.write(chunk, 0, size);
+    return ByteBuffer.wrap(out.toByteArray());
+  }
+
+  /**
+   * Get reader over the JPLEPH.421 file bundled with jNOVAS.
+   * <p>
+   * The file is read once and shared by all readers returned by this method.
+   *
+   * @return new reader or <code>null</code> if the file is not bundled
+   */
+
+  public static synchronized JPLEphemeris bundled() {
+    if (!bundledLoaded) {
+      bundledLoaded = true;
+      InputStream in = JPLEphemeris.class.getResourceAsStream("/eu/cloudmakers/astronometry/JPLEPH.421");
+      if (in != null) {
+        try {
+          try {
+            bundled = new JPLEphemeris(in);
+          } finally {
+            in.close();
+          }
+        } catch (IOException exception) {
+          System.err.println("JPLEPH.421 can't be read...");
+        }
+      }
+    }
+    return bundled == null ? null : new JPLEphemeris(bundled);
+  }
+
+  /**
+   * Provide the position and velocity of a body, port of solarsystem_1().
+   */
+
+  public short solarSystem(double tdbDate, int body, int origin, double position[], double velocity[]) {
+    return solarSystemHP(tdbDate, 0.0, body, origin, position, velocity);
+  }
+
+  /**
+   * Provide the position and velocity of a body to the highest precision,
+   * port of solarsystem_hp_1().
+   * <p>
+   * Unlike solarsystem_hp_1(), date out of range of the ephemeris is
+   * reported as error 2 rather than ignored.
+   */
+
+  public short solarSystemHP(double tdbHigh, double tdbLow, int body, int origin, double position[], double velocity[]) {
+    if ((body < 1) || (body > 11))
+      return 1;
+    else if ((origin < 0) || (origin > 2))
+      return 2;
+    int target;
+    switch (body) {
+    case 10:
+      target = 10;
+      break;
+    case 11:
+      target = 9;
+      break;
+    default:
+      target = body - 1;
+    }
+    int center = 0;
+    if (origin == 0)
+      center = 11;
+    else if (origin == 1)
+      center = 10;
+    else if (origin == 2)
+      center = 2;
+    return planetEphemeris(tdbHigh, tdbLow, target, center, position, velocity);
+  }
+
+  /**
+   * Compute position and velocity of a target body relative to a center,
+   * port of planet_ephemeris().
+   * <p>
+   * Body numbers are JPL ones: Mercury &rarr; 0, ..., Pluto &rarr; 8, Moon
+   * &rarr; 9, Sun &rarr; 10, solar system barycenter &rarr; 11, Earth-Moon
+   * barycenter &rarr; 12.
+   *
+   * @param tdbHigh
+   *          high-order part of TDB Julian date
+   * @param tdbLow
+   *          low-order part of TDB Julian date
+   * @param target
+   *          number of target body
+   * @param center
+   *          number of central body
+   * @param position
+   *          output position vector of target relative to center in AU
+   * @param velocity
+   *          output velocity vector of target relative to center in AU/day
+   * @return error code: <blockquote> 0 &rarr; no problems<br>
+   *         2 &rarr; date out of range</blockquote>
+   */
+
+  public short planetEphemeris(double tdbHigh, double tdbLow, int target, int center, double position[], double velocity[]) {
+    final int earth = 2, moon = 9;
+    short error;
+    if (target == center) {
+      for (int i = 0; i < 3; i++) {
+        position[i] = 0.0;
+        velocity[i] = 0.0;
+      }
+      return 0;
+    }
+    boolean doEarth = (target == moon) || (center == moon) || (target == 12) || (center == 12);
+    boolean doMoon = (target == earth) || (center == earth);
+    if (doEarth && (error = state(tdbHigh, tdbLow, 2, posEarth, velEarth)) != 0)
+      return error;
+    if (doMoon && (error = state(tdbHigh, tdbLow, 9, posMoon, velMoon)) != 0)
+      return error;
+    if (target == 11) {
+      for (int i = 0; i < 3; i++)
+        position[i] = velocity[i] = 0.0;
+    } else if (target == 12) {
+      for (int i = 0; i < 3; i++) {
+        position[i] = posEarth[i];
+        velocity[i] = velEarth[i];
+      }
+    } else if ((error = state(tdbHigh, tdbLow, target, position, velocity)) != 0)
+      return error;
+    if (center == 11) {
+      for (int i = 0; i < 3; i++)
+        centerPos[i] = centerVel[i] = 0.0;
+    } else if (center == 12) {
+      for (int i = 0; i < 3; i++) {
+        centerPos[i] = posEarth[i];
+        centerVel[i] = velEarth[i];
+      }
+    } else if ((error = state(tdbHigh, tdbLow, center, centerPos, centerVel)) != 0)
+      return error;
+    if ((target == earth) && (center == moon)) {
+      for (int i = 0; i < 3; i++) {
+        position[i] = -centerPos[i];
+        velocity[i] = -centerVel[i];
+      }
+      return 0;
+    } else if ((target == moon) && (center == earth)) {
+      return 0;
+    } else if (target == earth) {
+      for (int i = 0; i < 3; i++) {
+        position[i] = position[i] - (posMoon[i] / (1.0 + emRatio));
+        velocity[i] = velocity[i] - (velMoon[i] / (1.0 + emRatio));
+      }
+    } else if (center == earth) {
+      for (int i = 0; i < 3; i++) {
+        centerPos[i] = centerPos[i] - (posMoon[i] / (1.0 + emRatio));
+        centerVel[i] = centerVel[i] - (velMoon[i] / (1.0 + emRatio));
+      }
+    } else if (target == moon) {
+      for (int i = 0; i < 3; i++) {
+        position[i] = (posEarth[i] - (position[i] / (1.0 + emRatio))) + position[i];
+        velocity[i] = (velEarth[i] - (velocity[i] / (1.0 + emRatio))) + velocity[i];
+      }
+    } else if (center == moon) {
+      for (int i = 0; i < 3; i++) {
+        centerPos[i] = (posEarth[i] - (centerPos[i] / (1.0 + emRatio))) + centerPos[i];
+        centerVel[i] = (velEarth[i] - (centerVel[i] / (1.0 + emRatio))) + centerVel[i];
+      }
+    }
+    for (int i = 0; i < 3; i++) {
+      position[i] = position[i] - centerPos[i];
+      velocity[i] = velocity[i] - centerVel[i];
+    }
+    return 0;
+  }
+
+  /**
+   * Read and interpolate the JPL planetary ephemeris, port of state().
+   */
+
+  private short state(double jedHigh, double jedLow, int target, double targetPos[], double targetVel[]) {
+    double aufac = 1.0 / au;
+    t[1] = ss[2];
+    split(jedHigh - 0.5, jd, 0);
+    split(jedLow, jd, 2);
+    jd[0] += jd[2] + 0.5;
+    jd[1] += jd[3];
+    split(jd[1], jd, 2);
+    jd[0] += jd[2];
+    if ((jd[0] < ss[0]) || ((jd[0] + jd[3]) > ss[1]))
+      return 2;
+    long nr = (long) ((jd[0] - ss[0]) / ss[2]) + 3;
+    if (jd[0] == ss[1])
+      nr -= 2;
+    t[0] = ((jd[0] - ((double) (nr - 3) * ss[2] + ss[0])) + jd[3]) / ss[2];
+    int base = (int) ((nr - 1) * recordLength) + 8 * (ipt[0][target] - 1);
+    interpolate(base, t, ipt[1][target], ipt[2][target], targetPos, targetVel);
+    for (int i = 0; i < 3; i++) {
+      targetPos[i] *= aufac;
+      targetVel[i] *= aufac;
+    }
+    return 0;
+  }
+
+  /**
+   * Differentiate and interpolate a set of Chebyshev coefficients, port of
+   * interpolate().
+   */
+
+  private void interpolate(int base, double t[], int ncf, int na, double position[], double velocity[]) {
+    double dna = na;
+    double dt1 = (double) ((long) t[0]);
+    double temp = dna * t[0];
+    long l = (long) (temp - dt1);
+    double tc = 2.0 * (temp % 1.0 + dt1) - 1.0;
+    if (tc != pc[1]) {
+      np = 2;
+      nv = 3;
+      pc[1] = tc;
+      twot = tc + tc;
+    }
+    if (np < ncf) {
+      for (int i = np; i < ncf; i++)
+        pc[i] = twot * pc[i - 1] - pc[i - 2];
+      np = ncf;
+    }
+    int offset = base + (int) (l * 3 * ncf) * 8;
+    for (int i = 0; i < 3; i++) {
+      double sum = 0.0;
+      for (int j = ncf - 1; j >= 0; j--)
+        sum += pc[j] * buffer.getDouble(offset + 8 * (j + i * ncf));
+      position[i] = sum;
+    }
+    double vfac = (2.0 * dna) / t[1];
+    vc[2] = 2.0 * twot;
+    if (nv < ncf) {
+      for (int i = nv; i < ncf; i++)
+        vc[i] = twot * vc[i - 1] + pc[i - 1] + pc[i - 1] - vc[i - 2];
+      nv = ncf;
+    }
+    for (int i = 0; i < 3; i++) {
+      double sum = 0.0;
+      for (int j = ncf - 1; j > 0; j--)
+        sum += vc[j] * buffer.getDouble(offset + 8 * (j + i * ncf));
+      velocity[i] = sum * vfac;
+    }
+  }
+
+  /**
+   * Break up a double number into a double integer part and a fractional
+   * part, port of split().
+   */
+
+  private static void split(double tt, double fr[], int index) {
+    double integer = (double) ((long) tt);
+    double fraction = tt - integer;
+    if ((tt < 0.0) && (fraction != 0.0)) {
+      integer -= 1.0;
+      fraction += 1.0;
+    }
+    fr[index] = integer;
+    fr[index + 1] = fraction;
+  }
+}
@@ -0,0 +1,919 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+package eu.cloudmakers.astronometry.engine;
+
+import static eu.cloudmakers.astronometry.engine.Astrometry.ASEC2RAD;
+import static eu.cloudmakers.astronometry.engine.Astrometry.AU_KM;
+import static eu.cloudmakers.astronometry.engine.Astrometry.C_AUDAY;
+import static eu.cloudmakers.astronometry.engine.Astrometry.DEG2RAD;
+import static eu.cloudmakers.astronometry.engine.Astrometry.RAD2DEG;
+import static eu.cloudmakers.astronometry.engine.Astrometry.RMASS;
+import static eu.cloudmakers.astronometry.engine.Astrometry.T0;
+
+import eu.cloudmakers.astronometry.NOVAS.CatalogEntry;
+import eu.cloudmakers.astronometry.NOVAS.CelestialObject;
+import eu.cloudmakers.astronometry.NOVAS.DoubleRef;
+import eu.cloudmakers.astronometry.NOVAS.Observer;
+import eu.cloudmakers.astronometry.NOVAS.PositionOnSurface;
+import eu.cloudmakers.astronometry.NOVAS.SkyPosition;
+
+/**
+ * Pure Java implementation of the place() family of NOVAS 3.1 functions.
+ * <p>
+ * Methods mirror the static native methods of
+ * {@link eu.cloudmakers.astronometry.NOVAS} (same arguments, same error
+ * codes) but don't cross JNI and don't need the native library. Results agree
+ * with the native library to well below a microarcsecond.
+ * <p>
+ * Like the per-thread state of the native library, an engine instance keeps
+ * date-keyed caches (Earth and Sun state, nutation and precession matrices,
+ * sidereal time, CIO basis) and is not thread-safe; use one instance per
+ * thread. The CIO is always located by the equinox based method (as NOVAS
+ * does when cio_ra.bin is not available) and minor planets are not supported
+ * (error 29 from ephemeris, as with readeph0.c).
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class NovasEngine {
+
+  private static final CelestialObject EARTH = new CelestialObject((short) 0, (short) 3, "Earth");
+  private static final CelestialObject SUN = new CelestialObject((short) 0, (short) 10, "Sun");
+  private static final CelestialObject GRAVITATING_BODIES[] = { SUN, new CelestialObject((short) 0, (short) 5, "Jupiter"), new CelestialObject((short) 0, (short) 6, "Saturn") };
+  private static final Observer GEOCENTER = new Observer();
+
+  private final Ephemeris ephemeris;
+
+  // place() state
+
+  private double tlast1 = 0.0;
+  private double jdTDB;
+  private int accuracyLast1 = -1;
+  private final double peb[] = new double[3];
+  private final double veb[] = new double[3];
+  private final double psb[] = new double[3];
+  private final double vsb[] = new double[3];
+  private final double px[] = new double[3];
+  private final double py[] = new double[3];
+  private final double pz[] = new double[3];
+
+  // e_tilt() state
+
+  private double tiltLast = 0.0;
+  private int tiltAccuracyLast = 0;
+  private final double nutationAngles[] = new double[3];
+  private double cTerms;
+  private FrameTable frameTable;
+
+  // nutation() and precession() state
+
+  private double nutationLast = Double.NaN;
+  private int nutationAccuracyLast = -1;
+  private final double nutationMatrix[] = new double[9];
+  private double precessionLast = Double.NaN;
+  private final double precessionMatrix[] = new double[9];
+
+  // geo_posvel() and sidereal_time() state
+
+  private double gastLast = 0.0;
+  private int gastAccuracyLast = -1;
+  private double gast;
+  private double eeLast = -99.0;
+  private int eeAccuracyLast = -1;
+  private double ee;
+
+  // cio_basis() state
+
+  private double basisLast = 0.0;
+  private int basisAccuracyLast = -1;
+  private final double xx[] = new double[3];
+  private final double yy[] = new double[3];
+  private final double zz[] = new double[3];
+
+  // scratch
+
+  private final double tilt[] = new double[5];
+  private final double jd[] = new double[2];
+  private final double pog[] = new double[3];
+  private final double vog[] = new double[3];
+  private final double pob[] = new double[3];
+  private final double vob[] = new double[3];
+  private final double pos1[] = new double[3];
+  private final double vel1[] = new double[3];
+  private final double pos2[] = new double[3];
+  private final double pos3[] = new double[3];
+  private final double pos4[] = new double[3];
+  private final double pos5[] = new double[3];
+  private final double pos8[] = new double[3];
+  private final double w1[] = new double[3];
+  private final double stX[] = new double[3];
+  private final double stY[] = new double[3];
+  private final double stZ[] = new double[3];
+  private final double stEq[] = new double[3];
+  private final double lightTimeJD[] = new double[2];
+  private final double pbody[] = new double[3];
+  private final double vbody[] = new double[3];
+  private final double pbodyo[] = new double[3];
+  private final double lightTimePos[] = new double[3];
+  private final double lightTimeVel[] = new double[3];
+  private final double angles[] = new double[2];
+  private final double radec[] = new double[2];
+  private final double lightTime[] = new double[1];
+  private final SkyPosition output = new SkyPosition();
+  private final Observer surfaceLocation = new Observer();
+  private final CelestialObject starObject = new CelestialObject((short) 2, (short) 0, null);
+
+  /**
+   * Create engine using JPLEPH.421 bundled with jNOVAS or, if it is not
+   * available, the analytic Sun-Earth ephemeris (in this case only reduced
+   * accuracy star places can be computed).
+   */
+
+  public NovasEngine() {
+    this(defaultEphemeris());
+  }
+
+  /**
+   * Create engine using given solar system ephemeris. The ephemeris instance
+   * should not be shared with other engines.
+   *
+   * @param ephemeris
+   *          solar system ephemeris
+   */
+
+  public NovasEngine(Ephemeris ephemeris) {
+    this.ephemeris = ephemeris;
+  }
+
+  private static Ephemeris defaultEphemeris() {
+    Ephemeris ephemeris = JPLEphemeris.bundled();
+    if (ephemeris == null)
+      ephemeris = new AnalyticEphemeris();
+    return ephemeris;
+  }
+
+  /**
+   * Get solar system ephemeris used by the engine.
+   *
+   * @return solar system ephemeris
+   */
+
+  public Ephemeris getEphemeris() {
+    return ephemeris;
+  }
+
+  /**
+   * Compute the apparent direction of a star or solar system body at a
+   * specified time and in a specified coordinate system.
+   * <p>
+   * Port of place(), see
+   * {@link eu.cloudmakers.astronometry.NOVAS#place(double, CelestialObject, Observer, double, int, int, SkyPosition)}
+   * for description of parameters and error codes. <code>output.rHat</code>
+   * is reused if it is already allocated.
+   */
+
+  public short place(double ttDate, CelestialObject object, Observer location, double deltaT, int coordinateSystem, int accuracy, SkyPosition output) {
+    short error;
+    if ((coordinateSystem < 0) || (coordinateSystem > 3))
+      return 1;
+    if ((accuracy < 0) || (accuracy > 1))
+      return 2;
+    if ((object.type == 0) && (object.number == 3) && (location.where != 2))
+      return 3;
+    if ((Math.abs(ttDate - tlast1) > 1.0e-8) || (accuracy != accuracyLast1)) {
+      jdTDB = Astrometry.ttToTDB(ttDate);
+      jd[0] = jdTDB;
+      jd[1] = 0.0;
+      if ((error = ephemeris(jd, EARTH, 0, accuracy, peb, veb)) != 0)
+        return (short) (error + 10);
+      if ((error = ephemeris(jd, SUN, 0, accuracy, psb, vsb)) != 0)
+        return (short) (error + 10);
+      tlast1 = ttDate;
+      accuracyLast1 = accuracy;
+    }
+    boolean loc;
+    if ((location.where == 1) || (location.where == 2)) {
+      if ((error = geoPosvel(ttDate, deltaT, accuracy, location, pog, vog)) != 0)
+        return (short) (error + 40);
+      loc = true;
+    } else {
+      for (int i = 0; i < 3; i++)
+        pog[i] = vog[i] = 0.0;
+      loc = false;
+    }
+    for (int i = 0; i < 3; i++) {
+      pob[i] = peb[i] + pog[i];
+      vob[i] = veb[i] + vog[i];
+    }
+    double tLight;
+    if (object.type == 2) {
+      Astrometry.starVectors(object.star, pos1, vel1);
+      double dt = Astrometry.dLight(pos1, pob);
+      Astrometry.properMotion(T0, pos1, vel1, jdTDB + dt, pos2);
+      tLight = Astrometry.bary2obs(pos2, pob, pos3);
+      output.distance = 0.0;
+    } else {
+      jd[0] = jdTDB;
+      jd[1] = 0.0;
+      if ((error = ephemeris(jd, object, 0, accuracy, pos1, vel1)) != 0)
+        return (short) (error + 10);
+      double tLight0 = Astrometry.bary2obs(pos1, pob, pos2);
+      output.distance = tLight0 * C_AUDAY;
+      if ((error = lightTime(jdTDB, object, pob, tLight0, accuracy, pos3, lightTime)) != 0)
+        return (short) (error + 50);
+      tLight = lightTime[0];
+    }
+    if (coordinateSystem == 3) {
+      for (int i = 0; i < 3; i++)
+        pos5[i] = pos3[i];
+    } else {
+      if (loc) {
+        Astrometry.limbAngle(pos3, pog, angles);
+        if (angles[1] < 0.8)
+          loc = false;
+      }
+      if ((error = gravDef(jdTDB, loc ? 1 : 0, accuracy, pos3, pob, pos4)) != 0)
+        return (short) (error + 70);
+      Astrometry.aberration(pos4, vob, tLight, pos5);
+    }
+    switch (coordinateSystem) {
+    case 1:
+      Astrometry.frameTie(pos5, 1, pos8);
+      precession(T0, pos8, jdTDB, pos8);
+      nutation(jdTDB, 0, accuracy, pos8, pos8);
+      break;
+    case 2:
+      cioBasis(jdTDB, cioLocation(jdTDB, accuracy), accuracy, px, py, pz);
+      pos8[0] = px[0] * pos5[0] + px[1] * pos5[1] + px[2] * pos5[2];
+      pos8[1] = py[0] * pos5[0] + py[1] * pos5[1] + py[2] * pos5[2];
+      pos8[2] = pz[0] * pos5[0] + pz[1] * pos5[1] + pz[2] * pos5[2];
+      break;
+    default:
+      for (int i = 0; i < 3; i++)
+        pos8[i] = pos5[i];
+    }
+    double dObsGeo = distance(pob, peb);
+    double dObsSun = distance(pob, psb);
+    double dObjSun = distance(pos1, psb);
+    output.radialVelocity = Astrometry.radVel(object.type == 2 ? object.star : null, pos3, vel1, vob, dObsGeo, dObsSun, dObjSun);
+    Astrometry.vector2radec(pos8, radec);
+    output.ra = radec[0];
+    output.dec = radec[1];
+    double x = Math.sqrt(pos8[0] * pos8[0] + pos8[1] * pos8[1] + pos8[2] * pos8[2]);
+    if (output.rHat == null)
+      output.rHat = new double[3];
+    for (int i = 0; i < 3; i++)
+      output.rHat[i] = pos8[i] / x;
+    return 0;
+  }
+
+  private static double distance(double a[], double b[]) {
+    double d0 = a[0] - b[0], d1 = a[1] - b[1], d2 = a[2] - b[2];
+    return Math.sqrt(d0 * d0 + d1 * d1 + d2 * d2);
+  }
+
+  /**
+   * Compute the apparent place of a star, port of app_star(), see
+   * {@link eu.cloudmakers.astronometry.NOVAS#appStar(double, CatalogEntry, int, DoubleRef, DoubleRef)}.
+   */
+
+  public short appStar(double ttDate, CatalogEntry star, int accuracy, DoubleRef ra, DoubleRef dec) {
+    return star(ttDate, 0.0, star, GEOCENTER, 1, accuracy, ra, dec);
+  }
+
+  /**
+   * Compute the virtual place of a star, port of virtual_star(), see
+   * {@link eu.cloudmakers.astronometry.NOVAS#virtualStar(double, CatalogEntry, int, DoubleRef, DoubleRef)}.
+   */
+
+  public short virtualStar(double ttDate, CatalogEntry star, int accuracy, DoubleRef ra, DoubleRef dec) {
+    return star(ttDate, 0.0, star, GEOCENTER, 0, accuracy, ra, dec);
+  }
+
+  /**
+   * Compute the astrometric place of a star, port of astro_star(), see
+   * {@link eu.cloudmakers.astronometry.NOVAS#astroStar(double, CatalogEntry, int, DoubleRef, DoubleRef)}.
+   */
+
+  public short astroStar(double ttDate, CatalogEntry star, int accuracy, DoubleRef ra, DoubleRef dec) {
+    return star(ttDate, 0.0, star, GEOCENTER, 3, accuracy, ra, dec);
+  }
+
+  /**
+   * Compute the local place of a star, port of local_star(), see
+   * {@link eu.cloudmakers.astronometry.NOVAS#localStar(double, double, CatalogEntry, PositionOnSurface, int, DoubleRef, DoubleRef)}.
+   */
+
+  public short localStar(double ttDate, double deltaT, CatalogEntry star, PositionOnSurface position, int accuracy, DoubleRef ra, DoubleRef dec) {
+    return star(ttDate, deltaT, star, onSurface(position), 0, accuracy, ra, dec);
+  }
+
+  /**
+   * Compute the topocentric place of a star, port of topo_star(), see
+   * {@link eu.cloudmakers.astronometry.NOVAS#topoStar(double, double, CatalogEntry, PositionOnSurface, int, DoubleRef, DoubleRef)}.
+   */
+
+  public short topoStar(double ttDate, double deltaT, CatalogEntry star, PositionOnSurface position, int accuracy, DoubleRef ra, DoubleRef dec) {
+    return star(ttDate, deltaT, star, onSurface(position), 1, accuracy, ra, dec);
+  }
+
+  /**
+   * Observer on the surface of the Earth, the instance is reused by each
+   * call.
+   */
+
+  private Observer onSurface(PositionOnSurface position) {
+    surfaceLocation.where = 1;
+    surfaceLocation.onSurface = position;
+    return surfaceLocation;
+  }
+
+  private short star(double ttDate, double deltaT, CatalogEntry star, Observer location, int coordinateSystem, int accuracy, DoubleRef ra, DoubleRef dec) {
+    starObject.name = star.name;
+    starObject.star = star;
+    short error = place(ttDate, starObject, location, deltaT, coordinateSystem, accuracy, output);
+    if (error != 0) {
+      ra.value = 0.0;
+      dec.value = 0.0;
+      return (short) (error + 20);
+    }
+    ra.value = output.ra;
+    dec.value = output.dec;
+    return 0;
+  }
+
+  /**
+   * Compute the apparent place of a solar system body, port of app_planet(),
+   * see
+   * {@link eu.cloudmakers.astronometry.NOVAS#appPlanet(double, CelestialObject, int, DoubleRef, DoubleRef, DoubleRef)}
+   * .
+   */
+
+  public short appPlanet(double ttDate, CelestialObject body, int accuracy, DoubleRef ra, DoubleRef dec, DoubleRef distance) {
+    return planet(ttDate, body, 0.0, GEOCENTER, 1, accuracy, ra, dec, distance);
+  }
+
+  /**
+   * Compute the virtual place of a solar system body, port of
+   * virtual_planet(), see
+   * {@link eu.cloudmakers.astronometry.NOVAS#virtualPlanet(double, CelestialObject, int, DoubleRef, DoubleRef, DoubleRef)}
+   * .
+   */
+
+  public short virtualPlanet(double ttDate, CelestialObject body, int accuracy, DoubleRef ra, DoubleRef dec, DoubleRef distance) {
+    return planet(ttDate, body, 0.0, GEOCENTER, 0, accuracy, ra, dec, distance);
+  }
+
+  /**
+   * Compute the astrometric place of a solar system body, port of
+   * astro_planet(), see
+   * {@link eu.cloudmakers.astronometry.NOVAS#astroPlanet(double, CelestialObject, int, DoubleRef, DoubleRef, DoubleRef)}
+   * .
+   */
+
+  public short astroPlanet(double ttDate, CelestialObject body, int accuracy, DoubleRef ra, DoubleRef dec, DoubleRef distance) {
+    return planet(ttDate, body, 0.0, GEOCENTER, 3, accuracy, ra, dec, distance);
+  }
+
+  /**
+   * Compute the local place of a solar system body, port of local_planet(),
+   * see
+   * {@link eu.cloudmakers.astronometry.NOVAS#localPlanet(double, CelestialObject, double, PositionOnSurface, int, DoubleRef, DoubleRef, DoubleRef)}
+   * .
+   */
+
+  public short localPlanet(double ttDate, CelestialObject body, double deltaT, PositionOnSurface position, int accuracy, DoubleRef ra, DoubleRef dec, DoubleRef distance) {
+    return planet(ttDate, body, deltaT, onSurface(position), 0, accuracy, ra, dec, distance);
+  }
+
+  /**
+   * Compute the topocentric place of a solar system body, port of
+   * topo_planet(), see
+   * {@link eu.cloudmakers.astronometry.NOVAS#topoPlanet(double, CelestialObject, double, PositionOnSurface, int, DoubleRef, DoubleRef, DoubleRef)}
+   * .
+   */
+
+  public short topoPlanet(double ttDate, CelestialObject body, double deltaT, PositionOnSurface position, int accuracy, DoubleRef ra, DoubleRef dec, DoubleRef distance) {
+    return planet(ttDate, body, deltaT, onSurface(position), 1, accuracy, ra, dec, distance);
+  }
+
+  private short planet(double ttDate, CelestialObject body, double deltaT, Observer location, int coordinateSystem, int accuracy, DoubleRef ra, DoubleRef dec, DoubleRef distance) {
+    if ((body.type < 0) || (body.type > 1))
+      return 1;
+    short error = place(ttDate, body, location, deltaT, coordinateSystem, accuracy, output);
+    if (error != 0) {
+      ra.value = 0.0;
+      dec.value = 0.0;
+      distance.value = 0.0;
+      return (short) (error + 10);
+    }
+    ra.value = output.ra;
+    dec.value = output.dec;
+    distance.value = output.distance;
+    return 0;
+  }
+
+  /**
+   * Compute the Greenwich sidereal time, either mean or apparent, at UT1
+   * Julian date, port of sidereal_time().
+   *
+   * @param jdHigh
+   *          high-order part of UT1 Julian date
+   * @param jdLow
+   *          low-order part of UT1 Julian date
+   * @param deltaT
+   *          difference TT-UT1 at <code>jdHigh + jdLow</code> in seconds of
+   *          time
+   * @param gstType
+   *          0 for Greenwich mean sidereal time, 1 for Greenwich apparent
+   *          sidereal time
+   * @param method
+   *          0 for CIO-based method, 1 for equinox-based method
+   * @param accuracy
+   *          0 for full accuracy, 1 for reduced accuracy
+   * @param gst
+   *          output Greenwich (mean or apparent) sidereal time in hours
+   * @return error code: <blockquote> 0 &rarr; no problems<br>
+   *         1 &rarr; invalid value of 'accuracy'<br>
+   *         2 &rarr; invalid value of 'method'</blockquote>
+   */
+
+  public short siderealTime(double jdHigh, double jdLow, double deltaT, int gstType, int method, int accuracy, DoubleRef gst) {
+    if ((accuracy < 0) || (accuracy > 1))
+      return 1;
+    gst.value = siderealTime(jdHigh, jdLow, deltaT, gstType, method, accuracy);
+    return (short) (gst.value == 99.0 ? 2 : 0);
+  }
+
+  private double siderealTime(double jdHigh, double jdLow, double deltaT, int gstType, int method, int accuracy) {
+    double jdTT = jdHigh + jdLow + (deltaT / 86400.0);
+    double jdTDB = Astrometry.ttToTDB(jdTT);
+    double t = (jdTDB - T0) / 36525.0;
+    double theta = Astrometry.era(jdHigh, jdLow);
+    double eqeq;
+    if (((gstType == 0) && (method == 0)) || ((gstType == 1) && (method == 1))) {
+      if ((Math.abs(jdTDB - eeLast) > 1.0e-8) || (accuracy != eeAccuracyLast)) {
+        eTilt(jdTDB, accuracy, tilt);
+        ee = tilt[2];
+        eeLast = jdTDB;
+        eeAccuracyLast = accuracy;
+      }
+      eqeq = ee * 15.0;
+    } else
+      eqeq = 0.0;
+    switch (method) {
+    case 0:
+      cioBasis(jdTDB, cioLocation(jdTDB, accuracy), accuracy, stX, stY, stZ);
+      stEq[0] = 1.0;
+      stEq[1] = 0.0;
+      stEq[2] = 0.0;
+      nutation(jdTDB, -1, accuracy, stEq, stEq);
+      precession(jdTDB, stEq, T0, stEq);
+      Astrometry.frameTie(stEq, -1, stEq);
+      double haEq = theta - Math.atan2((stEq[0] * stY[0] + stEq[1] * stY[1] + stEq[2] * stY[2]), (stEq[0] * stX[0] + stEq[1] * stX[1] + stEq[2] * stX[2])) * RAD2DEG;
+      haEq -= (eqeq / 240.0);
+      haEq = (haEq % 360.0) / 15.0;
+      if (haEq < 0.0)
+        haEq += 24.0;
+      return haEq;
+    case 1:
+      double st = eqeq + 0.014506 + ((((-0.0000000368 * t - 0.000029956) * t - 0.00000044) * t + 1.3915817) * t + 4612.156534) * t;
+      double gst = ((st / 3600.0 + theta) % 360.0) / 15.0;
+      if (gst < 0.0)
+        gst += 24.0;
+      return gst;
+    default:
+      return 99.0;
+    }
+  }
+
+  /**
+   * Compute the geocentric position and velocity of an observer on the
+   * surface of the earth or on a near-earth spacecraft, port of geo_posvel().
+   *
+   * @param ttDate
+   *          TT Julian date
+   * @param deltaT
+   *          difference TT-UT1 at <code>ttDate</code> in seconds of time
+   * @param accuracy
+   *          0 for full accuracy, 1 for reduced accuracy
+   * @param observer
+   *          location of observer
+   * @param position
+   *          output position vector of observer, with respect to origin at
+   *          geocenter, referred to GCRS axes, components in AU
+   * @param velocity
+   *          output velocity vector of observer, with respect to origin at
+   *          geocenter, referred to GCRS axes, components in AU/day
+   * @return error code: <blockquote> 0 &rarr; no problems<br>
+   *         1 &rarr; invalid value of 'accuracy'</blockquote>
+   */
+
+  public short geoPosvel(double ttDate, double deltaT, int accuracy, Observer observer, double position[], double velocity[]) {
+    if ((accuracy < 0) || (accuracy > 1))
+      return 1;
+    double jdTDB = Astrometry.ttToTDB(ttDate);
+    switch (observer.where) {
+    case 1:
+      double jdUT1 = ttDate - (deltaT / 86400.0);
+      if ((Math.abs(jdUT1 - gastLast) > 1.0e-8) || (accuracy != gastAccuracyLast)) {
+        double gmst = siderealTime(jdUT1, 0.0, deltaT, 0, 1, accuracy);
+        eTilt(jdTDB, accuracy, tilt);
+        gast = gmst + tilt[2] / 3600.0;
+        gastLast = jdUT1;
+        gastAccuracyLast = accuracy;
+      }
+      Astrometry.terra(observer.onSurface, gast, position, velocity);
+      break;
+    case 2:
+      double fac = AU_KM / 86400.0;
+      for (int i = 0; i < 3; i++) {
+        position[i] = observer.nearEarth.position[i] / AU_KM;
+        velocity[i] = observer.nearEarth.velocity[i] / fac;
+      }
+      break;
+    default:
+      for (int i = 0; i < 3; i++)
+        position[i] = velocity[i] = 0.0;
+      return 0;
+    }
+    nutation(jdTDB, -1, accuracy, position, position);
+    precession(jdTDB, position, T0, position);
+    Astrometry.frameTie(position, -1, position);
+    nutation(jdTDB, -1, accuracy, velocity, velocity);
+    precession(jdTDB, velocity, T0, velocity);
+    Astrometry.frameTie(velocity, -1, velocity);
+    return 0;
+  }
+
+  /**
+   * Compute the geocentric position of a solar system body, as antedated for
+   * light-time, port of light_time().
+   *
+   * @param tdbDate
+   *          TDB Julian date of observation
+   * @param object
+   *          solar system body
+   * @param posObs
+   *          position vector of observer with respect to the solar system
+   *          barycenter, referred to ICRS axes, components in AU
+   * @param tlight0
+   *          first approximation to light-time, in days
+   * @param accuracy
+   *          0 for full accuracy, 1 for reduced accuracy
+   * @param pos
+   *          output position vector of body, with respect to origin at
+   *          observer, referred to ICRS axes, components in AU
+   * @param tlight
+   *          output array of length 1 with final light-time, in days
+   * @return error code: <blockquote> 0 &rarr; no problems<br>
+   *         1 &rarr; algorithm failed to converge after 10 iterations<br>
+   *         > 10 &rarr; error is 10 + error from function ephemeris
+   *         </blockquote>
+   */
+
+  public short lightTime(double tdbDate, CelestialObject object, double posObs[], double tlight0, int accuracy, double pos[], double tlight[]) {
+    double jd[] = lightTimeJD;
+    double tol, t1, t2, t3 = 0.0;
+    if (accuracy == 0) {
+      tol = 1.0e-12;
+      jd[0] = (double) ((long) tdbDate);
+      t1 = tdbDate - jd[0];
+      t2 = t1 - tlight0;
+    } else {
+      tol = 1.0e-9;
+      jd[0] = 0.0;
+      t1 = tdbDate;
+      t2 = tdbDate - tlight0;
+    }
+    int iter = 0;
+    do {
+      if (iter > 10)
+        return 1;
+      if (iter > 0)
+        t2 = t3;
+      jd[1] = t2;
+      short error = ephemeris(jd, object, 0, accuracy, lightTimePos, lightTimeVel);
+      if (error != 0)
+        return (short) (error + 10);
+      tlight[0] = Astrometry.bary2obs(lightTimePos, posObs, pos);
+      t3 = t1 - tlight[0];
+      iter++;
+    } while (Math.abs(t3 - t2) > tol);
+    return 0;
+  }
+
+  /**
+   * Compute the total gravitational deflection of light for the observed
+   * object due to the major gravitating bodies in the solar system, port of
+   * grav_def().
+   *
+   * @param tdbDate
+   *          TDB Julian date of observation
+   * @param locationCode
+   *          0 if observer is at geocenter, 1 otherwise (Earth deflection is
+   *          included)
+   * @param accuracy
+   *          0 for full accuracy (Sun, Jupiter and Saturn), 1 for reduced
+   *          accuracy (Sun only)
+   * @param pos1
+   *          position vector of observed object, with respect to origin at
+   *          observer, components in AU
+   * @param posObs
+   *          position vector of observer, with respect to origin at solar
+   *          system barycenter, components in AU
+   * @param pos2
+   *          output position vector of observed object, with respect to
+   *          origin at observer, corrected for gravitational deflection,
+   *          components in AU
+   * @return error code from function ephemeris
+   */
+
+  public short gravDef(double tdbDate, int locationCode, int accuracy, double pos1[], double posObs[], double pos2[]) {
+    short error;
+    double jd[] = this.jd;
+    jd[1] = 0.0;
+    for (int i = 0; i < 3; i++)
+      pos2[i] = pos1[i];
+    int bodies = accuracy == 0 ? 3 : 1;
+    double tlt = Math.sqrt(pos1[0] * pos1[0] + pos1[1] * pos1[1] + pos1[2] * pos1[2]) / C_AUDAY;
+    for (int i = 0; i < bodies; i++) {
+      CelestialObject body = GRAVITATING_BODIES[i];
+      jd[0] = tdbDate;
+      if ((error = ephemeris(jd, body, 0, accuracy, pbody, vbody)) != 0)
+        return error;
+      Astrometry.bary2obs(pbody, posObs, pbodyo);
+      double dlt = Astrometry.dLight(pos2, pbodyo);
+      double tclose = tdbDate;
+      if (dlt > 0.0)
+        tclose = tdbDate - dlt;
+      if (tlt < dlt)
+        tclose = tdbDate - tlt;
+      jd[0] = tclose;
+      if ((error = ephemeris(jd, body, 0, accuracy, pbody, vbody)) != 0)
+        return error;
+      Astrometry.gravVec(pos2, posObs, pbody, RMASS[body.number], pos2);
+    }
+    if (locationCode != 0) {
+      jd[0] = tdbDate;
+      if ((error = ephemeris(jd, EARTH, 0, accuracy, pbody, vbody)) != 0)
+        return error;
+      Astrometry.gravVec(pos2, posObs, pbody, RMASS[3], pos2);
+    }
+    return 0;
+  }
+
+  /**
+   * Retrieve the position and velocity of a solar system body from the
+   * ephemeris, port of ephemeris().
+   *
+   * @param jd
+   *          TDB Julian date split into two parts
+   * @param object
+   *          solar system body
+   * @param origin
+   *          0 for solar system barycenter, 1 for center of mass of the Sun
+   * @param accuracy
+   *          0 for full accuracy, 1 for reduced accuracy
+   * @param pos
+   *          output position vector of the body in AU
+   * @param vel
+   *          output velocity vector of the body in AU/day
+   * @return error code: <blockquote> 0 &rarr; no problems<br>
+   *         1 &rarr; invalid value of 'origin'<br>
+   *         2 &rarr; invalid value of 'type' in 'object'<br>
+   *         10 + error from solar system ephemeris<br>
+   *         29 &rarr; minor planet ephemeris is not available</blockquote>
+   */
+
+  public short ephemeris(double jd[], CelestialObject object, int origin, int accuracy, double pos[], double vel[]) {
+    short error;
+    if ((origin < 0) || (origin > 1))
+      return 1;
+    switch (object.type) {
+    case 0:
+      if (accuracy == 0)
+        error = ephemeris.solarSystemHP(jd[0], jd[1], object.number, origin, pos, vel);
+      else
+        error = ephemeris.solarSystem(jd[0] + jd[1], object.number, origin, pos, vel);
+      return error != 0 ? (short) (error + 10) : 0;
+    case 1:
+      return 29;
+    default:
+      return 2;
+    }
+  }
+
+  /**
+   * Use fitted table instead of the nutation series for the dates and
+   * accuracy it covers. Affects all methods depending on e_tilt(), including
+   * place() and siderealTime().
+   *
+   * @param frameTable
+   *          table or null to always evaluate the series
+   */
+
+  public void setFrameTable(FrameTable frameTable) {
+    this.frameTable = frameTable;
+    tiltLast = 0.0;
+    nutationLast = Double.NaN;
+    gastLast = 0.0;
+    eeLast = -99.0;
+    basisLast = 0.0;
+  }
+
+  /**
+   * Get fitted table used instead of the nutation series.
+   *
+   * @return table or null
+   */
+
+  public FrameTable getFrameTable() {
+    return frameTable;
+  }
+
+  /**
+   * Compute the mean and true obliquity of the ecliptic, the equation of the
+   * equinoxes and the nutation angles, port of e_tilt().
+   *
+   * @param tdbDate
+   *          TDB Julian date
+   * @param accuracy
+   *          0 for full accuracy, 1 for reduced accuracy
+   * @param tilt
+   *          output array of length 5 with mean obliquity in degrees, true
+   *          obliquity in degrees, equation of the equinoxes in seconds of
+   *          time, nutation in longitude in arcseconds and nutation in
+   *          obliquity in arcseconds
+   */
+
+  public void eTilt(double tdbDate, int accuracy, double tilt[]) {
+    if ((Math.abs(tdbDate - tiltLast) > 1.0e-8) || (accuracy != tiltAccuracyLast)) {
+      if (frameTable != null && frameTable.covers(tdbDate, accuracy)) {
+        frameTable.nutationAngles(tdbDate, nutationAngles);
+        cTerms = nutationAngles[2];
+      } else {
+        Astrometry.nutationAngles((tdbDate - T0) / 36525.0, accuracy, nutationAngles);
+        cTerms = Astrometry.eeCT(tdbDate, 0.0, accuracy) / ASEC2RAD;
+      }
+      tiltLast = tdbDate;
+      tiltAccuracyLast = accuracy;
+    }
+    double dPsi = nutationAngles[0];
+    double dEps = nutationAngles[1];
+    double meanOb = Astrometry.meanObliquity(tdbDate);
+    double trueOb = meanOb + dEps;
+    meanOb /= 3600.0;
+    trueOb /= 3600.0;
+    tilt[0] = meanOb;
+    tilt[1] = trueOb;
+    tilt[2] = (dPsi * Math.cos(meanOb * DEG2RAD) + cTerms) / 15.0;
+    tilt[3] = dPsi;
+    tilt[4] = dEps;
+  }
+
+  /**
+   * Nutate equatorial rectangular coordinates from mean equator and equinox
+   * of epoch to true equator and equinox of epoch or vice versa, port of
+   * nutation(). Output may be the same array as input.
+   *
+   * @param tdbDate
+   *          TDB Julian date of epoch
+   * @param direction
+   *          0 for mean to true transformation, otherwise true to mean
+   * @param accuracy
+   *          0 for full accuracy, 1 for reduced accuracy
+   * @param pos
+   *          position vector
+   * @param pos2
+   *          output position vector
+   */
+
+  public void nutation(double tdbDate, int direction, int accuracy, double pos[], double pos2[]) {
+    if ((tdbDate != nutationLast) || (accuracy != nutationAccuracyLast)) {
+      eTilt(tdbDate, accuracy, tilt);
+      Astrometry.nutationMatrix(tilt[0], tilt[1], tilt[3], nutationMatrix);
+      nutationLast = tdbDate;
+      nutationAccuracyLast = accuracy;
+    }
+    if (direction == 0)
+      Astrometry.rotate(nutationMatrix, pos, pos2);
+    else
+      Astrometry.rotateInverse(nutationMatrix, pos, pos2);
+  }
+
+  /**
+   * Precess equatorial rectangular coordinates from one epoch to another,
+   * port of precession(). One of the two epochs must be J2000.0. Output may
+   * be the same array as input.
+   *
+   * @see Astrometry#precession(double, double[], double, double[])
+   */
+
+  public short precession(double tdbDate1, double pos1[], double tdbDate2, double pos2[]) {
+    if ((tdbDate1 != T0) && (tdbDate2 != T0))
+      return 1;
+    double epoch = tdbDate2 == T0 ? tdbDate1 : tdbDate2;
+    if (epoch != precessionLast) {
+      Astrometry.precessionMatrix((epoch - T0) / 36525.0, precessionMatrix);
+      precessionLast = epoch;
+    }
+    if (tdbDate2 == T0)
+      Astrometry.rotateInverse(precessionMatrix, pos1, pos2);
+    else
+      Astrometry.rotate(precessionMatrix, pos1, pos2);
+    return 0;
+  }
+
+  /**
+   * Compute the right ascension of the celestial intermediate origin (CIO)
+   * with respect to the true equinox of date, port of cio_location() without
+   * the cio_ra.bin file.
+   *
+   * @param tdbDate
+   *          TDB Julian date
+   * @param accuracy
+   *          0 for full accuracy, 1 for reduced accuracy
+   * @return right ascension of the CIO in hours
+   */
+
+  public double cioLocation(double tdbDate, int accuracy) {
+    eTilt(tdbDate, accuracy, tilt);
+    return -Astrometry.iraEquinox(tdbDate, tilt[2]);
+  }
+
+  /**
+   * Compute the orthonormal basis vectors, with respect to the GCRS, of the
+   * celestial intermediate system, port of cio_basis() for the CIO right
+   * ascension given with respect to the true equinox of date.
+   *
+   * @param tdbDate
+   *          TDB Julian date
+   * @param raCIO
+   *          right ascension of the CIO in hours, see
+   *          {@link #cioLocation(double, int)}
+   * @param accuracy
+   *          0 for full accuracy, 1 for reduced accuracy
+   * @param x
+   *          output unit vector toward the CIO
+   * @param y
+   *          output unit vector toward the y-axis of the celestial
+   *          intermediate system
+   * @param z
+   *          output unit vector toward north celestial pole (CIP)
+   */
+
+  public void cioBasis(double tdbDate, double raCIO, int accuracy, double x[], double y[], double z[]) {
+    if ((Math.abs(tdbDate - basisLast) > 1.0e-8) || (accuracy != basisAccuracyLast)) {
+      w1[0] = 0.0;
+      w1[1] = 0.0;
+      w1[2] = 1.0;
+      nutation(tdbDate, -1, accuracy, w1, w1);
+      precession(tdbDate, w1, T0, w1);
+      Astrometry.frameTie(w1, -1, zz);
+      w1[0] = Math.cos(raCIO * 15.0 * DEG2RAD);
+      w1[1] = Math.sin(raCIO * 15.0 * DEG2RAD);
+      w1[2] = 0.0;
+      nutation(tdbDate, -1, accuracy, w1, w1);
+      precession(tdbDate, w1, T0, w1);
+      Astrometry.frameTie(w1, -1, xx);
+      yy[0] = zz[1] * xx[2] - zz[2] * xx[1];
+      yy[1] = zz[2] * xx[0] - zz[0] * xx[2];
+      yy[2] = zz[0] * xx[1] - zz[1] * xx[0];
+      basisLast = tdbDate;
+      basisAccuracyLast = accuracy;
+    }
+    for (int i = 0; i < 3; i++) {
+      x[i] = xx[i];
+      y[i] = yy[i];
+      z[i] = zz[i];
+    }
+  }
+}
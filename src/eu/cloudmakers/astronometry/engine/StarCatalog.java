@@ -0,0 +1,602 @@
+/*
+ * jNOVAS 3.1 - Java wrapper for important functions from NOVAS 3.1 library
+ *
+ * Copyright (c) 2012 Cloudmakers, s. r. o. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Ported code and documentation is based on
+ *
+ *    Naval Observatory Vector Astrometry Software (NOVAS), C Edition, Version 3.1
+ *
+ *    U. S. Naval Observatory
+ *    Astronomical Applications Dept.
+ *    Washington, DC
+ *    http://www.usno.navy.mil/USNO/astronomical-applications
+ */
+
+
+package eu.cloudmakers.astronometry.engine;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import eu.cloudmakers.astronometry.NOVAS.CatalogEntry;
+
+/**
+ * Star catalog stored off-heap as a structure of arrays.
+ * <p>
+ * Every quantity of {@link CatalogEntry} is kept in its own column, a direct
+ * buffer of native byte order with one value per star. Optionally the
+ * catalog also holds the output of starvectors(), barycentric position in AU
+ * and velocity in AU/day at the catalog epoch (J2000.0), so reductions can
+ * start from ready vectors instead of deriving them from angles for every
+ * date. Each column is a separate buffer, so the size of the catalog is
+ * limited by the 2 GB limit of one buffer only per column, i.e. to about 268
+ * million stars.
+ * <p>
+ * Star names are kept in a side table keyed by star number, catalog
+ * designator is shared by all stars. Adding stars isn't thread-safe, reading
+ * is.
+ * <p>
+ * Catalog can be saved to a binary file and opened again by memory mapping,
+ * opening takes the same time regardless of the size of the catalog, nothing
+ * is parsed. The file starts with a header of {@link #FILE_HEADER_BYTES}
+ * bytes: <blockquote> int magic number {@link #FILE_MAGIC}<br>
+ * int version {@link #FILE_VERSION}<br>
+ * int number of columns<br>
+ * int number of stars<br>
+ * 8 bytes ASCII catalog designator padded with zeros<br>
+ * long offset and long length of the name table<br>
+ * zeros up to the end of the header</blockquote> followed by the double columns
+ * in column order, the int column with star numbers and the name table
+ * aligned to 8 bytes. The name table holds int count, count star numbers in
+ * ascending order, count + 1 offsets to UTF-8 data and the UTF-8 data. All
+ * values are in native byte order of the writer, opening a file written on a
+ * platform with different byte order fails.
+ *
+ * @author Cloudmakers, s. r. o. (<a
+ *         href="mailto:info@cloudmakers.eu">info@cloudmakers.eu</a>)
+ * @version 1.0
+ */
+
+public class StarCatalog {
+
+  /**
+   * ICRS right ascension in hours.
+   */
+
+  public static final int RA = 0;
+
+  /**
+   * ICRS declination in degrees.
+   */
+
+  public static final int DEC = 1;
+
+  /**
+   * ICRS proper motion in right ascension in milliarcseconds/year.
+   */
+
+  public static final int RA_PROPER_MOTION = 2;
+
+  /**
+   * ICRS proper motion in declination in milliarcseconds/year.
+   */
+
+  public static final int DEC_PROPER_MOTION = 3;
+
+  /**
+   * Parallax in milliarcseconds.
+   */
+
+  public static final int PARALLAX = 4;
+
+  /**
+   * Radial velocity in km/s.
+   */
+
+  public static final int RADIAL_VELOCITY = 5;
+
+  /**
+   * First of three columns with barycentric position vector in AU.
+   */
+
+  public static final int POSITION = 6;
+
+  /**
+   * First of three columns with barycentric velocity vector in AU/day.
+   */
+
+  public static final int VELOCITY = 9;
+
+  /**
+   * Number of columns with angular quantities.
+   */
+
+  public static final int ANGULAR_COLUMNS = 6;
+
+  /**
+   * Number of columns including vectors.
+   */
+
+  public static final int VECTOR_COLUMNS = 12;
+
+  /**
+   * Magic number at the beginning of catalog file.
+   */
+
+  public static final int FILE_MAGIC = 0x4A4E5343;
+
+  /**
+   * Version of catalog file format.
+   */
+
+  public static final int FILE_VERSION = 1;
+
+  /**
+   * Size of catalog file header in bytes.
+   */
+
+  public static final int FILE_HEADER_BYTES = 64;
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private final String catalog;
+  private final int capacity;
+  private final ByteBuffer columns[];
+  private final DoubleBuffer values[];
+  private final ByteBuffer numberColumn;
+  private final IntBuffer numbers;
+  private final Map<Integer, String> names = new HashMap<Integer, String>();
+  private final double pos[] = new double[3];
+  private final double vel[] = new double[3];
+  private ByteBuffer nameTable;
+  private int size;
+
+  /**
+   * Create empty catalog with buffers allocated for <code>capacity</code>
+   * stars.
+   *
+   * @param catalog
+   *          three character catalog designator shared by all stars
+   * @param capacity
+   *          maximal number of stars
+   * @param vectors
+   *          true to keep barycentric vectors of stars
+   */
+
+  public StarCatalog(String catalog, int capacity, boolean vectors) {
+    this(catalog, capacity, 0, allocate(capacity, vectors ? VECTOR_COLUMNS : ANGULAR_COLUMNS, 8), allocate(capacity, 1, 4)[0]);
+  }
+
+  /**
+   * Create catalog on existing column buffers, e.g. regions of a mapped file.
+   * Buffers are used as they are, their byte order must be native.
+   *
+   * @param catalog
+   *          three character catalog designator shared by all stars
+   * @param capacity
+   *          maximal number of stars
+   * @param size
+   *          number of stars already stored in the buffers
+   * @param columns
+   *          {@link #ANGULAR_COLUMNS} or {@link #VECTOR_COLUMNS} buffers with
+   *          at least <code>8 * capacity</code> bytes
+   * @param numberColumn
+   *          buffer with at least <code>4 * capacity</code> bytes holding star
+   *          numbers
+   */
+
+  public StarCatalog(String catalog, int capacity, int size, ByteBuffer columns[], ByteBuffer numberColumn) {
+    if (columns.length != ANGULAR_COLUMNS && columns.length != VECTOR_COLUMNS)
+      throw new IllegalArgumentException("Catalog must have " + ANGULAR_COLUMNS + " or " + VECTOR_COLUMNS + " columns");
+    if (size < 0 || size > capacity)
+      throw new IllegalArgumentException("Invalid size " + size);
+    this.catalog = catalog;
+    this.capacity = capacity;
+    this.size = size;
+    this.columns = new ByteBuffer[columns.length];
+    values = new DoubleBuffer[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      this.columns[i] = column(columns[i], 8 * capacity);
+      values[i] = this.columns[i].asDoubleBuffer();
+    }
+    this.numberColumn = column(numberColumn, 4 * capacity);
+    numbers = this.numberColumn.asIntBuffer();
+  }
+
+  private static ByteBuffer[] allocate(int capacity, int count, int bytes) {
+    ByteBuffer buffers[] = new ByteBuffer[count];
+    for (int i = 0; i < count; i++)
+      buffers[i] = ByteBuffer.allocateDirect(bytes * capacity).order(ByteOrder.nativeOrder());
+    return buffers;
+  }
+
+  private static ByteBuffer column(ByteBuffer buffer, int bytes) {
+    if (!buffer.isDirect() || buffer.order() != ByteOrder.nativeOrder())
+      throw new IllegalArgumentException("Columns must be direct buffers with native byte order");
+    if (buffer.remaining() < bytes)
+      throw new IllegalArgumentException("Column must have at least " + bytes + " bytes");
+    ByteBuffer column = buffer.slice().order(ByteOrder.nativeOrder());
+    column.limit(bytes);
+    return column;
+  }
+
+  /**
+   * Add a star.
+   *
+   * @param star
+   *          catalog entry, its name is stored in the side table
+   * @return index of the star
+   */
+
+  public int add(CatalogEntry star) {
+    int index = add(star.number, star.ra, star.dec, star.raProperMotion, star.decProperMotion, star.parallax, star.radialVelocity);
+    if (star.name != null)
+      names.put(star.number, star.name);
+    return index;
+  }
+
+  /**
+   * Add a star given by individual values, barycentric vectors are computed
+   * if the catalog keeps them.
+   *
+   * @return index of the star
+   */
+
+  public int add(int number, double ra, double dec, double raProperMotion, double decProperMotion, double parallax, double radialVelocity) {
+    if (size == capacity)
+      throw new IllegalStateException("Catalog is full");
+    int index = size++;
+    numbers.put(index, number);
+    values[RA].put(index, ra);
+    values[DEC].put(index, dec);
+    values[RA_PROPER_MOTION].put(index, raProperMotion);
+    values[DEC_PROPER_MOTION].put(index, decProperMotion);
+    values[PARALLAX].put(index, parallax);
+    values[RADIAL_VELOCITY].put(index, radialVelocity);
+    if (hasVectors()) {
+      Astrometry.starVectors(ra, dec, raProperMotion, decProperMotion, parallax, radialVelocity, pos, vel);
+      for (int i = 0; i < 3; i++) {
+        values[POSITION + i].put(index, pos[i]);
+        values[VELOCITY + i].put(index, vel[i]);
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Get value from a column.
+   *
+   * @param column
+   *          column, e.g. {@link #RA}
+   * @param index
+   *          index of the star
+   * @return value
+   */
+
+  public double get(int column, int index) {
+    return values[column].get(index);
+  }
+
+  /**
+   * Get barycentric vectors of a star at the catalog epoch, they are
+   * computed if the catalog doesn't keep them.
+   *
+   * @param index
+   *          index of the star
+   * @param pos
+   *          output position vector in AU
+   * @param vel
+   *          output velocity vector in AU/day
+   */
+
+  public void getVectors(int index, double pos[], double vel[]) {
+    if (hasVectors()) {
+      for (int i = 0; i < 3; i++) {
+        pos[i] = values[POSITION + i].get(index);
+        vel[i] = values[VELOCITY + i].get(index);
+      }
+    } else
+      Astrometry.starVectors(values[RA].get(index), values[DEC].get(index), values[RA_PROPER_MOTION].get(index), values[DEC_PROPER_MOTION].get(index), values[PARALLAX].get(index), values[RADIAL_VELOCITY].get(index), pos, vel);
+  }
+
+  /**
+   * Get number of a star.
+   *
+   * @param index
+   *          index of the star
+   * @return star number
+   */
+
+  public int getNumber(int index) {
+    return numbers.get(index);
+  }
+
+  /**
+   * Get name of a star from the side table.
+   *
+   * @param number
+   *          star number
+   * @return name or null
+   */
+
+  public String getName(int number) {
+    String name = names.get(number);
+    if (name == null && nameTable != null) {
+      int count = nameTable.getInt(0);
+      int low = 0, high = count - 1;
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        int current = nameTable.getInt(4 + 4 * middle);
+        if (current < number)
+          low = middle + 1;
+        else if (current > number)
+          high = middle - 1;
+        else
+          return tableName(count, middle);
+      }
+    }
+    return name;
+  }
+
+  private String tableName(int count, int index) {
+    int offsets = 4 + 4 * count, data = offsets + 4 * (count + 1);
+    int start = nameTable.getInt(offsets + 4 * index), end = nameTable.getInt(offsets + 4 * index + 4);
+    ByteBuffer bytes = nameTable.duplicate();
+    bytes.position(data + start);
+    bytes.limit(data + end);
+    return UTF8.decode(bytes).toString();
+  }
+
+  /**
+   * Set name of a star in the side table.
+   *
+   * @param number
+   *          star number
+   * @param name
+   *          name of the star
+   */
+
+  public void setName(int number, String name) {
+    names.put(number, name);
+  }
+
+  /**
+   * Get names of stars keyed by star number, including names from the name
+   * table of a mapped file.
+   *
+   * @return new map of names
+   */
+
+  public Map<Integer, String> getNames() {
+    Map<Integer, String> result = new HashMap<Integer, String>();
+    if (nameTable != null) {
+      int count = nameTable.getInt(0);
+      for (int i = 0; i < count; i++)
+        result.put(nameTable.getInt(4 + 4 * i), tableName(count, i));
+    }
+    result.putAll(names);
+    return result;
+  }
+
+  /**
+   * Save catalog to a file, see class description for the format.
+   *
+   * @param file
+   *          file to write
+   * @throws IOException
+   *           if the file can't be written
+   */
+
+  public void save(File file) throws IOException {
+    Map<Integer, String> names = getNames();
+    int numbers[] = new int[names.size()], count = 0;
+    for (Integer number : names.keySet())
+      numbers[count++] = number;
+    Arrays.sort(numbers);
+    byte data[][] = new byte[count][];
+    int length = 0;
+    for (int i = 0; i < count; i++)
+      length += (data[i] = names.get(numbers[i]).getBytes("UTF-8")).length;
+    ByteBuffer table = ByteBuffer.allocate(4 + 8 * count + 4 + length).order(ByteOrder.nativeOrder());
+    table.putInt(count);
+    for (int i = 0; i < count; i++)
+      table.putInt(numbers[i]);
+    int offset = 0;
+    for (int i = 0; i < count; i++) {
+      table.putInt(offset);
+      offset += data[i].length;
+    }
+    table.putInt(offset);
+    for (int i = 0; i < count; i++)
+      table.put(data[i]);
+    table.flip();
+    long tableOffset = tableOffset(columns.length, size);
+    ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).order(ByteOrder.nativeOrder());
+    header.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(columns.length).putInt(size);
+    byte designator[] = catalog == null ? new byte[0] : catalog.getBytes("US-ASCII");
+    header.put(designator, 0, Math.min(designator.length, 8));
+    header.putLong(24, tableOffset).putLong(32, table.remaining());
+    header.clear();
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      FileChannel channel = out.getChannel();
+      write(channel, header);
+      for (int i = 0; i < columns.length; i++)
+        write(channel, slice(columns[i], 8 * size));
+      write(channel, slice(numberColumn, 4 * size));
+      write(channel, ByteBuffer.allocate((int) (tableOffset - channel.position())));
+      write(channel, table);
+    } finally {
+      out.close();
+    }
+  }
+
+  private static long tableOffset(int columns, int size) {
+    long offset = FILE_HEADER_BYTES + 8L * columns * size + 4L * size;
+    return (offset + 7) & ~7L;
+  }
+
+  private static ByteBuffer slice(ByteBuffer buffer, int bytes) {
+    ByteBuffer slice = buffer.duplicate();
+    slice.position(0);
+    slice.limit(bytes);
+    return slice;
+  }
+
+  private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining())
+      channel.write(buffer);
+  }
+
+  /**
+   * Open catalog file by memory mapping, see class description for the
+   * format. Columns of the returned catalog are read-only, the catalog is
+   * full and names can be added to the side table only.
+   *
+   * @param file
+   *          file to open
+   * @return mapped catalog
+   * @throws IOException
+   *           if the file can't be read or isn't a catalog file
+   */
+
+  public static StarCatalog open(File file) throws IOException {
+    FileInputStream in = new FileInputStream(file);
+    try {
+      FileChannel channel = in.getChannel();
+      if (channel.size() < FILE_HEADER_BYTES)
+        throw new IOException("Not a star catalog file");
+      ByteBuffer header = map(channel, 0, FILE_HEADER_BYTES);
+      int magic = header.getInt(0);
+      if (magic == Integer.reverseBytes(FILE_MAGIC))
+        throw new IOException("Star catalog file was written with different byte order");
+      if (magic != FILE_MAGIC)
+        throw new IOException("Not a star catalog file");
+      if (header.getInt(4) != FILE_VERSION)
+        throw new IOException("Unsupported star catalog file version " + header.getInt(4));
+      int count = header.getInt(8), size = header.getInt(12);
+      if ((count != ANGULAR_COLUMNS && count != VECTOR_COLUMNS) || size < 0 || tableOffset(count, size) != header.getLong(24) || header.getLong(24) + header.getLong(32) > channel.size())
+        throw new IOException("Corrupted star catalog file");
+      byte designator[] = new byte[8];
+      header.position(16);
+      header.get(designator);
+      int length = 0;
+      while (length < 8 && designator[length] != 0)
+        length++;
+      ByteBuffer columns[] = new ByteBuffer[count];
+      for (int i = 0; i < count; i++)
+        columns[i] = map(channel, FILE_HEADER_BYTES + 8L * i * size, 8L * size);
+      ByteBuffer numbers = map(channel, FILE_HEADER_BYTES + 8L * count * size, 4L * size);
+      StarCatalog catalog = new StarCatalog(new String(designator, 0, length, "US-ASCII"), size, size, columns, numbers);
+      catalog.nameTable = map(channel, header.getLong(24), header.getLong(32));
+      return catalog;
+    } finally {
+      in.close();
+    }
+  }
+
+  private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+    return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Get star as a heap object.
+   *
+   * @param index
+   *          index of the star
+   * @return new catalog entry
+   */
+
+  public CatalogEntry getEntry(int index) {
+    int number = numbers.get(index);
+    return new CatalogEntry(getName(number), catalog, number, values[RA].get(index), values[DEC].get(index), values[RA_PROPER_MOTION].get(index), values[DEC_PROPER_MOTION].get(index), values[PARALLAX].get(index), values[RADIAL_VELOCITY].get(index));
+  }
+
+  /**
+   * Get buffer of a column for direct access, e.g. by native code. The
+   * buffer is shared with the catalog, the returned duplicate has its own
+   * position and limit.
+   *
+   * @param column
+   *          column, e.g. {@link #RA}
+   * @return column buffer
+   */
+
+  public ByteBuffer getColumn(int column) {
+    return columns[column].duplicate().order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Get buffer of star numbers.
+   *
+   * @return column buffer
+   */
+
+  public ByteBuffer getNumberColumn() {
+    return numberColumn.duplicate().order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Check whether the catalog keeps barycentric vectors.
+   *
+   * @return true if vectors are kept
+   */
+
+  public boolean hasVectors() {
+    return values.length == VECTOR_COLUMNS;
+  }
+
+  /**
+   * Get catalog designator.
+   *
+   * @return catalog designator
+   */
+
+  public String getCatalog() {
+    return catalog;
+  }
+
+  /**
+   * Get number of stars.
+   *
+   * @return number of stars
+   */
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Get maximal number of stars.
+   *
+   * @return capacity
+   */
+
+  public int capacity() {
+    return capacity;
+  }
+}